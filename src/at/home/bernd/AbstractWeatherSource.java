@@ -0,0 +1,129 @@
+package at.home.bernd;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import at.home.bernd.PipelineMetrics.STAGE;
+
+/**
+ * The common part of the weather source adapters: opening the location (URL or file, plain or compressed), running
+ * the decoder and sorting the resulting series.
+ */
+public abstract class AbstractWeatherSource implements WeatherSource
+{
+    /**
+     * The id of the station
+     */
+    private String stationId;
+
+    /**
+     * The location of the data (URL or file path)
+     */
+    private String location;
+
+    /**
+     * The column mapping
+     */
+    private ColumnMapping columnMapping;
+
+    /**
+     * Creates a new source.
+     *
+     * @param stationId     the id of the station
+     * @param location      the location of the data (URL or file path)
+     * @param columnMapping the column mapping
+     */
+    protected AbstractWeatherSource(String stationId, String location, ColumnMapping columnMapping)
+    {
+        this.stationId = stationId;
+        this.location = location;
+        this.columnMapping = columnMapping;
+    }
+
+    public String getStationId()
+    {
+        return stationId;
+    }
+
+    public String getLocation()
+    {
+        return location;
+    }
+
+    public ColumnMapping getColumnMapping()
+    {
+        return columnMapping;
+    }
+
+    public WindSeries read() throws IOException
+    {
+        List<WindSeries> seriesList;
+        try
+        {
+            if (location.indexOf(':') > 1)
+            {
+                byte[] body = CompressedInput.fetch(location);
+                seriesList = CompressedInput.parseAll(new ByteArrayInputStream(body), this::readUnchecked);
+            }
+            else
+            {
+                Path path = Paths.get(location);
+                seriesList = CompressedInput.parseAll(path, this::readUnchecked);
+            }
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+        if (seriesList.isEmpty())
+        {
+            // a zip archive without entries
+            return new WindSeries(stationId);
+        }
+        WindSeries series = seriesList.get(0);
+        for (int i = 1; i < seriesList.size(); i++)
+        {
+            series = series.merge(seriesList.get(i));
+        }
+        return series;
+    }
+
+    public WindSeries read(InputStream inputStream) throws IOException
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        WindSeries series = new WindSeries(stationId);
+        decode(inputStream, new WindRowDecoder(columnMapping, series));
+        series.sort();
+        metrics.stop(STAGE.parse, start, series.size());
+        return series;
+    }
+
+    /**
+     * Reads the data from the given stream (for use as parser of {@link CompressedInput}).
+     *
+     * @param inputStream the stream
+     * @return            the wind series
+     */
+    private WindSeries readUnchecked(InputStream inputStream)
+    {
+        try
+        {
+            return read(inputStream);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public String toString()
+    {
+        return getClass().getSimpleName() + " [stationId=" + stationId + ", location=" + location + "]";
+    }
+}
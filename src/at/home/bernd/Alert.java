@@ -0,0 +1,117 @@
+package at.home.bernd;
+
+import java.util.Date;
+
+/**
+ * An alert of the {@link WindAlertEngine}: the conditions of a rule have become true (triggered) or false again
+ * (cleared) at the given reading.
+ */
+public class Alert
+{
+    /**
+     * The rule
+     */
+    private final AlertRule rule;
+
+    /**
+     * This flag indicates if the conditions have become true (false = cleared)
+     */
+    private final boolean triggered;
+
+    /**
+     * The time of the reading in epoch milliseconds
+     */
+    private final long time;
+
+    /**
+     * The mean wind speed of the window
+     */
+    private final double meanSpeed;
+
+    /**
+     * The mean gust of the window
+     */
+    private final double meanGust;
+
+    /**
+     * The mean direction of the window in degrees
+     */
+    private final double meanDirection;
+
+    Alert(AlertRule rule, boolean triggered, long time, WindWindow window)
+    {
+        this.rule = rule;
+        this.triggered = triggered;
+        this.time = time;
+        this.meanSpeed = window.getMeanSpeed();
+        this.meanGust = window.getMeanGust();
+        this.meanDirection = window.getMeanDirection();
+    }
+
+    /**
+     * @return the rule
+     */
+    public AlertRule getRule()
+    {
+        return rule;
+    }
+
+    /**
+     * @return true if the conditions have become true, false if they have become false again
+     */
+    public boolean isTriggered()
+    {
+        return triggered;
+    }
+
+    /**
+     * @return the time of the reading in epoch milliseconds
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return the mean wind speed of the window
+     */
+    public double getMeanSpeed()
+    {
+        return meanSpeed;
+    }
+
+    /**
+     * @return the mean gust of the window
+     */
+    public double getMeanGust()
+    {
+        return meanGust;
+    }
+
+    /**
+     * @return the mean direction of the window in degrees
+     */
+    public double getMeanDirection()
+    {
+        return meanDirection;
+    }
+
+    public String toString()
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        sb.append(new Date(time));
+        sb.append(triggered ? ": triggered " : ": cleared ");
+        sb.append(rule.getRuleId());
+        sb.append(" (");
+        sb.append(rule.getStationId());
+        sb.append(") mean ");
+        dcu.appendRounded(sb, meanSpeed, 1);
+        sb.append(" - ");
+        dcu.appendRounded(sb, meanGust, 1);
+        sb.append(" km/h [");
+        dcu.appendRounded(sb, meanDirection, 0);
+        sb.append("]");
+        return sb.toString();
+    }
+}
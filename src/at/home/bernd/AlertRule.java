@@ -0,0 +1,269 @@
+package at.home.bernd;
+
+import java.util.Properties;
+
+/**
+ * A rule of the {@link WindAlertEngine}: conditions on the aggregates of a sliding window of the readings of a station,
+ * e.g. "mean over 30 km/h for 20 minutes from N to NW" or "gust ratio below 1.4". Conditions that are not set (NaN) are
+ * ignored; all set conditions must be true. Rules are evaluated only on windows covering their whole duration.
+ */
+public class AlertRule
+{
+    /**
+     * The id of the rule
+     */
+    private String ruleId;
+
+    /**
+     * The id of the station
+     */
+    private String stationId;
+
+    /**
+     * The duration of the window in milliseconds
+     */
+    private long windowMillis;
+
+    /**
+     * The minimum mean wind speed in km/h
+     */
+    private double minMeanSpeed = Double.NaN;
+
+    /**
+     * The maximum mean wind speed in km/h
+     */
+    private double maxMeanSpeed = Double.NaN;
+
+    /**
+     * The minimum wind speed of every reading in km/h
+     */
+    private double minSpeed = Double.NaN;
+
+    /**
+     * The maximum gust of every reading in km/h
+     */
+    private double maxGust = Double.NaN;
+
+    /**
+     * The maximum ratio of the mean gust to the mean wind speed
+     */
+    private double maxGustRatio = Double.NaN;
+
+    /**
+     * The start of the direction sector in degrees (clockwise to the end)
+     */
+    private double directionFrom = Double.NaN;
+
+    /**
+     * The end of the direction sector in degrees
+     */
+    private double directionTo = Double.NaN;
+
+    /**
+     * Creates a rule without conditions.
+     *
+     * @param ruleId       the id of the rule
+     * @param stationId    the id of the station
+     * @param windowMillis the duration of the window in milliseconds
+     */
+    public AlertRule(String ruleId, String stationId, long windowMillis)
+    {
+        this.ruleId = ruleId;
+        this.stationId = stationId;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Reads the given rule from the given properties: &lt;ruleId&gt;.station, &lt;ruleId&gt;.windowMinutes and the
+     * optional conditions &lt;ruleId&gt;.minMeanSpeed, .maxMeanSpeed, .minSpeed, .maxGust, .maxGustRatio,
+     * .directionFrom and .directionTo.
+     *
+     * @param properties the properties
+     * @param ruleId     the id of the rule
+     * @return           the rule
+     */
+    public static AlertRule fromProperties(Properties properties, String ruleId)
+    {
+        String prefix = ruleId + ".";
+        long windowMinutes = Long.parseLong(properties.getProperty(prefix + "windowMinutes", "20"));
+        AlertRule rule = new AlertRule(ruleId, properties.getProperty(prefix + "station"), windowMinutes * 60000L);
+        rule.setMinMeanSpeed(getDouble(properties, prefix + "minMeanSpeed"));
+        rule.setMaxMeanSpeed(getDouble(properties, prefix + "maxMeanSpeed"));
+        rule.setMinSpeed(getDouble(properties, prefix + "minSpeed"));
+        rule.setMaxGust(getDouble(properties, prefix + "maxGust"));
+        rule.setMaxGustRatio(getDouble(properties, prefix + "maxGustRatio"));
+        rule.setDirectionSector(getDouble(properties, prefix + "directionFrom"), getDouble(properties, prefix + "directionTo"));
+        return rule;
+    }
+
+    /**
+     * Returns the value of the given property.
+     *
+     * @param properties the properties
+     * @param key        the key
+     * @return           the value or NaN if it is not set
+     */
+    private static double getDouble(Properties properties, String key)
+    {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? Double.NaN : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * Returns true if the conditions of this rule are true for the given window.
+     *
+     * @param window the window of the readings of the station
+     * @return       true if all conditions are true
+     */
+    public boolean matches(WindWindow window)
+    {
+        if (! window.isFull())
+        {
+            return false;
+        }
+        double meanSpeed = window.getMeanSpeed();
+        // a NaN condition never fails: the comparisons are false
+        if (meanSpeed < minMeanSpeed || meanSpeed > maxMeanSpeed || window.getMinSpeed() < minSpeed
+            || window.getMaxGust() > maxGust || window.getGustRatio() > maxGustRatio)
+        {
+            return false;
+        }
+        return Double.isNaN(directionFrom) || isInSector(window.getMeanDirection());
+    }
+
+    /**
+     * Returns true if the given direction is within the direction sector.
+     *
+     * @param direction the direction in degrees
+     * @return          true if the direction is within the sector
+     */
+    private boolean isInSector(double direction)
+    {
+        double width = ((directionTo - directionFrom) % 360 + 360) % 360;
+        double offset = ((direction - directionFrom) % 360 + 360) % 360;
+        return offset <= width;
+    }
+
+    /**
+     * @return the id of the rule
+     */
+    public String getRuleId()
+    {
+        return ruleId;
+    }
+
+    /**
+     * @return the id of the station
+     */
+    public String getStationId()
+    {
+        return stationId;
+    }
+
+    /**
+     * @return the duration of the window in milliseconds
+     */
+    public long getWindowMillis()
+    {
+        return windowMillis;
+    }
+
+    /**
+     * @return the minimum mean wind speed in km/h (NaN = no condition)
+     */
+    public double getMinMeanSpeed()
+    {
+        return minMeanSpeed;
+    }
+
+    /**
+     * @param minMeanSpeed the minimum mean wind speed in km/h (NaN = no condition)
+     */
+    public void setMinMeanSpeed(double minMeanSpeed)
+    {
+        this.minMeanSpeed = minMeanSpeed;
+    }
+
+    /**
+     * @return the maximum mean wind speed in km/h (NaN = no condition)
+     */
+    public double getMaxMeanSpeed()
+    {
+        return maxMeanSpeed;
+    }
+
+    /**
+     * @param maxMeanSpeed the maximum mean wind speed in km/h (NaN = no condition)
+     */
+    public void setMaxMeanSpeed(double maxMeanSpeed)
+    {
+        this.maxMeanSpeed = maxMeanSpeed;
+    }
+
+    /**
+     * @return the minimum wind speed of every reading in km/h (NaN = no condition)
+     */
+    public double getMinSpeed()
+    {
+        return minSpeed;
+    }
+
+    /**
+     * @param minSpeed the minimum wind speed of every reading in km/h (NaN = no condition)
+     */
+    public void setMinSpeed(double minSpeed)
+    {
+        this.minSpeed = minSpeed;
+    }
+
+    /**
+     * @return the maximum gust of every reading in km/h (NaN = no condition)
+     */
+    public double getMaxGust()
+    {
+        return maxGust;
+    }
+
+    /**
+     * @param maxGust the maximum gust of every reading in km/h (NaN = no condition)
+     */
+    public void setMaxGust(double maxGust)
+    {
+        this.maxGust = maxGust;
+    }
+
+    /**
+     * @return the maximum ratio of the mean gust to the mean wind speed (NaN = no condition)
+     */
+    public double getMaxGustRatio()
+    {
+        return maxGustRatio;
+    }
+
+    /**
+     * @param maxGustRatio the maximum ratio of the mean gust to the mean wind speed (NaN = no condition)
+     */
+    public void setMaxGustRatio(double maxGustRatio)
+    {
+        this.maxGustRatio = maxGustRatio;
+    }
+
+    /**
+     * Sets the sector of the mean direction, clockwise from "from" to "to" (e.g. 315 to 0 for NW to N).
+     *
+     * @param directionFrom the start of the sector in degrees (NaN = no condition)
+     * @param directionTo   the end of the sector in degrees
+     */
+    public void setDirectionSector(double directionFrom, double directionTo)
+    {
+        this.directionFrom = directionFrom;
+        this.directionTo = directionTo;
+    }
+
+    public String toString()
+    {
+        return "AlertRule [ruleId=" + ruleId + ", stationId=" + stationId + ", windowMillis=" + windowMillis + ", minMeanSpeed="
+               + minMeanSpeed + ", maxMeanSpeed=" + maxMeanSpeed + ", minSpeed=" + minSpeed + ", maxGust=" + maxGust
+               + ", maxGustRatio=" + maxGustRatio + ", directionFrom=" + directionFrom + ", directionTo=" + directionTo + "]";
+    }
+}
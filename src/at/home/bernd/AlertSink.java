@@ -0,0 +1,22 @@
+package at.home.bernd;
+
+/**
+ * Receives the alerts of the {@link WindAlertEngine} (e.g. to notify a user or to push them to the clients of the
+ * {@link WindViewerServer}).
+ */
+@FunctionalInterface
+public interface AlertSink
+{
+    /**
+     * A sink printing the alerts to the standard output
+     */
+    public static final AlertSink CONSOLE = alert -> System.out.println(alert);
+
+    /**
+     * Sends the given alert. Called on the thread feeding the engine, so slow sinks should hand the alert over to
+     * another thread.
+     *
+     * @param alert the alert
+     */
+    public void send(Alert alert);
+}
@@ -0,0 +1,72 @@
+package at.home.bernd;
+
+/**
+ * A block of rows of a time series in columnar form: one timestamp column and a number of value columns.
+ */
+public class ColumnBlock
+{
+    /**
+     * The names of the value columns
+     */
+    private String[] columnNames;
+
+    /**
+     * The timestamps in epoch milliseconds
+     */
+    private long[] times;
+
+    /**
+     * The values (per column)
+     */
+    private double[][] values;
+
+    /**
+     * Creates a new (zero-filled) block.
+     *
+     * @param columnNames the names of the value columns
+     * @param nRows       the number of rows
+     */
+    public ColumnBlock(String[] columnNames, int nRows)
+    {
+        this.columnNames = columnNames;
+        this.times = new long[nRows];
+        this.values = new double[columnNames.length][nRows];
+    }
+
+    /**
+     * @return the names of the value columns
+     */
+    public String[] getColumnNames()
+    {
+        return columnNames;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size()
+    {
+        return times.length;
+    }
+
+    /**
+     * @return the timestamps in epoch milliseconds
+     */
+    public long[] getTimes()
+    {
+        return times;
+    }
+
+    /**
+     * Returns the values of the given column.
+     *
+     * @param column the index of the column
+     * @return       the values
+     */
+    public double[] getValues(int column)
+    {
+        return values[column];
+    }
+}
@@ -0,0 +1,250 @@
+package at.home.bernd;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Maps the columns of a weather data source to the types of wind data. A column is identified either by its index
+ * (XHTML tables, CSV files without header) or by its name (CSV header, JSON keys). Unmapped types are left NaN.
+ */
+public class ColumnMapping
+{
+    /**
+     * The prefix of the column properties (see {@link #fromProperties(Properties, String)})
+     */
+    public static final String COLUMN_PROPERTY = "column.";
+
+    /**
+     * The column index per type (-1 = not mapped by index)
+     */
+    private int[] indices = new int[WIND_DATA_TYPE.values().length];
+
+    /**
+     * The column name per type (null = not mapped by name)
+     */
+    private String[] names = new String[WIND_DATA_TYPE.values().length];
+
+    /**
+     * The date pattern of the timestamp column (null = ISO 8601 or epoch milliseconds)
+     */
+    private String datePattern;
+
+    /**
+     * The time zone of the timestamps (if the date pattern has no zone)
+     */
+    private TimeZone timeZone = TimeZone.getTimeZone("UTC");
+
+    /**
+     * The number of header rows to be skipped (XHTML tables)
+     */
+    private int headerRows = 0;
+
+    /**
+     * Creates an empty mapping.
+     */
+    public ColumnMapping()
+    {
+        Arrays.fill(indices, -1);
+    }
+
+    /**
+     * Returns the mapping of the XHTML table of the Podersdorf station (columns 0/1/2/5/8/9, one title row).
+     *
+     * @return the mapping
+     */
+    public static ColumnMapping podersdorf()
+    {
+        ColumnMapping mapping = new ColumnMapping();
+        mapping.setColumn(WIND_DATA_TYPE.timestamp, 0);
+        mapping.setColumn(WIND_DATA_TYPE.direction, 1);
+        mapping.setColumn(WIND_DATA_TYPE.windSpeed, 2);
+        mapping.setColumn(WIND_DATA_TYPE.maxWindSpeed, 5);
+        mapping.setColumn(WIND_DATA_TYPE.temperature, 8);
+        mapping.setColumn(WIND_DATA_TYPE.chill, 9);
+        mapping.setDatePattern("HH:mm:ss dd.MM.yyyy");
+        mapping.setTimeZone(TimeZone.getTimeZone("Europe/Vienna"));
+        mapping.setHeaderRows(1);
+        return mapping;
+    }
+
+    /**
+     * Reads a mapping from the given properties. Recognized keys (after the prefix): column.&lt;type&gt; (an index or a
+     * name), datePattern, timeZone and headerRows.
+     *
+     * @param properties the properties
+     * @param prefix     the prefix of the keys (e.g. "podersdorf.")
+     * @return           the mapping
+     */
+    public static ColumnMapping fromProperties(Properties properties, String prefix)
+    {
+        ColumnMapping mapping = new ColumnMapping();
+        for (WIND_DATA_TYPE type : WIND_DATA_TYPE.values())
+        {
+            String column = properties.getProperty(prefix + COLUMN_PROPERTY + type.name());
+            if (column == null)
+            {
+                continue;
+            }
+            column = column.strip();
+            if (! column.isEmpty() && column.chars().allMatch(Character::isDigit))
+            {
+                mapping.setColumn(type, Integer.parseInt(column));
+            }
+            else
+            {
+                mapping.setColumn(type, column);
+            }
+        }
+        mapping.setDatePattern(properties.getProperty(prefix + "datePattern"));
+        String timeZone = properties.getProperty(prefix + "timeZone");
+        if (timeZone != null)
+        {
+            mapping.setTimeZone(TimeZone.getTimeZone(timeZone));
+        }
+        mapping.setHeaderRows(Integer.parseInt(properties.getProperty(prefix + "headerRows", "0")));
+        return mapping;
+    }
+
+    /**
+     * Maps the given type to a column index.
+     *
+     * @param type  the type of wind data
+     * @param index the index of the column
+     */
+    public void setColumn(WIND_DATA_TYPE type, int index)
+    {
+        indices[type.ordinal()] = index;
+        names[type.ordinal()] = null;
+    }
+
+    /**
+     * Maps the given type to a column name.
+     *
+     * @param type the type of wind data
+     * @param name the name of the column
+     */
+    public void setColumn(WIND_DATA_TYPE type, String name)
+    {
+        names[type.ordinal()] = name;
+        indices[type.ordinal()] = -1;
+    }
+
+    /**
+     * @param type the type of wind data
+     * @return     the column index (-1 if not mapped by index)
+     */
+    public int getColumnIndex(WIND_DATA_TYPE type)
+    {
+        return indices[type.ordinal()];
+    }
+
+    /**
+     * @param type the type of wind data
+     * @return     the column name (null if not mapped by name)
+     */
+    public String getColumnName(WIND_DATA_TYPE type)
+    {
+        return names[type.ordinal()];
+    }
+
+    /**
+     * Returns the type mapped to the given column.
+     *
+     * @param index the index of the column
+     * @param name  the name of the column (may be null)
+     * @return      the type or null if the column is not mapped
+     */
+    public WIND_DATA_TYPE getType(int index, String name)
+    {
+        for (WIND_DATA_TYPE type : WIND_DATA_TYPE.values())
+        {
+            if (indices[type.ordinal()] == index && index >= 0 || name != null && name.equals(names[type.ordinal()]))
+            {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the types of the given columns (the lookup table used while decoding).
+     *
+     * @param columnNames the names of the columns (may be null if the columns are only mapped by index)
+     * @param nColumns    the number of columns
+     * @return            the type per column (null = not mapped)
+     */
+    public WIND_DATA_TYPE[] resolve(String[] columnNames, int nColumns)
+    {
+        WIND_DATA_TYPE[] types = new WIND_DATA_TYPE[nColumns];
+        for (int c = 0; c < nColumns; c++)
+        {
+            String name = columnNames != null && c < columnNames.length ? columnNames[c].strip() : null;
+            types[c] = getType(c, name);
+        }
+        return types;
+    }
+
+    /**
+     * @return the maximum mapped column index + 1
+     */
+    public int getColumnCount()
+    {
+        int nColumns = 0;
+        for (int index : indices)
+        {
+            nColumns = Math.max(nColumns, index + 1);
+        }
+        return nColumns;
+    }
+
+    /**
+     * @return the date pattern (null = ISO 8601 or epoch milliseconds)
+     */
+    public String getDatePattern()
+    {
+        return datePattern;
+    }
+
+    /**
+     * @param datePattern the date pattern to set (null = ISO 8601 or epoch milliseconds)
+     */
+    public void setDatePattern(String datePattern)
+    {
+        this.datePattern = datePattern;
+    }
+
+    /**
+     * @return the time zone
+     */
+    public TimeZone getTimeZone()
+    {
+        return timeZone;
+    }
+
+    /**
+     * @param timeZone the time zone to set
+     */
+    public void setTimeZone(TimeZone timeZone)
+    {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * @return the number of header rows
+     */
+    public int getHeaderRows()
+    {
+        return headerRows;
+    }
+
+    /**
+     * @param headerRows the number of header rows to set
+     */
+    public void setHeaderRows(int headerRows)
+    {
+        this.headerRows = headerRows;
+    }
+}
@@ -0,0 +1,282 @@
+package at.home.bernd;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads time series written by the {@link ColumnarFileWriter}. Row groups whose statistics cannot match a query are
+ * skipped without decompressing them.
+ */
+public class ColumnarFileReader implements Closeable
+{
+    /**
+     * The input stream
+     */
+    private DataInputStream in;
+
+    /**
+     * The names of the value columns
+     */
+    private String[] columnNames;
+
+    /**
+     * The decompressor (reused for all chunks)
+     */
+    private Inflater inflater = new Inflater();
+
+    /**
+     * The number of row groups skipped so far
+     */
+    private int nSkippedRowGroups = 0;
+
+    /**
+     * Opens a reader and reads the file header.
+     *
+     * @param inputStream the input stream
+     * @throws IOException if the header cannot be read or has an invalid format
+     */
+    public ColumnarFileReader(InputStream inputStream) throws IOException
+    {
+        this.in = new DataInputStream(new BufferedInputStream(inputStream, 1 << 16));
+        if (in.readInt() != ColumnarFileWriter.MAGIC || in.readInt() != ColumnarFileWriter.VERSION)
+        {
+            throw new IOException("Not a columnar file (or unsupported version)");
+        }
+        int nColumns = in.readInt();
+        columnNames = new String[nColumns];
+        for (int c = 0; c < nColumns; c++)
+        {
+            columnNames[c] = in.readUTF();
+        }
+    }
+
+    /**
+     * @return the names of the value columns
+     */
+    public String[] getColumnNames()
+    {
+        return columnNames.clone();
+    }
+
+    /**
+     * @return the number of row groups skipped so far
+     */
+    public int getSkippedRowGroups()
+    {
+        return nSkippedRowGroups;
+    }
+
+    /**
+     * Returns the index of the given value column.
+     *
+     * @param columnName the column name
+     * @return           the index of the column
+     */
+    public int getColumnIndex(String columnName)
+    {
+        for (int c = 0; c < columnNames.length; c++)
+        {
+            if (columnNames[c].equals(columnName))
+            {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + columnName);
+    }
+
+    /**
+     * Reads all remaining row groups.
+     *
+     * @return the row groups
+     * @throws IOException if the file cannot be read
+     */
+    public List<ColumnBlock> readAll() throws IOException
+    {
+        return read(Long.MIN_VALUE, Long.MAX_VALUE, -1, 0, 0);
+    }
+
+    /**
+     * Reads the remaining row groups that may contain rows within the given time window.
+     *
+     * @param from the "from" time in epoch milliseconds
+     * @param to   the "to" time in epoch milliseconds
+     * @return     the row groups (not filtered row by row)
+     * @throws IOException if the file cannot be read
+     */
+    public List<ColumnBlock> read(long from, long to) throws IOException
+    {
+        return read(from, to, -1, 0, 0);
+    }
+
+    /**
+     * Reads the remaining row groups that may contain values of the given column within the given range.
+     *
+     * @param columnName the column name
+     * @param minValue   the minimum value
+     * @param maxValue   the maximum value
+     * @return           the row groups (not filtered row by row)
+     * @throws IOException if the file cannot be read
+     */
+    public List<ColumnBlock> read(String columnName, double minValue, double maxValue) throws IOException
+    {
+        return read(Long.MIN_VALUE, Long.MAX_VALUE, getColumnIndex(columnName), minValue, maxValue);
+    }
+
+    /**
+     * Reads the remaining row groups matching the given time window and value range.
+     *
+     * @param from     the "from" time in epoch milliseconds
+     * @param to       the "to" time in epoch milliseconds
+     * @param column   the index of the value column to check (-1 = no check)
+     * @param minValue the minimum value
+     * @param maxValue the maximum value
+     * @return         the matching row groups
+     * @throws IOException if the file cannot be read
+     */
+    private List<ColumnBlock> read(long from, long to, int column, double minValue, double maxValue) throws IOException
+    {
+        List<ColumnBlock> blocks = new ArrayList<ColumnBlock>();
+        int nColumns = columnNames.length;
+        double[] mins = new double[nColumns];
+        double[] maxs = new double[nColumns];
+        int[] chunkLengths = new int[nColumns + 1];
+        while (true)
+        {
+            int nRows = in.readInt();
+            if (nRows == 0)
+            {
+                break;
+            }
+            long minTime = in.readLong();
+            long maxTime = in.readLong();
+            for (int c = 0; c < nColumns; c++)
+            {
+                mins[c] = in.readDouble();
+                maxs[c] = in.readDouble();
+            }
+            long totalLength = 0;
+            for (int c = 0; c <= nColumns; c++)
+            {
+                chunkLengths[c] = in.readInt();
+                totalLength += chunkLengths[c];
+            }
+            boolean matches = maxTime >= from && minTime <= to &&
+                              (column < 0 || (maxs[column] >= minValue && mins[column] <= maxValue));
+            if (! matches)
+            {
+                in.skipNBytes(totalLength);
+                nSkippedRowGroups++;
+                continue;
+            }
+            ColumnBlock block = new ColumnBlock(columnNames, nRows);
+            decodeTimes(inflate(chunkLengths[0], 10 * nRows), block.getTimes());
+            for (int c = 0; c < nColumns; c++)
+            {
+                decodeValues(inflate(chunkLengths[c + 1], 8 * nRows), block.getValues(c));
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    /**
+     * Reads and decompresses a chunk.
+     *
+     * @param length    the compressed length
+     * @param maxLength the maximum decompressed length
+     * @return          the decompressed bytes
+     * @throws IOException if the chunk cannot be read or decompressed
+     */
+    private byte[] inflate(int length, int maxLength) throws IOException
+    {
+        byte[] input = new byte[length];
+        in.readFully(input);
+        byte[] output = new byte[maxLength];
+        inflater.reset();
+        inflater.setInput(input);
+        try
+        {
+            int outputLength = 0;
+            while (! inflater.finished() && outputLength < maxLength)
+            {
+                int n = inflater.inflate(output, outputLength, maxLength - outputLength);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new IOException("Truncated column chunk");
+                }
+                outputLength += n;
+            }
+        }
+        catch (DataFormatException ex)
+        {
+            throw new IOException("Corrupt column chunk", ex);
+        }
+        return output;
+    }
+
+    /**
+     * Decodes zigzag varint delta encoded timestamps.
+     *
+     * @param bytes the encoded bytes
+     * @param times the decoded timestamps
+     */
+    private void decodeTimes(byte[] bytes, long[] times)
+    {
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < times.length; i++)
+        {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = bytes[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80) != 0);
+            long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+            previous += delta;
+            times[i] = previous;
+        }
+    }
+
+    /**
+     * Decodes XOR encoded double values.
+     *
+     * @param bytes  the encoded bytes
+     * @param values the decoded values
+     */
+    private void decodeValues(byte[] bytes, double[] values)
+    {
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            long xor = 0;
+            for (int k = 0; k < 8; k++)
+            {
+                xor = (xor << 8) | (bytes[position++] & 0xFF);
+            }
+            previous ^= xor;
+            values[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    /**
+     * Closes the stream.
+     */
+    public void close() throws IOException
+    {
+        in.close();
+        inflater.end();
+    }
+}
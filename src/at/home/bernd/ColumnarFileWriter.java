@@ -0,0 +1,277 @@
+package at.home.bernd;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes time series in a compact columnar binary format.
+ *
+ * Rows consist of a timestamp (epoch milliseconds) and a fixed number of double values. They are buffered and written
+ * in row groups. Every row group starts with its statistics (row count, min/max per column) and the byte length of
+ * each column chunk, so readers can skip row groups that cannot match a query without decoding them. Each column chunk
+ * is encoded separately and deflate compressed:
+ * <ul>
+ * <li>timestamps: zigzag varint deltas to the previous timestamp</li>
+ * <li>doubles: the bits XOR-ed with the bits of the previous value (lossless; slowly changing values produce many zero
+ * bytes)</li>
+ * </ul>
+ * File layout: MAGIC, VERSION, number of value columns, column names, row groups..., 0 (end marker).
+ */
+public class ColumnarFileWriter implements Closeable
+{
+    /**
+     * The file format identifier
+     */
+    public static final int MAGIC = 0x57564346;
+
+    /**
+     * The file format version
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The default number of rows per row group
+     */
+    public static final int DEFAULT_ROW_GROUP_SIZE = 65536;
+
+    /**
+     * The output stream
+     */
+    private DataOutputStream out;
+
+    /**
+     * The number of rows per row group
+     */
+    private int rowGroupSize;
+
+    /**
+     * The buffered timestamps of the current row group
+     */
+    private long[] times;
+
+    /**
+     * The buffered values of the current row group (per column)
+     */
+    private double[][] values;
+
+    /**
+     * The number of buffered rows
+     */
+    private int nRows = 0;
+
+    /**
+     * The encoding buffer
+     */
+    private byte[] buffer;
+
+    /**
+     * The compression buffer
+     */
+    private byte[] compressed;
+
+    /**
+     * The compressor (reused for all chunks)
+     */
+    private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    /**
+     * Creates a new writer with the default row group size.
+     *
+     * @param outputStream the output stream
+     * @param columnNames  the names of the value columns
+     * @throws IOException if the header cannot be written
+     */
+    public ColumnarFileWriter(OutputStream outputStream, String[] columnNames) throws IOException
+    {
+        this(outputStream, columnNames, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Creates a new writer.
+     *
+     * @param outputStream the output stream
+     * @param columnNames  the names of the value columns
+     * @param rowGroupSize the number of rows per row group
+     * @throws IOException if the header cannot be written
+     */
+    public ColumnarFileWriter(OutputStream outputStream, String[] columnNames, int rowGroupSize) throws IOException
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        this.rowGroupSize = rowGroupSize;
+        this.times = new long[rowGroupSize];
+        this.values = new double[columnNames.length][rowGroupSize];
+        this.buffer = new byte[10 * rowGroupSize];
+        this.compressed = new byte[10 * rowGroupSize + 64];
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(columnNames.length);
+        for (String columnName : columnNames)
+        {
+            out.writeUTF(columnName);
+        }
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param time      the timestamp in epoch milliseconds
+     * @param rowValues the values (one per column)
+     * @throws IOException if a full row group cannot be written
+     */
+    public void writeRow(long time, double... rowValues) throws IOException
+    {
+        times[nRows] = time;
+        for (int c = 0; c < values.length; c++)
+        {
+            values[c][nRows] = rowValues[c];
+        }
+        nRows++;
+        if (nRows == rowGroupSize)
+        {
+            flushRowGroup();
+        }
+    }
+
+    /**
+     * Writes the buffered rows as a row group.
+     *
+     * @throws IOException if the row group cannot be written
+     */
+    private void flushRowGroup() throws IOException
+    {
+        if (nRows == 0)
+        {
+            return;
+        }
+        int nColumns = values.length;
+        byte[][] chunks = new byte[nColumns + 1][];
+        chunks[0] = compress(encodeTimes());
+        for (int c = 0; c < nColumns; c++)
+        {
+            chunks[c + 1] = compress(encodeValues(values[c]));
+        }
+
+        out.writeInt(nRows);
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (int i = 0; i < nRows; i++)
+        {
+            minTime = Math.min(minTime, times[i]);
+            maxTime = Math.max(maxTime, times[i]);
+        }
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        for (int c = 0; c < nColumns; c++)
+        {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double[] column = values[c];
+            for (int i = 0; i < nRows; i++)
+            {
+                // missing values (NaN) never match a value range, so they must not poison the statistics
+                if (! Double.isNaN(column[i]))
+                {
+                    min = Math.min(min, column[i]);
+                    max = Math.max(max, column[i]);
+                }
+            }
+            out.writeDouble(min);
+            out.writeDouble(max);
+        }
+        for (byte[] chunk : chunks)
+        {
+            out.writeInt(chunk.length);
+        }
+        for (byte[] chunk : chunks)
+        {
+            out.write(chunk);
+        }
+        nRows = 0;
+    }
+
+    /**
+     * Encodes the buffered timestamps as zigzag varint deltas.
+     *
+     * @return the number of encoded bytes in the buffer
+     */
+    private int encodeTimes()
+    {
+        int length = 0;
+        long previous = 0;
+        for (int i = 0; i < nRows; i++)
+        {
+            long delta = times[i] - previous;
+            previous = times[i];
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0)
+            {
+                buffer[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[length++] = (byte) zigzag;
+        }
+        return length;
+    }
+
+    /**
+     * Encodes the buffered values of a column (bits XOR-ed with the previous value).
+     *
+     * @param column the column
+     * @return       the number of encoded bytes in the buffer
+     */
+    private int encodeValues(double[] column)
+    {
+        int length = 0;
+        long previous = 0;
+        for (int i = 0; i < nRows; i++)
+        {
+            long bits = Double.doubleToLongBits(column[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            for (int shift = 56; shift >= 0; shift -= 8)
+            {
+                buffer[length++] = (byte) (xor >>> shift);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Compresses the first bytes of the encoding buffer.
+     *
+     * @param length the number of bytes
+     * @return       the compressed bytes
+     */
+    private byte[] compress(int length)
+    {
+        deflater.reset();
+        deflater.setInput(buffer, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (! deflater.finished())
+        {
+            if (compressedLength == compressed.length)
+            {
+                compressed = Arrays.copyOf(compressed, 2 * compressed.length);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        return Arrays.copyOf(compressed, compressedLength);
+    }
+
+    /**
+     * Writes the remaining rows and the end marker and closes the stream.
+     */
+    public void close() throws IOException
+    {
+        flushRowGroup();
+        out.writeInt(0);
+        out.close();
+        deflater.end();
+    }
+}
@@ -0,0 +1,359 @@
+package at.home.bernd;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import at.home.bernd.PipelineMetrics.COUNTER;
+import at.home.bernd.PipelineMetrics.STAGE;
+
+/**
+ * Opens input data (GPX files, weather data) transparently regardless of its compression: plain, gzip or zip. The
+ * compression is detected from the first bytes of the data. Files are read through a file channel with a large direct
+ * buffer. The entries of multi-entry zip archives are parsed in parallel, one entry per worker.
+ */
+public class CompressedInput
+{
+    /**
+     * The type of compression
+     */
+    public static enum COMPRESSION_TYPE
+    {
+        none,
+        gzip,
+        zip
+    };
+
+    /**
+     * The size of the read buffers
+     */
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Use the static methods instead.
+     */
+    private CompressedInput()
+    {
+    }
+
+    /**
+     * Parses the data of the given file. If the file is a zip archive, every (non-directory) entry is parsed in
+     * parallel.
+     *
+     * @param path   the file
+     * @param parser the parser of a single (uncompressed) input stream
+     * @return       the parse results (one per zip entry, otherwise exactly one)
+     * @throws IOException if the file cannot be read
+     */
+    public static <T> List<T> parseAll(Path path, Function<InputStream, T> parser) throws IOException
+    {
+        COMPRESSION_TYPE compressionType;
+        try (PushbackInputStream in = new PushbackInputStream(open(FileChannel.open(path, StandardOpenOption.READ)), 4))
+        {
+            compressionType = detect(in);
+            if (compressionType != COMPRESSION_TYPE.zip)
+            {
+                InputStream decompressed = compressionType == COMPRESSION_TYPE.gzip ? new GZIPInputStream(in, 1 << 16) : in;
+                return Collections.singletonList(parser.apply(decompressed));
+            }
+        }
+        // random access to the entries of the zip file: every worker inflates its own entry
+        try (ZipFile zipFile = new ZipFile(path.toFile()))
+        {
+            List<ZipEntry> entries = new ArrayList<ZipEntry>();
+            Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+            while (enumeration.hasMoreElements())
+            {
+                ZipEntry entry = enumeration.nextElement();
+                if (! entry.isDirectory())
+                {
+                    entries.add(entry);
+                    PipelineMetrics.getInstance().add(COUNTER.bytesRead, entry.getCompressedSize());
+                }
+            }
+            List<ParseTask<T>> tasks = new ArrayList<ParseTask<T>>();
+            for (ZipEntry entry : entries)
+            {
+                tasks.add(() ->
+                {
+                    try (InputStream entryStream = zipFile.getInputStream(entry))
+                    {
+                        return parser.apply(entryStream);
+                    }
+                });
+            }
+            return invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Parses the data of the given stream. If the stream is a zip archive, the entries are read one after the other
+     * and parsed in parallel.
+     *
+     * @param inputStream the stream
+     * @param parser      the parser of a single (uncompressed) input stream
+     * @return            the parse results (one per zip entry, otherwise exactly one)
+     * @throws IOException if the stream cannot be read
+     */
+    public static <T> List<T> parseAll(InputStream inputStream, Function<InputStream, T> parser) throws IOException
+    {
+        PushbackInputStream in = new PushbackInputStream(inputStream, 4);
+        COMPRESSION_TYPE compressionType = detect(in);
+        if (compressionType == COMPRESSION_TYPE.gzip)
+        {
+            return Collections.singletonList(parser.apply(new GZIPInputStream(in, 1 << 16)));
+        }
+        if (compressionType == COMPRESSION_TYPE.none)
+        {
+            return Collections.singletonList(parser.apply(in));
+        }
+        List<ParseTask<T>> tasks = new ArrayList<ParseTask<T>>();
+        ZipInputStream zipInputStream = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zipInputStream.getNextEntry()) != null)
+        {
+            if (! entry.isDirectory())
+            {
+                byte[] bytes = zipInputStream.readAllBytes();
+                tasks.add(() -> parser.apply(new ByteArrayInputStream(bytes)));
+            }
+        }
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Parses the data of the given channel (see {@link #parseAll(InputStream, Function)}).
+     *
+     * @param channel the channel
+     * @param parser  the parser of a single (uncompressed) input stream
+     * @return        the parse results (one per zip entry, otherwise exactly one)
+     * @throws IOException if the channel cannot be read
+     */
+    public static <T> List<T> parseAll(ReadableByteChannel channel, Function<InputStream, T> parser) throws IOException
+    {
+        return parseAll(open(channel), parser);
+    }
+
+    /**
+     * Downloads the whole body of the given URL. The download is measured as the fetch stage, so the parser (and the
+     * parse stage) only sees data in memory.
+     *
+     * @param url the URL
+     * @return    the body
+     * @throws IOException if the URL cannot be read
+     */
+    public static byte[] fetch(String url) throws IOException
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        try (InputStream in = new URL(url).openStream())
+        {
+            byte[] body = in.readAllBytes();
+            metrics.add(COUNTER.bytesRead, body.length);
+            metrics.stop(STAGE.fetch, start);
+            return body;
+        }
+    }
+
+    /**
+     * Returns an input stream reading from the given channel through a direct buffer.
+     *
+     * @param channel the channel
+     * @return        the input stream
+     */
+    public static InputStream open(ReadableByteChannel channel)
+    {
+        return new ChannelInputStream(channel);
+    }
+
+    /**
+     * Detects the compression of the given stream (the stream position is not changed).
+     *
+     * @param in the stream
+     * @return   the compression type
+     * @throws IOException if the stream cannot be read
+     */
+    public static COMPRESSION_TYPE detect(PushbackInputStream in) throws IOException
+    {
+        byte[] magic = new byte[4];
+        int n = in.readNBytes(magic, 0, magic.length);
+        if (n > 0)
+        {
+            in.unread(magic, 0, n);
+        }
+        if (n >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B)
+        {
+            return COMPRESSION_TYPE.gzip;
+        }
+        // a local file header or the end of central directory record of an empty archive
+        if (n == 4 && magic[0] == 'P' && magic[1] == 'K'
+            && ((magic[2] == 3 && magic[3] == 4) || (magic[2] == 5 && magic[3] == 6)))
+        {
+            return COMPRESSION_TYPE.zip;
+        }
+        return COMPRESSION_TYPE.none;
+    }
+
+    /**
+     * Runs the given tasks in parallel and returns their results in the order of the tasks.
+     *
+     * @param tasks the tasks
+     * @return      the results
+     * @throws IOException if a task failed
+     */
+    private static <T> List<T> invokeAll(List<ParseTask<T>> tasks) throws IOException
+    {
+        List<T> results = new ArrayList<T>();
+        if (tasks.isEmpty())
+        {
+            return results;
+        }
+        int nThreads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
+        try
+        {
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (ParseTask<T> task : tasks)
+            {
+                futures.add(executorService.submit(task::call));
+            }
+            for (Future<T> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing zip entries", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IOException("Failed to parse zip entry", ex.getCause());
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * A parse task that may throw an IOException.
+     */
+    private static interface ParseTask<T>
+    {
+        T call() throws IOException;
+    }
+
+    /**
+     * An input stream reading from a channel through a direct buffer.
+     */
+    private static class ChannelInputStream extends InputStream
+    {
+        /**
+         * The channel
+         */
+        private ReadableByteChannel channel;
+
+        /**
+         * The direct buffer (in read mode)
+         */
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * This flag indicates if the end of the channel has been reached
+         */
+        private boolean endOfStream = false;
+
+        /**
+         * Creates a new stream.
+         *
+         * @param channel the channel
+         */
+        ChannelInputStream(ReadableByteChannel channel)
+        {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /**
+         * Refills the buffer if it is empty.
+         *
+         * @return false if the end of the channel has been reached
+         * @throws IOException if the channel cannot be read
+         */
+        private boolean fill() throws IOException
+        {
+            while (! buffer.hasRemaining())
+            {
+                if (endOfStream)
+                {
+                    return false;
+                }
+                buffer.clear();
+                int n = channel.read(buffer);
+                buffer.flip();
+                if (n < 0)
+                {
+                    endOfStream = true;
+                }
+                else
+                {
+                    PipelineMetrics.getInstance().add(COUNTER.bytesRead, n);
+                }
+            }
+            return true;
+        }
+
+        public int read() throws IOException
+        {
+            return fill() ? buffer.get() & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (! fill())
+            {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        public int available()
+        {
+            return buffer.remaining();
+        }
+
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package at.home.bernd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Reads weather data from a CSV file. The separator (comma or semicolon) is detected from the first line. If any
+ * column is mapped by name, the first line is the header; otherwise the configured number of header rows is skipped.
+ * Fields are passed to the decoder as ranges of the line, double quotes around a field are removed.
+ */
+public class CsvWeatherSource extends AbstractWeatherSource
+{
+    /**
+     * Creates a new source.
+     *
+     * @param stationId     the id of the station
+     * @param location      the location of the data (URL or file path)
+     * @param columnMapping the column mapping (by index or by name)
+     */
+    public CsvWeatherSource(String stationId, String location, ColumnMapping columnMapping)
+    {
+        super(stationId, location, columnMapping);
+    }
+
+    public void decode(InputStream inputStream, WindRowDecoder decoder) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), 1 << 16);
+        String line = reader.readLine();
+        if (line == null)
+        {
+            return;
+        }
+        char separator = line.indexOf(';') >= 0 && line.indexOf(',') < 0 ? ';' : ',';
+        int headerRows = getColumnMapping().getHeaderRows();
+        if (hasNamedColumns())
+        {
+            decoder.setColumnNames(split(line, separator));
+            headerRows = 1;
+        }
+        for (int row = 0; line != null; row++, line = reader.readLine())
+        {
+            if (row < headerRows || line.isEmpty())
+            {
+                continue;
+            }
+            decoder.beginRow();
+            int column = 0;
+            int start = 0;
+            int length = line.length();
+            while (start <= length)
+            {
+                int end = findEnd(line, start, separator);
+                if (end - start >= 2 && line.charAt(start) == '"' && line.charAt(end - 1) == '"')
+                {
+                    decoder.field(column, line, start + 1, end - 1);
+                }
+                else
+                {
+                    decoder.field(column, line, start, end);
+                }
+                column++;
+                start = end + 1;
+            }
+            decoder.endRow();
+        }
+    }
+
+    /**
+     * Checks if any column is mapped by name.
+     *
+     * @return true if there are named columns
+     */
+    private boolean hasNamedColumns()
+    {
+        for (WIND_DATA_TYPE type : WIND_DATA_TYPE.values())
+        {
+            if (getColumnMapping().getColumnName(type) != null)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the end of the field starting at the given index (separators within double quotes are skipped).
+     *
+     * @param line      the line
+     * @param start     the start of the field
+     * @param separator the separator
+     * @return          the index of the next separator or the length of the line
+     */
+    private int findEnd(String line, int start, char separator)
+    {
+        int length = line.length();
+        int i = start;
+        if (i < length && line.charAt(i) == '"')
+        {
+            int closingQuote = line.indexOf('"', i + 1);
+            i = closingQuote < 0 ? length : closingQuote + 1;
+        }
+        while (i < length && line.charAt(i) != separator)
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Splits the header line.
+     *
+     * @param line      the line
+     * @param separator the separator
+     * @return          the column names (without quotes)
+     */
+    private String[] split(String line, char separator)
+    {
+        List<String> names = new ArrayList<String>();
+        int start = 0;
+        while (start <= line.length())
+        {
+            int end = findEnd(line, start, separator);
+            String name = line.substring(start, end).strip();
+            if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\""))
+            {
+                name = name.substring(1, name.length() - 1);
+            }
+            names.add(name);
+            start = end + 1;
+        }
+        return names.toArray(new String[names.size()]);
+    }
+}
@@ -0,0 +1,164 @@
+package at.home.bernd;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A buffered CSV writer for numeric data. Rows are assembled in a reusable string builder; numbers and timestamps are
+ * formatted without allocating intermediate objects.
+ */
+public class CsvWriter implements Closeable
+{
+    /**
+     * The separator of the fields
+     */
+    public static final char SEPARATOR = ',';
+
+    /**
+     * The underlying writer
+     */
+    private Writer writer;
+
+    /**
+     * The current row
+     */
+    private StringBuilder row = new StringBuilder(256);
+
+    /**
+     * This flag indicates if the current row is empty
+     */
+    private boolean rowEmpty = true;
+
+    /**
+     * The timestamp formatter
+     */
+    private TimestampFormatter timestampFormatter = new TimestampFormatter();
+
+    /**
+     * Creates a new CSV writer.
+     *
+     * @param writer the underlying writer
+     */
+    public CsvWriter(Writer writer)
+    {
+        this.writer = new BufferedWriter(writer, 1 << 16);
+    }
+
+    /**
+     * Appends the separator unless this is the first field of the row.
+     */
+    private void separate()
+    {
+        if (rowEmpty)
+        {
+            rowEmpty = false;
+        }
+        else
+        {
+            row.append(SEPARATOR);
+        }
+    }
+
+    /**
+     * Appends a text field. Fields containing the separator, a quote or a line break are quoted (RFC 4180).
+     *
+     * @param text the text
+     */
+    public void appendText(String text)
+    {
+        separate();
+        boolean quote = false;
+        for (int i = 0; i < text.length() && ! quote; i++)
+        {
+            char c = text.charAt(i);
+            quote = c == SEPARATOR || c == '"' || c == '\n' || c == '\r';
+        }
+        if (! quote)
+        {
+            row.append(text);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c == '"')
+            {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    /**
+     * Appends a numeric field.
+     *
+     * @param value         the value
+     * @param decimalPlaces the number of decimal places
+     */
+    public void appendDouble(double value, int decimalPlaces)
+    {
+        separate();
+        DataConversionUtility.getInstance().appendRounded(row, value, decimalPlaces);
+    }
+
+    /**
+     * Appends a timestamp field in ISO 8601 format (UTC, e.g. 2020-06-19T10:17:43.000Z).
+     *
+     * @param millis the timestamp in epoch milliseconds
+     */
+    public void appendTimestamp(long millis)
+    {
+        separate();
+        timestampFormatter.append(row, millis);
+    }
+
+    /**
+     * Writes the current row and starts a new one.
+     *
+     * @throws IOException if the row cannot be written
+     */
+    public void endRow() throws IOException
+    {
+        row.append('\n');
+        writer.append(row);
+        row.setLength(0);
+        rowEmpty = true;
+    }
+
+    /**
+     * Writes a header row.
+     *
+     * @param names the column names
+     * @throws IOException if the row cannot be written
+     */
+    public void writeHeader(String... names) throws IOException
+    {
+        for (String name : names)
+        {
+            appendText(name);
+        }
+        endRow();
+    }
+
+    /**
+     * Flushes the underlying writer.
+     *
+     * @throws IOException if the writer cannot be flushed
+     */
+    public void flush() throws IOException
+    {
+        writer.flush();
+    }
+
+    /**
+     * Closes the underlying writer.
+     */
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+}
@@ -7,11 +7,24 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
 
+import at.home.bernd.PipelineMetrics.COUNTER;
+import at.home.bernd.PipelineMetrics.STAGE;
+
 /**
  * A utility class that provides methods for data conversion. Singleton.
  */
 public class DataConversionUtility
 {
+    /**
+     * The mean earth radius in meters
+     */
+    public static final double EARTH_RADIUS = 6371008.8;
+    
+    /**
+     * The powers of ten used for fast rounding
+     */
+    private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+    
     /**
      * Holds the singleton instance.
      */
@@ -45,6 +58,8 @@ public class DataConversionUtility
      */
     public Date parseDateString(String timeStamp, SimpleDateFormat simpleDateFormat)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         Date date = null;
         try
         {
@@ -52,11 +67,122 @@ public class DataConversionUtility
         }
         catch (ParseException e)
         {
+            metrics.increment(COUNTER.malformedValues);
             e.printStackTrace();
         }
+        metrics.stop(STAGE.dateConversion, start, 1);
         return date;
     }
     
+    /**
+     * Parses a timestamp in ISO 8601 format ("yyyy-MM-ddTHH:mm:ssZ" with an optional fraction of a second, as written
+     * by GPS devices, or with an offset "+HH:mm" / "-HH:mm" instead of "Z") without allocating.
+     * 
+     * @param text  the text
+     * @param start the start index (inclusive)
+     * @param end   the end index (exclusive)
+     * @return      the timestamp in epoch milliseconds or Long.MIN_VALUE if the text is malformed
+     */
+    public long parseUtcTimestamp(CharSequence text, int start, int end)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long startNanos = metrics.start();
+        long time = Long.MIN_VALUE;
+        // the index of the zone designator and the offset in minutes
+        int zone = end - 1;
+        int offset = 0;
+        if (end - start >= 25 && (text.charAt(end - 6) == '+' || text.charAt(end - 6) == '-')
+            && text.charAt(end - 3) == ':')
+        {
+            zone = end - 6;
+            int offsetHours = parseDigits(text, end - 5, 2);
+            int offsetMinutes = parseDigits(text, end - 2, 2);
+            offset = offsetHours >= 0 && offsetHours <= 18 && offsetMinutes >= 0 && offsetMinutes <= 59
+                     ? (text.charAt(zone) == '-' ? -1 : 1) * (offsetHours * 60 + offsetMinutes) : Integer.MIN_VALUE;
+        }
+        else if (end - start < 20 || text.charAt(zone) != 'Z')
+        {
+            offset = Integer.MIN_VALUE;
+        }
+        if (offset != Integer.MIN_VALUE && text.charAt(start + 4) == '-' && text.charAt(start + 7) == '-'
+            && text.charAt(start + 10) == 'T' && text.charAt(start + 13) == ':' && text.charAt(start + 16) == ':')
+        {
+            int year = parseDigits(text, start, 4);
+            int month = parseDigits(text, start + 5, 2);
+            int day = parseDigits(text, start + 8, 2);
+            int hour = parseDigits(text, start + 11, 2);
+            int minute = parseDigits(text, start + 14, 2);
+            int second = parseDigits(text, start + 17, 2);
+            int millis = 0;
+            boolean valid = year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31 && hour >= 0 && hour <= 23
+                            && minute >= 0 && minute <= 59 && second >= 0 && second <= 60;
+            if (valid && zone - start > 19)
+            {
+                // fraction of a second: only the first three digits are significant
+                valid = text.charAt(start + 19) == '.' && zone - start > 20;
+                for (int i = start + 20, scale = 100; valid && i < zone; i++, scale /= 10)
+                {
+                    char c = text.charAt(i);
+                    valid = c >= '0' && c <= '9';
+                    millis += (c - '0') * scale;
+                }
+            }
+            if (valid)
+            {
+                time = ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute - offset) * 60000L + second * 1000L
+                       + millis;
+            }
+        }
+        if (time == Long.MIN_VALUE)
+        {
+            metrics.increment(COUNTER.malformedValues);
+        }
+        metrics.stop(STAGE.dateConversion, startNanos, 1);
+        return time;
+    }
+    
+    /**
+     * Parses a fixed number of decimal digits.
+     * 
+     * @param text    the text
+     * @param start   the start index
+     * @param nDigits the number of digits
+     * @return        the value or -1 if there is a character other than a digit
+     */
+    private static int parseDigits(CharSequence text, int start, int nDigits)
+    {
+        int value = 0;
+        for (int i = start; i < start + nDigits; i++)
+        {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    /**
+     * Returns the number of days since 1970-01-01 of the given date of the proleptic Gregorian calendar.
+     * 
+     * @param year  the year
+     * @param month the month (1 - 12)
+     * @param day   the day of the month
+     * @return      the number of days
+     */
+    private static long daysFromCivil(int year, int month, int day)
+    {
+        // years start in March, so the leap day is the last day of a year
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+    
     /**
      * Parses a temperature string and returns its value as a number. 
      * 
@@ -107,15 +233,126 @@ public class DataConversionUtility
      * 
      * @param value the original value
      * @param n the number of decimal places
-     * @return the rounded number
+     * @return the rounded number (NaN and infinite values unchanged)
      */
     public double roundUpToNDecimalPlaces(double value, int n)
     {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            return value;
+        }
         BigDecimal bd = BigDecimal.valueOf(value);
         bd = bd.setScale(n, RoundingMode.HALF_UP);
         return bd.doubleValue();
     }
     
+    /**
+     * Appends the given value rounded to the given number of decimal places to the given string builder. Other than
+     * roundUpToNDecimalPlaces() this does not allocate any objects, so it is suitable for bulk output. Values that are
+     * too large for fixed point formatting are appended in the default representation.
+     * 
+     * @param sb    the string builder
+     * @param value the value
+     * @param n     the number of decimal places (0 - 9)
+     */
+    public void appendRounded(StringBuilder sb, double value, int n)
+    {
+        long factor = POWERS_OF_TEN[n];
+        double scaledValue = Math.abs(value) * factor;
+        if (Double.isNaN(value) || scaledValue >= 1e15)
+        {
+            sb.append(value);
+            return;
+        }
+        long scaled = Math.round(scaledValue);
+        if (value < 0 && scaled != 0)
+        {
+            sb.append('-');
+        }
+        sb.append(scaled / factor);
+        if (n > 0)
+        {
+            long fraction = scaled % factor;
+            sb.append('.');
+            // leading zeros of the fraction
+            for (long p = factor / 10; p > fraction && p > 1; p /= 10)
+            {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+    }
+    
+    /**
+     * Parses a decimal number (optional sign, digits, optional fraction) from the given range of characters without
+     * allocating. Leading whitespace is skipped; parsing stops at the first character that does not belong to the
+     * number, so units like "C" are ignored.
+     * 
+     * @param text  the text
+     * @param start the start index (inclusive)
+     * @param end   the end index (exclusive)
+     * @return      the number or NaN if there are no digits
+     */
+    public double parseDecimal(CharSequence text, int start, int end)
+    {
+        int i = start;
+        while (i < end && Character.isWhitespace(text.charAt(i)))
+        {
+            i++;
+        }
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+        {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int nDigits = 0;
+        int nFractionDigits = 0;
+        int nExtraDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++)
+        {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                if (nDigits < 18)
+                {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction)
+                    {
+                        nFractionDigits++;
+                    }
+                }
+                else if (! fraction)
+                {
+                    // digits beyond the precision of a long only scale the value
+                    nExtraDigits++;
+                }
+                nDigits++;
+            }
+            else if (c == '.' && ! fraction)
+            {
+                fraction = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+        if (nDigits == 0)
+        {
+            return Double.NaN;
+        }
+        double value = nFractionDigits < POWERS_OF_TEN.length ? mantissa / (double) POWERS_OF_TEN[nFractionDigits]
+                                                               : mantissa / Math.pow(10, nFractionDigits);
+        if (nExtraDigits > 0)
+        {
+            value *= Math.pow(10, nExtraDigits);
+        }
+        return negative ? -value : value;
+    }
+    
     /**
      * Maps the wind direction from textual to degrees (E = 90; S = 180; W = 270; N = 360;)
      * 
@@ -160,4 +397,43 @@ public class DataConversionUtility
         }
         return angle;
     }
+    
+    /**
+     * Returns the great circle distance between two positions (haversine formula).
+     * 
+     * @param lat1 the latitude of the first position (degrees)
+     * @param lon1 the longitude of the first position (degrees)
+     * @param lat2 the latitude of the second position (degrees)
+     * @param lon2 the longitude of the second position (degrees)
+     * @return the distance in meters
+     */
+    public double distance(double lat1, double lon1, double lat2, double lon2)
+    {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double sinDPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDLambda = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinDPhi * sinDPhi + Math.cos(phi1) * Math.cos(phi2) * sinDLambda * sinDLambda;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+    
+    /**
+     * Returns the initial great circle bearing from one position to another.
+     * 
+     * @param lat1 the latitude of the first position (degrees)
+     * @param lon1 the longitude of the first position (degrees)
+     * @param lat2 the latitude of the second position (degrees)
+     * @param lon2 the longitude of the second position (degrees)
+     * @return the bearing in degrees [0, 360): N = 0; E = 90
+     */
+    public double bearing(double lat1, double lon1, double lat2, double lon2)
+    {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLambda = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(dLambda) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLambda);
+        double bearing = Math.toDegrees(Math.atan2(y, x));
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
 }
@@ -0,0 +1,273 @@
+package at.home.bernd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+
+import at.home.bernd.TrackPoint.TRACK_DATA_TYPE;
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Exports enriched track segments, wind data series and polar diagrams as CSV or in the columnar binary format
+ * (see {@link ColumnarFileWriter}).
+ */
+public class DataExporter
+{
+    /**
+     * The exported columns of track points (besides the timestamp)
+     */
+    private static final TRACK_DATA_TYPE[] TRACK_COLUMNS = { TRACK_DATA_TYPE.latitude,
+                                                             TRACK_DATA_TYPE.longitude,
+                                                             TRACK_DATA_TYPE.elevation,
+                                                             TRACK_DATA_TYPE.speed,
+                                                             TRACK_DATA_TYPE.course,
+                                                             TRACK_DATA_TYPE.windSpeed,
+                                                             TRACK_DATA_TYPE.maxWindSpeed,
+                                                             TRACK_DATA_TYPE.windDirection };
+
+    /**
+     * The number of decimal places of the exported track columns (CSV)
+     */
+    private static final int[] TRACK_DECIMAL_PLACES = { 7, 7, 1, 2, 1, 2, 2, 1 };
+
+    /**
+     * The exported columns of wind data points (besides the timestamp)
+     */
+    private static final WIND_DATA_TYPE[] WIND_COLUMNS = { WIND_DATA_TYPE.direction,
+                                                           WIND_DATA_TYPE.windSpeed,
+                                                           WIND_DATA_TYPE.maxWindSpeed,
+                                                           WIND_DATA_TYPE.temperature,
+                                                           WIND_DATA_TYPE.chill };
+
+    /**
+     * The number of decimal places of the exported wind columns (CSV)
+     */
+    private static final int[] WIND_DECIMAL_PLACES = { 1, 1, 1, 1, 1 };
+
+    /**
+     * The name of the timestamp column
+     */
+    private static final String TIMESTAMP_COLUMN = "timestamp";
+
+    /**
+     * The name of the segment column (CSV)
+     */
+    private static final String SEGMENT_COLUMN = "segment";
+
+    /**
+     * Writes the given track segments as CSV (one row per track point; the segment number is the first column).
+     *
+     * @param trackSegments the track segments
+     * @param writer        the writer (closed when done)
+     * @throws IOException if the data cannot be written
+     */
+    public void writeTrackSegmentsCsv(List<TrackSegment> trackSegments, Writer writer) throws IOException
+    {
+        try (CsvWriter csvWriter = new CsvWriter(writer))
+        {
+            csvWriter.appendText(SEGMENT_COLUMN);
+            csvWriter.appendText(TIMESTAMP_COLUMN);
+            for (TRACK_DATA_TYPE column : TRACK_COLUMNS)
+            {
+                csvWriter.appendText(column.name());
+            }
+            csvWriter.endRow();
+            for (int s = 0; s < trackSegments.size(); s++)
+            {
+                String segment = Integer.toString(s);
+                for (TrackPoint trackPoint : trackSegments.get(s).getTrackPoints())
+                {
+                    csvWriter.appendText(segment);
+                    csvWriter.appendTimestamp(trackPoint.getTime());
+                    for (int c = 0; c < TRACK_COLUMNS.length; c++)
+                    {
+                        csvWriter.appendDouble(getValue(trackPoint, TRACK_COLUMNS[c]), TRACK_DECIMAL_PLACES[c]);
+                    }
+                    csvWriter.endRow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the given wind data as CSV.
+     *
+     * @param windData the wind data
+     * @param writer   the writer (closed when done)
+     * @throws IOException if the data cannot be written
+     */
+    public void writeWindDataCsv(List<WindDataPoint> windData, Writer writer) throws IOException
+    {
+        try (CsvWriter csvWriter = new CsvWriter(writer))
+        {
+            csvWriter.appendText(TIMESTAMP_COLUMN);
+            for (WIND_DATA_TYPE column : WIND_COLUMNS)
+            {
+                csvWriter.appendText(column.name());
+            }
+            csvWriter.endRow();
+            for (WindDataPoint windDataPoint : windData)
+            {
+                csvWriter.appendTimestamp(windDataPoint.getTime());
+                for (int c = 0; c < WIND_COLUMNS.length; c++)
+                {
+                    csvWriter.appendDouble(getValue(windDataPoint, WIND_COLUMNS[c]), WIND_DECIMAL_PLACES[c]);
+                }
+                csvWriter.endRow();
+            }
+        }
+    }
+
+    /**
+     * Writes the given polar diagram as CSV (one row per non-empty bin: true wind angle, lower bound of the wind speed,
+     * number of track points and percentile speeds).
+     *
+     * @param polarDiagram the polar diagram
+     * @param writer       the writer (closed when done)
+     * @throws IOException if the data cannot be written
+     */
+    public void writePolarDiagramCsv(PolarDiagram polarDiagram, Writer writer) throws IOException
+    {
+        try (CsvWriter csvWriter = new CsvWriter(writer))
+        {
+            csvWriter.writeHeader("trueWindAngle", "windSpeed", "count", "p50", "p90", "p99", "max");
+            for (int a = 0; a < polarDiagram.getAngleBinCount(); a++)
+            {
+                for (int w = 0; w < polarDiagram.getWindSpeedBinCount(); w++)
+                {
+                    SpeedHistogram histogram = polarDiagram.getHistogram(a, w);
+                    if (histogram == null)
+                    {
+                        continue;
+                    }
+                    csvWriter.appendDouble(polarDiagram.getAngle(a), 1);
+                    csvWriter.appendDouble(polarDiagram.getWindSpeed(w), 1);
+                    csvWriter.appendText(Long.toString(histogram.getCount()));
+                    csvWriter.appendDouble(histogram.getPercentile(50), 2);
+                    csvWriter.appendDouble(histogram.getPercentile(90), 2);
+                    csvWriter.appendDouble(histogram.getPercentile(99), 2);
+                    csvWriter.appendDouble(histogram.getMax(), 2);
+                    csvWriter.endRow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the given track segments in the columnar binary format (the segments are concatenated).
+     *
+     * @param trackSegments the track segments
+     * @param outputStream  the output stream (closed when done)
+     * @throws IOException if the data cannot be written
+     */
+    public void writeTrackSegmentsColumnar(List<TrackSegment> trackSegments, OutputStream outputStream) throws IOException
+    {
+        String[] columnNames = new String[TRACK_COLUMNS.length];
+        for (int c = 0; c < TRACK_COLUMNS.length; c++)
+        {
+            columnNames[c] = TRACK_COLUMNS[c].name();
+        }
+        double[] row = new double[TRACK_COLUMNS.length];
+        try (ColumnarFileWriter columnarFileWriter = new ColumnarFileWriter(outputStream, columnNames))
+        {
+            for (TrackSegment trackSegment : trackSegments)
+            {
+                for (TrackPoint trackPoint : trackSegment.getTrackPoints())
+                {
+                    for (int c = 0; c < TRACK_COLUMNS.length; c++)
+                    {
+                        row[c] = getValue(trackPoint, TRACK_COLUMNS[c]);
+                    }
+                    columnarFileWriter.writeRow(trackPoint.getTime(), row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the given wind data in the columnar binary format.
+     *
+     * @param windData     the wind data
+     * @param outputStream the output stream (closed when done)
+     * @throws IOException if the data cannot be written
+     */
+    public void writeWindDataColumnar(List<WindDataPoint> windData, OutputStream outputStream) throws IOException
+    {
+        String[] columnNames = new String[WIND_COLUMNS.length];
+        for (int c = 0; c < WIND_COLUMNS.length; c++)
+        {
+            columnNames[c] = WIND_COLUMNS[c].name();
+        }
+        double[] row = new double[WIND_COLUMNS.length];
+        try (ColumnarFileWriter columnarFileWriter = new ColumnarFileWriter(outputStream, columnNames))
+        {
+            for (WindDataPoint windDataPoint : windData)
+            {
+                for (int c = 0; c < WIND_COLUMNS.length; c++)
+                {
+                    row[c] = getValue(windDataPoint, WIND_COLUMNS[c]);
+                }
+                columnarFileWriter.writeRow(windDataPoint.getTime(), row);
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the given type of a track point.
+     *
+     * @param trackPoint the track point
+     * @param dataType   the type of data
+     * @return           the value
+     */
+    private double getValue(TrackPoint trackPoint, TRACK_DATA_TYPE dataType)
+    {
+        switch (dataType)
+        {
+            case latitude:
+                return trackPoint.getLatitude();
+            case longitude:
+                return trackPoint.getLongitude();
+            case elevation:
+                return trackPoint.getElevation();
+            case speed:
+                return trackPoint.getSpeed();
+            case course:
+                return trackPoint.getCourse();
+            case windSpeed:
+                return trackPoint.getWindSpeed();
+            case maxWindSpeed:
+                return trackPoint.getMaxWindSpeed();
+            case windDirection:
+                return trackPoint.getWindDirection();
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the value of the given type of a wind data point.
+     *
+     * @param windDataPoint the wind data point
+     * @param dataType      the type of data
+     * @return              the value
+     */
+    private double getValue(WindDataPoint windDataPoint, WIND_DATA_TYPE dataType)
+    {
+        switch (dataType)
+        {
+            case direction:
+                return windDataPoint.getDirection();
+            case windSpeed:
+                return windDataPoint.getWindSpeed();
+            case maxWindSpeed:
+                return windDataPoint.getMaxWindSpeed();
+            case temperature:
+                return windDataPoint.getTemperature();
+            case chill:
+                return windDataPoint.getChill();
+            default:
+                return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable version of the tracks and the wind data. All tracks and wind data points of a snapshot are frozen, so
+ * concurrent readers need no locks. A new version is derived with the "with" methods and {@link #enrich()}; unchanged
+ * tracks, segments and wind data are shared between the versions. Snapshots are published by a {@link SnapshotStore}.
+ */
+public class DataSnapshot
+{
+    /**
+     * The empty snapshot (version 0)
+     */
+    public static final DataSnapshot EMPTY = new DataSnapshot(0, Collections.<Track>emptyList(),
+                                                              Collections.<WindDataPoint>emptyList());
+
+    /**
+     * The version
+     */
+    private final long version;
+
+    /**
+     * The tracks (unmodifiable and frozen)
+     */
+    private final List<Track> trackList;
+
+    /**
+     * The wind data sorted by time (unmodifiable and frozen)
+     */
+    private final List<WindDataPoint> windData;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param version   the version
+     * @param trackList the tracks (unmodifiable and frozen)
+     * @param windData  the wind data (unmodifiable and frozen)
+     */
+    private DataSnapshot(long version, List<Track> trackList, List<WindDataPoint> windData)
+    {
+        this.version = version;
+        this.trackList = trackList;
+        this.windData = windData;
+    }
+
+    /**
+     * @return the version (incremented by every derived snapshot)
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return the tracks (unmodifiable and frozen)
+     */
+    public List<Track> getTrackList()
+    {
+        return trackList;
+    }
+
+    /**
+     * @return the wind data sorted by time (unmodifiable and frozen)
+     */
+    public List<WindDataPoint> getWindData()
+    {
+        return windData;
+    }
+
+    /**
+     * Returns a new snapshot with the given tracks and the wind data of this snapshot. The tracks are frozen, so the
+     * caller must not keep modifying them.
+     *
+     * @param trackList the tracks
+     * @return          the new snapshot
+     */
+    public DataSnapshot withTrackList(List<Track> trackList)
+    {
+        for (Track track : trackList)
+        {
+            track.freeze();
+        }
+        return new DataSnapshot(version + 1, Collections.unmodifiableList(new ArrayList<Track>(trackList)), windData);
+    }
+
+    /**
+     * Returns a new snapshot with the tracks of this snapshot and the given wind data. The wind data points are
+     * frozen, so the caller must not keep modifying them.
+     *
+     * @param windData the wind data sorted by time
+     * @return         the new snapshot
+     */
+    public DataSnapshot withWindData(List<WindDataPoint> windData)
+    {
+        for (WindDataPoint windDataPoint : windData)
+        {
+            windDataPoint.freeze();
+        }
+        return new DataSnapshot(version + 1, trackList, Collections.unmodifiableList(new ArrayList<WindDataPoint>(windData)));
+    }
+
+    /**
+     * Returns a new snapshot whose tracks contain the interpolated wind data of this snapshot (copy-on-write: only the
+     * segments covered by the wind data are copied and enriched; all other segments, and tracks without any enriched
+     * segment, are shared with this snapshot).
+     *
+     * @return the new snapshot
+     */
+    public DataSnapshot enrich()
+    {
+        WeatherDataManager weatherDataManager = new WeatherDataManager();
+        List<Track> enrichedTrackList = new ArrayList<Track>(trackList.size());
+        for (Track track : trackList)
+        {
+            List<TrackSegment> trackSegments = track.getTrackSegments();
+            List<TrackSegment> enrichedTrackSegments = null;
+            for (int i = 0; i < trackSegments.size(); i++)
+            {
+                TrackSegment enrichedTrackSegment = enrich(trackSegments.get(i), weatherDataManager);
+                if (enrichedTrackSegment != null)
+                {
+                    if (enrichedTrackSegments == null)
+                    {
+                        enrichedTrackSegments = new ArrayList<TrackSegment>(trackSegments);
+                    }
+                    enrichedTrackSegments.set(i, enrichedTrackSegment);
+                }
+            }
+            if (enrichedTrackSegments == null)
+            {
+                enrichedTrackList.add(track);
+            }
+            else
+            {
+                Track enrichedTrack = track.withTrackSegments(enrichedTrackSegments);
+                enrichedTrack.freeze();
+                enrichedTrackList.add(enrichedTrack);
+            }
+        }
+        return new DataSnapshot(version + 1, Collections.unmodifiableList(enrichedTrackList), windData);
+    }
+
+    /**
+     * Returns an enriched copy of the given segment (see {@link TrackDataManager#addWindDataToTrack(Track, List)}).
+     *
+     * @param trackSegment       the segment (frozen)
+     * @param weatherDataManager the weather data manager
+     * @return                   the enriched copy (frozen) or null if there is not enough wind data for the segment
+     */
+    private TrackSegment enrich(TrackSegment trackSegment, WeatherDataManager weatherDataManager)
+    {
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        if (trackPoints.isEmpty())
+        {
+            return null;
+        }
+        long from = trackPoints.get(0).getTime();
+        long to = trackPoints.get(trackPoints.size() - 1).getTime();
+        List<WindDataPoint> extractedWindData = weatherDataManager.getWindData(windData, from, to);
+        if (extractedWindData.size() < 3)
+        {
+            return null;
+        }
+        TrackSegment enrichedTrackSegment = trackSegment.copy();
+        weatherDataManager.addInterpolatedWindData(enrichedTrackSegment, extractedWindData);
+        enrichedTrackSegment.freeze();
+        return enrichedTrackSegment;
+    }
+
+    public String toString()
+    {
+        return "DataSnapshot [version=" + version + ", tracks=" + trackList.size() + ", windData=" + windData.size() + "]";
+    }
+}
@@ -0,0 +1,82 @@
+package at.home.bernd;
+
+import java.util.Date;
+
+/**
+ * A wind shift found by the {@link DirectionShiftDetector}: the mean direction before and after the time of the shift.
+ */
+public class DirectionShift
+{
+    /**
+     * The time of the shift in epoch milliseconds
+     */
+    private long time;
+
+    /**
+     * The mean direction before the shift in degrees
+     */
+    private double fromDirection;
+
+    /**
+     * The mean direction after the shift in degrees
+     */
+    private double toDirection;
+
+    /**
+     * Creates a shift.
+     *
+     * @param time          the time of the shift in epoch milliseconds
+     * @param fromDirection the mean direction before the shift in degrees
+     * @param toDirection   the mean direction after the shift in degrees
+     */
+    public DirectionShift(long time, double fromDirection, double toDirection)
+    {
+        this.time = time;
+        this.fromDirection = fromDirection;
+        this.toDirection = toDirection;
+    }
+
+    /**
+     * @return the time of the shift in epoch milliseconds
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return the mean direction before the shift in degrees
+     */
+    public double getFromDirection()
+    {
+        return fromDirection;
+    }
+
+    /**
+     * @return the mean direction after the shift in degrees
+     */
+    public double getToDirection()
+    {
+        return toDirection;
+    }
+
+    /**
+     * @return the shift in degrees (-180, 180], positive if the wind veers (turns clockwise)
+     */
+    public double getShift()
+    {
+        return DirectionStatistics.difference(fromDirection, toDirection);
+    }
+
+    public String toString()
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        sb.append(new Date(time));
+        sb.append(getShift() > 0 ? ": veer " : ": back ");
+        dcu.appendRounded(sb, fromDirection, 0);
+        sb.append(" -> ");
+        dcu.appendRounded(sb, toDirection, 0);
+        return sb.toString();
+    }
+}
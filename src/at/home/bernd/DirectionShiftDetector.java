@@ -0,0 +1,174 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Finds persistent wind shifts: at every reading the circular mean direction of the window before it is compared with
+ * the window from it on. Both means are taken from prefix sums of the sines and cosines, so a series is scanned in
+ * O(n). Consecutive readings whose windows differ by at least the minimum shift form one shift, reported at the reading
+ * with the largest difference. Windows whose directions are too spread (gusty, variable wind) are not compared.
+ */
+public class DirectionShiftDetector
+{
+    /**
+     * The duration of the windows before and after a shift in milliseconds
+     */
+    private long windowMillis;
+
+    /**
+     * The minimum shift in degrees
+     */
+    private double minShift;
+
+    /**
+     * The minimum mean resultant length of the directions of both windows
+     */
+    private double minConcentration = 0.8;
+
+    /**
+     * The minimum number of readings in both windows
+     */
+    private int minReadings = 3;
+
+    /**
+     * Creates a detector.
+     *
+     * @param windowMillis the duration of the windows before and after a shift in milliseconds
+     * @param minShift     the minimum shift in degrees
+     */
+    public DirectionShiftDetector(long windowMillis, double minShift)
+    {
+        this.windowMillis = windowMillis;
+        this.minShift = minShift;
+    }
+
+    /**
+     * @param minConcentration the minimum mean resultant length (0 - 1) of the directions of both windows
+     */
+    public void setMinConcentration(double minConcentration)
+    {
+        this.minConcentration = minConcentration;
+    }
+
+    /**
+     * @param minReadings the minimum number of readings in both windows
+     */
+    public void setMinReadings(int minReadings)
+    {
+        this.minReadings = minReadings;
+    }
+
+    /**
+     * Finds the shifts of the given series.
+     *
+     * @param series the series (sorted by time)
+     * @return       the shifts
+     */
+    public List<DirectionShift> detect(WindSeries series)
+    {
+        return detect(series.getTimes(), series.getValues(WIND_DATA_TYPE.direction));
+    }
+
+    /**
+     * Finds the shifts of the given directions.
+     *
+     * @param times      the times in epoch milliseconds (ascending)
+     * @param directions the directions in degrees (NaN if missing)
+     * @return           the shifts
+     */
+    public List<DirectionShift> detect(long[] times, double[] directions)
+    {
+        int n = times.length;
+        int[] counts = new int[n + 1];
+        double[] sins = new double[n + 1];
+        double[] coss = new double[n + 1];
+        for (int i = 0; i < n; i++)
+        {
+            boolean valid = ! Double.isNaN(directions[i]);
+            double radians = valid ? Math.toRadians(directions[i]) : 0;
+            counts[i + 1] = counts[i] + (valid ? 1 : 0);
+            sins[i + 1] = sins[i] + (valid ? Math.sin(radians) : 0);
+            coss[i + 1] = coss[i] + (valid ? Math.cos(radians) : 0);
+        }
+
+        List<DirectionShift> shifts = new ArrayList<DirectionShift>();
+        DirectionShift best = null;
+        int before = 0;
+        int after = 0;
+        for (int i = 0; i < n; i++)
+        {
+            // the window before is [before, i), the window after is [i, after)
+            while (times[before] < times[i] - windowMillis)
+            {
+                before++;
+            }
+            while (after < n && times[after] < times[i] + windowMillis)
+            {
+                after++;
+            }
+            DirectionShift shift = compare(times[i], counts, sins, coss, before, i, after);
+            if (shift != null)
+            {
+                if (best == null || Math.abs(shift.getShift()) > Math.abs(best.getShift()))
+                {
+                    best = shift;
+                }
+            }
+            else if (best != null)
+            {
+                shifts.add(best);
+                best = null;
+            }
+        }
+        if (best != null)
+        {
+            shifts.add(best);
+        }
+        return shifts;
+    }
+
+    /**
+     * Compares the windows before and after a reading.
+     *
+     * @param time   the time of the reading
+     * @param counts the prefix counts of the valid directions
+     * @param sins   the prefix sums of the sines
+     * @param coss   the prefix sums of the cosines
+     * @param before the first row of the window before
+     * @param middle the first row of the window after
+     * @param after  the end of the window after (exclusive)
+     * @return       the shift or null if the windows do not differ enough or are not representative
+     */
+    private DirectionShift compare(long time, int[] counts, double[] sins, double[] coss, int before, int middle,
+                                   int after)
+    {
+        int countBefore = counts[middle] - counts[before];
+        int countAfter = counts[after] - counts[middle];
+        if (countBefore < minReadings || countAfter < minReadings)
+        {
+            return null;
+        }
+        double sinBefore = sins[middle] - sins[before];
+        double cosBefore = coss[middle] - coss[before];
+        double sinAfter = sins[after] - sins[middle];
+        double cosAfter = coss[after] - coss[middle];
+        if (Math.hypot(sinBefore, cosBefore) < minConcentration * countBefore
+            || Math.hypot(sinAfter, cosAfter) < minConcentration * countAfter)
+        {
+            return null;
+        }
+        DirectionShift shift = new DirectionShift(time,
+                                                  DirectionStatistics.meanDirection(sinBefore, cosBefore),
+                                                  DirectionStatistics.meanDirection(sinAfter, cosAfter));
+        return Math.abs(shift.getShift()) >= minShift ? shift : null;
+    }
+
+    public String toString()
+    {
+        return "DirectionShiftDetector [windowMillis=" + windowMillis + ", minShift=" + minShift + ", minConcentration="
+               + minConcentration + ", minReadings=" + minReadings + "]";
+    }
+}
@@ -0,0 +1,175 @@
+package at.home.bernd;
+
+/**
+ * Circular statistics of directions: the directions are added as unit vectors (sums of sines and cosines), so the mean
+ * of 350 and 10 degrees is 0 and not 180 degrees. The statistics of disjoint periods (e.g. of the stations or days of
+ * an archive) are merged by adding the sums.
+ */
+public class DirectionStatistics
+{
+    /**
+     * The sum of the weights
+     */
+    private double sumOfWeights = 0;
+
+    /**
+     * The weighted sum of the sines of the directions
+     */
+    private double sumOfSins = 0;
+
+    /**
+     * The weighted sum of the cosines of the directions
+     */
+    private double sumOfCoss = 0;
+
+    /**
+     * Adds a direction. NaN is ignored.
+     *
+     * @param direction the direction in degrees
+     */
+    public void add(double direction)
+    {
+        add(direction, 1);
+    }
+
+    /**
+     * Adds a weighted direction (e.g. weighted by the wind speed). NaN is ignored.
+     *
+     * @param direction the direction in degrees
+     * @param weight    the weight
+     */
+    public void add(double direction, double weight)
+    {
+        if (Double.isNaN(direction) || Double.isNaN(weight))
+        {
+            return;
+        }
+        double radians = Math.toRadians(direction);
+        sumOfWeights += weight;
+        sumOfSins += weight * Math.sin(radians);
+        sumOfCoss += weight * Math.cos(radians);
+    }
+
+    /**
+     * Adds the directions of the given statistics.
+     *
+     * @param other the other statistics
+     */
+    public void merge(DirectionStatistics other)
+    {
+        sumOfWeights += other.sumOfWeights;
+        sumOfSins += other.sumOfSins;
+        sumOfCoss += other.sumOfCoss;
+    }
+
+    /**
+     * @return the sum of the weights (the number of directions if they are not weighted)
+     */
+    public double getWeight()
+    {
+        return sumOfWeights;
+    }
+
+    /**
+     * @return the circular mean in degrees [0, 360) (NaN if there are no directions or they cancel out)
+     */
+    public double getMeanDirection()
+    {
+        return meanDirection(sumOfSins, sumOfCoss);
+    }
+
+    /**
+     * @return the mean resultant length: 1 if all directions are equal, near 0 if they are spread evenly
+     */
+    public double getMeanResultantLength()
+    {
+        return sumOfWeights > 0 ? Math.hypot(sumOfSins, sumOfCoss) / sumOfWeights : Double.NaN;
+    }
+
+    /**
+     * @return the circular variance (1 - mean resultant length) in [0, 1]
+     */
+    public double getCircularVariance()
+    {
+        return 1 - getMeanResultantLength();
+    }
+
+    /**
+     * @return the circular standard deviation in degrees (sqrt(-2 ln R))
+     */
+    public double getCircularStandardDeviation()
+    {
+        return Math.toDegrees(Math.sqrt(-2 * Math.log(getMeanResultantLength())));
+    }
+
+    /**
+     * Returns the direction of the given sums of sines and cosines.
+     *
+     * @param sumOfSins the sum of the sines
+     * @param sumOfCoss the sum of the cosines
+     * @return          the direction in degrees [0, 360) (NaN if both sums are 0)
+     */
+    public static double meanDirection(double sumOfSins, double sumOfCoss)
+    {
+        if (sumOfSins == 0 && sumOfCoss == 0)
+        {
+            return Double.NaN;
+        }
+        return normalize(Math.toDegrees(Math.atan2(sumOfSins, sumOfCoss)));
+    }
+
+    /**
+     * Returns the given direction in [0, 360).
+     *
+     * @param direction the direction in degrees
+     * @return          the normalized direction
+     */
+    public static double normalize(double direction)
+    {
+        double normalized = direction % 360;
+        return normalized < 0 ? normalized + 360 : normalized;
+    }
+
+    /**
+     * Returns the signed shortest rotation from one direction to another.
+     *
+     * @param from the first direction in degrees
+     * @param to   the second direction in degrees
+     * @return     the rotation in degrees (-180, 180], positive if clockwise
+     */
+    public static double difference(double from, double to)
+    {
+        double difference = normalize(to - from);
+        return difference > 180 ? difference - 360 : difference;
+    }
+
+    /**
+     * Unwraps the given directions in place: multiples of 360 degrees are added so that consecutive directions differ
+     * by at most 180 degrees. A linear interpolation (or spline) of the unwrapped directions turns the short way, e.g.
+     * from 350 over 360 to 10 degrees; the interpolated values must be {@link #normalize(double)}d. NaN is skipped.
+     *
+     * @param directions the directions in degrees
+     */
+    public static void unwrap(double[] directions)
+    {
+        double previous = Double.NaN;
+        for (int i = 0; i < directions.length; i++)
+        {
+            if (Double.isNaN(directions[i]))
+            {
+                continue;
+            }
+            if (! Double.isNaN(previous))
+            {
+                directions[i] = previous + difference(previous, directions[i]);
+            }
+            previous = directions[i];
+        }
+    }
+
+    public String toString()
+    {
+        return "DirectionStatistics [weight=" + sumOfWeights + ", meanDirection=" + getMeanDirection()
+               + ", circularVariance=" + getCircularVariance() + "]";
+    }
+}
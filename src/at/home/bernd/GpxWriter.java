@@ -0,0 +1,202 @@
+package at.home.bernd;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes tracks in the GPS Exchange Format (GPX). The output is streamed point by point through a buffered writer, so
+ * the memory needed does not depend on the size of the tracks. Course, speed and wind data (if available) are not part
+ * of GPX 1.1, so they are written as extensions which are read back by {@link TrackDataManager#parseTracks(String)}.
+ * Missing values (NaN) are omitted.
+ */
+public class GpxWriter implements Closeable
+{
+    /**
+     * The namespace of the GPX elements
+     */
+    public static final String GPX_NAMESPACE = "http://www.topografix.com/GPX/1/1";
+
+    /**
+     * The namespace of the wind extensions
+     */
+    public static final String WIND_NAMESPACE = "https://github.com/berndwender/windviewer/gpx/1";
+
+    /**
+     * The underlying writer
+     */
+    private Writer writer;
+
+    /**
+     * The line buffer
+     */
+    private StringBuilder sb = new StringBuilder(512);
+
+    /**
+     * The timestamp formatter
+     */
+    private TimestampFormatter timestampFormatter = new TimestampFormatter();
+
+    /**
+     * Creates a GPX writer for the given file. If the file name ends with ".gz", the output is gzip compressed.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be created
+     */
+    public GpxWriter(Path path) throws IOException
+    {
+        this(Files.newOutputStream(path), path.getFileName().toString().endsWith(".gz"));
+    }
+
+    /**
+     * Creates a GPX writer for the given stream.
+     *
+     * @param outputStream the output stream
+     * @param gzip         true if the output is to be gzip compressed
+     * @throws IOException if the stream cannot be written
+     */
+    public GpxWriter(OutputStream outputStream, boolean gzip) throws IOException
+    {
+        OutputStream out = gzip ? new GZIPOutputStream(outputStream, 1 << 16) : outputStream;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<gpx version=\"1.1\" creator=\"windviewer\" xmlns=\"" + GPX_NAMESPACE + "\" xmlns:wv=\"" + WIND_NAMESPACE + "\">\n");
+    }
+
+    /**
+     * Writes the given tracks.
+     *
+     * @param trackList the tracks
+     * @throws IOException if the tracks cannot be written
+     */
+    public void writeTracks(List<Track> trackList) throws IOException
+    {
+        for (Track track : trackList)
+        {
+            writeTrack(track.getName(), track.getTrackSegments());
+        }
+    }
+
+    /**
+     * Writes a track consisting of the given track segments (e.g. the segments extracted by
+     * {@link TrackDataManager#extractTrackSegments(List, double, int)}).
+     *
+     * @param name          the name of the track (may be null)
+     * @param trackSegments the track segments
+     * @throws IOException if the track cannot be written
+     */
+    public void writeTrack(String name, List<TrackSegment> trackSegments) throws IOException
+    {
+        writer.write("  <trk>\n");
+        if (name != null)
+        {
+            writer.write("    <name>");
+            writer.write(escape(name));
+            writer.write("</name>\n");
+        }
+        for (TrackSegment trackSegment : trackSegments)
+        {
+            writeTrackSegment(trackSegment);
+        }
+        writer.write("  </trk>\n");
+    }
+
+    /**
+     * Writes a track segment.
+     *
+     * @param trackSegment the track segment
+     * @throws IOException if the track segment cannot be written
+     */
+    private void writeTrackSegment(TrackSegment trackSegment) throws IOException
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        boolean windInfoAvailable = trackSegment.isWindInfoAvailable();
+        writer.write("    <trkseg>\n");
+        for (TrackPoint trackPoint : trackSegment.getTrackPoints())
+        {
+            sb.setLength(0);
+            sb.append("      <trkpt lat=\"");
+            dcu.appendRounded(sb, trackPoint.getLatitude(), 7);
+            sb.append("\" lon=\"");
+            dcu.appendRounded(sb, trackPoint.getLongitude(), 7);
+            sb.append("\">");
+            if (! Double.isNaN(trackPoint.getElevation()))
+            {
+                sb.append("<ele>");
+                dcu.appendRounded(sb, trackPoint.getElevation(), 1);
+                sb.append("</ele>");
+            }
+            sb.append("<time>");
+            timestampFormatter.append(sb, trackPoint.getTime());
+            sb.append("</time>");
+            int length = sb.length();
+            sb.append("<extensions>");
+            appendExtension("course", trackPoint.getCourse(), 2);
+            // speed in m/s as in GPX 1.0
+            appendExtension("speed", trackPoint.getSpeed() / 3.6, 3);
+            if (windInfoAvailable)
+            {
+                appendExtension("windSpeed", trackPoint.getWindSpeed(), 2);
+                appendExtension("maxWindSpeed", trackPoint.getMaxWindSpeed(), 2);
+                appendExtension("windDirection", trackPoint.getWindDirection(), 2);
+            }
+            if (sb.length() == length + "<extensions>".length())
+            {
+                sb.setLength(length);
+            }
+            else
+            {
+                sb.append("</extensions>");
+            }
+            sb.append("</trkpt>\n");
+            writer.append(sb);
+        }
+        writer.write("    </trkseg>\n");
+    }
+
+    /**
+     * Appends an extension element of the wind namespace unless the value is missing (NaN).
+     *
+     * @param name          the local name of the element
+     * @param value         the value
+     * @param decimalPlaces the number of decimal places
+     */
+    private void appendExtension(String name, double value, int decimalPlaces)
+    {
+        if (Double.isNaN(value))
+        {
+            return;
+        }
+        sb.append("<wv:").append(name).append('>');
+        DataConversionUtility.getInstance().appendRounded(sb, value, decimalPlaces);
+        sb.append("</wv:").append(name).append('>');
+    }
+
+    /**
+     * Escapes the XML special characters of the given text.
+     *
+     * @param text the text
+     * @return     the escaped text
+     */
+    private String escape(String text)
+    {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Finishes the document and closes the writer.
+     */
+    public void close() throws IOException
+    {
+        writer.write("</gpx>\n");
+        writer.close();
+    }
+}
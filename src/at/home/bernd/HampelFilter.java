@@ -0,0 +1,116 @@
+package at.home.bernd;
+
+import java.util.Arrays;
+
+/**
+ * Replaces speed spikes by the median of the preceding speeds (causal Hampel filter): a speed is a spike if it
+ * deviates from the median of the trailing window by more than n times the scaled median absolute deviation. The
+ * window has a fixed size, so the cost per point is constant.
+ */
+public class HampelFilter implements TrackPointFilter
+{
+    /**
+     * The scale factor of the median absolute deviation (estimate of the standard deviation of normal data)
+     */
+    private static final double MAD_SCALE = 1.4826;
+
+    /**
+     * The window of the last speeds (ring buffer)
+     */
+    private final double[] window;
+
+    /**
+     * A scratch array for the medians
+     */
+    private final double[] sorted;
+
+    /**
+     * The number of speeds in the window
+     */
+    private int count;
+
+    /**
+     * The next position in the ring buffer
+     */
+    private int next;
+
+    /**
+     * The threshold in scaled median absolute deviations
+     */
+    private double nSigma;
+
+    /**
+     * The minimum deviation in km/h to be treated as spike (keeps a constant speed from flagging every change)
+     */
+    private double minDeviation = 1.0;
+
+    /**
+     * Creates a filter.
+     *
+     * @param windowSize the number of preceding speeds the median is taken of
+     * @param nSigma     the threshold in scaled median absolute deviations (typically 3)
+     */
+    public HampelFilter(int windowSize, double nSigma)
+    {
+        if (windowSize < 3)
+        {
+            throw new IllegalArgumentException("window size must be at least 3: " + windowSize);
+        }
+        this.window = new double[windowSize];
+        this.sorted = new double[windowSize];
+        this.nSigma = nSigma;
+    }
+
+    /**
+     * @param minDeviation the minimum deviation in km/h to be treated as spike
+     */
+    public void setMinDeviation(double minDeviation)
+    {
+        this.minDeviation = minDeviation;
+    }
+
+    public boolean filter(TrackPoint trackPoint)
+    {
+        double speed = trackPoint.getSpeed();
+        if (count == window.length)
+        {
+            double median = median(window, count);
+            for (int i = 0; i < count; i++)
+            {
+                sorted[i] = Math.abs(window[i] - median);
+            }
+            Arrays.sort(sorted, 0, count);
+            double mad = sorted[count / 2];
+            if (Math.abs(speed - median) > Math.max(nSigma * MAD_SCALE * mad, minDeviation))
+            {
+                speed = median;
+                trackPoint.setSpeed(speed);
+            }
+        }
+        window[next] = speed;
+        next = (next + 1) % window.length;
+        count = Math.min(count + 1, window.length);
+        return true;
+    }
+
+    /**
+     * Returns the median of the first n values (leaves the sorted values in the scratch array).
+     */
+    private double median(double[] values, int n)
+    {
+        System.arraycopy(values, 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    public void reset()
+    {
+        count = 0;
+        next = 0;
+    }
+
+    public String toString()
+    {
+        return "HampelFilter [windowSize=" + window.length + ", nSigma=" + nSigma + "]";
+    }
+}
@@ -0,0 +1,82 @@
+package at.home.bernd;
+
+/**
+ * A half-open range of indices [start, end) into the track points of a track segment.
+ */
+public class IndexRange
+{
+    /**
+     * The index of the first point of the range (inclusive)
+     */
+    private final int start;
+    
+    /**
+     * The index after the last point of the range (exclusive)
+     */
+    private final int end;
+    
+    /**
+     * Creates a new index range.
+     * 
+     * @param start the index of the first point (inclusive)
+     * @param end   the index after the last point (exclusive)
+     */
+    public IndexRange(int start, int end)
+    {
+        if (start < 0 || end < start)
+        {
+            throw new IllegalArgumentException("Invalid index range [" + start + ", " + end + ")");
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return the start index (inclusive)
+     */
+    public int getStart()
+    {
+        return start;
+    }
+
+    /**
+     * @return the end index (exclusive)
+     */
+    public int getEnd()
+    {
+        return end;
+    }
+    
+    /**
+     * Returns the number of indices covered by this range.
+     * 
+     * @return the size of the range
+     */
+    public int size()
+    {
+        return end - start;
+    }
+    
+    public boolean equals(Object obj)
+    {
+        if (! (obj instanceof IndexRange))
+        {
+            return false;
+        }
+        IndexRange other = (IndexRange) obj;
+        return this.start == other.start && this.end == other.end;
+    }
+    
+    public int hashCode()
+    {
+        return 31 * start + end;
+    }
+    
+    /**
+     * Returns a simple string representation of this range
+     */
+    public String toString()
+    {
+        return "[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,374 @@
+package at.home.bernd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Reads weather data from a JSON feed. The records are the elements of the first array (at any depth) whose elements
+ * are objects or arrays, e.g. <code>[{"time": "...", "speed": 12.3}, ...]</code> or
+ * <code>{"station": "...", "data": [[1592561863000, 270, 12.3], ...]}</code>. The members of object records are
+ * mapped by name, the elements of array records by index; nested values within a record are ignored. The feed is
+ * streamed with a small tokenizer, keys and values are collected in reused buffers.
+ */
+public class JsonWeatherSource extends AbstractWeatherSource
+{
+    /**
+     * Creates a new source.
+     *
+     * @param stationId     the id of the station
+     * @param location      the location of the data (URL or file path)
+     * @param columnMapping the column mapping (by name for object records, by index for array records)
+     */
+    public JsonWeatherSource(String stationId, String location, ColumnMapping columnMapping)
+    {
+        super(stationId, location, columnMapping);
+    }
+
+    public void decode(InputStream inputStream, WindRowDecoder decoder) throws IOException
+    {
+        Tokenizer tokenizer = new Tokenizer(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), 1 << 16));
+        scanValue(tokenizer, decoder);
+    }
+
+    /**
+     * Scans a value for the records array.
+     *
+     * @param tokenizer the tokenizer
+     * @param decoder   the decoder
+     * @return          true if the records have been decoded
+     * @throws IOException if the feed cannot be read or is malformed
+     */
+    private boolean scanValue(Tokenizer tokenizer, WindRowDecoder decoder) throws IOException
+    {
+        int c = tokenizer.nextNonWhitespace();
+        if (c == '{')
+        {
+            if (tokenizer.peekNonWhitespace() == '}')
+            {
+                tokenizer.next();
+                return false;
+            }
+            do
+            {
+                tokenizer.expect('"');
+                tokenizer.readString(tokenizer.buffer);
+                tokenizer.expect(':');
+                if (scanValue(tokenizer, decoder))
+                {
+                    return true;
+                }
+            }
+            while (tokenizer.nextNonWhitespace() == ',');
+            return false;
+        }
+        if (c == '[')
+        {
+            int first = tokenizer.peekNonWhitespace();
+            if (first == '{' || first == '[')
+            {
+                decodeRecords(tokenizer, decoder);
+                return true;
+            }
+            if (first == ']')
+            {
+                tokenizer.next();
+                return false;
+            }
+            do
+            {
+                if (scanValue(tokenizer, decoder))
+                {
+                    return true;
+                }
+            }
+            while (tokenizer.nextNonWhitespace() == ',');
+            return false;
+        }
+        tokenizer.readScalar(c, tokenizer.buffer);
+        return false;
+    }
+
+    /**
+     * Decodes the records of the records array (the opening bracket has been read).
+     *
+     * @param tokenizer the tokenizer
+     * @param decoder   the decoder
+     * @throws IOException if the feed cannot be read or is malformed
+     */
+    private void decodeRecords(Tokenizer tokenizer, WindRowDecoder decoder) throws IOException
+    {
+        StringBuilder key = new StringBuilder(32);
+        StringBuilder value = tokenizer.buffer;
+        do
+        {
+            int c = tokenizer.nextNonWhitespace();
+            decoder.beginRow();
+            if (c == '{')
+            {
+                if (tokenizer.peekNonWhitespace() != '}')
+                {
+                    do
+                    {
+                        tokenizer.expect('"');
+                        tokenizer.readString(key);
+                        tokenizer.expect(':');
+                        WIND_DATA_TYPE type = getType(key);
+                        if (readField(tokenizer, value) && type != null)
+                        {
+                            decoder.field(type, value, 0, value.length());
+                        }
+                    }
+                    while (tokenizer.nextNonWhitespace() == ',');
+                }
+                else
+                {
+                    tokenizer.next();
+                }
+            }
+            else if (c == '[')
+            {
+                if (tokenizer.peekNonWhitespace() != ']')
+                {
+                    int column = 0;
+                    do
+                    {
+                        if (readField(tokenizer, value))
+                        {
+                            decoder.field(column, value, 0, value.length());
+                        }
+                        column++;
+                    }
+                    while (tokenizer.nextNonWhitespace() == ',');
+                }
+                else
+                {
+                    tokenizer.next();
+                }
+            }
+            else
+            {
+                throw new IOException("Unexpected character '" + (char) c + "' in the records of station " + getStationId());
+            }
+            decoder.endRow();
+        }
+        while (tokenizer.nextNonWhitespace() == ',');
+    }
+
+    /**
+     * Reads the value of a field of a record.
+     *
+     * @param tokenizer the tokenizer
+     * @param value     the buffer receiving a scalar value
+     * @return          true if the value is a scalar (nested values are skipped)
+     * @throws IOException if the feed cannot be read or is malformed
+     */
+    private boolean readField(Tokenizer tokenizer, StringBuilder value) throws IOException
+    {
+        int c = tokenizer.nextNonWhitespace();
+        if (c == '{' || c == '[')
+        {
+            tokenizer.skipNested(c);
+            return false;
+        }
+        tokenizer.readScalar(c, value);
+        return true;
+    }
+
+    /**
+     * Returns the type mapped to the given key (without allocating).
+     *
+     * @param key the key
+     * @return    the type or null if the key is not mapped
+     */
+    private WIND_DATA_TYPE getType(StringBuilder key)
+    {
+        ColumnMapping mapping = getColumnMapping();
+        for (WIND_DATA_TYPE type : WIND_DATA_TYPE.values())
+        {
+            String name = mapping.getColumnName(type);
+            if (name != null && name.contentEquals(key))
+            {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A minimal JSON tokenizer.
+     */
+    private static class Tokenizer
+    {
+        /**
+         * The reader
+         */
+        private Reader reader;
+
+        /**
+         * The peeked character (-2 = none)
+         */
+        private int peeked = -2;
+
+        /**
+         * The reused buffer for keys and scalar values
+         */
+        private StringBuilder buffer = new StringBuilder(64);
+
+        Tokenizer(Reader reader)
+        {
+            this.reader = reader;
+        }
+
+        int next() throws IOException
+        {
+            if (peeked != -2)
+            {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        int peek() throws IOException
+        {
+            if (peeked == -2)
+            {
+                peeked = reader.read();
+            }
+            return peeked;
+        }
+
+        int nextNonWhitespace() throws IOException
+        {
+            int c = next();
+            while (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+            {
+                c = next();
+            }
+            return c;
+        }
+
+        int peekNonWhitespace() throws IOException
+        {
+            int c = nextNonWhitespace();
+            peeked = c;
+            return c;
+        }
+
+        void expect(char expected) throws IOException
+        {
+            int c = nextNonWhitespace();
+            if (c != expected)
+            {
+                throw new IOException("Expected '" + expected + "' but found " + (c < 0 ? "end of input" : "'" + (char) c + "'"));
+            }
+        }
+
+        /**
+         * Reads a string (the opening quote has been read).
+         */
+        void readString(StringBuilder sb) throws IOException
+        {
+            sb.setLength(0);
+            int c;
+            while ((c = next()) != '"')
+            {
+                if (c < 0)
+                {
+                    throw new IOException("Unterminated string");
+                }
+                if (c == '\\')
+                {
+                    c = next();
+                    switch (c)
+                    {
+                        case 'b':
+                            c = '\b';
+                            break;
+                        case 'f':
+                            c = '\f';
+                            break;
+                        case 'n':
+                            c = '\n';
+                            break;
+                        case 'r':
+                            c = '\r';
+                            break;
+                        case 't':
+                            c = '\t';
+                            break;
+                        case 'u':
+                            int code = 0;
+                            for (int i = 0; i < 4; i++)
+                            {
+                                code = code * 16 + Character.digit(next(), 16);
+                            }
+                            c = code;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                sb.append((char) c);
+            }
+        }
+
+        /**
+         * Reads a scalar value (string, number, true, false or null) starting with the given character.
+         */
+        void readScalar(int c, StringBuilder sb) throws IOException
+        {
+            if (c == '"')
+            {
+                readString(sb);
+                return;
+            }
+            sb.setLength(0);
+            while (c >= 0 && c != ',' && c != '}' && c != ']' && c != ' ' && c != '\t' && c != '\n' && c != '\r')
+            {
+                sb.append((char) c);
+                c = next();
+            }
+            peeked = c;
+            if (sb.length() == 0)
+            {
+                throw new IOException("Missing value");
+            }
+        }
+
+        /**
+         * Skips a nested object or array (the opening character has been read).
+         */
+        void skipNested(int open) throws IOException
+        {
+            int depth = 1;
+            while (depth > 0)
+            {
+                int c = next();
+                if (c < 0)
+                {
+                    throw new IOException("Unterminated " + (open == '{' ? "object" : "array"));
+                }
+                if (c == '"')
+                {
+                    readString(buffer);
+                }
+                else if (c == '{' || c == '[')
+                {
+                    depth++;
+                }
+                else if (c == '}' || c == ']')
+                {
+                    depth--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package at.home.bernd;
+
+/**
+ * Builds a JSON document in a string builder. Numbers and timestamps are formatted without intermediate objects
+ * (see {@link DataConversionUtility#appendRounded(StringBuilder, double, int)} and {@link TimestampFormatter}); NaN
+ * and infinite values are written as null. Not thread-safe.
+ */
+public class JsonWriter
+{
+    /**
+     * The maximum nesting depth
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The document
+     */
+    private StringBuilder sb;
+
+    /**
+     * This flag indicates (per nesting level) if the next value is the first one of its object or array
+     */
+    private boolean[] first = new boolean[MAX_DEPTH];
+
+    /**
+     * The current nesting depth
+     */
+    private int depth = 0;
+
+    /**
+     * This flag indicates if a member name has just been written
+     */
+    private boolean afterName = false;
+
+    /**
+     * The timestamp formatter
+     */
+    private TimestampFormatter timestampFormatter = new TimestampFormatter();
+
+    /**
+     * Creates a new writer.
+     */
+    public JsonWriter()
+    {
+        this(new StringBuilder(4096));
+    }
+
+    /**
+     * Creates a writer appending to the given string builder.
+     *
+     * @param sb the string builder
+     */
+    public JsonWriter(StringBuilder sb)
+    {
+        this.sb = sb;
+        first[0] = true;
+    }
+
+    /**
+     * Writes the separator before a value if necessary.
+     */
+    private void separate()
+    {
+        if (afterName)
+        {
+            afterName = false;
+            return;
+        }
+        if (first[depth])
+        {
+            first[depth] = false;
+        }
+        else
+        {
+            sb.append(',');
+        }
+    }
+
+    /**
+     * Starts an object.
+     *
+     * @return this writer
+     */
+    public JsonWriter beginObject()
+    {
+        separate();
+        sb.append('{');
+        first[++depth] = true;
+        return this;
+    }
+
+    /**
+     * Ends an object.
+     *
+     * @return this writer
+     */
+    public JsonWriter endObject()
+    {
+        depth--;
+        sb.append('}');
+        return this;
+    }
+
+    /**
+     * Starts an array.
+     *
+     * @return this writer
+     */
+    public JsonWriter beginArray()
+    {
+        separate();
+        sb.append('[');
+        first[++depth] = true;
+        return this;
+    }
+
+    /**
+     * Ends an array.
+     *
+     * @return this writer
+     */
+    public JsonWriter endArray()
+    {
+        depth--;
+        sb.append(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of a member.
+     *
+     * @param name the name
+     * @return     this writer
+     */
+    public JsonWriter name(String name)
+    {
+        separate();
+        appendString(name);
+        sb.append(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value (null is written as null).
+     *
+     * @param value the value
+     * @return      this writer
+     */
+    public JsonWriter value(String value)
+    {
+        separate();
+        if (value == null)
+        {
+            sb.append("null");
+        }
+        else
+        {
+            appendString(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes an integer value.
+     *
+     * @param value the value
+     * @return      this writer
+     */
+    public JsonWriter value(long value)
+    {
+        separate();
+        sb.append(value);
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the value
+     * @return      this writer
+     */
+    public JsonWriter value(boolean value)
+    {
+        separate();
+        sb.append(value);
+        return this;
+    }
+
+    /**
+     * Writes a decimal value (NaN and infinite values are written as null).
+     *
+     * @param value         the value
+     * @param decimalPlaces the number of decimal places
+     * @return              this writer
+     */
+    public JsonWriter value(double value, int decimalPlaces)
+    {
+        separate();
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            sb.append("null");
+        }
+        else
+        {
+            DataConversionUtility.getInstance().appendRounded(sb, value, decimalPlaces);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a timestamp in ISO 8601 format (UTC).
+     *
+     * @param millis the timestamp in epoch milliseconds
+     * @return       this writer
+     */
+    public JsonWriter timestamp(long millis)
+    {
+        separate();
+        sb.append('"');
+        timestampFormatter.append(sb, millis);
+        sb.append('"');
+        return this;
+    }
+
+    /**
+     * Appends a quoted and escaped string.
+     *
+     * @param text the text
+     */
+    private void appendString(String text)
+    {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * @return the string builder containing the document
+     */
+    public StringBuilder getStringBuilder()
+    {
+        return sb;
+    }
+
+    /**
+     * Returns the document.
+     */
+    public String toString()
+    {
+        return sb.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package at.home.bernd;
+
+/**
+ * Smooths the positions of a track with a constant velocity Kalman filter. The filter works in a local plane (meters
+ * east and north of the first point of the segment); both axes are independent, so the state is the position, the
+ * velocity and the 2x2 covariance per axis. The speed and course of the track points can optionally be replaced by
+ * the filtered velocity (useful if the GPS device does not record them).
+ */
+public class KalmanFilter implements TrackPointFilter
+{
+    /**
+     * The meters per degree of latitude
+     */
+    private static final double METERS_PER_DEGREE = Math.toRadians(DataConversionUtility.EARTH_RADIUS);
+
+    /**
+     * The standard deviation of the acceleration in m/s^2 (process noise)
+     */
+    private double accelerationNoise;
+
+    /**
+     * The standard deviation of the measured positions in meters (measurement noise)
+     */
+    private double positionNoise;
+
+    /**
+     * true if the speed and course are set from the filtered velocity
+     */
+    private boolean updateVelocity;
+
+    /**
+     * The origin of the local plane and the meters per degree of longitude there
+     */
+    private double originLatitude = Double.NaN;
+    private double originLongitude;
+    private double metersPerDegreeLongitude;
+
+    /**
+     * The time of the last point
+     */
+    private long lastTime;
+
+    /**
+     * The state of the east and north axis
+     */
+    private final Axis east = new Axis();
+    private final Axis north = new Axis();
+
+    /**
+     * Creates a filter.
+     *
+     * @param accelerationNoise the standard deviation of the acceleration in m/s^2 (process noise, e.g. 1)
+     * @param positionNoise     the standard deviation of the measured positions in meters (e.g. 3)
+     */
+    public KalmanFilter(double accelerationNoise, double positionNoise)
+    {
+        this.accelerationNoise = accelerationNoise;
+        this.positionNoise = positionNoise;
+    }
+
+    /**
+     * @param updateVelocity true if the speed and course are to be set from the filtered velocity
+     */
+    public void setUpdateVelocity(boolean updateVelocity)
+    {
+        this.updateVelocity = updateVelocity;
+    }
+
+    public boolean filter(TrackPoint trackPoint)
+    {
+        double r = positionNoise * positionNoise;
+        if (Double.isNaN(originLatitude))
+        {
+            originLatitude = trackPoint.getLatitude();
+            originLongitude = trackPoint.getLongitude();
+            metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLatitude));
+            east.init(r);
+            north.init(r);
+        }
+        else
+        {
+            double dt = (trackPoint.getTime() - lastTime) / 1000.0;
+            double q = accelerationNoise * accelerationNoise;
+            double x = (trackPoint.getLongitude() - originLongitude) * metersPerDegreeLongitude;
+            double y = (trackPoint.getLatitude() - originLatitude) * METERS_PER_DEGREE;
+            east.update(x, Math.max(dt, 0), q, r);
+            north.update(y, Math.max(dt, 0), q, r);
+            trackPoint.setLongitude(originLongitude + east.position / metersPerDegreeLongitude);
+            trackPoint.setLatitude(originLatitude + north.position / METERS_PER_DEGREE);
+            if (updateVelocity)
+            {
+                trackPoint.setSpeed(Math.hypot(east.velocity, north.velocity) * 3.6);
+                double course = Math.toDegrees(Math.atan2(east.velocity, north.velocity));
+                trackPoint.setCourse(course < 0 ? course + 360 : course);
+            }
+        }
+        lastTime = trackPoint.getTime();
+        return true;
+    }
+
+    public void reset()
+    {
+        originLatitude = Double.NaN;
+    }
+
+    public String toString()
+    {
+        return "KalmanFilter [accelerationNoise=" + accelerationNoise + ", positionNoise=" + positionNoise + "]";
+    }
+
+    /**
+     * The state of one axis: position and velocity with their covariance.
+     */
+    private static class Axis
+    {
+        double position;
+        double velocity;
+        double p00;
+        double p01;
+        double p11;
+
+        /**
+         * Starts at the origin with an unknown velocity.
+         */
+        void init(double r)
+        {
+            position = 0;
+            velocity = 0;
+            p00 = r;
+            p01 = 0;
+            p11 = 100;
+        }
+
+        /**
+         * Predicts the state after dt seconds and corrects it with the measured position z.
+         */
+        void update(double z, double dt, double q, double r)
+        {
+            // predict: x = F x, P = F P F^T + Q (white noise acceleration)
+            position += velocity * dt;
+            double dt2 = dt * dt;
+            p00 += dt * (2 * p01 + dt * p11) + q * dt2 * dt2 / 4;
+            p01 += dt * p11 + q * dt2 * dt / 2;
+            p11 += q * dt2;
+            // correct with the measured position
+            double s = p00 + r;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+            double innovation = z - position;
+            position += k0 * innovation;
+            velocity += k1 * innovation;
+            p11 -= k1 * p01;
+            p01 -= k1 * p00;
+            p00 -= k0 * p00;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package at.home.bernd;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe cache evicting the least recently used entries when the number of entries or their total weight
+ * (e.g. the size in bytes) exceeds the given limits.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LruCache<K, V>
+{
+    /**
+     * The entries in access order
+     */
+    private LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true);
+
+    /**
+     * The maximum number of entries
+     */
+    private int maxEntries;
+
+    /**
+     * The maximum total weight of the entries
+     */
+    private long maxWeight;
+
+    /**
+     * The weight of a value
+     */
+    private ToLongFunction<V> weigher;
+
+    /**
+     * Called with each evicted entry (null = none)
+     */
+    private BiConsumer<K, V> evictionListener;
+
+    /**
+     * The total weight of the entries
+     */
+    private long weight = 0;
+
+    /**
+     * The number of hits
+     */
+    private long hits = 0;
+
+    /**
+     * The number of misses
+     */
+    private long misses = 0;
+
+    /**
+     * Creates a cache limited by the number of entries only.
+     *
+     * @param maxEntries the maximum number of entries
+     */
+    public LruCache(int maxEntries)
+    {
+        this(maxEntries, Long.MAX_VALUE, value -> 0);
+    }
+
+    /**
+     * Creates a cache limited by the number of entries and their total weight.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param maxWeight  the maximum total weight
+     * @param weigher    the weight of a value
+     */
+    public LruCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher)
+    {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Sets a listener called with each entry evicted by {@link #put(Object, Object)} (e.g. to delete the file backing
+     * the entry). The listener is called while holding the lock of the cache.
+     *
+     * @param evictionListener the listener (null = none)
+     */
+    public synchronized void setEvictionListener(BiConsumer<K, V> evictionListener)
+    {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Returns the value of the given key.
+     *
+     * @param key the key
+     * @return    the value or null if the key is not cached
+     */
+    public synchronized V get(K key)
+    {
+        V value = entries.get(key);
+        if (value != null)
+        {
+            hits++;
+        }
+        else
+        {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches the given value and evicts the least recently used entries if necessary. Values heavier than the maximum
+     * weight are not cached.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value)
+    {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maxWeight)
+        {
+            return;
+        }
+        V previous = entries.put(key, value);
+        if (previous != null)
+        {
+            weight -= weigher.applyAsLong(previous);
+        }
+        weight += valueWeight;
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext())
+        {
+            Map.Entry<K, V> eldest = it.next();
+            weight -= weigher.applyAsLong(eldest.getValue());
+            it.remove();
+            if (evictionListener != null)
+            {
+                evictionListener.accept(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes the value of the given key.
+     *
+     * @param key the key
+     * @return    the removed value or null
+     */
+    public synchronized V remove(K key)
+    {
+        V value = entries.remove(key);
+        if (value != null)
+        {
+            weight -= weigher.applyAsLong(value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the values of all keys matching the given predicate.
+     *
+     * @param predicate the predicate of the keys
+     * @return          the number of removed values
+     */
+    public synchronized int removeIf(Predicate<? super K> predicate)
+    {
+        int removed = 0;
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<K, V> entry = it.next();
+            if (predicate.test(entry.getKey()))
+            {
+                weight -= weigher.applyAsLong(entry.getValue());
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    public synchronized long getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * @return the number of hits
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of misses
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+}
@@ -0,0 +1,170 @@
+package at.home.bernd;
+
+/**
+ * A tack or jibe found by the {@link ManeuverDetector}: the index range of the turn on its track segment (from the last
+ * point on the old course to the first point on the new course) and its speed loss and duration.
+ */
+public class Maneuver
+{
+    /**
+     * The types of maneuvers
+     */
+    public static enum MANEUVER_TYPE
+    {
+        tack,
+        jibe,
+        // neither through the wind nor downwind (e.g. bearing away), or no wind information
+        turn
+    };
+
+    /**
+     * The type of the maneuver
+     */
+    private MANEUVER_TYPE type;
+
+    /**
+     * The index range on the track segment
+     */
+    private IndexRange range;
+
+    /**
+     * The duration in milliseconds
+     */
+    private long durationMillis;
+
+    /**
+     * The turn in degrees (positive if clockwise)
+     */
+    private double turn;
+
+    /**
+     * The mean speed before the maneuver in km/h
+     */
+    private double entrySpeed;
+
+    /**
+     * The lowest speed during the maneuver in km/h
+     */
+    private double minSpeed;
+
+    /**
+     * The mean speed after the maneuver in km/h
+     */
+    private double exitSpeed;
+
+    /**
+     * Creates a maneuver.
+     *
+     * @param type           the type of the maneuver
+     * @param range          the index range on the track segment
+     * @param durationMillis the duration in milliseconds
+     * @param turn           the turn in degrees (positive if clockwise)
+     * @param entrySpeed     the mean speed before the maneuver in km/h
+     * @param minSpeed       the lowest speed during the maneuver in km/h
+     * @param exitSpeed      the mean speed after the maneuver in km/h
+     */
+    public Maneuver(MANEUVER_TYPE type, IndexRange range, long durationMillis, double turn, double entrySpeed,
+                    double minSpeed, double exitSpeed)
+    {
+        this.type = type;
+        this.range = range;
+        this.durationMillis = durationMillis;
+        this.turn = turn;
+        this.entrySpeed = entrySpeed;
+        this.minSpeed = minSpeed;
+        this.exitSpeed = exitSpeed;
+    }
+
+    /**
+     * @return the type of the maneuver
+     */
+    public MANEUVER_TYPE getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return the index range on the track segment
+     */
+    public IndexRange getRange()
+    {
+        return range;
+    }
+
+    /**
+     * @return the duration in milliseconds
+     */
+    public long getDurationMillis()
+    {
+        return durationMillis;
+    }
+
+    /**
+     * @return the turn in degrees (positive if clockwise)
+     */
+    public double getTurn()
+    {
+        return turn;
+    }
+
+    /**
+     * @return the mean speed before the maneuver in km/h
+     */
+    public double getEntrySpeed()
+    {
+        return entrySpeed;
+    }
+
+    /**
+     * @return the lowest speed during the maneuver in km/h
+     */
+    public double getMinSpeed()
+    {
+        return minSpeed;
+    }
+
+    /**
+     * @return the mean speed after the maneuver in km/h
+     */
+    public double getExitSpeed()
+    {
+        return exitSpeed;
+    }
+
+    /**
+     * @return the speed loss (entry speed minus lowest speed) in km/h
+     */
+    public double getSpeedLoss()
+    {
+        return entrySpeed - minSpeed;
+    }
+
+    /**
+     * @return the share of the entry speed kept through the maneuver (lowest speed / entry speed; 1 = no loss)
+     */
+    public double getSpeedRetention()
+    {
+        return minSpeed / entrySpeed;
+    }
+
+    public String toString()
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        sb.append(type);
+        sb.append(' ');
+        sb.append(range);
+        sb.append(": turn ");
+        dcu.appendRounded(sb, turn, 0);
+        sb.append(" in ");
+        dcu.appendRounded(sb, durationMillis / 1000.0, 1);
+        sb.append(" s, speed ");
+        dcu.appendRounded(sb, entrySpeed, 1);
+        sb.append(" / ");
+        dcu.appendRounded(sb, minSpeed, 1);
+        sb.append(" / ");
+        dcu.appendRounded(sb, exitSpeed, 1);
+        sb.append(" km/h");
+        return sb.toString();
+    }
+}
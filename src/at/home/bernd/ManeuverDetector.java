@@ -0,0 +1,488 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.home.bernd.Maneuver.MANEUVER_TYPE;
+
+/**
+ * Detects tacks and jibes in a stream of track points. The heading is the course of a track point or, if it has none,
+ * the bearing from the last position at least {@link #MIN_DISTANCE} meters away. Headings are unwrapped (multiples of
+ * 360 degrees are added), so a turn over north is a continuous change. A state machine compares every heading with the
+ * headings of the last {@link #setSettleMillis(long) settle time} kept in a small ring buffer: on a straight leg a
+ * heading deviating from their mean starts a turn; the turn ends when the headings of the ring buffer have settled
+ * again. Turns of at least the minimum turn are reported as maneuvers: a tack if the turn passes head to wind, a jibe
+ * if it passes downwind. Every point is processed in O(ring buffer size) without allocating objects; only the
+ * maneuvers are allocated. Not thread-safe.
+ */
+public class ManeuverDetector
+{
+    /**
+     * The minimum distance in meters between positions the heading is derived from
+     */
+    public static final double MIN_DISTANCE = 1.0;
+
+    /**
+     * The states of the detector
+     */
+    private static enum STATE
+    {
+        straight,
+        turning
+    };
+
+    /**
+     * The deviation from the mean heading of the ring buffer in degrees that starts a turn
+     */
+    private double startThreshold = 20;
+
+    /**
+     * The maximum difference of the mean headings of the older and the newer half of the ring buffer in degrees on a
+     * straight leg
+     */
+    private double settleThreshold = 5;
+
+    /**
+     * The time the heading must be stable to end a turn in milliseconds
+     */
+    private long settleMillis = 3000;
+
+    /**
+     * The minimum turn of a maneuver in degrees
+     */
+    private double minTurn = 60;
+
+    /**
+     * The maximum duration of a maneuver in milliseconds (longer turns, e.g. circling or drifting, are ignored)
+     */
+    private long maxDurationMillis = 30000;
+
+    /**
+     * The ring buffer of the times, unwrapped headings, speeds and indices of the last settle time
+     */
+    private final long[] bufferTimes;
+    private final double[] bufferHeadings;
+    private final double[] bufferSpeeds;
+    private final int[] bufferIndices;
+
+    /**
+     * The index of the oldest entry and the number of entries of the ring buffer
+     */
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * The state
+     */
+    private STATE state = STATE.straight;
+
+    /**
+     * The index of the next point
+     */
+    private int index = 0;
+
+    /**
+     * The last heading (not unwrapped) and its unwrapped value (NaN if there is none yet)
+     */
+    private double lastHeading = Double.NaN;
+    private double unwrappedHeading = Double.NaN;
+
+    /**
+     * The position the heading is derived from if there is no course (NaN if there is none yet)
+     */
+    private double anchorLatitude = Double.NaN;
+    private double anchorLongitude = Double.NaN;
+
+    /**
+     * The start of the current turn: index, time, mean heading, mean speed and wind direction before it
+     */
+    private int turnStartIndex;
+    private long turnStartTime;
+    private double turnStartHeading;
+    private double turnEntrySpeed;
+    private double turnWindDirection;
+
+    /**
+     * The lowest speed of the current turn
+     */
+    private double turnMinSpeed;
+
+    /**
+     * Creates a detector with a ring buffer for 64 points (enough for the settle time at 20 Hz).
+     */
+    public ManeuverDetector()
+    {
+        this(64);
+    }
+
+    /**
+     * Creates a detector.
+     *
+     * @param bufferCapacity the capacity of the ring buffer (if there are more points within the settle time, the
+     *                       oldest ones are dropped)
+     */
+    public ManeuverDetector(int bufferCapacity)
+    {
+        bufferTimes = new long[bufferCapacity];
+        bufferHeadings = new double[bufferCapacity];
+        bufferSpeeds = new double[bufferCapacity];
+        bufferIndices = new int[bufferCapacity];
+    }
+
+    /**
+     * @param startThreshold the deviation from the mean heading in degrees that starts a turn
+     */
+    public void setStartThreshold(double startThreshold)
+    {
+        this.startThreshold = startThreshold;
+    }
+
+    /**
+     * @param settleThreshold the maximum change of the mean heading in degrees on a straight leg
+     */
+    public void setSettleThreshold(double settleThreshold)
+    {
+        this.settleThreshold = settleThreshold;
+    }
+
+    /**
+     * @param settleMillis the time the heading must be stable to end a turn in milliseconds
+     */
+    public void setSettleMillis(long settleMillis)
+    {
+        this.settleMillis = settleMillis;
+    }
+
+    /**
+     * @param minTurn the minimum turn of a maneuver in degrees
+     */
+    public void setMinTurn(double minTurn)
+    {
+        this.minTurn = minTurn;
+    }
+
+    /**
+     * @param maxDurationMillis the maximum duration of a maneuver in milliseconds
+     */
+    public void setMaxDurationMillis(long maxDurationMillis)
+    {
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    /**
+     * Resets the detector for a new track segment.
+     */
+    public void reset()
+    {
+        head = 0;
+        size = 0;
+        state = STATE.straight;
+        index = 0;
+        lastHeading = Double.NaN;
+        unwrappedHeading = Double.NaN;
+        anchorLatitude = Double.NaN;
+        anchorLongitude = Double.NaN;
+    }
+
+    /**
+     * Detects the maneuvers of the given track segment. If none of its track points has a course (e.g. a GPX file
+     * without course elements), the heading is derived from the positions.
+     *
+     * @param trackSegment the track segment
+     * @return             the maneuvers
+     */
+    public List<Maneuver> detect(TrackSegment trackSegment)
+    {
+        reset();
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        boolean hasCourse = false;
+        for (TrackPoint trackPoint : trackPoints)
+        {
+            if (trackPoint.getCourse() != 0 && ! Double.isNaN(trackPoint.getCourse()))
+            {
+                hasCourse = true;
+                break;
+            }
+        }
+        boolean windInfoAvailable = trackSegment.isWindInfoAvailable();
+        List<Maneuver> maneuvers = new ArrayList<Maneuver>();
+        for (TrackPoint trackPoint : trackPoints)
+        {
+            Maneuver maneuver = add(trackPoint.getTime(),
+                                    hasCourse ? trackPoint.getCourse() : Double.NaN,
+                                    trackPoint.getLatitude(),
+                                    trackPoint.getLongitude(),
+                                    trackPoint.getSpeed(),
+                                    windInfoAvailable ? trackPoint.getWindDirection() : Double.NaN);
+            if (maneuver != null)
+            {
+                maneuvers.add(maneuver);
+            }
+        }
+        return maneuvers;
+    }
+
+    /**
+     * Returns the legs between the given maneuvers.
+     *
+     * @param maneuvers the maneuvers (ascending)
+     * @param size      the number of track points of the track segment
+     * @return          the legs as [start, end) index ranges
+     */
+    public static List<IndexRange> getLegs(List<Maneuver> maneuvers, int size)
+    {
+        List<IndexRange> legs = new ArrayList<IndexRange>(maneuvers.size() + 1);
+        int start = 0;
+        for (Maneuver maneuver : maneuvers)
+        {
+            if (maneuver.getRange().getStart() > start)
+            {
+                legs.add(new IndexRange(start, maneuver.getRange().getStart()));
+            }
+            start = maneuver.getRange().getEnd();
+        }
+        if (size > start)
+        {
+            legs.add(new IndexRange(start, size));
+        }
+        return legs;
+    }
+
+    /**
+     * Adds the next track point of the current track segment.
+     *
+     * @param time          the time in epoch milliseconds
+     * @param course        the course in degrees (NaN: derive the heading from the position)
+     * @param latitude      the latitude in degrees
+     * @param longitude     the longitude in degrees
+     * @param speed         the speed in km/h
+     * @param windDirection the wind direction in degrees (NaN if unknown)
+     * @return              the maneuver ending at this point or null
+     */
+    public Maneuver add(long time, double course, double latitude, double longitude, double speed, double windDirection)
+    {
+        int pointIndex = index++;
+        double heading = Double.isNaN(course) ? headingFromPosition(latitude, longitude) : course;
+        if (state == STATE.turning)
+        {
+            turnMinSpeed = Math.min(turnMinSpeed, speed);
+        }
+        if (Double.isNaN(heading))
+        {
+            return null;
+        }
+        unwrappedHeading = Double.isNaN(lastHeading)
+                           ? heading
+                           : unwrappedHeading + DirectionStatistics.difference(lastHeading, heading);
+        lastHeading = heading;
+
+        if (state == STATE.straight)
+        {
+            if (size > 0 && bufferTimes[head] <= time - settleMillis / 2
+                && Math.abs(unwrappedHeading - meanHeading(0, size)) > startThreshold)
+            {
+                state = STATE.turning;
+                int last = (head + size - 1) % bufferTimes.length;
+                turnStartIndex = bufferIndices[last];
+                turnStartTime = bufferTimes[last];
+                // the newest headings may already be part of the turn
+                turnStartHeading = meanHeading(0, (size + 1) / 2);
+                turnEntrySpeed = meanSpeed();
+                turnWindDirection = windDirection;
+                turnMinSpeed = speed;
+                size = 0;
+            }
+            push(time, unwrappedHeading, speed, pointIndex);
+            return null;
+        }
+
+        push(time, unwrappedHeading, speed, pointIndex);
+        if (time - turnStartTime > maxDurationMillis)
+        {
+            // circling or drifting
+            state = STATE.straight;
+            return null;
+        }
+        if (! isSettled(time))
+        {
+            return null;
+        }
+        state = STATE.straight;
+        double turn = meanHeading(size - size / 2, size) - turnStartHeading;
+        if (Math.abs(turn) < minTurn)
+        {
+            return null;
+        }
+        int endIndex = bufferIndices[head];
+        MANEUVER_TYPE type = MANEUVER_TYPE.turn;
+        if (crosses(turnStartHeading, turn, turnWindDirection))
+        {
+            type = MANEUVER_TYPE.tack;
+        }
+        else if (crosses(turnStartHeading, turn, turnWindDirection + 180))
+        {
+            type = MANEUVER_TYPE.jibe;
+        }
+        return new Maneuver(type,
+                            new IndexRange(turnStartIndex, endIndex + 1),
+                            bufferTimes[head] - turnStartTime,
+                            turn,
+                            turnEntrySpeed,
+                            turnMinSpeed,
+                            meanSpeed());
+    }
+
+    /**
+     * Adds the next track point of the current track segment.
+     *
+     * @param trackPoint the track point
+     * @return           the maneuver ending at this point or null
+     */
+    public Maneuver add(TrackPoint trackPoint)
+    {
+        return add(trackPoint.getTime(),
+                   trackPoint.getCourse(),
+                   trackPoint.getLatitude(),
+                   trackPoint.getLongitude(),
+                   trackPoint.getSpeed(),
+                   trackPoint.getWindDirection());
+    }
+
+    /**
+     * Returns the bearing from the anchor position to the given position and moves the anchor there if it is at
+     * least the minimum distance away.
+     *
+     * @param latitude  the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @return          the bearing in degrees or NaN if the position is too close to the anchor
+     */
+    private double headingFromPosition(double latitude, double longitude)
+    {
+        if (Double.isNaN(anchorLatitude))
+        {
+            anchorLatitude = latitude;
+            anchorLongitude = longitude;
+            return Double.NaN;
+        }
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        if (dcu.distance(anchorLatitude, anchorLongitude, latitude, longitude) < MIN_DISTANCE)
+        {
+            return Double.NaN;
+        }
+        double bearing = dcu.bearing(anchorLatitude, anchorLongitude, latitude, longitude);
+        anchorLatitude = latitude;
+        anchorLongitude = longitude;
+        return bearing;
+    }
+
+    /**
+     * Appends an entry to the ring buffer and drops the entries older than the settle time (or the oldest one if the
+     * ring buffer is full).
+     */
+    private void push(long time, double heading, double speed, int pointIndex)
+    {
+        while (size > 0 && bufferTimes[head] < time - settleMillis)
+        {
+            head = (head + 1) % bufferTimes.length;
+            size--;
+        }
+        if (size == bufferTimes.length)
+        {
+            head = (head + 1) % bufferTimes.length;
+            size--;
+        }
+        int tail = (head + size) % bufferTimes.length;
+        bufferTimes[tail] = time;
+        bufferHeadings[tail] = heading;
+        bufferSpeeds[tail] = speed;
+        bufferIndices[tail] = pointIndex;
+        size++;
+    }
+
+    /**
+     * Returns true if the ring buffer covers (nearly) the settle time and the mean headings of its older and newer
+     * half differ by at most the settle threshold (the means are insensitive to the noise of single headings).
+     *
+     * @param time the current time
+     * @return     true if the heading is stable
+     */
+    private boolean isSettled(long time)
+    {
+        if (size < 2 || bufferTimes[head] > time - settleMillis * 3 / 4)
+        {
+            return false;
+        }
+        int half = size / 2;
+        double older = 0;
+        double newer = 0;
+        for (int i = 0; i < size; i++)
+        {
+            double heading = bufferHeadings[(head + i) % bufferHeadings.length];
+            if (i < half)
+            {
+                older += heading;
+            }
+            else if (i >= size - half)
+            {
+                newer += heading;
+            }
+        }
+        return Math.abs(newer - older) / half <= settleThreshold;
+    }
+
+    /**
+     * Returns the mean unwrapped heading of the given entries of the ring buffer.
+     *
+     * @param from the first entry (0 = oldest, inclusive)
+     * @param to   the last entry (exclusive)
+     * @return     the mean heading
+     */
+    private double meanHeading(int from, int to)
+    {
+        double sum = 0;
+        for (int i = from; i < to; i++)
+        {
+            sum += bufferHeadings[(head + i) % bufferHeadings.length];
+        }
+        return sum / (to - from);
+    }
+
+    /**
+     * Returns true if a turn passes the given direction.
+     *
+     * @param heading   the unwrapped heading at the start of the turn
+     * @param turn      the turn in degrees
+     * @param direction the direction (NaN: false)
+     * @return          true if the direction (or the direction plus a multiple of 360 degrees) is within the turn
+     */
+    private static boolean crosses(double heading, double turn, double direction)
+    {
+        if (Double.isNaN(direction))
+        {
+            return false;
+        }
+        double low = Math.min(heading, heading + turn);
+        double high = Math.max(heading, heading + turn);
+        return direction + 360 * Math.ceil((low - direction) / 360) <= high;
+    }
+
+    /**
+     * @return the mean speed of the ring buffer
+     */
+    private double meanSpeed()
+    {
+        double sum = 0;
+        for (int i = 0; i < size; i++)
+        {
+            sum += bufferSpeeds[(head + i) % bufferSpeeds.length];
+        }
+        return sum / size;
+    }
+
+    public String toString()
+    {
+        return "ManeuverDetector [startThreshold=" + startThreshold + ", settleThreshold=" + settleThreshold
+               + ", settleMillis=" + settleMillis + ", minTurn=" + minTurn + ", maxDurationMillis=" + maxDurationMillis
+               + "]";
+    }
+}
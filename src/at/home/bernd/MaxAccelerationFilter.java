@@ -0,0 +1,83 @@
+package at.home.bernd;
+
+/**
+ * Rejects implausible track points: a speed above the maximum speed, a change of speed faster than the maximum
+ * acceleration, or a position jump implying a speed above the maximum speed, each compared with the last accepted
+ * point.
+ */
+public class MaxAccelerationFilter implements TrackPointFilter
+{
+    /**
+     * The maximum speed in km/h
+     */
+    private double maxSpeed;
+
+    /**
+     * The maximum acceleration (or deceleration) in m/s^2
+     */
+    private double maxAcceleration;
+
+    /**
+     * The last accepted point: time, speed and position (NaN if there is none)
+     */
+    private long lastTime;
+    private double lastSpeed = Double.NaN;
+    private double lastLatitude;
+    private double lastLongitude;
+
+    /**
+     * Creates a filter.
+     *
+     * @param maxSpeed        the maximum speed in km/h
+     * @param maxAcceleration the maximum acceleration (or deceleration) in m/s^2
+     */
+    public MaxAccelerationFilter(double maxSpeed, double maxAcceleration)
+    {
+        this.maxSpeed = maxSpeed;
+        this.maxAcceleration = maxAcceleration;
+    }
+
+    public boolean filter(TrackPoint trackPoint)
+    {
+        double speed = trackPoint.getSpeed();
+        if (speed > maxSpeed)
+        {
+            return false;
+        }
+        if (! Double.isNaN(lastSpeed))
+        {
+            double seconds = (trackPoint.getTime() - lastTime) / 1000.0;
+            if (seconds <= 0)
+            {
+                return false;
+            }
+            if (Math.abs(speed - lastSpeed) / 3.6 > maxAcceleration * seconds)
+            {
+                return false;
+            }
+            double distance = DataConversionUtility.getInstance().distance(lastLatitude,
+                                                                            lastLongitude,
+                                                                            trackPoint.getLatitude(),
+                                                                            trackPoint.getLongitude());
+            if (distance / seconds * 3.6 > maxSpeed)
+            {
+                return false;
+            }
+        }
+        lastTime = trackPoint.getTime();
+        lastSpeed = speed;
+        lastLatitude = trackPoint.getLatitude();
+        lastLongitude = trackPoint.getLongitude();
+        return true;
+    }
+
+    public void reset()
+    {
+        lastSpeed = Double.NaN;
+    }
+
+    public String toString()
+    {
+        return "MaxAccelerationFilter [maxSpeed=" + maxSpeed + ", maxAcceleration=" + maxAcceleration + "]";
+    }
+}
@@ -0,0 +1,20 @@
+package at.home.bernd;
+
+/**
+ * Receives the periodic metrics snapshots of the pipeline (see {@link PipelineMetrics#startReporting(MetricsReporter, long)}).
+ */
+@FunctionalInterface
+public interface MetricsReporter
+{
+    /**
+     * A reporter printing the snapshots to the standard output
+     */
+    public static final MetricsReporter CONSOLE = snapshot -> System.out.println(snapshot);
+
+    /**
+     * Reports the given snapshot.
+     *
+     * @param snapshot the snapshot
+     */
+    public void report(MetricsSnapshot snapshot);
+}
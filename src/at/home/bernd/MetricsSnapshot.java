@@ -0,0 +1,201 @@
+package at.home.bernd;
+
+import java.util.Date;
+
+import at.home.bernd.PipelineMetrics.COUNTER;
+import at.home.bernd.PipelineMetrics.STAGE;
+
+/**
+ * An immutable snapshot of the pipeline metrics: invocation counts, latencies (total, max and a log2 histogram) and
+ * rows per stage as well as the global counters.
+ */
+public class MetricsSnapshot
+{
+    /**
+     * The time of the snapshot
+     */
+    private final Date timestamp;
+
+    /**
+     * The number of invocations (per stage)
+     */
+    private final long[] counts;
+
+    /**
+     * The total latency in nanoseconds (per stage)
+     */
+    private final long[] totalNanos;
+
+    /**
+     * The maximum latency in nanoseconds (per stage)
+     */
+    private final long[] maxNanos;
+
+    /**
+     * The number of processed rows (per stage)
+     */
+    private final long[] rows;
+
+    /**
+     * The latency histograms (per stage): bucket b counts latencies in [2^b, 2^(b+1)) nanoseconds
+     */
+    private final long[][] histograms;
+
+    /**
+     * The global counters
+     */
+    private final long[] counters;
+
+    /**
+     * Creates a new snapshot (the arrays are taken over).
+     *
+     * @param timestamp  the time of the snapshot
+     * @param counts     the number of invocations per stage
+     * @param totalNanos the total latency per stage
+     * @param maxNanos   the maximum latency per stage
+     * @param rows       the number of rows per stage
+     * @param histograms the latency histograms per stage
+     * @param counters   the global counters
+     */
+    MetricsSnapshot(Date timestamp, long[] counts, long[] totalNanos, long[] maxNanos, long[] rows, long[][] histograms,
+                    long[] counters)
+    {
+        this.timestamp = timestamp;
+        this.counts = counts;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.rows = rows;
+        this.histograms = histograms;
+        this.counters = counters;
+    }
+
+    /**
+     * @return the time of the snapshot
+     */
+    public Date getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * @param stage the stage
+     * @return      the number of invocations
+     */
+    public long getCount(STAGE stage)
+    {
+        return counts[stage.ordinal()];
+    }
+
+    /**
+     * @param stage the stage
+     * @return      the total latency in milliseconds
+     */
+    public double getTotalMillis(STAGE stage)
+    {
+        return totalNanos[stage.ordinal()] / 1e6;
+    }
+
+    /**
+     * @param stage the stage
+     * @return      the mean latency in milliseconds (0 if the stage has not been invoked)
+     */
+    public double getMeanMillis(STAGE stage)
+    {
+        long count = counts[stage.ordinal()];
+        return count == 0 ? 0 : totalNanos[stage.ordinal()] / 1e6 / count;
+    }
+
+    /**
+     * @param stage the stage
+     * @return      the maximum latency in milliseconds
+     */
+    public double getMaxMillis(STAGE stage)
+    {
+        return maxNanos[stage.ordinal()] / 1e6;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the latency (the upper bound of the matching histogram bucket,
+     * limited by the maximum).
+     *
+     * @param stage      the stage
+     * @param percentile the percentile (0 - 100)
+     * @return           the latency in milliseconds
+     */
+    public double getPercentileMillis(STAGE stage, double percentile)
+    {
+        long count = counts[stage.ordinal()];
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long[] histogram = histograms[stage.ordinal()];
+        long sum = 0;
+        for (int b = 0; b < histogram.length; b++)
+        {
+            sum += histogram[b];
+            if (sum >= rank)
+            {
+                double upperBound = b >= 62 ? Long.MAX_VALUE : (double) (1L << (b + 1));
+                return Math.min(upperBound, maxNanos[stage.ordinal()]) / 1e6;
+            }
+        }
+        return getMaxMillis(stage);
+    }
+
+    /**
+     * @param stage the stage
+     * @return      the number of processed rows
+     */
+    public long getRows(STAGE stage)
+    {
+        return rows[stage.ordinal()];
+    }
+
+    /**
+     * @param stage the stage
+     * @return      the throughput in rows per second (0 if no time has been spent)
+     */
+    public double getRowsPerSecond(STAGE stage)
+    {
+        long nanos = totalNanos[stage.ordinal()];
+        return nanos == 0 ? 0 : rows[stage.ordinal()] * 1e9 / nanos;
+    }
+
+    /**
+     * @param counter the counter
+     * @return        the value of the counter
+     */
+    public long getCounter(COUNTER counter)
+    {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * Returns a table of the stages and the counters.
+     */
+    public String toString()
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Pipeline metrics at ").append(dcu.timeString(timestamp)).append('\n');
+        sb.append(String.format("%-15s %10s %12s %10s %10s %10s %12s %14s%n", "stage", "count", "total ms", "mean ms",
+                                "p99 ms", "max ms", "rows", "rows/s"));
+        for (STAGE stage : STAGE.values())
+        {
+            if (getCount(stage) == 0)
+            {
+                continue;
+            }
+            sb.append(String.format("%-15s %10d %12.3f %10.3f %10.3f %10.3f %12d %14.0f%n", stage.name(), getCount(stage),
+                                    getTotalMillis(stage), getMeanMillis(stage), getPercentileMillis(stage, 99),
+                                    getMaxMillis(stage), getRows(stage), getRowsPerSecond(stage)));
+        }
+        for (COUNTER counter : COUNTER.values())
+        {
+            sb.append(String.format("%-15s %10d%n", counter.name(), getCounter(counter)));
+        }
+        return sb.toString();
+    }
+}
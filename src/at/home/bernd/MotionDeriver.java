@@ -0,0 +1,261 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import at.home.bernd.PipelineMetrics.STAGE;
+
+/**
+ * Derives the cumulative distance of all track points and the speed and course of the track points which have none
+ * (NaN, i.e. the GPX data has no speed or course element) from their positions and times. Recorded speeds and courses
+ * are kept, as the Doppler based values of the GPS device are more accurate than differences of positions.
+ * <p>
+ * The distances are computed with the equirectangular approximation using the cosine of the mean latitude of the
+ * segment (the error is far below the GPS accuracy for the extent of a session); the loops work on primitive arrays
+ * so the JIT can unroll and vectorize them. The segments of a track list are processed in parallel.
+ * <p>
+ * Filters work on the derived values (e.g. a spike filter on the speed), but may move or remove points, which changes
+ * the derived values of their neighbours. {@link #derive(List, TrackFilterChain)} therefore keeps track of the points
+ * without recorded values and derives them again after filtering unless a filter has corrected them.
+ */
+public class MotionDeriver
+{
+    /**
+     * The meters per degree of latitude
+     */
+    private static final double METERS_PER_DEGREE = Math.toRadians(DataConversionUtility.EARTH_RADIUS);
+
+    /**
+     * Derives the distances, speeds and courses of all track segments of the given tracks.
+     *
+     * @param trackList the tracks
+     */
+    public void derive(List<Track> trackList)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        List<TrackSegment> trackSegments = new ArrayList<TrackSegment>();
+        for (Track track : trackList)
+        {
+            trackSegments.addAll(track.getTrackSegments());
+        }
+        trackSegments.parallelStream().forEach(this::derive);
+        long nRows = 0;
+        for (TrackSegment trackSegment : trackSegments)
+        {
+            nRows += trackSegment.size();
+        }
+        metrics.stop(STAGE.derivation, start, nRows);
+    }
+
+    /**
+     * Derives the distances, speeds and courses of all track segments of the given tracks, filters the segments
+     * (in place, rejected points are removed) and derives the speeds and courses of the points without recorded values
+     * again, except for the values a filter has corrected.
+     *
+     * @param trackList the tracks
+     * @param filter    the filter (null to derive only)
+     */
+    public void derive(List<Track> trackList, TrackFilterChain filter)
+    {
+        if (filter == null)
+        {
+            derive(trackList);
+            return;
+        }
+        List<TrackSegment> trackSegments = new ArrayList<TrackSegment>();
+        for (Track track : trackList)
+        {
+            trackSegments.addAll(track.getTrackSegments());
+        }
+        // the points of the segments before filtering and which of them have no recorded speed or course
+        List<List<TrackPoint>> trackPointLists = new ArrayList<List<TrackPoint>>(trackSegments.size());
+        List<BitSet> missingSpeeds = new ArrayList<BitSet>(trackSegments.size());
+        List<BitSet> missingCourses = new ArrayList<BitSet>(trackSegments.size());
+        for (TrackSegment trackSegment : trackSegments)
+        {
+            List<TrackPoint> trackPoints = new ArrayList<TrackPoint>(trackSegment.getTrackPoints());
+            BitSet speeds = new BitSet(trackPoints.size());
+            BitSet courses = new BitSet(trackPoints.size());
+            for (int i = 0; i < trackPoints.size(); i++)
+            {
+                speeds.set(i, Double.isNaN(trackPoints.get(i).getSpeed()));
+                courses.set(i, Double.isNaN(trackPoints.get(i).getCourse()));
+            }
+            trackPointLists.add(trackPoints);
+            missingSpeeds.add(speeds);
+            missingCourses.add(courses);
+        }
+        derive(trackList);
+        // the filters are stateful (zip entries are parsed in parallel)
+        synchronized (filter)
+        {
+            for (int s = 0; s < trackSegments.size(); s++)
+            {
+                new TrackFilterChain(new CorrectionTracker(filter, missingSpeeds.get(s), missingCourses.get(s)))
+                    .apply(trackSegments.get(s));
+            }
+        }
+        // rejected points are no longer in the segments, resetting them does no harm
+        for (int s = 0; s < trackSegments.size(); s++)
+        {
+            List<TrackPoint> trackPoints = trackPointLists.get(s);
+            BitSet speeds = missingSpeeds.get(s);
+            for (int i = speeds.nextSetBit(0); i >= 0; i = speeds.nextSetBit(i + 1))
+            {
+                trackPoints.get(i).setSpeed(Double.NaN);
+            }
+            BitSet courses = missingCourses.get(s);
+            for (int i = courses.nextSetBit(0); i >= 0; i = courses.nextSetBit(i + 1))
+            {
+                trackPoints.get(i).setCourse(Double.NaN);
+            }
+        }
+        derive(trackList);
+    }
+
+    /**
+     * Derives the distances of all track points of the given segment (not frozen) and the speeds and courses of those
+     * which have none. Speeds and courses are derived from the neighbouring points (central differences, one-sided at
+     * the ends); points with the same time as their neighbours get the speed 0.
+     *
+     * @param trackSegment the track segment
+     */
+    public void derive(TrackSegment trackSegment)
+    {
+        int n = trackSegment.size();
+        if (n == 0)
+        {
+            return;
+        }
+        double[] latitudes = trackSegment.getLatitudes();
+        double[] longitudes = trackSegment.getLongitudes();
+        double[] distances = cumulativeDistances(latitudes, longitudes);
+        double metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(meanLatitude(latitudes)));
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        for (int i = 0; i < n; i++)
+        {
+            TrackPoint trackPoint = trackPoints.get(i);
+            trackPoint.setDistance(distances[i]);
+            boolean missingSpeed = Double.isNaN(trackPoint.getSpeed());
+            boolean missingCourse = Double.isNaN(trackPoint.getCourse());
+            if (! missingSpeed && ! missingCourse)
+            {
+                continue;
+            }
+            int previous = Math.max(i - 1, 0);
+            int next = Math.min(i + 1, n - 1);
+            if (missingSpeed)
+            {
+                long duration = trackPoints.get(next).getTime() - trackPoints.get(previous).getTime();
+                double speed = duration > 0 ? (distances[next] - distances[previous]) / duration * 3600.0 : 0;
+                trackPoint.setSpeed(speed);
+            }
+            if (missingCourse)
+            {
+                double east = (longitudes[next] - longitudes[previous]) * metersPerDegreeLongitude;
+                double north = (latitudes[next] - latitudes[previous]) * METERS_PER_DEGREE;
+                double course = east == 0 && north == 0 ? 0 : Math.toDegrees(Math.atan2(east, north));
+                trackPoint.setCourse(course < 0 ? course + 360 : course);
+            }
+        }
+    }
+
+    /**
+     * Computes the cumulative distance along the given positions (equirectangular approximation).
+     *
+     * @param latitudes  the latitudes (degrees)
+     * @param longitudes the longitudes (degrees)
+     * @return           the cumulative distance in meters for each point
+     */
+    public double[] cumulativeDistances(double[] latitudes, double[] longitudes)
+    {
+        int n = latitudes.length;
+        double[] distances = new double[n];
+        if (n == 0)
+        {
+            return distances;
+        }
+        double kx = METERS_PER_DEGREE * Math.cos(Math.toRadians(meanLatitude(latitudes)));
+        double ky = METERS_PER_DEGREE;
+        // the step lengths are independent of each other (vectorizable), the prefix sum is a separate pass
+        for (int i = 1; i < n; i++)
+        {
+            double dx = (longitudes[i] - longitudes[i - 1]) * kx;
+            double dy = (latitudes[i] - latitudes[i - 1]) * ky;
+            distances[i] = Math.sqrt(dx * dx + dy * dy);
+        }
+        for (int i = 1; i < n; i++)
+        {
+            distances[i] += distances[i - 1];
+        }
+        return distances;
+    }
+
+    /**
+     * Passes the points of a segment to a filter and removes a point from the masks of the derived values when the
+     * filter sets its speed or course.
+     */
+    private static class CorrectionTracker implements TrackPointFilter
+    {
+        /**
+         * The filter
+         */
+        private final TrackPointFilter filter;
+
+        /**
+         * The indices of the points with derived speeds and courses
+         */
+        private final BitSet derivedSpeeds;
+        private final BitSet derivedCourses;
+
+        /**
+         * The index of the next point in the segment
+         */
+        private int index = 0;
+
+        CorrectionTracker(TrackPointFilter filter, BitSet derivedSpeeds, BitSet derivedCourses)
+        {
+            this.filter = filter;
+            this.derivedSpeeds = derivedSpeeds;
+            this.derivedCourses = derivedCourses;
+        }
+
+        public boolean filter(TrackPoint trackPoint)
+        {
+            double speed = trackPoint.getSpeed();
+            double course = trackPoint.getCourse();
+            boolean accepted = filter.filter(trackPoint);
+            if (Double.compare(trackPoint.getSpeed(), speed) != 0)
+            {
+                derivedSpeeds.clear(index);
+            }
+            if (Double.compare(trackPoint.getCourse(), course) != 0)
+            {
+                derivedCourses.clear(index);
+            }
+            index++;
+            return accepted;
+        }
+
+        public void reset()
+        {
+            filter.reset();
+            index = 0;
+        }
+    }
+
+    /**
+     * Returns the mean of the given latitudes.
+     */
+    private double meanLatitude(double[] latitudes)
+    {
+        double sum = 0;
+        for (int i = 0; i < latitudes.length; i++)
+        {
+            sum += latitudes[i];
+        }
+        return sum / latitudes.length;
+    }
+}
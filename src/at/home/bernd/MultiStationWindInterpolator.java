@@ -0,0 +1,383 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+
+import at.home.bernd.PipelineMetrics.STAGE;
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Interpolates the wind data of several stations in space and time. The series of every station is interpolated
+ * over time with cubic splines (the direction as sine and cosine, so that there is no jump at north); the values of
+ * the stations are combined with spatial weights (inverse distance or an exponential kernel) at the position of each
+ * track point.
+ * <p>
+ * The station weights depend only on the position; they are computed once per grid cell and cached. Track points and
+ * spline knots are both sorted by time, so every station is evaluated in a merge sweep: enriching a track point costs
+ * a few multiply-adds per station.
+ */
+public class MultiStationWindInterpolator
+{
+    /**
+     * The spatial weighting of the stations
+     */
+    public static enum WEIGHTING
+    {
+        /**
+         * 1 / distance^power
+         */
+        inverseDistance,
+        /**
+         * exp(-3 * distance / range), a kriging-like kernel with an exponential covariance
+         */
+        exponential
+    };
+
+    /**
+     * The default size of the grid cells in degrees (about 500 m)
+     */
+    public static final double DEFAULT_CELL_SIZE = 0.005;
+
+    /**
+     * The minimum distance to a station in meters (avoids infinite inverse distance weights)
+     */
+    private static final double MIN_DISTANCE = 1.0;
+
+    /**
+     * The number of interpolated series per station (wind speed, max. wind speed, sine and cosine of the direction)
+     */
+    private static final int N_SERIES = 4;
+
+    /**
+     * The stations with sufficient wind data
+     */
+    private List<WeatherStation> stations = new ArrayList<WeatherStation>();
+
+    /**
+     * The interpolation model per station
+     */
+    private List<StationModel> models = new ArrayList<StationModel>();
+
+    /**
+     * The spatial weighting
+     */
+    private WEIGHTING weighting;
+
+    /**
+     * The exponent of the inverse distance weighting
+     */
+    private double power = 2;
+
+    /**
+     * The range of the exponential weighting in meters
+     */
+    private double range = 10000;
+
+    /**
+     * The size of the grid cells in degrees
+     */
+    private double cellSize;
+
+    /**
+     * The station weights per grid cell
+     */
+    private ConcurrentHashMap<Long, double[]> weightCache = new ConcurrentHashMap<Long, double[]>();
+
+    /**
+     * Creates an interpolator with inverse distance weighting and the default cell size.
+     *
+     * @param archive  the archive containing the series of the stations
+     * @param stations the stations (stations with less than 3 rows in the archive are ignored)
+     */
+    public MultiStationWindInterpolator(WeatherArchive archive, List<WeatherStation> stations)
+    {
+        this(archive, stations, WEIGHTING.inverseDistance, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates an interpolator.
+     *
+     * @param archive   the archive containing the series of the stations
+     * @param stations  the stations (stations with less than 3 rows in the archive are ignored)
+     * @param weighting the spatial weighting
+     * @param cellSize  the size of the grid cells in degrees
+     */
+    public MultiStationWindInterpolator(WeatherArchive archive, List<WeatherStation> stations, WEIGHTING weighting,
+                                        double cellSize)
+    {
+        this.weighting = weighting;
+        this.cellSize = cellSize;
+        for (WeatherStation station : stations)
+        {
+            WindSeries series = archive.getSeries(station.getStationId());
+            // insufficient wind data
+            if (series == null || series.size() < 3)
+            {
+                continue;
+            }
+            this.stations.add(station);
+            this.models.add(new StationModel(series));
+        }
+    }
+
+    /**
+     * @return the stations used for the interpolation
+     */
+    public List<WeatherStation> getStations()
+    {
+        return stations;
+    }
+
+    /**
+     * @return the exponent of the inverse distance weighting
+     */
+    public double getPower()
+    {
+        return power;
+    }
+
+    /**
+     * @param power the exponent of the inverse distance weighting to set
+     */
+    public void setPower(double power)
+    {
+        this.power = power;
+        weightCache.clear();
+    }
+
+    /**
+     * @return the range of the exponential weighting in meters
+     */
+    public double getRange()
+    {
+        return range;
+    }
+
+    /**
+     * @param range the range of the exponential weighting in meters to set
+     */
+    public void setRange(double range)
+    {
+        this.range = range;
+        weightCache.clear();
+    }
+
+    /**
+     * Returns the (not normalized) weights of the stations for the given position: the weights of the center of the
+     * grid cell containing the position.
+     *
+     * @param latitude  the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @return          the weight per station
+     */
+    public double[] getWeights(double latitude, double longitude)
+    {
+        long row = (long) Math.floor(latitude / cellSize);
+        long col = (long) Math.floor(longitude / cellSize);
+        long key = (row << 32) ^ (col & 0xFFFFFFFFL);
+        double[] weights = weightCache.get(key);
+        if (weights == null)
+        {
+            weights = weightCache.computeIfAbsent(key, k -> computeWeights((row + 0.5) * cellSize, (col + 0.5) * cellSize));
+        }
+        return weights;
+    }
+
+    /**
+     * Computes the weights of the stations for the given position.
+     *
+     * @param latitude  the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @return          the weight per station
+     */
+    private double[] computeWeights(double latitude, double longitude)
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        double[] weights = new double[stations.size()];
+        for (int k = 0; k < weights.length; k++)
+        {
+            WeatherStation station = stations.get(k);
+            double distance = Math.max(MIN_DISTANCE, dcu.distance(latitude, longitude, station.getLatitude(), station.getLongitude()));
+            if (weighting == WEIGHTING.exponential)
+            {
+                weights[k] = Math.exp(-3 * distance / range);
+            }
+            else
+            {
+                weights[k] = 1 / Math.pow(distance, power);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Adds the interpolated wind data to all track segments of the given track list (the segments are processed in
+     * parallel).
+     *
+     * @param trackList the track list
+     */
+    public void enrich(List<Track> trackList)
+    {
+        List<TrackSegment> trackSegments = new ArrayList<TrackSegment>();
+        for (Track track : trackList)
+        {
+            trackSegments.addAll(track.getTrackSegments());
+        }
+        trackSegments.parallelStream().forEach(this::enrich);
+    }
+
+    /**
+     * Adds the interpolated wind data (wind speed, max. wind speed, direction) to the track points of the given
+     * segment. Track points outside the time span of all stations are left unchanged.
+     *
+     * @param trackSegment the track segment (sorted by time)
+     * @return             true if wind data has been added to at least one track point
+     */
+    public boolean enrich(TrackSegment trackSegment)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        int nStations = models.size();
+        int[] pieces = new int[nStations];
+        double[] values = new double[N_SERIES];
+        boolean windInfoAvailable = false;
+        for (TrackPoint trackPoint : trackSegment.getTrackPoints())
+        {
+            long time = trackPoint.getTime();
+            double[] weights = getWeights(trackPoint.getLatitude(), trackPoint.getLongitude());
+            double windSpeed = 0;
+            double maxWindSpeed = 0;
+            double sin = 0;
+            double cos = 0;
+            double sumOfWeights = 0;
+            for (int k = 0; k < nStations; k++)
+            {
+                StationModel model = models.get(k);
+                double weight = weights[k];
+                if (weight == 0 || ! model.evaluate(time, pieces, k, values))
+                {
+                    continue;
+                }
+                windSpeed += weight * values[0];
+                maxWindSpeed += weight * values[1];
+                sin += weight * values[2];
+                cos += weight * values[3];
+                sumOfWeights += weight;
+            }
+            if (sumOfWeights == 0)
+            {
+                continue;
+            }
+            trackPoint.setWindSpeed(windSpeed / sumOfWeights);
+            trackPoint.setMaxWindSpeed(maxWindSpeed / sumOfWeights);
+            double direction = Math.toDegrees(Math.atan2(sin, cos));
+            trackPoint.setWindDirection(direction < 0 ? direction + 360 : direction);
+            windInfoAvailable = true;
+        }
+        trackSegment.setWindInfoAvailable(windInfoAvailable);
+        metrics.stop(STAGE.enrichment, start, trackSegment.size());
+        return windInfoAvailable;
+    }
+
+    /**
+     * The spline interpolation of the series of a single station: the knots and the cubic coefficients of every
+     * piece of the four series stored in one flat array (piece-major) for locality.
+     */
+    private static class StationModel
+    {
+        /**
+         * The knots (timestamps in epoch milliseconds)
+         */
+        private long[] knots;
+
+        /**
+         * The number of pieces
+         */
+        private int nPieces;
+
+        /**
+         * The coefficients: 4 per series, N_SERIES series per piece (constant term first)
+         */
+        private double[] coefficients;
+
+        StationModel(WindSeries series)
+        {
+            int size = series.size();
+            double[] x = new double[size];
+            double[] sin = new double[size];
+            double[] cos = new double[size];
+            for (int i = 0; i < size; i++)
+            {
+                x[i] = (double) series.getTime(i);
+                double direction = Math.toRadians(series.getValue(WIND_DATA_TYPE.direction, i));
+                sin[i] = Math.sin(direction);
+                cos[i] = Math.cos(direction);
+            }
+            double[] windSpeeds = series.getValues(WIND_DATA_TYPE.windSpeed);
+            double[] maxWindSpeeds = series.getValues(WIND_DATA_TYPE.maxWindSpeed);
+            // missing values (NaN) would spoil the whole spline
+            for (double[] y : new double[][] { windSpeeds, maxWindSpeeds, sin, cos })
+            {
+                WeatherDataManager.fillMissingValues(x, y);
+            }
+            SplineInterpolator interpolator = new SplineInterpolator();
+            PolynomialSplineFunction[] splines = { interpolator.interpolate(x, windSpeeds),
+                                                   interpolator.interpolate(x, maxWindSpeeds),
+                                                   interpolator.interpolate(x, sin),
+                                                   interpolator.interpolate(x, cos) };
+            // the knots are the timestamps of the series
+            knots = series.getTimes();
+            nPieces = knots.length - 1;
+            coefficients = new double[nPieces * N_SERIES * 4];
+            for (int s = 0; s < N_SERIES; s++)
+            {
+                PolynomialFunction[] polynomials = splines[s].getPolynomials();
+                for (int p = 0; p < nPieces; p++)
+                {
+                    double[] c = polynomials[p].getCoefficients();
+                    System.arraycopy(c, 0, coefficients, (p * N_SERIES + s) * 4, Math.min(4, c.length));
+                }
+            }
+        }
+
+        /**
+         * Evaluates the four series at the given time. The piece is searched from the last piece of this station
+         * onwards (the times of a track segment are ascending).
+         *
+         * @param time   the time in epoch milliseconds
+         * @param pieces the last piece per station (updated)
+         * @param k      the index of this station
+         * @param values the four values (output)
+         * @return       false if the time is outside the time span of the station
+         */
+        boolean evaluate(long time, int[] pieces, int k, double[] values)
+        {
+            if (time < knots[0] || time > knots[nPieces])
+            {
+                return false;
+            }
+            int piece = pieces[k];
+            if (time < knots[piece])
+            {
+                piece = 0;
+            }
+            while (piece < nPieces - 1 && time >= knots[piece + 1])
+            {
+                piece++;
+            }
+            pieces[k] = piece;
+            double x = time - knots[piece];
+            int offset = piece * N_SERIES * 4;
+            for (int s = 0; s < N_SERIES; s++, offset += 4)
+            {
+                values[s] = coefficients[offset] + x * (coefficients[offset + 1] + x * (coefficients[offset + 2] + x * coefficients[offset + 3]));
+            }
+            return true;
+        }
+    }
+}
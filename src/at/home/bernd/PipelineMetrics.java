@@ -0,0 +1,443 @@
+package at.home.bernd;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the processing stages (fetch, parse, date conversion, interpolation, enrichment,
+ * extraction, chart build and render). Singleton.
+ * <p>
+ * The instrumentation is disabled by default (enable it with the system property {@value #ENABLED_PROPERTY}, via JMX
+ * or {@link #setEnabled(boolean)}). While disabled, {@link #start()} and {@link #stop(STAGE, long)} only read a
+ * volatile flag. Usage:
+ *
+ * <pre>
+ * long start = metrics.start();
+ * ...
+ * metrics.stop(STAGE.parse, start, nRows);
+ * </pre>
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean
+{
+    /**
+     * The processing stages. Stages may be nested: the date conversion is timed per timestamp within the parse stage
+     * (GPX and weather rows), so its time is included in the parse time as well and the stage totals must not be added
+     * up to a breakdown of the pipeline. While enabled, a nested stage costs two System.nanoTime() calls per timestamp.
+     */
+    public static enum STAGE
+    {
+        fetch,
+        parse,
+        derivation,
+        dateConversion,
+        interpolation,
+        enrichment,
+        extraction,
+        filtering,
+        chartBuild,
+        render
+    };
+
+    /**
+     * The global counters
+     */
+    public static enum COUNTER
+    {
+        bytesRead,
+        rejectedRows,
+        malformedValues,
+        rejectedPoints
+    };
+
+    /**
+     * The system property enabling the instrumentation at startup
+     */
+    public static final String ENABLED_PROPERTY = "windviewer.metrics";
+
+    /**
+     * The JMX object name
+     */
+    public static final String OBJECT_NAME = "at.home.bernd:type=PipelineMetrics";
+
+    /**
+     * The start value returned while the instrumentation is disabled
+     */
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    /**
+     * The number of histogram buckets (one per power of two nanoseconds)
+     */
+    private static final int N_BUCKETS = 64;
+
+    /**
+     * Holds the singleton instance.
+     */
+    private static class SingletonHolder
+    {
+        private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+    }
+
+    /**
+     * This flag indicates if the instrumentation is enabled
+     */
+    private volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    /**
+     * The metrics per stage
+     */
+    private final StageMetrics[] stageMetrics = new StageMetrics[STAGE.values().length];
+
+    /**
+     * The global counters
+     */
+    private final LongAdder[] counters = new LongAdder[COUNTER.values().length];
+
+    /**
+     * The executor of the periodic reporting (null if not reporting)
+     */
+    private ScheduledExecutorService reportingExecutor;
+
+    /**
+     * Use getInstance() instead.
+     */
+    private PipelineMetrics()
+    {
+        for (int s = 0; s < stageMetrics.length; s++)
+        {
+            stageMetrics[s] = new StageMetrics();
+        }
+        for (int c = 0; c < counters.length; c++)
+        {
+            counters[c] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the singleton instance of this class.
+     *
+     * @return the singleton instance
+     */
+    public static PipelineMetrics getInstance()
+    {
+        return SingletonHolder.INSTANCE;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts the timing of a stage.
+     *
+     * @return the start time to be passed to {@link #stop(STAGE, long, long)}
+     */
+    public long start()
+    {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Stops the timing of a stage.
+     *
+     * @param stage the stage
+     * @param start the start time returned by {@link #start()}
+     */
+    public void stop(STAGE stage, long start)
+    {
+        stop(stage, start, 0);
+    }
+
+    /**
+     * Stops the timing of a stage which processed the given number of rows.
+     *
+     * @param stage the stage
+     * @param start the start time returned by {@link #start()}
+     * @param rows  the number of processed rows
+     */
+    public void stop(STAGE stage, long start, long rows)
+    {
+        if (start == DISABLED)
+        {
+            return;
+        }
+        stageMetrics[stage.ordinal()].record(Math.max(0, System.nanoTime() - start), rows);
+    }
+
+    /**
+     * Increments the given counter.
+     *
+     * @param counter the counter
+     */
+    public void increment(COUNTER counter)
+    {
+        add(counter, 1);
+    }
+
+    /**
+     * Adds the given value to the given counter.
+     *
+     * @param counter the counter
+     * @param value   the value
+     */
+    public void add(COUNTER counter, long value)
+    {
+        if (enabled)
+        {
+            counters[counter.ordinal()].add(value);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the current metrics. The snapshot is not atomic across stages.
+     *
+     * @return the snapshot
+     */
+    public MetricsSnapshot snapshot()
+    {
+        int nStages = stageMetrics.length;
+        long[] counts = new long[nStages];
+        long[] totalNanos = new long[nStages];
+        long[] maxNanos = new long[nStages];
+        long[] rows = new long[nStages];
+        long[][] histograms = new long[nStages][N_BUCKETS];
+        for (int s = 0; s < nStages; s++)
+        {
+            StageMetrics metrics = stageMetrics[s];
+            counts[s] = metrics.count.sum();
+            totalNanos[s] = metrics.totalNanos.sum();
+            maxNanos[s] = metrics.maxNanos.get();
+            rows[s] = metrics.rows.sum();
+            for (int b = 0; b < N_BUCKETS; b++)
+            {
+                histograms[s][b] = metrics.histogram[b].sum();
+            }
+        }
+        long[] counterValues = new long[counters.length];
+        for (int c = 0; c < counters.length; c++)
+        {
+            counterValues[c] = counters[c].sum();
+        }
+        return new MetricsSnapshot(new Date(), counts, totalNanos, maxNanos, rows, histograms, counterValues);
+    }
+
+    public void reset()
+    {
+        for (StageMetrics metrics : stageMetrics)
+        {
+            metrics.reset();
+        }
+        for (LongAdder counter : counters)
+        {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Registers this instance as MXBean at the platform MBean server (unless already registered).
+     */
+    public void registerMBean()
+    {
+        try
+        {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (! mBeanServer.isRegistered(objectName))
+            {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        }
+        catch (JMException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts reporting a snapshot periodically to the given reporter (replaces a running reporting).
+     *
+     * @param reporter     the reporter
+     * @param periodMillis the period in milliseconds
+     */
+    public synchronized void startReporting(MetricsReporter reporter, long periodMillis)
+    {
+        stopReporting();
+        reportingExecutor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "pipeline-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reportingExecutor.scheduleAtFixedRate(() -> reporter.report(snapshot()), periodMillis, periodMillis,
+                                              TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic reporting.
+     */
+    public synchronized void stopReporting()
+    {
+        if (reportingExecutor != null)
+        {
+            reportingExecutor.shutdown();
+            reportingExecutor = null;
+        }
+    }
+
+    public Map<String, Long> getStageCounts()
+    {
+        MetricsSnapshot snapshot = snapshot();
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (STAGE stage : STAGE.values())
+        {
+            result.put(stage.name(), snapshot.getCount(stage));
+        }
+        return result;
+    }
+
+    public Map<String, Double> getStageMeanMillis()
+    {
+        MetricsSnapshot snapshot = snapshot();
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (STAGE stage : STAGE.values())
+        {
+            result.put(stage.name(), snapshot.getMeanMillis(stage));
+        }
+        return result;
+    }
+
+    public Map<String, Double> getStageP99Millis()
+    {
+        MetricsSnapshot snapshot = snapshot();
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (STAGE stage : STAGE.values())
+        {
+            result.put(stage.name(), snapshot.getPercentileMillis(stage, 99));
+        }
+        return result;
+    }
+
+    public Map<String, Double> getStageRowsPerSecond()
+    {
+        MetricsSnapshot snapshot = snapshot();
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (STAGE stage : STAGE.values())
+        {
+            result.put(stage.name(), snapshot.getRowsPerSecond(stage));
+        }
+        return result;
+    }
+
+    public long getBytesRead()
+    {
+        return counters[COUNTER.bytesRead.ordinal()].sum();
+    }
+
+    public long getRejectedRows()
+    {
+        return counters[COUNTER.rejectedRows.ordinal()].sum();
+    }
+
+    public long getMalformedValues()
+    {
+        return counters[COUNTER.malformedValues.ordinal()].sum();
+    }
+
+    public long getRejectedPoints()
+    {
+        return counters[COUNTER.rejectedPoints.ordinal()].sum();
+    }
+
+    public String getReport()
+    {
+        return snapshot().toString();
+    }
+
+    /**
+     * The metrics of a single stage.
+     */
+    private static class StageMetrics
+    {
+        /**
+         * The number of invocations
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * The total latency in nanoseconds
+         */
+        private final LongAdder totalNanos = new LongAdder();
+
+        /**
+         * The maximum latency in nanoseconds
+         */
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        /**
+         * The number of processed rows
+         */
+        private final LongAdder rows = new LongAdder();
+
+        /**
+         * The latency histogram: bucket b counts latencies in [2^b, 2^(b+1)) nanoseconds
+         */
+        private final LongAdder[] histogram = new LongAdder[N_BUCKETS];
+
+        StageMetrics()
+        {
+            for (int b = 0; b < N_BUCKETS; b++)
+            {
+                histogram[b] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records an invocation.
+         *
+         * @param nanos the latency in nanoseconds
+         * @param nRows the number of processed rows
+         */
+        void record(long nanos, long nRows)
+        {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (nRows != 0)
+            {
+                rows.add(nRows);
+            }
+            histogram[nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)].increment();
+        }
+
+        /**
+         * Resets the metrics.
+         */
+        void reset()
+        {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            rows.reset();
+            for (LongAdder bucket : histogram)
+            {
+                bucket.reset();
+            }
+        }
+    }
+}
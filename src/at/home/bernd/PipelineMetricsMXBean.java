@@ -0,0 +1,69 @@
+package at.home.bernd;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the pipeline metrics (registered as {@value PipelineMetrics#OBJECT_NAME}).
+ */
+public interface PipelineMetricsMXBean
+{
+    /**
+     * @return true if the instrumentation is enabled
+     */
+    public boolean isEnabled();
+
+    /**
+     * @param enabled true to enable the instrumentation
+     */
+    public void setEnabled(boolean enabled);
+
+    /**
+     * @return the number of invocations per stage
+     */
+    public Map<String, Long> getStageCounts();
+
+    /**
+     * @return the mean latency in milliseconds per stage
+     */
+    public Map<String, Double> getStageMeanMillis();
+
+    /**
+     * @return the 99th percentile of the latency in milliseconds per stage (upper bound of the histogram bucket)
+     */
+    public Map<String, Double> getStageP99Millis();
+
+    /**
+     * @return the throughput in rows per second per stage
+     */
+    public Map<String, Double> getStageRowsPerSecond();
+
+    /**
+     * @return the number of bytes read
+     */
+    public long getBytesRead();
+
+    /**
+     * @return the number of rejected rows
+     */
+    public long getRejectedRows();
+
+    /**
+     * @return the number of malformed values
+     */
+    public long getMalformedValues();
+
+    /**
+     * @return the number of track points rejected by the track point filters
+     */
+    public long getRejectedPoints();
+
+    /**
+     * @return a human readable report of the current snapshot
+     */
+    public String getReport();
+
+    /**
+     * Resets all counters and histograms.
+     */
+    public void reset();
+}
@@ -0,0 +1,263 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A polar performance diagram: the speeds of the enriched track points binned by true wind angle (the course relative
+ * to the wind direction, 0 - 180 degrees) and wind speed. Every bin keeps a {@link SpeedHistogram}, so percentile
+ * speeds (e.g. the median or the 90th percentile as the "achievable" speed) can be read per bin, and the diagrams of
+ * many sessions are merged exactly. The track points of a list of tracks are binned in parallel, one partial diagram
+ * per worker.
+ */
+public class PolarDiagram
+{
+    /**
+     * The width of the true wind angle bins in degrees
+     */
+    private double angleStep;
+
+    /**
+     * The width of the wind speed bins in km/h
+     */
+    private double windSpeedStep;
+
+    /**
+     * The minimum speed of a track point in km/h (slower points, e.g. after a fall, are not counted)
+     */
+    private double minSpeed = 5;
+
+    /**
+     * The histograms per true wind angle bin and wind speed bin (null if the bin is empty)
+     */
+    private SpeedHistogram[][] histograms;
+
+    /**
+     * Creates an empty diagram with 10 degree angle bins and 5 km/h wind speed bins up to 50 km/h.
+     */
+    public PolarDiagram()
+    {
+        this(10, 5, 10);
+    }
+
+    /**
+     * Creates an empty diagram.
+     *
+     * @param angleStep     the width of the true wind angle bins in degrees
+     * @param windSpeedStep the width of the wind speed bins in km/h
+     * @param nWindSpeeds   the number of wind speed bins (the last one is open)
+     */
+    public PolarDiagram(double angleStep, double windSpeedStep, int nWindSpeeds)
+    {
+        this.angleStep = angleStep;
+        this.windSpeedStep = windSpeedStep;
+        histograms = new SpeedHistogram[(int) Math.ceil(180 / angleStep)][nWindSpeeds];
+    }
+
+    /**
+     * Creates an empty diagram with the same bins as the given one.
+     *
+     * @param other the other diagram
+     */
+    private PolarDiagram(PolarDiagram other)
+    {
+        this(other.angleStep, other.windSpeedStep, other.getWindSpeedBinCount());
+        minSpeed = other.minSpeed;
+    }
+
+    /**
+     * @param minSpeed the minimum speed of a track point in km/h
+     */
+    public void setMinSpeed(double minSpeed)
+    {
+        this.minSpeed = minSpeed;
+    }
+
+    /**
+     * Adds the track points of the given tracks (in parallel).
+     *
+     * @param trackList the track list
+     */
+    public void addTrackList(List<Track> trackList)
+    {
+        List<TrackSegment> trackSegments = new ArrayList<TrackSegment>();
+        for (Track track : trackList)
+        {
+            trackSegments.addAll(track.getTrackSegments());
+        }
+        merge(trackSegments.parallelStream()
+                           .collect(() -> new PolarDiagram(this), PolarDiagram::addTrackSegment, PolarDiagram::merge));
+    }
+
+    /**
+     * Adds the track points of the given track segment if it has wind information.
+     *
+     * @param trackSegment the track segment
+     */
+    public void addTrackSegment(TrackSegment trackSegment)
+    {
+        if (! trackSegment.isWindInfoAvailable())
+        {
+            return;
+        }
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        for (TrackPoint trackPoint : trackSegment.getTrackPoints())
+        {
+            add(dcu.relativeCourse(trackPoint.getWindDirection(), trackPoint.getCourse()),
+                trackPoint.getWindSpeed(),
+                trackPoint.getSpeed());
+        }
+    }
+
+    /**
+     * Adds a speed.
+     *
+     * @param trueWindAngle the true wind angle in degrees (0 - 180)
+     * @param windSpeed     the wind speed in km/h
+     * @param speed         the speed in km/h
+     */
+    public void add(double trueWindAngle, double windSpeed, double speed)
+    {
+        if (Double.isNaN(trueWindAngle) || Double.isNaN(windSpeed) || Double.isNaN(speed) || speed < minSpeed)
+        {
+            return;
+        }
+        int angleBin = Math.min(histograms.length - 1, (int) (Math.abs(trueWindAngle) / angleStep));
+        int windSpeedBin = Math.min(histograms[0].length - 1, (int) (Math.max(0, windSpeed) / windSpeedStep));
+        SpeedHistogram histogram = histograms[angleBin][windSpeedBin];
+        if (histogram == null)
+        {
+            histogram = new SpeedHistogram();
+            histograms[angleBin][windSpeedBin] = histogram;
+        }
+        histogram.add(speed);
+    }
+
+    /**
+     * Adds the histograms of the given diagram.
+     *
+     * @param other the other diagram (with the same bins)
+     */
+    public void merge(PolarDiagram other)
+    {
+        if (angleStep != other.angleStep || windSpeedStep != other.windSpeedStep
+            || getWindSpeedBinCount() != other.getWindSpeedBinCount())
+        {
+            throw new IllegalArgumentException("Different bins");
+        }
+        for (int a = 0; a < histograms.length; a++)
+        {
+            for (int w = 0; w < histograms[a].length; w++)
+            {
+                SpeedHistogram histogram = other.histograms[a][w];
+                if (histogram == null)
+                {
+                    continue;
+                }
+                if (histograms[a][w] == null)
+                {
+                    histograms[a][w] = new SpeedHistogram();
+                }
+                histograms[a][w].merge(histogram);
+            }
+        }
+    }
+
+    /**
+     * @return the number of true wind angle bins
+     */
+    public int getAngleBinCount()
+    {
+        return histograms.length;
+    }
+
+    /**
+     * @return the number of wind speed bins
+     */
+    public int getWindSpeedBinCount()
+    {
+        return histograms[0].length;
+    }
+
+    /**
+     * Returns the center of the given true wind angle bin.
+     *
+     * @param angleBin the true wind angle bin
+     * @return         the true wind angle in degrees
+     */
+    public double getAngle(int angleBin)
+    {
+        return Math.min(180, (angleBin + 0.5) * angleStep);
+    }
+
+    /**
+     * Returns the lower bound of the given wind speed bin.
+     *
+     * @param windSpeedBin the wind speed bin
+     * @return             the wind speed in km/h
+     */
+    public double getWindSpeed(int windSpeedBin)
+    {
+        return windSpeedBin * windSpeedStep;
+    }
+
+    /**
+     * @return the width of the wind speed bins in km/h
+     */
+    public double getWindSpeedStep()
+    {
+        return windSpeedStep;
+    }
+
+    /**
+     * Returns the histogram of the given bin.
+     *
+     * @param angleBin     the true wind angle bin
+     * @param windSpeedBin the wind speed bin
+     * @return             the histogram (null if the bin is empty)
+     */
+    public SpeedHistogram getHistogram(int angleBin, int windSpeedBin)
+    {
+        return histograms[angleBin][windSpeedBin];
+    }
+
+    /**
+     * Returns the number of track points of the given bin.
+     *
+     * @param angleBin     the true wind angle bin
+     * @param windSpeedBin the wind speed bin
+     * @return             the count
+     */
+    public long getCount(int angleBin, int windSpeedBin)
+    {
+        SpeedHistogram histogram = histograms[angleBin][windSpeedBin];
+        return histogram != null ? histogram.getCount() : 0;
+    }
+
+    /**
+     * Returns the given percentile speed of the given bin.
+     *
+     * @param angleBin     the true wind angle bin
+     * @param windSpeedBin the wind speed bin
+     * @param percentile   the percentile (0 - 100)
+     * @return             the speed in km/h (NaN if the bin is empty)
+     */
+    public double getPercentile(int angleBin, int windSpeedBin, double percentile)
+    {
+        SpeedHistogram histogram = histograms[angleBin][windSpeedBin];
+        return histogram != null ? histogram.getPercentile(percentile) : Double.NaN;
+    }
+
+    public String toString()
+    {
+        long count = 0;
+        for (int a = 0; a < histograms.length; a++)
+        {
+            for (int w = 0; w < histograms[a].length; w++)
+            {
+                count += getCount(a, w);
+            }
+        }
+        return "PolarDiagram [angleStep=" + angleStep + ", windSpeedStep=" + windSpeedStep + ", count=" + count + "]";
+    }
+}
@@ -0,0 +1,83 @@
+package at.home.bernd;
+
+import java.util.List;
+
+/**
+ * A reference to a range of track points: the track (index in the track list), the track segment (index in the track)
+ * and the [start, end) index range within the track segment.
+ */
+public class SegmentHit
+{
+    /**
+     * The index of the track in the track list
+     */
+    private final int trackIndex;
+    
+    /**
+     * The index of the track segment in the track
+     */
+    private final int segmentIndex;
+    
+    /**
+     * The index range within the track segment
+     */
+    private final IndexRange range;
+    
+    /**
+     * Creates a new hit.
+     * 
+     * @param trackIndex   the index of the track in the track list
+     * @param segmentIndex the index of the track segment in the track
+     * @param range        the index range within the track segment
+     */
+    public SegmentHit(int trackIndex, int segmentIndex, IndexRange range)
+    {
+        this.trackIndex = trackIndex;
+        this.segmentIndex = segmentIndex;
+        this.range = range;
+    }
+
+    /**
+     * @return the trackIndex
+     */
+    public int getTrackIndex()
+    {
+        return trackIndex;
+    }
+
+    /**
+     * @return the segmentIndex
+     */
+    public int getSegmentIndex()
+    {
+        return segmentIndex;
+    }
+
+    /**
+     * @return the range
+     */
+    public IndexRange getRange()
+    {
+        return range;
+    }
+    
+    /**
+     * Returns the referenced track segment (as a view of the points of the range).
+     * 
+     * @param trackList the track list this hit refers to
+     * @return          the track segment
+     */
+    public TrackSegment resolve(List<Track> trackList)
+    {
+        TrackSegment trackSegment = trackList.get(trackIndex).getTrackSegments().get(segmentIndex);
+        return trackSegment.subSegment(range);
+    }
+    
+    /**
+     * Returns a simple string representation of this hit
+     */
+    public String toString()
+    {
+        return "track " + trackIndex + ", segment " + segmentIndex + ", points " + range;
+    }
+}
@@ -0,0 +1,79 @@
+package at.home.bernd;
+
+/**
+ * Downsamples time series for charts with the largest triangle three buckets (LTTB) algorithm: the first and the last
+ * point are kept, from every bucket in between the point spanning the largest triangle with the selected point of the
+ * previous bucket and the average of the next bucket is selected. Peaks survive, unlike with plain decimation.
+ */
+public class SeriesDownsampler
+{
+    /**
+     * Use the static methods instead.
+     */
+    private SeriesDownsampler()
+    {
+    }
+
+    /**
+     * Returns the indices of the points to be kept.
+     *
+     * @param times     the timestamps (ascending)
+     * @param values    the values
+     * @param maxPoints the maximum number of points (at least 3; otherwise all points are kept)
+     * @return          the indices of the selected points (ascending)
+     */
+    public static int[] downsample(long[] times, double[] values, int maxPoints)
+    {
+        int n = times.length;
+        if (maxPoints >= n || maxPoints < 3)
+        {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++)
+            {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] selected = new int[maxPoints];
+        double bucketSize = (double) (n - 2) / (maxPoints - 2);
+        int a = 0;
+        selected[0] = 0;
+        for (int b = 0; b < maxPoints - 2; b++)
+        {
+            // average of the next bucket
+            int nextStart = (int) Math.floor((b + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(n, (int) Math.floor((b + 2) * bucketSize) + 1);
+            double avgTime = 0;
+            double avgValue = 0;
+            for (int i = nextStart; i < nextEnd; i++)
+            {
+                avgTime += times[i];
+                avgValue += values[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgTime /= nextCount;
+            avgValue /= nextCount;
+
+            // the point of the current bucket spanning the largest triangle
+            int start = (int) Math.floor(b * bucketSize) + 1;
+            int end = (int) Math.floor((b + 1) * bucketSize) + 1;
+            double aTime = times[a];
+            double aValue = values[a];
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++)
+            {
+                double area = Math.abs((aTime - avgTime) * (values[i] - aValue) - (aTime - times[i]) * (avgValue - aValue));
+                if (area > maxArea)
+                {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            selected[b + 1] = maxIndex;
+            a = maxIndex;
+        }
+        selected[maxPoints - 1] = n - 1;
+        return selected;
+    }
+}
@@ -0,0 +1,224 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The result of a {@link TrackSimplifier}: the importance of each point of a track segment, i.e. the largest tolerance
+ * at which the point is still kept (the first and the last point are always kept). The importances are monotone along
+ * the simplification, so the points kept for a tolerance are exactly those with an importance of at least the
+ * tolerance, and any zoom level is a filter instead of a new simplification.
+ * <p>
+ * If the importances are a deviation bound (Douglas-Peucker), a tolerance is the largest distance in meters of a
+ * dropped point from the simplified line. Otherwise (Visvalingam-Whyatt) a tolerance is the square root of an area in
+ * square meters: a length scale, but the deviation may exceed it.
+ * <p>
+ * The index lists of the levels (tolerances of {@link #getMinTolerance()} times powers of 2) are precomputed; the
+ * points for an arbitrary tolerance are taken from the next finer level, so the cost is proportional to the size of
+ * the result rather than to the size of the segment.
+ */
+public class SimplifiedTrack
+{
+    /**
+     * The track segment
+     */
+    private TrackSegment trackSegment;
+
+    /**
+     * The importance of each point
+     */
+    private double[] importances;
+
+    /**
+     * This flag indicates if the importances bound the deviation in meters
+     */
+    private boolean deviationBound;
+
+    /**
+     * The tolerance of the finest level
+     */
+    private double minTolerance;
+
+    /**
+     * The indices of the kept points of each level (level l has the tolerance minTolerance * 2^l)
+     */
+    private List<int[]> levels = new ArrayList<int[]>();
+
+    /**
+     * Creates a simplified track and precomputes its levels (until only the first and the last point are left).
+     *
+     * @param trackSegment   the track segment
+     * @param importances    the importance of each point
+     * @param deviationBound true if the importances bound the deviation in meters
+     * @param minTolerance   the tolerance of the finest level
+     */
+    public SimplifiedTrack(TrackSegment trackSegment, double[] importances, boolean deviationBound, double minTolerance)
+    {
+        if (! (minTolerance > 0))
+        {
+            throw new IllegalArgumentException("minimum tolerance must be positive: " + minTolerance);
+        }
+        this.trackSegment = trackSegment;
+        this.importances = importances;
+        this.deviationBound = deviationBound;
+        this.minTolerance = minTolerance;
+        int[] all = new int[importances.length];
+        for (int i = 0; i < all.length; i++)
+        {
+            all[i] = i;
+        }
+        int[] previous = all;
+        double tolerance = minTolerance;
+        do
+        {
+            previous = filter(previous, tolerance);
+            levels.add(previous);
+            tolerance *= 2;
+        }
+        while (previous.length > 2);
+    }
+
+    /**
+     * Returns the indices of the given indices with an importance of at least the given tolerance.
+     */
+    private int[] filter(int[] indices, double tolerance)
+    {
+        int[] kept = new int[indices.length];
+        int k = 0;
+        for (int i = 0; i < indices.length; i++)
+        {
+            int index = indices[i];
+            if (importances[index] >= tolerance)
+            {
+                kept[k++] = index;
+            }
+        }
+        return Arrays.copyOf(kept, k);
+    }
+
+    /**
+     * @return the track segment
+     */
+    public TrackSegment getTrackSegment()
+    {
+        return trackSegment;
+    }
+
+    /**
+     * @return true if the importances bound the deviation in meters (otherwise they are the square roots of areas)
+     */
+    public boolean isDeviationBound()
+    {
+        return deviationBound;
+    }
+
+    /**
+     * @param index the index of the point
+     * @return      the importance of the point (infinite for the first and the last point)
+     */
+    public double getImportance(int index)
+    {
+        return importances[index];
+    }
+
+    /**
+     * @return the tolerance of the finest level
+     */
+    public double getMinTolerance()
+    {
+        return minTolerance;
+    }
+
+    /**
+     * @return the number of levels
+     */
+    public int getLevelCount()
+    {
+        return levels.size();
+    }
+
+    /**
+     * @param level the level
+     * @return      the tolerance of the level
+     */
+    public double getLevelTolerance(int level)
+    {
+        return minTolerance * Math.pow(2, level);
+    }
+
+    /**
+     * @param level the level
+     * @return      the indices of the points kept on the given level (ascending, not to be modified)
+     */
+    public int[] getLevel(int level)
+    {
+        return levels.get(level);
+    }
+
+    /**
+     * Returns the indices of the points kept for the given tolerance.
+     *
+     * @param tolerance the tolerance
+     * @return          the indices of the kept points (ascending)
+     */
+    public int[] getIndices(double tolerance)
+    {
+        if (tolerance <= minTolerance)
+        {
+            // finer than the finest level
+            int[] all = new int[importances.length];
+            int k = 0;
+            for (int i = 0; i < importances.length; i++)
+            {
+                if (importances[i] >= tolerance)
+                {
+                    all[k++] = i;
+                }
+            }
+            return Arrays.copyOf(all, k);
+        }
+        int level = (int) Math.floor(Math.log(tolerance / minTolerance) / Math.log(2));
+        return filter(levels.get(Math.min(level, levels.size() - 1)), tolerance);
+    }
+
+    /**
+     * Returns the simplified track segment for the given tolerance (a new segment with the kept track points, which
+     * are not copied).
+     *
+     * @param tolerance the tolerance
+     * @return          the simplified track segment
+     */
+    public TrackSegment simplify(double tolerance)
+    {
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        int[] indices = getIndices(tolerance);
+        List<TrackPoint> kept = new ArrayList<TrackPoint>(indices.length);
+        for (int index : indices)
+        {
+            kept.add(trackPoints.get(index));
+        }
+        TrackSegment simplified = new TrackSegment();
+        simplified.setTrackPoints(kept);
+        simplified.setWindInfoAvailable(trackSegment.isWindInfoAvailable());
+        return simplified;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SimplifiedTrack [");
+        sb.append(importances.length);
+        sb.append(" points");
+        for (int level = 0; level < levels.size(); level++)
+        {
+            sb.append(", ");
+            sb.append(getLevelTolerance(level));
+            // the square root of an area is not a distance
+            sb.append(deviationBound ? " m: " : " sqrt(m2): ");
+            sb.append(levels.get(level).length);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
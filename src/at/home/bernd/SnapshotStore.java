@@ -0,0 +1,96 @@
+package at.home.bernd;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the current {@link DataSnapshot}. Readers get the current snapshot without locking and keep working on it
+ * while writers publish new versions atomically; a reader never sees a partially enriched track.
+ */
+public class SnapshotStore
+{
+    /**
+     * The current snapshot
+     */
+    private AtomicReference<DataSnapshot> current = new AtomicReference<DataSnapshot>(DataSnapshot.EMPTY);
+
+    /**
+     * The listeners called after a new snapshot has been published
+     */
+    private List<Consumer<DataSnapshot>> listeners = new CopyOnWriteArrayList<Consumer<DataSnapshot>>();
+
+    /**
+     * The snapshot last delivered to the listeners (guarded by the listeners)
+     */
+    private DataSnapshot delivered = DataSnapshot.EMPTY;
+
+    /**
+     * @return the current snapshot
+     */
+    public DataSnapshot get()
+    {
+        return current.get();
+    }
+
+    /**
+     * Derives a new snapshot from the current one and publishes it. If another writer has published a snapshot in the
+     * meantime, the update is applied again to that snapshot, so the update must not have side effects besides
+     * creating the new snapshot.
+     *
+     * @param update the update (e.g. {@code snapshot -> snapshot.withWindData(windData).enrich()})
+     * @return       the published snapshot
+     */
+    public DataSnapshot update(UnaryOperator<DataSnapshot> update)
+    {
+        while (true)
+        {
+            DataSnapshot snapshot = current.get();
+            DataSnapshot updatedSnapshot = update.apply(snapshot);
+            if (updatedSnapshot == snapshot)
+            {
+                return snapshot;
+            }
+            if (current.compareAndSet(snapshot, updatedSnapshot))
+            {
+                notifyListeners();
+                return updatedSnapshot;
+            }
+        }
+    }
+
+    /**
+     * Delivers the current snapshot to the listeners unless it has been delivered already. The notifications are
+     * serialized and always deliver the latest snapshot, so concurrent writers cannot deliver an older snapshot after a
+     * newer one (a writer whose snapshot has been superseded delivers the newer one or nothing).
+     */
+    private void notifyListeners()
+    {
+        synchronized (listeners)
+        {
+            DataSnapshot snapshot = current.get();
+            if (snapshot == delivered)
+            {
+                return;
+            }
+            delivered = snapshot;
+            for (Consumer<DataSnapshot> listener : listeners)
+            {
+                listener.accept(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener called (on a writer thread) after a new snapshot has been published. The listeners get the
+     * snapshots in the order of publication; snapshots superseded before their notification are skipped.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<DataSnapshot> listener)
+    {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,695 @@
+package at.home.bernd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * A spatial index (fixed lat/lon grid) over the track points of many tracks.
+ *
+ * The coordinates of all points are held in two primitive columns. Every run of consecutive points of a track segment
+ * within the same grid cell is stored as one entry; the entries are sorted by cell key (row-major), so the cells of a
+ * grid row intersecting a query box are found by a single binary search. Queries return the matching points as
+ * (track, segment, index range) hits. The index (including the coordinate columns) can be saved and loaded, so it can
+ * be persisted along with the track data.
+ *
+ * Longitudes are not wrapped around the antimeridian.
+ */
+public class SpatialIndex
+{
+    /**
+     * The default cell size in degrees (roughly 100 m in latitude)
+     */
+    public static final double DEFAULT_CELL_SIZE = 0.001;
+
+    /**
+     * Meters per degree of latitude
+     */
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * DataConversionUtility.EARTH_RADIUS;
+
+    /**
+     * The file format identifier
+     */
+    private static final int MAGIC = 0x57564958;
+
+    /**
+     * The file format version
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The cell size in degrees
+     */
+    private double cellSize;
+
+    /**
+     * The track index per segment
+     */
+    private int[] segmentTracks;
+
+    /**
+     * The segment index (within its track) per segment
+     */
+    private int[] segmentSegments;
+
+    /**
+     * The offset of the first point per segment in the coordinate columns (plus the total number of points at the end)
+     */
+    private int[] segmentOffsets;
+
+    /**
+     * The latitudes of all points
+     */
+    private double[] latitudes;
+
+    /**
+     * The longitudes of all points
+     */
+    private double[] longitudes;
+
+    /**
+     * The sorted cell keys of the entries
+     */
+    private long[] cellKeys;
+
+    /**
+     * The first point (inclusive) of each entry
+     */
+    private int[] entryStarts;
+
+    /**
+     * The last point (exclusive) of each entry
+     */
+    private int[] entryEnds;
+
+    /**
+     * Use build() or load() instead.
+     */
+    private SpatialIndex()
+    {
+    }
+
+    /**
+     * Builds a spatial index with the default cell size over the given track list.
+     *
+     * @param trackList the track list
+     * @return          the spatial index
+     */
+    public static SpatialIndex build(List<Track> trackList)
+    {
+        return build(trackList, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Builds a spatial index over the given track list.
+     *
+     * @param trackList the track list
+     * @param cellSize  the cell size in degrees
+     * @return          the spatial index
+     */
+    public static SpatialIndex build(List<Track> trackList, double cellSize)
+    {
+        SpatialIndex index = new SpatialIndex();
+        index.cellSize = cellSize;
+
+        int nSegments = 0;
+        int nPoints = 0;
+        for (Track track : trackList)
+        {
+            for (TrackSegment trackSegment : track.getTrackSegments())
+            {
+                nSegments++;
+                nPoints += trackSegment.size();
+            }
+        }
+        index.segmentTracks = new int[nSegments];
+        index.segmentSegments = new int[nSegments];
+        index.segmentOffsets = new int[nSegments + 1];
+        index.latitudes = new double[nPoints];
+        index.longitudes = new double[nPoints];
+
+        int segment = 0;
+        int offset = 0;
+        for (int t = 0; t < trackList.size(); t++)
+        {
+            List<TrackSegment> trackSegments = trackList.get(t).getTrackSegments();
+            for (int s = 0; s < trackSegments.size(); s++)
+            {
+                index.segmentTracks[segment] = t;
+                index.segmentSegments[segment] = s;
+                index.segmentOffsets[segment] = offset;
+                for (TrackPoint trackPoint : trackSegments.get(s).getTrackPoints())
+                {
+                    index.latitudes[offset] = trackPoint.getLatitude();
+                    index.longitudes[offset] = trackPoint.getLongitude();
+                    offset++;
+                }
+                segment++;
+            }
+        }
+        index.segmentOffsets[nSegments] = offset;
+        index.buildEntries();
+        return index;
+    }
+
+    /**
+     * Builds the (sorted) cell entries from the coordinate columns.
+     */
+    private void buildEntries()
+    {
+        int nSegments = segmentTracks.length;
+        int capacity = Math.max(16, latitudes.length / 8);
+        long[] keys = new long[capacity];
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        int nEntries = 0;
+        for (int segment = 0; segment < nSegments; segment++)
+        {
+            int end = segmentOffsets[segment + 1];
+            int i = segmentOffsets[segment];
+            while (i < end)
+            {
+                long key = cellKey(latitudes[i], longitudes[i]);
+                int start = i;
+                i++;
+                while (i < end && cellKey(latitudes[i], longitudes[i]) == key)
+                {
+                    i++;
+                }
+                if (nEntries == keys.length)
+                {
+                    keys = Arrays.copyOf(keys, 2 * nEntries);
+                    starts = Arrays.copyOf(starts, 2 * nEntries);
+                    ends = Arrays.copyOf(ends, 2 * nEntries);
+                }
+                keys[nEntries] = key;
+                starts[nEntries] = start;
+                ends[nEntries] = i;
+                nEntries++;
+            }
+        }
+        this.cellKeys = Arrays.copyOf(keys, nEntries);
+        this.entryStarts = Arrays.copyOf(starts, nEntries);
+        this.entryEnds = Arrays.copyOf(ends, nEntries);
+        sortEntries(0, nEntries - 1);
+    }
+
+    /**
+     * Sorts the entries by cell key (quicksort on the parallel entry arrays).
+     *
+     * @param low  the first entry
+     * @param high the last entry
+     */
+    private void sortEntries(int low, int high)
+    {
+        while (low < high)
+        {
+            long pivot = cellKeys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j)
+            {
+                while (cellKeys[i] < pivot)
+                {
+                    i++;
+                }
+                while (cellKeys[j] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    swapEntries(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller part to limit the stack depth
+            if (j - low < high - i)
+            {
+                sortEntries(low, j);
+                low = i;
+            }
+            else
+            {
+                sortEntries(i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * Swaps two entries.
+     *
+     * @param i the first entry
+     * @param j the second entry
+     */
+    private void swapEntries(int i, int j)
+    {
+        long key = cellKeys[i];
+        cellKeys[i] = cellKeys[j];
+        cellKeys[j] = key;
+        int start = entryStarts[i];
+        entryStarts[i] = entryStarts[j];
+        entryStarts[j] = start;
+        int end = entryEnds[i];
+        entryEnds[i] = entryEnds[j];
+        entryEnds[j] = end;
+    }
+
+    /**
+     * @return the cell size in degrees
+     */
+    public double getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Returns the number of indexed points.
+     *
+     * @return the number of points
+     */
+    public int size()
+    {
+        return latitudes.length;
+    }
+
+    /**
+     * Returns the grid row of the given latitude.
+     *
+     * @param latitude the latitude
+     * @return         the row
+     */
+    private long row(double latitude)
+    {
+        return (long) Math.floor((latitude + 90) / cellSize);
+    }
+
+    /**
+     * Returns the grid column of the given longitude.
+     *
+     * @param longitude the longitude
+     * @return          the column
+     */
+    private long column(double longitude)
+    {
+        return (long) Math.floor((longitude + 180) / cellSize);
+    }
+
+    /**
+     * Returns the cell key of the given position.
+     *
+     * @param latitude  the latitude
+     * @param longitude the longitude
+     * @return          the cell key
+     */
+    private long cellKey(double latitude, double longitude)
+    {
+        return (row(latitude) << 32) | column(longitude);
+    }
+
+    /**
+     * Returns all points within the given bounding box.
+     *
+     * @param minLatitude  the minimum latitude
+     * @param minLongitude the minimum longitude
+     * @param maxLatitude  the maximum latitude
+     * @param maxLongitude the maximum longitude
+     * @return             the hits
+     */
+    public List<SegmentHit> queryBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+    {
+        RangeCollector collector = new RangeCollector();
+        scan(minLatitude, minLongitude, maxLatitude, maxLongitude,
+             i -> latitudes[i] >= minLatitude && latitudes[i] <= maxLatitude &&
+                  longitudes[i] >= minLongitude && longitudes[i] <= maxLongitude,
+             collector);
+        return toHits(collector);
+    }
+
+    /**
+     * Returns all points within the given distance of the given position.
+     *
+     * @param latitude  the latitude of the center
+     * @param longitude the longitude of the center
+     * @param radius    the radius in meters
+     * @return          the hits
+     */
+    public List<SegmentHit> queryRadius(double latitude, double longitude, double radius)
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        double dLatitude = radius / METERS_PER_DEGREE;
+        double dLongitude = dLatitude / Math.max(1e-6, Math.cos(Math.toRadians(latitude)));
+        RangeCollector collector = new RangeCollector();
+        scan(latitude - dLatitude, longitude - dLongitude, latitude + dLatitude, longitude + dLongitude,
+             i -> dcu.distance(latitude, longitude, latitudes[i], longitudes[i]) <= radius,
+             collector);
+        return toHits(collector);
+    }
+
+    /**
+     * Returns all points within the given distance of the given polyline (e.g. a speed strip).
+     *
+     * @param polylineLatitudes  the latitudes of the polyline
+     * @param polylineLongitudes the longitudes of the polyline
+     * @param width              the maximum distance from the polyline in meters
+     * @return                   the hits
+     */
+    public List<SegmentHit> queryCorridor(double[] polylineLatitudes, double[] polylineLongitudes, double width)
+    {
+        RangeCollector collector = new RangeCollector();
+        int nLegs = Math.max(1, polylineLatitudes.length - 1);
+        for (int leg = 0; leg < nLegs; leg++)
+        {
+            double lat1 = polylineLatitudes[leg];
+            double lon1 = polylineLongitudes[leg];
+            double lat2 = polylineLatitudes[Math.min(leg + 1, polylineLatitudes.length - 1)];
+            double lon2 = polylineLongitudes[Math.min(leg + 1, polylineLongitudes.length - 1)];
+            double dLatitude = width / METERS_PER_DEGREE;
+            double dLongitude = dLatitude / Math.max(1e-6, Math.cos(Math.toRadians(Math.max(Math.abs(lat1), Math.abs(lat2)))));
+            scan(Math.min(lat1, lat2) - dLatitude, Math.min(lon1, lon2) - dLongitude,
+                 Math.max(lat1, lat2) + dLatitude, Math.max(lon1, lon2) + dLongitude,
+                 i -> distanceToLeg(latitudes[i], longitudes[i], lat1, lon1, lat2, lon2) <= width,
+                 collector);
+        }
+        return toHits(collector);
+    }
+
+    /**
+     * Returns the distance of a position from a line segment (local equirectangular approximation).
+     *
+     * @param latitude  the latitude of the position
+     * @param longitude the longitude of the position
+     * @param lat1      the latitude of the start of the line segment
+     * @param lon1      the longitude of the start of the line segment
+     * @param lat2      the latitude of the end of the line segment
+     * @param lon2      the longitude of the end of the line segment
+     * @return          the distance in meters
+     */
+    private double distanceToLeg(double latitude, double longitude, double lat1, double lon1, double lat2, double lon2)
+    {
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double ax = (lon1 - longitude) * cosLatitude;
+        double ay = lat1 - latitude;
+        double bx = (lon2 - longitude) * cosLatitude;
+        double by = lat2 - latitude;
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared)) : 0;
+        double px = ax + t * dx;
+        double py = ay + t * dy;
+        return Math.sqrt(px * px + py * py) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Scans all entries of the cells intersecting the given bounding box and collects the runs of points matching the
+     * given predicate.
+     *
+     * @param minLatitude  the minimum latitude
+     * @param minLongitude the minimum longitude
+     * @param maxLatitude  the maximum latitude
+     * @param maxLongitude the maximum longitude
+     * @param predicate    the predicate (on the point index)
+     * @param collector    the collector of the matching runs
+     */
+    private void scan(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                      IntPredicate predicate, RangeCollector collector)
+    {
+        long firstRow = row(minLatitude);
+        long lastRow = row(maxLatitude);
+        long firstColumn = column(minLongitude);
+        long lastColumn = column(maxLongitude);
+        for (long row = firstRow; row <= lastRow; row++)
+        {
+            long lastKey = (row << 32) | lastColumn;
+            for (int e = lowerBound((row << 32) | firstColumn); e < cellKeys.length && cellKeys[e] <= lastKey; e++)
+            {
+                int end = entryEnds[e];
+                int i = entryStarts[e];
+                while (i < end)
+                {
+                    while (i < end && ! predicate.test(i))
+                    {
+                        i++;
+                    }
+                    int start = i;
+                    while (i < end && predicate.test(i))
+                    {
+                        i++;
+                    }
+                    if (i > start)
+                    {
+                        collector.add(start, i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first entry with a cell key greater than or equal to the given key.
+     *
+     * @param key the key
+     * @return    the index of the entry
+     */
+    private int lowerBound(long key)
+    {
+        int low = 0;
+        int high = cellKeys.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (cellKeys[mid] < key)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Converts the collected runs of points to hits (adjacent runs of the same segment are merged).
+     *
+     * @param collector the collector of the matching runs
+     * @return          the hits
+     */
+    private List<SegmentHit> toHits(RangeCollector collector)
+    {
+        long[] ranges = collector.sortedRanges();
+        List<SegmentHit> hits = new ArrayList<SegmentHit>();
+        int k = 0;
+        while (k < ranges.length)
+        {
+            int start = (int) (ranges[k] >>> 32);
+            int end = (int) ranges[k];
+            int segment = segmentOf(start);
+            int segmentEnd = segmentOffsets[segment + 1];
+            k++;
+            while (k < ranges.length && (int) (ranges[k] >>> 32) <= end && end < segmentEnd)
+            {
+                end = Math.max(end, (int) ranges[k]);
+                k++;
+            }
+            int offset = segmentOffsets[segment];
+            hits.add(new SegmentHit(segmentTracks[segment], segmentSegments[segment], new IndexRange(start - offset, end - offset)));
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the segment containing the given point.
+     *
+     * @param point the index of the point
+     * @return      the segment
+     */
+    private int segmentOf(int point)
+    {
+        int low = 0;
+        int high = segmentOffsets.length - 1;
+        // find the last segment with an offset <= point (skipping empty segments)
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (segmentOffsets[mid] <= point)
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Saves this index to the given file.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path path) throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream(path))
+        {
+            save(out);
+        }
+    }
+
+    /**
+     * Saves this index to the given stream.
+     *
+     * @param outputStream the stream
+     * @throws IOException if the stream cannot be written
+     */
+    public void save(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeDouble(cellSize);
+        out.writeInt(segmentTracks.length);
+        for (int segment = 0; segment < segmentTracks.length; segment++)
+        {
+            out.writeInt(segmentTracks[segment]);
+            out.writeInt(segmentSegments[segment]);
+            out.writeInt(segmentOffsets[segment]);
+        }
+        out.writeInt(latitudes.length);
+        for (int i = 0; i < latitudes.length; i++)
+        {
+            out.writeDouble(latitudes[i]);
+            out.writeDouble(longitudes[i]);
+        }
+        out.writeInt(cellKeys.length);
+        for (int e = 0; e < cellKeys.length; e++)
+        {
+            out.writeLong(cellKeys[e]);
+            out.writeInt(entryStarts[e]);
+            out.writeInt(entryEnds[e]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Loads an index from the given file.
+     *
+     * @param path the file
+     * @return     the index
+     * @throws IOException if the file cannot be read or has an invalid format
+     */
+    public static SpatialIndex load(Path path) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(path))
+        {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads an index from the given stream.
+     *
+     * @param inputStream the stream
+     * @return            the index
+     * @throws IOException if the stream cannot be read or has an invalid format
+     */
+    public static SpatialIndex load(InputStream inputStream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, 1 << 16));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            throw new IOException("Not a spatial index file (or unsupported version)");
+        }
+        SpatialIndex index = new SpatialIndex();
+        index.cellSize = in.readDouble();
+        int nSegments = in.readInt();
+        index.segmentTracks = new int[nSegments];
+        index.segmentSegments = new int[nSegments];
+        index.segmentOffsets = new int[nSegments + 1];
+        for (int segment = 0; segment < nSegments; segment++)
+        {
+            index.segmentTracks[segment] = in.readInt();
+            index.segmentSegments[segment] = in.readInt();
+            index.segmentOffsets[segment] = in.readInt();
+        }
+        int nPoints = in.readInt();
+        index.segmentOffsets[nSegments] = nPoints;
+        index.latitudes = new double[nPoints];
+        index.longitudes = new double[nPoints];
+        for (int i = 0; i < nPoints; i++)
+        {
+            index.latitudes[i] = in.readDouble();
+            index.longitudes[i] = in.readDouble();
+        }
+        int nEntries = in.readInt();
+        index.cellKeys = new long[nEntries];
+        index.entryStarts = new int[nEntries];
+        index.entryEnds = new int[nEntries];
+        for (int e = 0; e < nEntries; e++)
+        {
+            index.cellKeys[e] = in.readLong();
+            index.entryStarts[e] = in.readInt();
+            index.entryEnds[e] = in.readInt();
+        }
+        return index;
+    }
+
+    /**
+     * Collects [start, end) point ranges packed into longs.
+     */
+    private static class RangeCollector
+    {
+        /**
+         * The packed ranges (start in the upper, end in the lower 32 bits)
+         */
+        private long[] ranges = new long[64];
+
+        /**
+         * The number of ranges
+         */
+        private int size = 0;
+
+        /**
+         * Adds a range.
+         *
+         * @param start the first point (inclusive)
+         * @param end   the last point (exclusive)
+         */
+        void add(int start, int end)
+        {
+            if (size == ranges.length)
+            {
+                ranges = Arrays.copyOf(ranges, 2 * size);
+            }
+            ranges[size++] = ((long) start << 32) | end;
+        }
+
+        /**
+         * Returns the ranges sorted by start.
+         *
+         * @return the sorted ranges
+         */
+        long[] sortedRanges()
+        {
+            long[] sorted = Arrays.copyOf(ranges, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
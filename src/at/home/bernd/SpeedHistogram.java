@@ -0,0 +1,220 @@
+package at.home.bernd;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of speeds with a fixed resolution (like an HDR histogram with linear buckets): the memory does not grow
+ * with the number of values, the percentiles are accurate to half the resolution, and histograms of different sessions
+ * are merged exactly by adding the counts. The buckets are allocated up to the highest speed added, at most up to the
+ * maximum speed: higher speeds (e.g. GPS glitches) are clamped to the maximum and counted in an overflow bucket.
+ */
+public class SpeedHistogram
+{
+    /**
+     * The default resolution in km/h
+     */
+    public static final double DEFAULT_RESOLUTION = 0.1;
+
+    /**
+     * The default maximum speed in km/h
+     */
+    public static final double DEFAULT_MAX_SPEED = 250;
+
+    /**
+     * The width of a bucket in km/h
+     */
+    private double resolution;
+
+    /**
+     * The maximum speed in km/h
+     */
+    private double maxSpeed;
+
+    /**
+     * The index of the overflow bucket (speeds above the maximum speed)
+     */
+    private int overflowBucket;
+
+    /**
+     * The counts per bucket
+     */
+    private long[] counts = new long[0];
+
+    /**
+     * The number of values
+     */
+    private long total = 0;
+
+    /**
+     * The sum of the values
+     */
+    private double sum = 0;
+
+    /**
+     * The highest value
+     */
+    private double max = Double.NaN;
+
+    /**
+     * Creates an empty histogram with the default resolution.
+     */
+    public SpeedHistogram()
+    {
+        this(DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Creates an empty histogram with the default maximum speed.
+     *
+     * @param resolution the width of a bucket in km/h
+     */
+    public SpeedHistogram(double resolution)
+    {
+        this(resolution, DEFAULT_MAX_SPEED);
+    }
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param resolution the width of a bucket in km/h
+     * @param maxSpeed   the maximum speed in km/h (higher speeds are clamped)
+     */
+    public SpeedHistogram(double resolution, double maxSpeed)
+    {
+        this.resolution = resolution;
+        this.maxSpeed = maxSpeed;
+        this.overflowBucket = (int) (maxSpeed / resolution) + 1;
+    }
+
+    /**
+     * Adds a speed. Negative speeds are counted as 0, speeds above the maximum speed as the maximum speed (in the
+     * overflow bucket), NaN and infinite speeds are ignored.
+     *
+     * @param speed the speed in km/h
+     */
+    public void add(double speed)
+    {
+        if (Double.isNaN(speed) || Double.isInfinite(speed))
+        {
+            return;
+        }
+        int bucket = speed > maxSpeed ? overflowBucket : (int) (Math.max(0, speed) / resolution);
+        speed = Math.min(maxSpeed, Math.max(0, speed));
+        if (bucket >= counts.length)
+        {
+            counts = Arrays.copyOf(counts, Math.max(bucket + 1, counts.length * 3 / 2));
+        }
+        counts[bucket]++;
+        total++;
+        sum += speed;
+        max = total == 1 ? speed : Math.max(max, speed);
+    }
+
+    /**
+     * Adds the counts of the given histogram.
+     *
+     * @param other the other histogram (with the same resolution)
+     */
+    public void merge(SpeedHistogram other)
+    {
+        if (resolution != other.resolution || maxSpeed != other.maxSpeed)
+        {
+            throw new IllegalArgumentException("Different resolutions or maximum speeds: " + resolution + ", "
+                                               + other.resolution + ", " + maxSpeed + ", " + other.maxSpeed);
+        }
+        if (other.total == 0)
+        {
+            return;
+        }
+        if (other.counts.length > counts.length)
+        {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++)
+        {
+            counts[i] += other.counts[i];
+        }
+        max = total == 0 ? other.max : Math.max(max, other.max);
+        total += other.total;
+        sum += other.sum;
+    }
+
+    /**
+     * Returns the given percentile (the middle of the bucket holding the value of the given rank).
+     *
+     * @param percentile the percentile (0 - 100)
+     * @return           the speed in km/h (NaN if the histogram is empty)
+     */
+    public double getPercentile(double percentile)
+    {
+        if (total == 0)
+        {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            count += counts[i];
+            if (count >= rank)
+            {
+                return Math.min(max, (i + 0.5) * resolution);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the resolution in km/h
+     */
+    public double getResolution()
+    {
+        return resolution;
+    }
+
+    /**
+     * @return the maximum speed in km/h
+     */
+    public double getMaxSpeed()
+    {
+        return maxSpeed;
+    }
+
+    /**
+     * @return the number of speeds above the maximum speed
+     */
+    public long getOverflowCount()
+    {
+        return counts.length > overflowBucket ? counts[overflowBucket] : 0;
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long getCount()
+    {
+        return total;
+    }
+
+    /**
+     * @return the mean speed in km/h (NaN if the histogram is empty)
+     */
+    public double getMean()
+    {
+        return total > 0 ? sum / total : Double.NaN;
+    }
+
+    /**
+     * @return the highest speed in km/h (NaN if the histogram is empty)
+     */
+    public double getMax()
+    {
+        return max;
+    }
+
+    public String toString()
+    {
+        return "SpeedHistogram [count=" + total + ", mean=" + getMean() + ", median=" + getPercentile(50) + ", max="
+               + max + "]";
+    }
+}
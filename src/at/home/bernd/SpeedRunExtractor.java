@@ -0,0 +1,228 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts runs of track points where the speed is greater than a given threshold.
+ *
+ * The speed column of a track segment is scanned once and the runs are returned as [start, end) index ranges,
+ * so no track points are copied. Optional predicates (minimum number of points, minimum duration, course stability)
+ * are applied to the candidate runs afterwards.
+ */
+public class SpeedRunExtractor
+{
+    /**
+     * The speed of all points of a run must be greater than this threshold (km/h)
+     */
+    private double speedThreshold;
+
+    /**
+     * The number of points of a run must be greater than this minimum
+     */
+    private int minPoints = 0;
+
+    /**
+     * The minimum duration of a run in seconds (0 = no restriction)
+     */
+    private double minDurationSeconds = 0;
+
+    /**
+     * The maximum deviation (in degrees) of the course of any point of a run from the course of its first point
+     * (a negative value disables the check)
+     */
+    private double maxCourseDeviation = -1;
+
+    /**
+     * Creates a new extractor for the given speed threshold.
+     *
+     * @param speedThreshold the speed of all points of a run must be greater than this threshold
+     */
+    public SpeedRunExtractor(double speedThreshold)
+    {
+        this.speedThreshold = speedThreshold;
+    }
+
+    /**
+     * Creates a new extractor for the given speed threshold and minimum number of points.
+     *
+     * @param speedThreshold the speed of all points of a run must be greater than this threshold
+     * @param minPoints      the number of points of a run must be greater than this minimum
+     */
+    public SpeedRunExtractor(double speedThreshold, int minPoints)
+    {
+        this.speedThreshold = speedThreshold;
+        this.minPoints = minPoints;
+    }
+
+    /**
+     * @return the speedThreshold
+     */
+    public double getSpeedThreshold()
+    {
+        return speedThreshold;
+    }
+
+    /**
+     * @param speedThreshold the speedThreshold to set
+     */
+    public void setSpeedThreshold(double speedThreshold)
+    {
+        this.speedThreshold = speedThreshold;
+    }
+
+    /**
+     * @return the minPoints
+     */
+    public int getMinPoints()
+    {
+        return minPoints;
+    }
+
+    /**
+     * @param minPoints the minPoints to set
+     */
+    public void setMinPoints(int minPoints)
+    {
+        this.minPoints = minPoints;
+    }
+
+    /**
+     * @return the minDurationSeconds
+     */
+    public double getMinDurationSeconds()
+    {
+        return minDurationSeconds;
+    }
+
+    /**
+     * @param minDurationSeconds the minDurationSeconds to set
+     */
+    public void setMinDurationSeconds(double minDurationSeconds)
+    {
+        this.minDurationSeconds = minDurationSeconds;
+    }
+
+    /**
+     * @return the maxCourseDeviation
+     */
+    public double getMaxCourseDeviation()
+    {
+        return maxCourseDeviation;
+    }
+
+    /**
+     * @param maxCourseDeviation the maxCourseDeviation to set (a negative value disables the check)
+     */
+    public void setMaxCourseDeviation(double maxCourseDeviation)
+    {
+        this.maxCourseDeviation = maxCourseDeviation;
+    }
+
+    /**
+     * Scans the given speed column once and returns all maximal runs where the speed is greater than the threshold.
+     * No predicates are applied.
+     *
+     * @param speeds         the speed column
+     * @param speedThreshold the speed threshold
+     * @return               the runs as [start, end) index ranges
+     */
+    public static List<IndexRange> findRuns(double[] speeds, double speedThreshold)
+    {
+        List<IndexRange> runs = new ArrayList<IndexRange>();
+        int n = speeds.length;
+        int i = 0;
+        while (i < n)
+        {
+            // skip points below (or at) the threshold
+            while (i < n && speeds[i] <= speedThreshold)
+            {
+                i++;
+            }
+            int start = i;
+            // consume points above the threshold
+            while (i < n && speeds[i] > speedThreshold)
+            {
+                i++;
+            }
+            if (i > start)
+            {
+                runs.add(new IndexRange(start, i));
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Extracts the matching runs of the given track segment.
+     *
+     * @param trackSegment the track segment
+     * @return             the matching runs as [start, end) index ranges
+     */
+    public List<IndexRange> extract(TrackSegment trackSegment)
+    {
+        double[] speeds = trackSegment.getSpeeds();
+        long[] times = minDurationSeconds > 0 ? trackSegment.getTimesInMillis() : null;
+        double[] courses = maxCourseDeviation >= 0 ? trackSegment.getCourses() : null;
+        return extract(speeds, times, courses);
+    }
+
+    /**
+     * Extracts the matching runs from the given columns.
+     *
+     * @param speeds  the speed column
+     * @param times   the time column in milliseconds (may be null if no duration check is needed)
+     * @param courses the course column (may be null if no course check is needed)
+     * @return        the matching runs as [start, end) index ranges
+     */
+    public List<IndexRange> extract(double[] speeds, long[] times, double[] courses)
+    {
+        List<IndexRange> runs = findRuns(speeds, speedThreshold);
+        List<IndexRange> result = new ArrayList<IndexRange>(runs.size());
+        for (IndexRange run : runs)
+        {
+            if (matches(run, times, courses))
+            {
+                result.add(run);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the given run matches all predicates.
+     *
+     * @param run     the run
+     * @param times   the time column in milliseconds
+     * @param courses the course column
+     * @return        true if the run matches
+     */
+    private boolean matches(IndexRange run, long[] times, double[] courses)
+    {
+        if (run.size() <= minPoints)
+        {
+            return false;
+        }
+        if (minDurationSeconds > 0)
+        {
+            double durationSeconds = (times[run.getEnd() - 1] - times[run.getStart()]) / 1000.0;
+            if (durationSeconds < minDurationSeconds)
+            {
+                return false;
+            }
+        }
+        if (maxCourseDeviation >= 0)
+        {
+            DataConversionUtility dcu = DataConversionUtility.getInstance();
+            double firstCourse = courses[run.getStart()];
+            for (int i = run.getStart() + 1; i < run.getEnd(); i++)
+            {
+                if (dcu.relativeCourse(firstCourse, courses[i]) > maxCourseDeviation)
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,269 @@
+package at.home.bernd;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates many speed thresholds and minimum run lengths in one pass over the track segments.
+ *
+ * The thresholds are sorted, so the runs of a higher threshold are always nested within the runs of a lower threshold.
+ * For every point only the "level" (the number of thresholds exceeded) is determined; a change of the level opens or
+ * closes the runs of the thresholds in between. The result is a matrix of segment counts and durations per
+ * (threshold, minimum number of points) combination, matching the semantics of
+ * {@link TrackSegment#extractByTopSpeed(double, int)}.
+ */
+public class SpeedThresholdSweep
+{
+    /**
+     * The speed thresholds (sorted ascending)
+     */
+    private final double[] thresholds;
+
+    /**
+     * The minimum numbers of points (sorted ascending)
+     */
+    private final int[] minPoints;
+
+    /**
+     * The number of runs per threshold, indexed by the number of minimum point values the run exceeds
+     */
+    private final long[][] runCounts;
+
+    /**
+     * The run durations (seconds) per threshold, indexed by the number of minimum point values the run exceeds
+     */
+    private final double[][] runDurations;
+
+    /**
+     * Creates a new sweep.
+     *
+     * @param thresholds the speed thresholds
+     * @param minPoints  the minimum numbers of points
+     */
+    public SpeedThresholdSweep(double[] thresholds, int[] minPoints)
+    {
+        this.thresholds = thresholds.clone();
+        Arrays.sort(this.thresholds);
+        this.minPoints = minPoints.clone();
+        Arrays.sort(this.minPoints);
+        this.runCounts = new long[this.thresholds.length][this.minPoints.length + 1];
+        this.runDurations = new double[this.thresholds.length][this.minPoints.length + 1];
+    }
+
+    /**
+     * @return the sorted thresholds
+     */
+    public double[] getThresholds()
+    {
+        return thresholds.clone();
+    }
+
+    /**
+     * @return the sorted minimum numbers of points
+     */
+    public int[] getMinPoints()
+    {
+        return minPoints.clone();
+    }
+
+    /**
+     * Adds all track segments of the given track list to the sweep.
+     *
+     * @param trackList the track list
+     */
+    public void addTrackList(List<Track> trackList)
+    {
+        for (Track track : trackList)
+        {
+            for (TrackSegment trackSegment : track.getTrackSegments())
+            {
+                addTrackSegment(trackSegment);
+            }
+        }
+    }
+
+    /**
+     * Adds the given track segment to the sweep.
+     *
+     * @param trackSegment the track segment
+     */
+    public void addTrackSegment(TrackSegment trackSegment)
+    {
+        add(trackSegment.getSpeeds(), trackSegment.getTimesInMillis());
+    }
+
+    /**
+     * Adds the given columns to the sweep.
+     *
+     * @param speeds the speed column
+     * @param times  the time column in milliseconds
+     */
+    public void add(double[] speeds, long[] times)
+    {
+        int nThresholds = thresholds.length;
+        int[] runStarts = new int[nThresholds];
+        int previousLevel = 0;
+        int n = speeds.length;
+        for (int i = 0; i < n; i++)
+        {
+            int level = level(speeds[i]);
+            if (level == previousLevel)
+            {
+                continue;
+            }
+            // close the runs of the thresholds no longer exceeded
+            for (int k = level; k < previousLevel; k++)
+            {
+                closeRun(k, runStarts[k], i, times);
+            }
+            // open runs for the newly exceeded thresholds
+            for (int k = previousLevel; k < level; k++)
+            {
+                runStarts[k] = i;
+            }
+            previousLevel = level;
+        }
+        for (int k = 0; k < previousLevel; k++)
+        {
+            closeRun(k, runStarts[k], n, times);
+        }
+    }
+
+    /**
+     * Returns the number of thresholds exceeded by the given speed.
+     *
+     * @param speed the speed
+     * @return      the level
+     */
+    private int level(double speed)
+    {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] < speed)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Records a closed run for the given threshold.
+     *
+     * @param k     the index of the threshold
+     * @param start the start index of the run (inclusive)
+     * @param end   the end index of the run (exclusive)
+     * @param times the time column in milliseconds
+     */
+    private void closeRun(int k, int start, int end, long[] times)
+    {
+        int size = end - start;
+        // number of minimum point values exceeded by this run
+        int c = 0;
+        while (c < minPoints.length && minPoints[c] < size)
+        {
+            c++;
+        }
+        runCounts[k][c]++;
+        runDurations[k][c] += (times[end - 1] - times[start]) / 1000.0;
+    }
+
+    /**
+     * Merges the results of the given sweep (with identical thresholds and minimum points) into this sweep.
+     *
+     * @param other the other sweep
+     */
+    public void merge(SpeedThresholdSweep other)
+    {
+        if (! Arrays.equals(thresholds, other.thresholds) || ! Arrays.equals(minPoints, other.minPoints))
+        {
+            throw new IllegalArgumentException("Sweeps with different parameters cannot be merged");
+        }
+        for (int k = 0; k < thresholds.length; k++)
+        {
+            for (int c = 0; c <= minPoints.length; c++)
+            {
+                runCounts[k][c] += other.runCounts[k][c];
+                runDurations[k][c] += other.runDurations[k][c];
+            }
+        }
+    }
+
+    /**
+     * Returns the matrix of segment counts, indexed by [threshold][minPoints] (in sorted order).
+     *
+     * @return the segment counts
+     */
+    public long[][] getSegmentCounts()
+    {
+        long[][] counts = new long[thresholds.length][minPoints.length];
+        for (int k = 0; k < thresholds.length; k++)
+        {
+            long sum = 0;
+            for (int j = minPoints.length - 1; j >= 0; j--)
+            {
+                sum += runCounts[k][j + 1];
+                counts[k][j] = sum;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the matrix of total segment durations in seconds, indexed by [threshold][minPoints] (in sorted order).
+     *
+     * @return the segment durations
+     */
+    public double[][] getSegmentDurations()
+    {
+        double[][] durations = new double[thresholds.length][minPoints.length];
+        for (int k = 0; k < thresholds.length; k++)
+        {
+            double sum = 0;
+            for (int j = minPoints.length - 1; j >= 0; j--)
+            {
+                sum += runDurations[k][j + 1];
+                durations[k][j] = sum;
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Returns a simple string representation of the segment counts and durations
+     */
+    public String toString()
+    {
+        long[][] counts = getSegmentCounts();
+        double[][] durations = getSegmentDurations();
+        StringBuilder sb = new StringBuilder();
+        sb.append("threshold / min. points:");
+        for (int m : minPoints)
+        {
+            sb.append("\t");
+            sb.append(m);
+        }
+        sb.append("\n");
+        for (int k = 0; k < thresholds.length; k++)
+        {
+            sb.append(thresholds[k]);
+            for (int j = 0; j < minPoints.length; j++)
+            {
+                sb.append("\t");
+                sb.append(counts[k][j]);
+                sb.append(" (");
+                sb.append(Math.round(durations[k][j]));
+                sb.append(" s)");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
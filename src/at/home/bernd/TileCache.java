@@ -0,0 +1,188 @@
+package at.home.bernd;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A two level cache of rendered map tiles (PNG images): a memory LRU cache limited by the total size of the tiles in
+ * front of an optional disk LRU cache. The key of a tile is its relative path (session/mode/zoom/x/y.png), so the disk
+ * cache directory mirrors the keys; its entries are indexed on creation (in order of their modification time) and
+ * survive restarts. Evicted files are deleted. Thread-safe.
+ */
+public class TileCache
+{
+    /**
+     * The default maximum size of the memory cache in bytes
+     */
+    public static final long DEFAULT_MEMORY_BYTES = 64L << 20;
+
+    /**
+     * The default maximum size of the disk cache in bytes
+     */
+    public static final long DEFAULT_DISK_BYTES = 1L << 30;
+
+    /**
+     * The cached tiles in memory
+     */
+    private LruCache<String, byte[]> memory;
+
+    /**
+     * The directory of the disk cache (null = memory only)
+     */
+    private Path directory;
+
+    /**
+     * The sizes of the tiles on disk
+     */
+    private LruCache<String, Long> disk;
+
+    /**
+     * Creates a memory only cache.
+     *
+     * @param maxMemoryBytes the maximum size of the memory cache in bytes
+     */
+    public TileCache(long maxMemoryBytes)
+    {
+        this.memory = new LruCache<String, byte[]>(Integer.MAX_VALUE, maxMemoryBytes, tile -> tile.length);
+    }
+
+    /**
+     * Creates a memory and disk cache.
+     *
+     * @param maxMemoryBytes the maximum size of the memory cache in bytes
+     * @param directory      the directory of the disk cache (created if necessary)
+     * @param maxDiskBytes   the maximum size of the disk cache in bytes
+     * @throws IOException   if the directory cannot be created or read
+     */
+    public TileCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException
+    {
+        this(maxMemoryBytes);
+        this.directory = directory;
+        this.disk = new LruCache<String, Long>(Integer.MAX_VALUE, maxDiskBytes, size -> size);
+        this.disk.setEvictionListener((key, size) -> delete(key));
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<Path>();
+        try (Stream<Path> stream = Files.walk(directory))
+        {
+            stream.filter(file -> file.toString().endsWith(".png")).forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(file -> file.toFile().lastModified()));
+        for (Path file : files)
+        {
+            disk.put(directory.relativize(file).toString().replace('\\', '/'), file.toFile().length());
+        }
+    }
+
+    /**
+     * Returns the tile of the given key from memory or from disk (the tile is then moved into memory).
+     *
+     * @param key the key
+     * @return    the tile or null if it is not cached
+     */
+    public byte[] get(String key)
+    {
+        byte[] tile = memory.get(key);
+        if (tile != null || disk == null || disk.get(key) == null)
+        {
+            return tile;
+        }
+        try
+        {
+            tile = Files.readAllBytes(directory.resolve(key));
+            memory.put(key, tile);
+            return tile;
+        }
+        catch (IOException ex)
+        {
+            // evicted in the meantime
+            disk.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the given tile in memory and on disk.
+     *
+     * @param key  the key
+     * @param tile the tile
+     */
+    public void put(String key, byte[] tile)
+    {
+        memory.put(key, tile);
+        if (disk == null)
+        {
+            return;
+        }
+        try
+        {
+            Path file = directory.resolve(key);
+            Files.createDirectories(file.getParent());
+            // write to a temporary file first, so readers never see a partial tile
+            Path temp = Files.createTempFile(file.getParent(), "tile", ".tmp");
+            Files.write(temp, tile);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            disk.put(key, (long) tile.length);
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Removes all tiles whose key starts with the given prefix (e.g. all tiles of a session).
+     *
+     * @param prefix the prefix of the keys
+     */
+    public void invalidate(String prefix)
+    {
+        memory.removeIf(key -> key.startsWith(prefix));
+        if (disk == null)
+        {
+            return;
+        }
+        List<String> keys = new ArrayList<String>();
+        disk.removeIf(key -> key.startsWith(prefix) && keys.add(key));
+        for (String key : keys)
+        {
+            delete(key);
+        }
+    }
+
+    /**
+     * Deletes the file of the given key.
+     */
+    private void delete(String key)
+    {
+        try
+        {
+            Files.deleteIfExists(directory.resolve(key));
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the memory cache
+     */
+    public LruCache<String, byte[]> getMemoryCache()
+    {
+        return memory;
+    }
+
+    /**
+     * @return the disk cache index (sizes of the tiles by key; null if memory only)
+     */
+    public LruCache<String, Long> getDiskCache()
+    {
+        return disk;
+    }
+}
@@ -0,0 +1,424 @@
+package at.home.bernd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A time index over the [start, end] time intervals of the track segments of many tracks (e.g. a whole archive of
+ * sessions).
+ *
+ * The intervals are sorted by start time. On top of that array an implicit binary tree keeps the maximum end time of
+ * every subtree, so an overlap query visits only the subtrees containing at least one overlapping interval:
+ * O(log n + k log n) in the worst case, close to O(log n + k) for the typical non-nested sessions. The index can be
+ * saved and loaded.
+ */
+public class TimeIndex
+{
+    /**
+     * The file format identifier
+     */
+    private static final int MAGIC = 0x57565449;
+
+    /**
+     * The file format version
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The start times (epoch milliseconds), sorted
+     */
+    private long[] starts;
+
+    /**
+     * The end times (epoch milliseconds)
+     */
+    private long[] ends;
+
+    /**
+     * The track index per interval
+     */
+    private int[] trackIndices;
+
+    /**
+     * The segment index (within its track) per interval
+     */
+    private int[] segmentIndices;
+
+    /**
+     * The number of points per interval
+     */
+    private int[] sizes;
+
+    /**
+     * The maximum end time per node of the implicit tree over the sorted intervals
+     */
+    private long[] maxEnds;
+
+    /**
+     * Use build() or load() instead.
+     */
+    private TimeIndex()
+    {
+    }
+
+    /**
+     * Builds a time index over all (non-empty) track segments of the given track list.
+     *
+     * @param trackList the track list
+     * @return          the time index
+     */
+    public static TimeIndex build(List<Track> trackList)
+    {
+        int n = 0;
+        for (Track track : trackList)
+        {
+            for (TrackSegment trackSegment : track.getTrackSegments())
+            {
+                if (trackSegment.size() > 0)
+                {
+                    n++;
+                }
+            }
+        }
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        int[] trackIndices = new int[n];
+        int[] segmentIndices = new int[n];
+        int[] sizes = new int[n];
+        int k = 0;
+        for (int t = 0; t < trackList.size(); t++)
+        {
+            List<TrackSegment> trackSegments = trackList.get(t).getTrackSegments();
+            for (int s = 0; s < trackSegments.size(); s++)
+            {
+                List<TrackPoint> trackPoints = trackSegments.get(s).getTrackPoints();
+                if (trackPoints.isEmpty())
+                {
+                    continue;
+                }
+                starts[k] = trackPoints.get(0).getTime();
+                ends[k] = trackPoints.get(trackPoints.size() - 1).getTime();
+                trackIndices[k] = t;
+                segmentIndices[k] = s;
+                sizes[k] = trackPoints.size();
+                k++;
+            }
+        }
+
+        // sort by start time
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+        TimeIndex index = new TimeIndex();
+        index.starts = new long[n];
+        index.ends = new long[n];
+        index.trackIndices = new int[n];
+        index.segmentIndices = new int[n];
+        index.sizes = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            int o = order[i];
+            index.starts[i] = starts[o];
+            index.ends[i] = ends[o];
+            index.trackIndices[i] = trackIndices[o];
+            index.segmentIndices[i] = segmentIndices[o];
+            index.sizes[i] = sizes[o];
+        }
+        index.buildTree();
+        return index;
+    }
+
+    /**
+     * Builds the implicit tree of maximum end times.
+     */
+    private void buildTree()
+    {
+        int n = starts.length;
+        maxEnds = new long[Math.max(1, 4 * n)];
+        if (n > 0)
+        {
+            buildTree(1, 0, n - 1);
+        }
+    }
+
+    /**
+     * Builds the subtree of the given node.
+     *
+     * @param node  the node
+     * @param first the first interval of the node
+     * @param last  the last interval of the node
+     * @return      the maximum end time of the subtree
+     */
+    private long buildTree(int node, int first, int last)
+    {
+        if (first == last)
+        {
+            maxEnds[node] = ends[first];
+        }
+        else
+        {
+            int mid = (first + last) >>> 1;
+            maxEnds[node] = Math.max(buildTree(2 * node, first, mid), buildTree(2 * node + 1, mid + 1, last));
+        }
+        return maxEnds[node];
+    }
+
+    /**
+     * Returns the number of indexed intervals.
+     *
+     * @return the number of intervals
+     */
+    public int size()
+    {
+        return starts.length;
+    }
+
+    /**
+     * Returns all track segments overlapping the given time window.
+     *
+     * @param from the "from" timestamp
+     * @param to   the "to" timestamp
+     * @return     the overlapping segments (sorted by start time)
+     */
+    public List<SegmentHit> query(Date from, Date to)
+    {
+        return query(from.getTime(), to.getTime());
+    }
+
+    /**
+     * Returns all track segments overlapping the given time window.
+     *
+     * @param from the "from" time in epoch milliseconds
+     * @param to   the "to" time in epoch milliseconds
+     * @return     the overlapping segments (sorted by start time)
+     */
+    public List<SegmentHit> query(long from, long to)
+    {
+        List<SegmentHit> hits = new ArrayList<SegmentHit>();
+        // only the intervals starting at or before "to" can overlap
+        int last = upperBound(to) - 1;
+        if (last >= 0)
+        {
+            query(1, 0, starts.length - 1, last, from, hits);
+        }
+        return hits;
+    }
+
+    /**
+     * Collects the overlapping intervals of the given subtree.
+     *
+     * @param node  the node
+     * @param first the first interval of the node
+     * @param last  the last interval of the node
+     * @param limit the last interval starting at or before the end of the query window
+     * @param from  the start of the query window
+     * @param hits  the collected hits
+     */
+    private void query(int node, int first, int last, int limit, long from, List<SegmentHit> hits)
+    {
+        if (first > limit || maxEnds[node] < from)
+        {
+            return;
+        }
+        if (first == last)
+        {
+            hits.add(new SegmentHit(trackIndices[first], segmentIndices[first], new IndexRange(0, sizes[first])));
+            return;
+        }
+        int mid = (first + last) >>> 1;
+        query(2 * node, first, mid, limit, from, hits);
+        query(2 * node + 1, mid + 1, last, limit, from, hits);
+    }
+
+    /**
+     * Returns the index of the first interval starting after the given time.
+     *
+     * @param time the time
+     * @return     the index
+     */
+    private int upperBound(long time)
+    {
+        int low = 0;
+        int high = starts.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= time)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Joins all indexed track segments with the given (sorted) wind data: for every segment the range of wind data
+     * points covering its time span (including one point before and after, as needed for the interpolation) is
+     * determined. Both sides are sorted by time, so the whole join is one merge sweep.
+     *
+     * @param windData the wind data sorted by time
+     * @return         the wind data index ranges per segment (null if the segment is not covered by the wind data)
+     */
+    public IndexRange[] joinWindData(List<WindDataPoint> windData)
+    {
+        int nWindDataPoints = windData.size();
+        long[] windTimes = new long[nWindDataPoints];
+        for (int i = 0; i < nWindDataPoints; i++)
+        {
+            windTimes[i] = windData.get(i).getTime();
+        }
+        IndexRange[] ranges = new IndexRange[starts.length];
+        int first = 0;
+        for (int k = 0; k < starts.length; k++)
+        {
+            // starts are sorted, so the first wind data point never moves backwards
+            while (first + 1 < nWindDataPoints && windTimes[first + 1] <= starts[k])
+            {
+                first++;
+            }
+            int last = first;
+            while (last < nWindDataPoints - 1 && windTimes[last] < ends[k])
+            {
+                last++;
+            }
+            if (nWindDataPoints > 0 && windTimes[first] <= starts[k] && windTimes[last] >= ends[k])
+            {
+                ranges[k] = new IndexRange(first, last + 1);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Re-enriches all indexed track segments of the given track list with the given wind data (batch version of
+     * {@link TrackDataManager#addWindDataToTrackList(List, List)}).
+     *
+     * @param trackList the track list the index was built from
+     * @param windData  the wind data sorted by time
+     * @return          the number of enriched segments
+     */
+    public int enrich(List<Track> trackList, List<WindDataPoint> windData)
+    {
+        WeatherDataManager weatherDataManager = new WeatherDataManager();
+        IndexRange[] ranges = joinWindData(windData);
+        int nEnriched = 0;
+        for (int k = 0; k < ranges.length; k++)
+        {
+            // the spline interpolation needs at least three points
+            if (ranges[k] == null || ranges[k].size() < 3)
+            {
+                continue;
+            }
+            TrackSegment trackSegment = trackList.get(trackIndices[k]).getTrackSegments().get(segmentIndices[k]);
+            List<WindDataPoint> segmentWindData = windData.subList(ranges[k].getStart(), ranges[k].getEnd());
+            if (weatherDataManager.addInterpolatedWindData(trackSegment, segmentWindData))
+            {
+                nEnriched++;
+            }
+        }
+        return nEnriched;
+    }
+
+    /**
+     * Saves this index to the given file.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path path) throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream(path))
+        {
+            save(out);
+        }
+    }
+
+    /**
+     * Saves this index to the given stream.
+     *
+     * @param outputStream the stream
+     * @throws IOException if the stream cannot be written
+     */
+    public void save(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(starts.length);
+        for (int k = 0; k < starts.length; k++)
+        {
+            out.writeLong(starts[k]);
+            out.writeLong(ends[k]);
+            out.writeInt(trackIndices[k]);
+            out.writeInt(segmentIndices[k]);
+            out.writeInt(sizes[k]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Loads an index from the given file.
+     *
+     * @param path the file
+     * @return     the index
+     * @throws IOException if the file cannot be read or has an invalid format
+     */
+    public static TimeIndex load(Path path) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(path))
+        {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads an index from the given stream.
+     *
+     * @param inputStream the stream
+     * @return            the index
+     * @throws IOException if the stream cannot be read or has an invalid format
+     */
+    public static TimeIndex load(InputStream inputStream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, 1 << 16));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            throw new IOException("Not a time index file (or unsupported version)");
+        }
+        int n = in.readInt();
+        TimeIndex index = new TimeIndex();
+        index.starts = new long[n];
+        index.ends = new long[n];
+        index.trackIndices = new int[n];
+        index.segmentIndices = new int[n];
+        index.sizes = new int[n];
+        for (int k = 0; k < n; k++)
+        {
+            index.starts[k] = in.readLong();
+            index.ends[k] = in.readLong();
+            index.trackIndices[k] = in.readInt();
+            index.segmentIndices[k] = in.readInt();
+            index.sizes[k] = in.readInt();
+        }
+        index.buildTree();
+        return index;
+    }
+}
@@ -0,0 +1,65 @@
+package at.home.bernd;
+
+import java.time.LocalDate;
+
+/**
+ * Formats timestamps in ISO 8601 format (UTC with milliseconds, e.g. 2020-06-19T10:17:43.000Z) without allocating
+ * objects per timestamp: the date part is cached per day, the time part is computed arithmetically. Not thread-safe.
+ */
+public class TimestampFormatter
+{
+    /**
+     * Milliseconds per day
+     */
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /**
+     * The epoch day of the cached date prefix
+     */
+    private long cachedDay = Long.MIN_VALUE;
+
+    /**
+     * The cached date prefix ("yyyy-MM-ddT")
+     */
+    private String cachedDatePrefix;
+
+    /**
+     * Appends the given timestamp to the given string builder.
+     *
+     * @param sb     the string builder
+     * @param millis the timestamp in epoch milliseconds
+     */
+    public void append(StringBuilder sb, long millis)
+    {
+        long day = Math.floorDiv(millis, MILLIS_PER_DAY);
+        if (day != cachedDay)
+        {
+            cachedDay = day;
+            cachedDatePrefix = LocalDate.ofEpochDay(day).toString() + "T";
+        }
+        sb.append(cachedDatePrefix);
+        int millisOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+        appendTwoDigits(sb, millisOfDay / 3600000);
+        sb.append(':');
+        appendTwoDigits(sb, millisOfDay / 60000 % 60);
+        sb.append(':');
+        appendTwoDigits(sb, millisOfDay / 1000 % 60);
+        sb.append('.');
+        int millisOfSecond = millisOfDay % 1000;
+        sb.append((char) ('0' + millisOfSecond / 100));
+        appendTwoDigits(sb, millisOfSecond % 100);
+        sb.append('Z');
+    }
+
+    /**
+     * Appends a two digit number (with leading zero).
+     *
+     * @param sb    the string builder
+     * @param value the value (0 - 99)
+     */
+    private void appendTwoDigits(StringBuilder sb, int value)
+    {
+        sb.append((char) ('0' + value / 10));
+        sb.append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,488 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import at.home.bernd.TopSpeedStatistics.TOP_SPEED_TYPE;
+
+/**
+ * Computes the speed sailing / windsurfing ranking values of track segments: the best average speed over fixed time
+ * windows (2 s, 10 s, 5 x 10 s), over fixed distances (100 m, 500 m, 1 nautical mile) and the alpha 500.
+ *
+ * The cumulative distance (haversine) is computed once per segment. All windows are then evaluated in a single pass
+ * over the start points, each with its own end pointer that only ever moves forward (two-pointer technique), so the
+ * cost is O(n) for the time and distance windows. The alpha 500 is found in the same way: a single pass over the end
+ * points with monotone pointers for the 500 m window; the start candidates of the window are kept in deques per cell of
+ * a 50 m grid, so only the points near the end point are checked instead of the whole window.
+ */
+public class TopSpeedAnalyzer
+{
+    /**
+     * The durations of the time windows in seconds
+     */
+    private static final double[] TIME_WINDOWS = { 2, 10 };
+
+    /**
+     * The types of the time windows
+     */
+    private static final TOP_SPEED_TYPE[] TIME_WINDOW_TYPES = { TOP_SPEED_TYPE.best2s, TOP_SPEED_TYPE.best10s };
+
+    /**
+     * The lengths of the distance windows in meters
+     */
+    private static final double[] DISTANCE_WINDOWS = { 100, 500, 1852 };
+
+    /**
+     * The types of the distance windows
+     */
+    private static final TOP_SPEED_TYPE[] DISTANCE_WINDOW_TYPES = { TOP_SPEED_TYPE.best100m,
+                                                                     TOP_SPEED_TYPE.best500m,
+                                                                     TOP_SPEED_TYPE.bestNauticalMile };
+
+    /**
+     * The maximum distance travelled of an alpha run in meters
+     */
+    public static final double ALPHA_DISTANCE = 500;
+
+    /**
+     * The maximum distance between the start and the end point of an alpha run in meters
+     */
+    public static final double ALPHA_RADIUS = 50;
+
+    /**
+     * Analyzes the given track list.
+     *
+     * @param trackList the track list
+     * @return          the combined statistics of all track segments
+     */
+    public TopSpeedStatistics analyze(List<Track> trackList)
+    {
+        TopSpeedStatistics statistics = new TopSpeedStatistics();
+        for (Track track : trackList)
+        {
+            for (TrackSegment trackSegment : track.getTrackSegments())
+            {
+                statistics.merge(analyze(trackSegment));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Analyzes the given track segment.
+     *
+     * @param trackSegment the track segment
+     * @return             the statistics of the track segment
+     */
+    public TopSpeedStatistics analyze(TrackSegment trackSegment)
+    {
+        TopSpeedStatistics statistics = new TopSpeedStatistics();
+        int n = trackSegment.size();
+        if (n < 2)
+        {
+            return statistics;
+        }
+        double[] times = toSeconds(trackSegment.getTimesInMillis());
+        double[] latitudes = trackSegment.getLatitudes();
+        double[] longitudes = trackSegment.getLongitudes();
+        double[] distances = cumulativeDistances(latitudes, longitudes);
+
+        int nTimeWindows = TIME_WINDOWS.length;
+        int nDistanceWindows = DISTANCE_WINDOWS.length;
+        int[] timeEnds = new int[nTimeWindows];
+        int[] distanceEnds = new int[nDistanceWindows];
+        double[] bestTimeSpeeds = new double[nTimeWindows];
+        int[] bestTimeStarts = new int[nTimeWindows];
+        double[] bestDistanceSpeeds = new double[nDistanceWindows];
+        int[] bestDistanceStarts = new int[nDistanceWindows];
+        int[] bestTimeEnds = new int[nTimeWindows];
+        int[] bestDistanceEnds = new int[nDistanceWindows];
+        // 10 s speed per start point (for the 5 x 10 s result); -1 = no complete window
+        double[] speeds10s = new double[n];
+        int[] ends10s = new int[n];
+        int index10s = indexOf(TIME_WINDOWS, 10);
+
+        for (int i = 0; i < n; i++)
+        {
+            for (int w = 0; w < nTimeWindows; w++)
+            {
+                int j = Math.max(timeEnds[w], i + 1);
+                while (j < n && times[j] - times[i] < TIME_WINDOWS[w])
+                {
+                    j++;
+                }
+                timeEnds[w] = j;
+                double speed = -1;
+                if (j < n)
+                {
+                    speed = averageSpeed(distances, times, i, j);
+                    if (speed > bestTimeSpeeds[w])
+                    {
+                        bestTimeSpeeds[w] = speed;
+                        bestTimeStarts[w] = i;
+                        bestTimeEnds[w] = j;
+                    }
+                }
+                if (w == index10s)
+                {
+                    speeds10s[i] = speed;
+                    ends10s[i] = j;
+                }
+            }
+            for (int w = 0; w < nDistanceWindows; w++)
+            {
+                int j = Math.max(distanceEnds[w], i + 1);
+                while (j < n && distances[j] - distances[i] < DISTANCE_WINDOWS[w])
+                {
+                    j++;
+                }
+                distanceEnds[w] = j;
+                if (j < n)
+                {
+                    double speed = averageSpeed(distances, times, i, j);
+                    if (speed > bestDistanceSpeeds[w])
+                    {
+                        bestDistanceSpeeds[w] = speed;
+                        bestDistanceStarts[w] = i;
+                        bestDistanceEnds[w] = j;
+                    }
+                }
+            }
+        }
+
+        for (int w = 0; w < nTimeWindows; w++)
+        {
+            if (bestTimeSpeeds[w] > 0)
+            {
+                statistics.offer(TIME_WINDOW_TYPES[w],
+                                 createResult(trackSegment, distances, times, bestTimeStarts[w], bestTimeEnds[w]));
+            }
+        }
+        for (int w = 0; w < nDistanceWindows; w++)
+        {
+            if (bestDistanceSpeeds[w] > 0)
+            {
+                statistics.offer(DISTANCE_WINDOW_TYPES[w],
+                                 createResult(trackSegment, distances, times, bestDistanceStarts[w], bestDistanceEnds[w]));
+            }
+        }
+        statistics.setFiveBest10s(selectBestWindows(trackSegment, distances, times, speeds10s, ends10s));
+        TopSpeedResult alpha = findAlpha(trackSegment, distances, times, latitudes, longitudes);
+        if (alpha != null)
+        {
+            statistics.offer(TOP_SPEED_TYPE.alpha500, alpha);
+        }
+        return statistics;
+    }
+
+    /**
+     * Computes the cumulative distance along the given positions.
+     *
+     * @param latitudes  the latitudes
+     * @param longitudes the longitudes
+     * @return           the cumulative distance in meters for each point
+     */
+    public double[] cumulativeDistances(double[] latitudes, double[] longitudes)
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        int n = latitudes.length;
+        double[] distances = new double[n];
+        for (int i = 1; i < n; i++)
+        {
+            distances[i] = distances[i - 1] + dcu.distance(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+        return distances;
+    }
+
+    /**
+     * Converts the given times from milliseconds to seconds.
+     *
+     * @param timesInMillis the times in milliseconds
+     * @return              the times in seconds
+     */
+    private double[] toSeconds(long[] timesInMillis)
+    {
+        double[] seconds = new double[timesInMillis.length];
+        long t0 = timesInMillis.length > 0 ? timesInMillis[0] : 0;
+        for (int i = 0; i < timesInMillis.length; i++)
+        {
+            seconds[i] = (timesInMillis[i] - t0) / 1000.0;
+        }
+        return seconds;
+    }
+
+    /**
+     * Returns the index of the given value in the given array.
+     *
+     * @param values the array
+     * @param value  the value
+     * @return       the index or -1 if not found
+     */
+    private int indexOf(double[] values, double value)
+    {
+        for (int i = 0; i < values.length; i++)
+        {
+            if (values[i] == value)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the average speed between the given points.
+     *
+     * @param distances the cumulative distances in meters
+     * @param times     the times in seconds
+     * @param i         the first point
+     * @param j         the last point
+     * @return          the average speed in km/h
+     */
+    private double averageSpeed(double[] distances, double[] times, int i, int j)
+    {
+        double duration = times[j] - times[i];
+        if (duration <= 0)
+        {
+            return 0;
+        }
+        return (distances[j] - distances[i]) / duration * 3.6;
+    }
+
+    /**
+     * Selects the five best non-overlapping 10 second windows.
+     *
+     * @param trackSegment the track segment
+     * @param distances    the cumulative distances
+     * @param times        the times in seconds
+     * @param speeds       the 10 s speed per start point (-1 = no complete window)
+     * @param ends         the end point per start point
+     * @return             the selected windows (sorted by speed, descending)
+     */
+    private List<TopSpeedResult> selectBestWindows(TrackSegment trackSegment,
+                                                   double[] distances,
+                                                   double[] times,
+                                                   double[] speeds,
+                                                   int[] ends)
+    {
+        List<Integer> starts = new ArrayList<Integer>();
+        for (int i = 0; i < speeds.length; i++)
+        {
+            if (speeds[i] > 0)
+            {
+                starts.add(i);
+            }
+        }
+        starts.sort((a, b) -> Double.compare(speeds[b], speeds[a]));
+        List<TopSpeedResult> selected = new ArrayList<TopSpeedResult>();
+        for (int start : starts)
+        {
+            TopSpeedResult candidate = createResult(trackSegment, distances, times, start, ends[start]);
+            boolean overlaps = false;
+            for (TopSpeedResult result : selected)
+            {
+                if (result.overlaps(candidate))
+                {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (! overlaps)
+            {
+                selected.add(candidate);
+                if (selected.size() == TopSpeedStatistics.N_BEST_10S)
+                {
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Finds the best alpha 500: a run of at most 500 m travelled whose end point is within 50 m of its start point
+     * (i.e. a run including a jibe). The run must be at least twice the radius (100 m) long: a run of that length
+     * ending within 50 m of its start cannot be straight, so it contains the turn, while shorter windows would just be
+     * the best few seconds of a straight leg.
+     * <p>
+     * The end point j moves forward once; the start candidates are the points i with 100 m &lt;= d(i, j) &lt;= 500 m
+     * travelled, a window whose bounds only move forward. Every candidate is queued in its cell of a grid of cells
+     * slightly wider than 50 m when it enters the window and dequeued when it leaves it (both in index order, so each
+     * cell queue is monotone). For an end point only the queues of its cell and the 8 neighbouring cells are checked,
+     * which contain all points within 50 m. The cost is O(n) plus the number of candidates near the end points
+     * (points of the other leg of a jibe).
+     *
+     * @param trackSegment the track segment
+     * @param distances    the cumulative distances
+     * @param times        the times in seconds
+     * @param latitudes    the latitudes
+     * @param longitudes   the longitudes
+     * @return             the best alpha or null if there is none
+     */
+    private TopSpeedResult findAlpha(TrackSegment trackSegment,
+                                     double[] distances,
+                                     double[] times,
+                                     double[] latitudes,
+                                     double[] longitudes)
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        int n = distances.length;
+        if (n < 2)
+        {
+            return null;
+        }
+        // grid cells on a local plane, scaled at the latitude farthest from the equator so that plane distances never
+        // exceed the great circle distances; cells slightly wider than the radius (rounding) then put all points within
+        // the radius into adjacent cells
+        double maxLatitude = 0;
+        for (double latitude : latitudes)
+        {
+            maxLatitude = Math.max(maxLatitude, Math.abs(latitude));
+        }
+        double cellSize = 1.001 * ALPHA_RADIUS;
+        double metersPerDegree = Math.toRadians(DataConversionUtility.EARTH_RADIUS);
+        double kx = metersPerDegree * Math.cos(Math.toRadians(maxLatitude)) / cellSize;
+        double ky = metersPerDegree / cellSize;
+        int[] cellX = new int[n];
+        int[] cellY = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            cellX[i] = (int) Math.floor((longitudes[i] - longitudes[0]) * kx);
+            cellY[i] = (int) Math.floor((latitudes[i] - latitudes[0]) * ky);
+        }
+        Map<Long, IndexQueue> cells = new HashMap<Long, IndexQueue>();
+        double bestSpeed = 0;
+        int bestStart = -1;
+        int bestEnd = -1;
+        // the candidates are [first, next)
+        int first = 0;
+        int next = 0;
+        for (int j = 1; j < n; j++)
+        {
+            while (next < j && distances[j] - distances[next] >= 2 * ALPHA_RADIUS)
+            {
+                cells.computeIfAbsent(cellKey(cellX[next], cellY[next]), key -> new IndexQueue()).add(next);
+                next++;
+            }
+            while (first < next && distances[j] - distances[first] > ALPHA_DISTANCE)
+            {
+                cells.get(cellKey(cellX[first], cellY[first])).removeFirst();
+                first++;
+            }
+            for (int dx = -1; dx <= 1; dx++)
+            {
+                for (int dy = -1; dy <= 1; dy++)
+                {
+                    IndexQueue queue = cells.get(cellKey(cellX[j] + dx, cellY[j] + dy));
+                    if (queue == null)
+                    {
+                        continue;
+                    }
+                    for (int k = queue.head; k < queue.tail; k++)
+                    {
+                        int i = queue.items[k];
+                        double speed = averageSpeed(distances, times, i, j);
+                        if (speed > bestSpeed &&
+                            dcu.distance(latitudes[i], longitudes[i], latitudes[j], longitudes[j]) <= ALPHA_RADIUS)
+                        {
+                            bestSpeed = speed;
+                            bestStart = i;
+                            bestEnd = j;
+                        }
+                    }
+                }
+            }
+        }
+        if (bestStart < 0)
+        {
+            return null;
+        }
+        return createResult(trackSegment, distances, times, bestStart, bestEnd);
+    }
+
+    /**
+     * Returns the key of a grid cell.
+     */
+    private static long cellKey(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * A queue of point indices (added and removed in ascending order).
+     */
+    private static class IndexQueue
+    {
+        int[] items = new int[16];
+        int head;
+        int tail;
+
+        void add(int index)
+        {
+            if (tail == items.length)
+            {
+                if (head > 0)
+                {
+                    System.arraycopy(items, head, items, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                }
+                if (tail == items.length)
+                {
+                    items = Arrays.copyOf(items, items.length * 2);
+                }
+            }
+            items[tail++] = index;
+        }
+
+        void removeFirst()
+        {
+            head++;
+        }
+    }
+
+    /**
+     * Creates a result for the window between the given points including the wind conditions.
+     *
+     * @param trackSegment the track segment
+     * @param distances    the cumulative distances
+     * @param times        the times in seconds
+     * @param i            the first point
+     * @param j            the last point
+     * @return             the result
+     */
+    private TopSpeedResult createResult(TrackSegment trackSegment, double[] distances, double[] times, int i, int j)
+    {
+        TopSpeedResult result = new TopSpeedResult();
+        result.setTrackSegment(trackSegment);
+        result.setRange(new IndexRange(i, j + 1));
+        result.setDistance(distances[j] - distances[i]);
+        result.setDuration(times[j] - times[i]);
+        result.setSpeed(averageSpeed(distances, times, i, j));
+        if (trackSegment.isWindInfoAvailable())
+        {
+            List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+            double windSpeedSum = 0;
+            double maxWindSpeed = 0;
+            double sinSum = 0;
+            double cosSum = 0;
+            for (int k = i; k <= j; k++)
+            {
+                TrackPoint trackPoint = trackPoints.get(k);
+                windSpeedSum += trackPoint.getWindSpeed();
+                maxWindSpeed = Math.max(maxWindSpeed, trackPoint.getMaxWindSpeed());
+                double direction = Math.toRadians(trackPoint.getWindDirection());
+                sinSum += Math.sin(direction);
+                cosSum += Math.cos(direction);
+            }
+            result.setWindSpeed(windSpeedSum / (j - i + 1));
+            result.setMaxWindSpeed(maxWindSpeed);
+            double direction = Math.toDegrees(Math.atan2(sinSum, cosSum));
+            result.setWindDirection(direction < 0 ? direction + 360 : direction);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,215 @@
+package at.home.bernd;
+
+/**
+ * The best result of a top speed window (e.g. best 2 s, best 500 m) within a track segment.
+ */
+public class TopSpeedResult
+{
+    /**
+     * The track segment containing the window
+     */
+    private TrackSegment trackSegment;
+
+    /**
+     * The [start, end) index range of the points of the window
+     */
+    private IndexRange range;
+
+    /**
+     * The average speed in km/h
+     */
+    private double speed;
+
+    /**
+     * The distance covered in meters
+     */
+    private double distance;
+
+    /**
+     * The duration in seconds
+     */
+    private double duration;
+
+    /**
+     * The average wind speed in km/h during the window (NaN if no wind info is available)
+     */
+    private double windSpeed = Double.NaN;
+
+    /**
+     * The maximum wind speed in km/h during the window (NaN if no wind info is available)
+     */
+    private double maxWindSpeed = Double.NaN;
+
+    /**
+     * The average wind direction in degrees during the window (NaN if no wind info is available)
+     */
+    private double windDirection = Double.NaN;
+
+    /**
+     * @return the trackSegment
+     */
+    public TrackSegment getTrackSegment()
+    {
+        return trackSegment;
+    }
+
+    /**
+     * @param trackSegment the trackSegment to set
+     */
+    public void setTrackSegment(TrackSegment trackSegment)
+    {
+        this.trackSegment = trackSegment;
+    }
+
+    /**
+     * @return the range
+     */
+    public IndexRange getRange()
+    {
+        return range;
+    }
+
+    /**
+     * @param range the range to set
+     */
+    public void setRange(IndexRange range)
+    {
+        this.range = range;
+    }
+
+    /**
+     * @return the speed
+     */
+    public double getSpeed()
+    {
+        return speed;
+    }
+
+    /**
+     * @param speed the speed to set
+     */
+    public void setSpeed(double speed)
+    {
+        this.speed = speed;
+    }
+
+    /**
+     * @return the distance
+     */
+    public double getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * @param distance the distance to set
+     */
+    public void setDistance(double distance)
+    {
+        this.distance = distance;
+    }
+
+    /**
+     * @return the duration
+     */
+    public double getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * @param duration the duration to set
+     */
+    public void setDuration(double duration)
+    {
+        this.duration = duration;
+    }
+
+    /**
+     * @return the windSpeed
+     */
+    public double getWindSpeed()
+    {
+        return windSpeed;
+    }
+
+    /**
+     * @param windSpeed the windSpeed to set
+     */
+    public void setWindSpeed(double windSpeed)
+    {
+        this.windSpeed = windSpeed;
+    }
+
+    /**
+     * @return the maxWindSpeed
+     */
+    public double getMaxWindSpeed()
+    {
+        return maxWindSpeed;
+    }
+
+    /**
+     * @param maxWindSpeed the maxWindSpeed to set
+     */
+    public void setMaxWindSpeed(double maxWindSpeed)
+    {
+        this.maxWindSpeed = maxWindSpeed;
+    }
+
+    /**
+     * @return the windDirection
+     */
+    public double getWindDirection()
+    {
+        return windDirection;
+    }
+
+    /**
+     * @param windDirection the windDirection to set
+     */
+    public void setWindDirection(double windDirection)
+    {
+        this.windDirection = windDirection;
+    }
+
+    /**
+     * Checks if the window of this result overlaps the window of the given result.
+     *
+     * @param other the other result
+     * @return      true if both windows are in the same track segment and overlap
+     */
+    public boolean overlaps(TopSpeedResult other)
+    {
+        return this.trackSegment == other.trackSegment &&
+               this.range.getStart() < other.range.getEnd() &&
+               other.range.getStart() < this.range.getEnd();
+    }
+
+    /**
+     * Returns a simple string representation of this result
+     */
+    public String toString()
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        sb.append(dcu.roundUpToNDecimalPlaces(this.speed, 2));
+        sb.append(" km/h (");
+        sb.append(dcu.roundUpToNDecimalPlaces(this.distance, 1));
+        sb.append(" m in ");
+        sb.append(dcu.roundUpToNDecimalPlaces(this.duration, 1));
+        sb.append(" s) ");
+        sb.append(this.range);
+        if (! Double.isNaN(this.windSpeed))
+        {
+            sb.append(" / wind speed: ");
+            sb.append(dcu.roundUpToNDecimalPlaces(this.windSpeed, 2));
+            sb.append(" - ");
+            sb.append(dcu.roundUpToNDecimalPlaces(this.maxWindSpeed, 2));
+            sb.append(" [");
+            sb.append(dcu.roundUpToNDecimalPlaces(this.windDirection, 2));
+            sb.append("]");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The top speed results (best time and distance windows) of one or more track segments.
+ */
+public class TopSpeedStatistics
+{
+    /**
+     * The type of top speed window
+     */
+    public static enum TOP_SPEED_TYPE
+    {
+        best2s,
+        best10s,
+        best100m,
+        best500m,
+        bestNauticalMile,
+        alpha500
+    };
+
+    /**
+     * The number of 10 second windows of the 5 x 10 s result
+     */
+    public static final int N_BEST_10S = 5;
+
+    /**
+     * The best result per type
+     */
+    private Map<TOP_SPEED_TYPE, TopSpeedResult> bestResults = new EnumMap<TOP_SPEED_TYPE, TopSpeedResult>(TOP_SPEED_TYPE.class);
+
+    /**
+     * The five best non-overlapping 10 second windows (sorted by speed, descending)
+     */
+    private List<TopSpeedResult> fiveBest10s = new ArrayList<TopSpeedResult>();
+
+    /**
+     * Returns the best result of the given type.
+     *
+     * @param type the type of window
+     * @return     the best result or null if there is none (e.g. the track is too short)
+     */
+    public TopSpeedResult getBest(TOP_SPEED_TYPE type)
+    {
+        return bestResults.get(type);
+    }
+
+    /**
+     * Offers a result: it replaces the current best result of the given type if it is faster.
+     *
+     * @param type   the type of window
+     * @param result the result
+     */
+    public void offer(TOP_SPEED_TYPE type, TopSpeedResult result)
+    {
+        TopSpeedResult best = bestResults.get(type);
+        if (best == null || result.getSpeed() > best.getSpeed())
+        {
+            bestResults.put(type, result);
+        }
+    }
+
+    /**
+     * @return the five best non-overlapping 10 second windows
+     */
+    public List<TopSpeedResult> getFiveBest10s()
+    {
+        return fiveBest10s;
+    }
+
+    /**
+     * @param fiveBest10s the fiveBest10s to set
+     */
+    public void setFiveBest10s(List<TopSpeedResult> fiveBest10s)
+    {
+        this.fiveBest10s = fiveBest10s;
+    }
+
+    /**
+     * Returns the average speed of the five best 10 second windows.
+     *
+     * @return the average speed in km/h (NaN if there are less than five windows)
+     */
+    public double getFiveBest10sAverage()
+    {
+        if (fiveBest10s.size() < N_BEST_10S)
+        {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (TopSpeedResult result : fiveBest10s)
+        {
+            sum += result.getSpeed();
+        }
+        return sum / fiveBest10s.size();
+    }
+
+    /**
+     * Merges the given statistics (e.g. of another track segment) into this statistics.
+     *
+     * @param other the other statistics
+     */
+    public void merge(TopSpeedStatistics other)
+    {
+        for (Map.Entry<TOP_SPEED_TYPE, TopSpeedResult> entry : other.bestResults.entrySet())
+        {
+            offer(entry.getKey(), entry.getValue());
+        }
+        List<TopSpeedResult> candidates = new ArrayList<TopSpeedResult>(this.fiveBest10s);
+        candidates.addAll(other.fiveBest10s);
+        candidates.sort((a, b) -> Double.compare(b.getSpeed(), a.getSpeed()));
+        List<TopSpeedResult> merged = new ArrayList<TopSpeedResult>();
+        for (TopSpeedResult candidate : candidates)
+        {
+            if (merged.size() == N_BEST_10S)
+            {
+                break;
+            }
+            merged.add(candidate);
+        }
+        this.fiveBest10s = merged;
+    }
+
+    /**
+     * Returns a simple string representation of the statistics
+     */
+    public String toString()
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        for (TOP_SPEED_TYPE type : TOP_SPEED_TYPE.values())
+        {
+            sb.append(type);
+            sb.append(": ");
+            sb.append(bestResults.get(type));
+            sb.append("\n");
+        }
+        sb.append("best5x10s: ");
+        double average = getFiveBest10sAverage();
+        sb.append(Double.isNaN(average) ? "n/a" : Double.toString(dcu.roundUpToNDecimalPlaces(average, 2)) + " km/h");
+        sb.append("\n");
+        return sb.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package at.home.bernd;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -18,8 +19,14 @@ public class Track
      */
     private List<TrackSegment> trackSegments = new ArrayList<TrackSegment>();
     
+    /**
+     * This flag indicates if the track is frozen (read-only)
+     */
+    private boolean frozen = false;
+    
     public void addTrackSegment(TrackSegment trackSegment)
     {
+        checkNotFrozen();
         this.trackSegments.add(trackSegment);
     }
 
@@ -36,6 +43,7 @@ public class Track
      */
     public void setName(String name)
     {
+        checkNotFrozen();
         this.name = name;
     }
 
@@ -52,9 +60,62 @@ public class Track
      */
     public void setTrackSegments(List<TrackSegment> trackSegments)
     {
+        checkNotFrozen();
         this.trackSegments = trackSegments;
     }
     
+    /**
+     * Makes the track, its segments and their track points read-only (see {@link TrackSegment#freeze()}).
+     */
+    public void freeze()
+    {
+        if (frozen)
+        {
+            return;
+        }
+        for (TrackSegment trackSegment : trackSegments)
+        {
+            trackSegment.freeze();
+        }
+        // a copy, as the caller may still hold the list
+        this.trackSegments = Collections.unmodifiableList(new ArrayList<TrackSegment>(trackSegments));
+        this.frozen = true;
+    }
+    
+    /**
+     * @return true if the track is frozen
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+    
+    /**
+     * Returns a modifiable copy of this track sharing the given segments (structural sharing: unchanged segments of a
+     * frozen track are reused, changed ones are replaced).
+     * 
+     * @param trackSegments the segments of the copy
+     * @return              the copy (not frozen)
+     */
+    public Track withTrackSegments(List<TrackSegment> trackSegments)
+    {
+        Track copy = new Track();
+        copy.name = this.name;
+        copy.trackSegments = new ArrayList<TrackSegment>(trackSegments);
+        return copy;
+    }
+    
+    /**
+     * Throws an IllegalStateException if the track is frozen.
+     */
+    private void checkNotFrozen()
+    {
+        if (frozen)
+        {
+            throw new IllegalStateException("The track is frozen");
+        }
+    }
+    
     /**
      * Returns a simple string representation of this track
      */
@@ -1,5 +1,10 @@
 package at.home.bernd;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -22,6 +27,7 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import at.home.bernd.PipelineMetrics.STAGE;
 import at.home.bernd.TrackPoint.TRACK_DATA_TYPE;
 import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
 
@@ -49,15 +55,121 @@ public class TrackDataManager
         DATE_FORMAT.setTimeZone(utc);
         ALT_DATE_FORMAT.setTimeZone(utc);
     }
+
+    /**
+     * The filter applied to the parsed track segments (null if none)
+     */
+    private TrackFilterChain trackFilter;
+
+    /**
+     * Sets the filter applied to all track segments after parsing (e.g. outlier rejection and smoothing).
+     * 
+     * @param trackFilter the filter (null to disable filtering)
+     */
+    public void setTrackFilter(TrackFilterChain trackFilter)
+    {
+        this.trackFilter = trackFilter;
+    }
     
     /**
      * Parses the track data (table in GPX format) and returns the result as a list of track data points
      * 
-     * @param url the URL of the track data in GPX format
+     * @param url the URL of the track data in GPX format (plain, gzip or zip compressed)
      * @return    the track data
      */
     public List<Track> parseTracks(String url)
     {
+        try
+        {
+            return parseTracks(new ByteArrayInputStream(CompressedInput.fetch(url)));
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+        return new ArrayList<Track>();
+    }
+    
+    /**
+     * Parses the track data of the given GPX file (plain, gzip or zip compressed). The entries of zip archives are
+     * parsed in parallel.
+     * 
+     * @param path the GPX file
+     * @return     the track data (of all entries of a zip archive)
+     */
+    public List<Track> parseTracks(Path path)
+    {
+        try
+        {
+            return concat(CompressedInput.parseAll(path, this::parseTrackDocument));
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+        return new ArrayList<Track>();
+    }
+    
+    /**
+     * Parses the track data of the given stream in GPX format (plain, gzip or zip compressed).
+     * 
+     * @param inputStream the stream
+     * @return            the track data (of all entries of a zip archive)
+     */
+    public List<Track> parseTracks(InputStream inputStream)
+    {
+        try
+        {
+            return concat(CompressedInput.parseAll(inputStream, this::parseTrackDocument));
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+        return new ArrayList<Track>();
+    }
+    
+    /**
+     * Parses the track data of the given channel in GPX format (plain, gzip or zip compressed).
+     * 
+     * @param channel the channel
+     * @return        the track data (of all entries of a zip archive)
+     */
+    public List<Track> parseTracks(ReadableByteChannel channel)
+    {
+        return parseTracks(CompressedInput.open(channel));
+    }
+    
+    /**
+     * Concatenates the given track lists.
+     * 
+     * @param trackLists the track lists
+     * @return           the concatenated track list
+     */
+    private List<Track> concat(List<List<Track>> trackLists)
+    {
+        if (trackLists.size() == 1)
+        {
+            return trackLists.get(0);
+        }
+        List<Track> trackList = new ArrayList<Track>();
+        for (List<Track> tracks : trackLists)
+        {
+            trackList.addAll(tracks);
+        }
+        return trackList;
+    }
+    
+    /**
+     * Parses a single (uncompressed) GPX document.
+     * 
+     * @param inputStream the stream of the GPX document
+     * @return            the track data
+     */
+    private List<Track> parseTrackDocument(InputStream inputStream)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         List<Track> trackList = new ArrayList<Track>();
         try
         {
@@ -65,7 +177,7 @@ public class TrackDataManager
             dbf.setNamespaceAware(true);
             dbf.setExpandEntityReferences(false);
             DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(url);
+            Document doc = db.parse(inputStream);
             Element documentElement = doc.getDocumentElement();
             NodeList tracks = documentElement.getElementsByTagName("trk");
             int nTracks = tracks.getLength();
@@ -80,6 +192,16 @@ public class TrackDataManager
         {
             ex.printStackTrace();
         }
+        long nRows = 0;
+        for (Track track : trackList)
+        {
+            for (TrackSegment trackSegment : track.getTrackSegments())
+            {
+                nRows += trackSegment.size();
+            }
+        }
+        metrics.stop(STAGE.parse, start, nRows);
+        new MotionDeriver().derive(trackList, trackFilter);
         return trackList;
     }
 
@@ -126,7 +248,7 @@ public class TrackDataManager
             Node trackPointNode = trackPointNodes.item(i);
             if (trackPointNode != null && "trkpt".equals(trackPointNode.getNodeName()))
             {
-                trackSegment.addTrackPoint(parseTrackPoint(trackPointNode));
+                trackSegment.addTrackPoint(parseTrackPoint(trackPointNode, trackSegment));
             }
         }
         return trackSegment;
@@ -136,13 +258,19 @@ public class TrackDataManager
      * Parses a single track point.
      * 
      * @param trackPointNode the corresponding node
+     * @param trackSegment   the track segment (marked if wind data is found)
      * @return the track point
      */
-    private TrackPoint parseTrackPoint(Node trackPointNode)
+    private TrackPoint parseTrackPoint(Node trackPointNode, TrackSegment trackSegment)
     {
         DataConversionUtility dcu = DataConversionUtility.getInstance();
         
         TrackPoint trackDataPoint = new TrackPoint();
+        // derived after parsing unless the GPX data has them (see MotionDeriver)
+        trackDataPoint.setSpeed(Double.NaN);
+        trackDataPoint.setCourse(Double.NaN);
+        // absent unless the GPX data has it
+        trackDataPoint.setElevation(Double.NaN);
         NamedNodeMap attrs = trackPointNode.getAttributes();
         
         Node latNode = attrs.getNamedItem("lat");
@@ -161,18 +289,14 @@ public class TrackDataManager
             }
             else if ("time".equals(valNode.getNodeName()))
             {
-                String dateString = valNode.getTextContent();
-                Date timeStamp = null;
-                if (dateString.length() <= 20)
+                String dateString = valNode.getTextContent().trim();
+                long time = dcu.parseUtcTimestamp(dateString, 0, dateString.length());
+                if (time != Long.MIN_VALUE)
                 {
-                    timeStamp = dcu.parseDateString(dateString, DATE_FORMAT);
+                    trackDataPoint.setTime(time);
                 }
-                else
-                {
-                    timeStamp = dcu.parseDateString(dateString, ALT_DATE_FORMAT);
-                }
-                trackDataPoint.setTimestamp(timeStamp);
             }
+            // GPX 1.0 elements, GPX 1.1 files of the GpxWriter have them in the extensions
             else if ("course".equals(valNode.getNodeName()))
             {
                 trackDataPoint.setCourse(Double.parseDouble(valNode.getTextContent()));
@@ -182,10 +306,77 @@ public class TrackDataManager
                 double speedInMetersPerSeconds = Double.parseDouble(valNode.getTextContent());
                 trackDataPoint.setSpeed(speedInMetersPerSeconds * 3.6);
             }
+            else if ("extensions".equals(valNode.getNodeName()))
+            {
+                if (parseWindExtensions(valNode, trackDataPoint))
+                {
+                    trackSegment.setWindInfoAvailable(true);
+                }
+            }
         }
         return trackDataPoint;
     }
     
+    /**
+     * Parses the extensions (course, speed and wind data as written by the GpxWriter) of a single track point.
+     * 
+     * @param extensionsNode the extensions node
+     * @param trackDataPoint the track point
+     * @return true if wind data has been found
+     */
+    private boolean parseWindExtensions(Node extensionsNode, TrackPoint trackDataPoint)
+    {
+        boolean windInfoAvailable = false;
+        NodeList extNodes = extensionsNode.getChildNodes();
+        for (int i = 0; i < extNodes.getLength(); i++)
+        {
+            Node extNode = extNodes.item(i);
+            if (! GpxWriter.WIND_NAMESPACE.equals(extNode.getNamespaceURI()))
+            {
+                continue;
+            }
+            String localName = extNode.getLocalName();
+            if ("course".equals(localName))
+            {
+                trackDataPoint.setCourse(Double.parseDouble(extNode.getTextContent()));
+            }
+            else if ("speed".equals(localName))
+            {
+                // in m/s like the GPX 1.0 element
+                trackDataPoint.setSpeed(Double.parseDouble(extNode.getTextContent()) * 3.6);
+            }
+            else if ("windSpeed".equals(localName))
+            {
+                trackDataPoint.setWindSpeed(Double.parseDouble(extNode.getTextContent()));
+                windInfoAvailable = true;
+            }
+            else if ("maxWindSpeed".equals(localName))
+            {
+                trackDataPoint.setMaxWindSpeed(Double.parseDouble(extNode.getTextContent()));
+            }
+            else if ("windDirection".equals(localName))
+            {
+                trackDataPoint.setWindDirection(Double.parseDouble(extNode.getTextContent()));
+            }
+        }
+        return windInfoAvailable;
+    }
+    
+    /**
+     * Writes the given track list to a GPX file (gzip compressed if the file name ends with ".gz").
+     * 
+     * @param trackList the track list
+     * @param path      the GPX file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTracks(List<Track> trackList, Path path) throws IOException
+    {
+        try (GpxWriter gpxWriter = new GpxWriter(path))
+        {
+            gpxWriter.writeTracks(trackList);
+        }
+    }
+    
     /**
      * Prints the given track segment.
      * 
@@ -204,7 +395,7 @@ public class TrackDataManager
      */
     public List<Date> makeXData(TrackSegment trackSegment)
     {
-        List<Date> xData = new ArrayList<Date>();
+        List<Date> xData = new ArrayList<Date>(trackSegment.size());
         for (TrackPoint tp : trackSegment.getTrackPoints())
         {
             xData.add(tp.getTimestamp());
@@ -246,6 +437,10 @@ public class TrackDataManager
             {
                 yData.add(trackPoints.get(i).getWindDirection());
             }
+            else if (dataType == TRACK_DATA_TYPE.distance)
+            {
+                yData.add(trackPoints.get(i).getDistance());
+            }
             else if (dataType == TRACK_DATA_TYPE.relCourse)
             {
                 double windDirection = trackPoints.get(i).getWindDirection();
@@ -278,6 +473,8 @@ public class TrackDataManager
      */
     public void makeSpeedChart(TrackSegment trackSegment)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         XYChartBuilder speedChartBuilder = new XYChartBuilder();
         speedChartBuilder.width(1600);
         speedChartBuilder.height(400);
@@ -293,8 +490,11 @@ public class TrackDataManager
         speedChartStyler.setLegendPosition(LegendPosition.OutsideS);
         speedChartStyler.setHasAnnotations(false);
         
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
         SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(speedChart);
         swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
     }
     
     /**
@@ -305,6 +505,8 @@ public class TrackDataManager
      */
     public void makeCourseChart(TrackSegment trackSegment, boolean relative)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         XYChartBuilder courseChartBuilder = new XYChartBuilder();
         List<Date> xData = makeXData(trackSegment);
         courseChartBuilder.width(1600);
@@ -323,8 +525,11 @@ public class TrackDataManager
         courseChartStyler.setLegendPosition(LegendPosition.OutsideS);
         courseChartStyler.setHasAnnotations(false);
         
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
         SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(courseChart);
         swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
     }
     
     /**
@@ -334,6 +539,8 @@ public class TrackDataManager
      */
     public void makeWindChart(TrackSegment trackSegment)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         XYChartBuilder windChartBuilder = new XYChartBuilder();
         List<Date> xData = makeXData(trackSegment);
         windChartBuilder.width(1600);
@@ -349,8 +556,11 @@ public class TrackDataManager
         styler.setLegendPosition(LegendPosition.OutsideS);
         styler.setHasAnnotations(false);
         
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
         SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(windChart);
         swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
     }
     
     /**
@@ -360,6 +570,8 @@ public class TrackDataManager
      */
     public void makeWindDirectionChart(TrackSegment trackSegment)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         XYChartBuilder windChartBuilder = new XYChartBuilder();
         List<Date> xData = makeXData(trackSegment);
         windChartBuilder.width(1600);
@@ -374,8 +586,11 @@ public class TrackDataManager
         styler.setLegendPosition(LegendPosition.OutsideS);
         styler.setHasAnnotations(false);
         
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
         SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(windDirectionChart);
         swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
     }
     
     /**
@@ -387,12 +602,25 @@ public class TrackDataManager
      * @return          the extracted list of track points
      */
     public List<TrackPoint> extractTrackData(List<TrackPoint> trackData, Date from, Date to)
+    {
+        return extractTrackData(trackData, from.getTime(), to.getTime());
+    }
+    
+    /**
+     * Returns a an extracted list of track data (from timestamp to timestamp).
+     * 
+     * @param trackData the original list of track points
+     * @param from      the "from" timestamp in epoch milliseconds (exclusive)
+     * @param to        the "to" timestamp in epoch milliseconds (exclusive)
+     * @return          the extracted list of track points
+     */
+    public List<TrackPoint> extractTrackData(List<TrackPoint> trackData, long from, long to)
     {
         List<TrackPoint> result = new ArrayList<TrackPoint>();
         for (TrackPoint tp : trackData)
         {
-            Date ts = tp.getTimestamp();
-            if (from.before(ts) && to.after(ts))
+            long ts = tp.getTime();
+            if (from < ts && to > ts)
             {
                 result.add(tp);
             }
@@ -411,22 +639,138 @@ public class TrackDataManager
      */
     public List<TrackSegment> extractTrackSegments(List<Track> trackList, double speedThreshold, int minPoints)
     {
+        return extractTrackSegments(trackList, new SpeedRunExtractor(speedThreshold, minPoints));
+    }
+    
+    /**
+     * Extracts a list of track segments matching the given extractor from the given track list.
+     * 
+     * @param trackList the list of tracks
+     * @param extractor the extractor (speed threshold and further predicates)
+     * @return          the extracted track segments (views of the original segments)
+     */
+    public List<TrackSegment> extractTrackSegments(List<Track> trackList, SpeedRunExtractor extractor)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        long nRows = 0;
         List<TrackSegment> result = new ArrayList<TrackSegment>();
         for (Track track : trackList)
         {
             List<TrackSegment> trackSegments = track.getTrackSegments();
             for (TrackSegment trackSegment : trackSegments)
             {
-                List<TrackSegment> extractedTrackSegments = trackSegment.extractByTopSpeed(speedThreshold, minPoints);
+                nRows += trackSegment.size();
+                List<TrackSegment> extractedTrackSegments = trackSegment.extract(extractor);
                 for (TrackSegment extractedTrackSegment : extractedTrackSegments)
                 {
                     result.add(extractedTrackSegment);
                 }
             }
         }
+        metrics.stop(STAGE.extraction, start, nRows);
         return result;
     }
     
+    /**
+     * Evaluates all combinations of the given speed thresholds and minimum numbers of points in one pass over the given
+     * track list (see {@link #extractTrackSegments(List, double, int)}).
+     * 
+     * @param trackList  the list of tracks
+     * @param thresholds the speed thresholds
+     * @param minPoints  the minimum numbers of points
+     * @return           the sweep holding the segment counts and durations per combination
+     */
+    public SpeedThresholdSweep sweepTrackSegments(List<Track> trackList, double[] thresholds, int[] minPoints)
+    {
+        SpeedThresholdSweep sweep = new SpeedThresholdSweep(thresholds, minPoints);
+        sweep.addTrackList(trackList);
+        return sweep;
+    }
+    
+    /**
+     * Computes the top speed results (best 2 s, 10 s, 5 x 10 s, 100 m, 500 m, nautical mile, alpha 500) of the given
+     * track list.
+     * 
+     * @param trackList the list of tracks
+     * @return          the top speed statistics
+     */
+    public TopSpeedStatistics analyzeTopSpeeds(List<Track> trackList)
+    {
+        TopSpeedAnalyzer topSpeedAnalyzer = new TopSpeedAnalyzer();
+        return topSpeedAnalyzer.analyze(trackList);
+    }
+    
+    /**
+     * Builds the polar diagram (speed per true wind angle and wind speed) of the enriched track segments of the given
+     * track list.
+     * 
+     * @param trackList the list of tracks
+     * @return          the polar diagram
+     */
+    public PolarDiagram buildPolarDiagram(List<Track> trackList)
+    {
+        PolarDiagram polarDiagram = new PolarDiagram();
+        polarDiagram.addTrackList(trackList);
+        return polarDiagram;
+    }
+    
+    /**
+     * Makes a polar chart of the given polar diagram: one curve per wind speed bin through the given percentile speed
+     * of its true wind angle bins (bins with fewer than the given number of track points are left out). The wind
+     * comes from the top; the curves are drawn on the starboard side.
+     * 
+     * @param polarDiagram the polar diagram
+     * @param percentile   the percentile (e.g. 90)
+     * @param minCount     the minimum number of track points of a bin
+     */
+    public void makePolarChart(PolarDiagram polarDiagram, double percentile, long minCount)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        XYChartBuilder polarChartBuilder = new XYChartBuilder();
+        polarChartBuilder.width(800);
+        polarChartBuilder.height(800);
+        polarChartBuilder.title("Polar Diagram (" + percentile + "th percentile)");
+        polarChartBuilder.xAxisTitle("km / h");
+        polarChartBuilder.yAxisTitle("km / h");
+        
+        XYChart polarChart = polarChartBuilder.build();
+        for (int w = 0; w < polarDiagram.getWindSpeedBinCount(); w++)
+        {
+            List<Number> xData = new ArrayList<Number>();
+            List<Number> yData = new ArrayList<Number>();
+            for (int a = 0; a < polarDiagram.getAngleBinCount(); a++)
+            {
+                if (polarDiagram.getCount(a, w) < minCount)
+                {
+                    continue;
+                }
+                double speed = polarDiagram.getPercentile(a, w, percentile);
+                double angle = Math.toRadians(polarDiagram.getAngle(a));
+                xData.add(speed * Math.sin(angle));
+                yData.add(speed * Math.cos(angle));
+            }
+            if (! xData.isEmpty())
+            {
+                double windSpeed = polarDiagram.getWindSpeed(w);
+                String name = w < polarDiagram.getWindSpeedBinCount() - 1
+                              ? (int) windSpeed + "-" + (int) (windSpeed + polarDiagram.getWindSpeedStep()) + " km / h"
+                              : (int) windSpeed + "+ km / h";
+                polarChart.addSeries(name, xData, yData);
+            }
+        }
+        XYStyler styler = polarChart.getStyler();
+        styler.setLegendPosition(LegendPosition.OutsideS);
+        styler.setHasAnnotations(false);
+        
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
+        SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(polarChart);
+        swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
+    }
+    
     /**
      * Adds the matching wind data to the given track list.
      * 
@@ -441,6 +785,20 @@ public class TrackDataManager
         }
     }
     
+    /**
+     * Adds the wind data of several stations to the given track list, weighted by the distance of every track point
+     * to the stations (see {@link MultiStationWindInterpolator}).
+     * 
+     * @param trackList the track list
+     * @param archive   the archive containing the series of the stations
+     * @param stations  the stations
+     */
+    public void addWindDataToTrackList(List<Track> trackList, WeatherArchive archive, List<WeatherStation> stations)
+    {
+        MultiStationWindInterpolator interpolator = new MultiStationWindInterpolator(archive, stations);
+        interpolator.enrich(trackList);
+    }
+    
     /**
      * Adds the matching wind data to the given track.
      * 
@@ -449,20 +807,30 @@ public class TrackDataManager
      */
     public void addWindDataToTrack(Track track, List<WindDataPoint> windData)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        long nRows = 0;
         WeatherDataManager weatherDataManager = new WeatherDataManager();
         List<TrackSegment> trackSegments = track.getTrackSegments();
         for (TrackSegment trackSegment : trackSegments)
         {
-            Date[] timestamps = trackSegment.getTimestamps();
-            List<WindDataPoint> extractedWindData = weatherDataManager.getWindData(windData, timestamps[0], timestamps[timestamps.length - 1]);
+            List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+            if (trackPoints.isEmpty())
+            {
+                continue;
+            }
+            nRows += trackPoints.size();
+            long from = trackPoints.get(0).getTime();
+            long to = trackPoints.get(trackPoints.size() - 1).getTime();
+            List<WindDataPoint> extractedWindData = weatherDataManager.getWindData(windData, from, to);
             // insufficient wind data
             if (extractedWindData.size() < 3)
             {
                 continue;
             }
-            List<WindDataPoint> interpolatedWindData = weatherDataManager.interpolateWindData(extractedWindData, timestamps);
-            addWindDataToTrackSegement(trackSegment, interpolatedWindData);
+            weatherDataManager.addInterpolatedWindData(trackSegment, extractedWindData);
         }
+        metrics.stop(STAGE.enrichment, start, nRows);
     }
     
     /**
@@ -479,7 +847,7 @@ public class TrackDataManager
         for (TrackPoint trackPoint : trackPoints)
         {
             WindDataPoint windDataPoint = it.next();
-            if (trackPoint.getTimestamp().equals(windDataPoint.getTimestamp()))
+            if (trackPoint.getTime() == windDataPoint.getTime())
             {
                 trackPoint.setWindDirection(windDataPoint.getDirection());
                 trackPoint.setWindSpeed(windDataPoint.getWindSpeed());
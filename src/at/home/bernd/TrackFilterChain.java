@@ -0,0 +1,115 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import at.home.bernd.PipelineMetrics.COUNTER;
+import at.home.bernd.PipelineMetrics.STAGE;
+
+/**
+ * A sequence of track point filters: a point is passed to the next filter only if the previous ones accepted it.
+ * Typical order: plausibility check ({@link MaxAccelerationFilter}), spike filter ({@link HampelFilter}), smoothing
+ * ({@link KalmanFilter}).
+ */
+public class TrackFilterChain implements TrackPointFilter
+{
+    /**
+     * The filters
+     */
+    private final List<TrackPointFilter> filters;
+
+    /**
+     * Creates a filter chain.
+     *
+     * @param filters the filters in the order they are applied
+     */
+    public TrackFilterChain(TrackPointFilter... filters)
+    {
+        this.filters = new ArrayList<TrackPointFilter>(Arrays.asList(filters));
+    }
+
+    /**
+     * Appends a filter.
+     *
+     * @param filter the filter
+     * @return       this filter chain
+     */
+    public TrackFilterChain add(TrackPointFilter filter)
+    {
+        filters.add(filter);
+        return this;
+    }
+
+    public boolean filter(TrackPoint trackPoint)
+    {
+        for (TrackPointFilter filter : filters)
+        {
+            if (! filter.filter(trackPoint))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void reset()
+    {
+        for (TrackPointFilter filter : filters)
+        {
+            filter.reset();
+        }
+    }
+
+    /**
+     * Filters the track points of a track segment (not frozen) in place: rejected points are removed, the others may
+     * be corrected. The filters are reset before.
+     *
+     * @param trackSegment the track segment
+     * @return             the number of rejected points
+     */
+    public int apply(TrackSegment trackSegment)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        reset();
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        List<TrackPoint> accepted = new ArrayList<TrackPoint>(trackPoints.size());
+        for (TrackPoint trackPoint : trackPoints)
+        {
+            if (filter(trackPoint))
+            {
+                accepted.add(trackPoint);
+            }
+        }
+        int nRejected = trackPoints.size() - accepted.size();
+        trackSegment.setTrackPoints(accepted);
+        metrics.add(COUNTER.rejectedPoints, nRejected);
+        metrics.stop(STAGE.filtering, start, trackPoints.size());
+        return nRejected;
+    }
+
+    /**
+     * Filters all track segments of the given tracks.
+     *
+     * @param trackList the tracks
+     * @return          the number of rejected points
+     */
+    public int apply(List<Track> trackList)
+    {
+        int nRejected = 0;
+        for (Track track : trackList)
+        {
+            for (TrackSegment trackSegment : track.getTrackSegments())
+            {
+                nRejected += apply(trackSegment);
+            }
+        }
+        return nRejected;
+    }
+
+    public String toString()
+    {
+        return "TrackFilterChain " + filters;
+    }
+}
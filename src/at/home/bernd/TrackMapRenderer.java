@@ -0,0 +1,485 @@
+package at.home.bernd;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+import at.home.bernd.PipelineMetrics.STAGE;
+
+/**
+ * Renders tracks as map tiles: the track segments of a session (a track) are drawn as polylines colored by speed or by
+ * the course relative to the wind, on transparent 256 x 256 pixel tiles of the Web Mercator grid (zoom/x/y as used by
+ * OpenStreetMap, so the tiles can be laid over a base map). Only BufferedImage and Java2D are used, so the renderer
+ * works in headless mode.
+ * <p>
+ * The Mercator coordinates and the {@link SimplifiedTrack} of each segment are computed once when a session is added;
+ * a tile only draws the points kept for half its pixel size. Rendered tiles are kept in a {@link TileCache}, so panning
+ * over known tiles does not draw again; ranges of missing tiles are rendered in parallel.
+ */
+public class TrackMapRenderer
+{
+    /**
+     * The color modes
+     */
+    public static enum COLOR_MODE
+    {
+        speed,
+        windAngle
+    };
+
+    /**
+     * The size of a tile in pixels
+     */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * The maximum zoom level
+     */
+    public static final int MAX_ZOOM = 22;
+
+    /**
+     * The width of the lines in pixels
+     */
+    private static final float LINE_WIDTH = 2.5f;
+
+    /**
+     * The number of colors of the palette
+     */
+    private static final int N_COLORS = 64;
+
+    /**
+     * The color of segments without wind information in wind angle mode
+     */
+    private static final Color NO_WIND_COLOR = new Color(128, 128, 128, 160);
+
+    /**
+     * The multiplier of the session id hash (the 64 bit FNV prime)
+     */
+    private static final long FNV_PRIME = 1099511628211L;
+
+    /**
+     * The palette from blue (low speed, upwind) to red (high speed, downwind)
+     */
+    private static final Color[] PALETTE = new Color[N_COLORS];
+
+    /**
+     * Creates the palette.
+     */
+    static
+    {
+        for (int i = 0; i < N_COLORS; i++)
+        {
+            float f = i / (float) (N_COLORS - 1);
+            PALETTE[i] = Color.getHSBColor((1 - f) * 2 / 3f, 1f, 0.9f);
+        }
+    }
+
+    /**
+     * The sessions by id
+     */
+    private Map<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+
+    /**
+     * The cache of the rendered tiles
+     */
+    private TileCache tileCache;
+
+    /**
+     * The speed drawn in red in km/h
+     */
+    private double maxSpeed = 60;
+
+    /**
+     * The empty tile (transparent)
+     */
+    private byte[] emptyTile;
+
+    /**
+     * Creates a renderer.
+     *
+     * @param tileCache the cache of the rendered tiles
+     */
+    public TrackMapRenderer(TileCache tileCache)
+    {
+        this.tileCache = tileCache;
+        this.emptyTile = encode(new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    /**
+     * @param maxSpeed the speed drawn in red in km/h
+     */
+    public void setMaxSpeed(double maxSpeed)
+    {
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Returns an id of the given track which is stable across restarts and changes with everything drawn on the tiles
+     * (the positions, speeds, courses and wind directions of all points), to be used as session id. The cached tiles
+     * of a session id therefore never become stale.
+     *
+     * @param track the track
+     * @return      the session id
+     */
+    public static String sessionId(Track track)
+    {
+        long hash = track.getName() != null ? track.getName().hashCode() : 0;
+        for (TrackSegment trackSegment : track.getTrackSegments())
+        {
+            hash = hash * FNV_PRIME + trackSegment.size();
+            hash = hash * FNV_PRIME + (trackSegment.isWindInfoAvailable() ? 1 : 0);
+            for (TrackPoint trackPoint : trackSegment.getTrackPoints())
+            {
+                hash = hash * FNV_PRIME + trackPoint.getTime();
+                hash = hash * FNV_PRIME + Double.doubleToLongBits(trackPoint.getLatitude());
+                hash = hash * FNV_PRIME + Double.doubleToLongBits(trackPoint.getLongitude());
+                hash = hash * FNV_PRIME + Double.doubleToLongBits(trackPoint.getSpeed());
+                hash = hash * FNV_PRIME + Double.doubleToLongBits(trackPoint.getCourse());
+                hash = hash * FNV_PRIME + Double.doubleToLongBits(trackPoint.getWindDirection());
+            }
+        }
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * Adds (or replaces) a session. The cached tiles of a replaced session are removed.
+     *
+     * @param sessionId the session id (used in the file names of the tile cache)
+     * @param track     the track
+     */
+    public void addSession(String sessionId, Track track)
+    {
+        if (! sessionId.matches("[A-Za-z0-9_.-]+"))
+        {
+            throw new IllegalArgumentException("invalid session id: " + sessionId);
+        }
+        List<ProjectedSegment> segments = new ArrayList<ProjectedSegment>();
+        for (TrackSegment trackSegment : track.getTrackSegments())
+        {
+            if (trackSegment.size() > 1)
+            {
+                segments.add(new ProjectedSegment(trackSegment));
+            }
+        }
+        if (sessions.put(sessionId, new Session(segments)) != null)
+        {
+            tileCache.invalidate(sessionId + "/");
+        }
+    }
+
+    /**
+     * Removes a session (its tiles stay in the cache until they are evicted; they are still valid for a track with the
+     * same {@link #sessionId(Track)}).
+     *
+     * @param sessionId the session id
+     */
+    public void removeSession(String sessionId)
+    {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * @param sessionId the session id
+     * @return          true if the session has been added
+     */
+    public boolean hasSession(String sessionId)
+    {
+        return sessions.containsKey(sessionId);
+    }
+
+    /**
+     * @return the ids of the sessions
+     */
+    public List<String> getSessionIds()
+    {
+        return new ArrayList<String>(sessions.keySet());
+    }
+
+    /**
+     * @return the cache of the rendered tiles
+     */
+    public TileCache getTileCache()
+    {
+        return tileCache;
+    }
+
+    /**
+     * Returns a tile (from the cache if possible).
+     *
+     * @param sessionId the session id
+     * @param zoom      the zoom level
+     * @param x         the x index of the tile
+     * @param y         the y index of the tile
+     * @param mode      the color mode
+     * @return          the PNG image of the tile
+     */
+    public byte[] getTile(String sessionId, int zoom, int x, int y, COLOR_MODE mode)
+    {
+        Session session = sessions.get(sessionId);
+        if (session == null)
+        {
+            throw new IllegalArgumentException("unknown session: " + sessionId);
+        }
+        int nTiles = 1 << checkZoom(zoom);
+        if (x < 0 || x >= nTiles || y < 0 || y >= nTiles)
+        {
+            throw new IllegalArgumentException("tile out of range: " + zoom + "/" + x + "/" + y);
+        }
+        String key = sessionId + "/" + mode + "/" + zoom + "/" + x + "/" + y + ".png";
+        byte[] tile = tileCache.get(key);
+        if (tile == null)
+        {
+            tile = render(session, zoom, x, y, mode);
+            tileCache.put(key, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Returns a range of tiles, rendering the missing tiles in parallel.
+     *
+     * @param sessionId the session id
+     * @param zoom      the zoom level
+     * @param xMin      the smallest x index
+     * @param yMin      the smallest y index
+     * @param xMax      the largest x index
+     * @param yMax      the largest y index
+     * @param mode      the color mode
+     * @return          the PNG images by "x/y"
+     */
+    public Map<String, byte[]> getTiles(String sessionId, int zoom, int xMin, int yMin, int xMax, int yMax,
+                                        COLOR_MODE mode)
+    {
+        List<int[]> indices = new ArrayList<int[]>();
+        for (int y = yMin; y <= yMax; y++)
+        {
+            for (int x = xMin; x <= xMax; x++)
+            {
+                indices.add(new int[] { x, y });
+            }
+        }
+        List<byte[]> tiles = new ArrayList<byte[]>(indices.size());
+        indices.parallelStream().map(xy -> getTile(sessionId, zoom, xy[0], xy[1], mode)).forEachOrdered(tiles::add);
+        Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+        for (int i = 0; i < indices.size(); i++)
+        {
+            result.put(indices.get(i)[0] + "/" + indices.get(i)[1], tiles.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the range of tiles covering a session.
+     *
+     * @param sessionId the session id
+     * @param zoom      the zoom level
+     * @return          the range { xMin, yMin, xMax, yMax } or null if the session has no points
+     */
+    public int[] getTileRange(String sessionId, int zoom)
+    {
+        Session session = sessions.get(sessionId);
+        if (session == null || session.segments.isEmpty())
+        {
+            return null;
+        }
+        double scale = 1 << checkZoom(zoom);
+        int max = (1 << zoom) - 1;
+        return new int[] { Math.min((int) (session.minX * scale), max),
+                           Math.min((int) (session.minY * scale), max),
+                           Math.min((int) (session.maxX * scale), max),
+                           Math.min((int) (session.maxY * scale), max) };
+    }
+
+    /**
+     * Throws an IllegalArgumentException if the zoom level is out of range.
+     */
+    private static int checkZoom(int zoom)
+    {
+        if (zoom < 0 || zoom > MAX_ZOOM)
+        {
+            throw new IllegalArgumentException("zoom out of range: " + zoom);
+        }
+        return zoom;
+    }
+
+    /**
+     * Renders a tile.
+     */
+    private byte[] render(Session session, int zoom, int tileX, int tileY, COLOR_MODE mode)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        double scale = TILE_SIZE * (double) (1 << zoom);
+        double offsetX = tileX * (double) TILE_SIZE;
+        double offsetY = tileY * (double) TILE_SIZE;
+        // the bounds of the tile (including the line width) in Mercator coordinates
+        double margin = LINE_WIDTH / scale;
+        double minX = offsetX / scale - margin;
+        double maxX = (offsetX + TILE_SIZE) / scale + margin;
+        double minY = offsetY / scale - margin;
+        double maxY = (offsetY + TILE_SIZE) / scale + margin;
+        BufferedImage image = null;
+        Graphics2D g = null;
+        long nLines = 0;
+        for (ProjectedSegment segment : session.segments)
+        {
+            if (segment.maxX < minX || segment.minX > maxX || segment.maxY < minY || segment.minY > maxY)
+            {
+                continue;
+            }
+            if (image == null)
+            {
+                image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                g = image.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setStroke(new BasicStroke(LINE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            }
+            // half a pixel in meters at the latitude of the segment
+            double tolerance = segment.metersPerUnit / scale / 2;
+            int[] indices = segment.simplifiedTrack.getIndices(tolerance);
+            double[] colorValues = mode == COLOR_MODE.speed ? segment.speeds : segment.windAngles;
+            double colorMax = mode == COLOR_MODE.speed ? maxSpeed : 180;
+            Line2D.Double line = new Line2D.Double();
+            for (int k = 0; k + 1 < indices.length; k++)
+            {
+                int a = indices[k];
+                int b = indices[k + 1];
+                double ax = segment.x[a];
+                double ay = segment.y[a];
+                double bx = segment.x[b];
+                double by = segment.y[b];
+                if ((ax < minX && bx < minX) || (ax > maxX && bx > maxX)
+                    || (ay < minY && by < minY) || (ay > maxY && by > maxY))
+                {
+                    continue;
+                }
+                if (colorValues == null)
+                {
+                    g.setColor(NO_WIND_COLOR);
+                }
+                else
+                {
+                    double f = Math.max(0, Math.min(1, colorValues[a] / colorMax));
+                    g.setColor(PALETTE[(int) Math.round(f * (N_COLORS - 1))]);
+                }
+                line.setLine(ax * scale - offsetX, ay * scale - offsetY, bx * scale - offsetX, by * scale - offsetY);
+                g.draw(line);
+                nLines++;
+            }
+        }
+        byte[] tile = emptyTile;
+        if (image != null)
+        {
+            g.dispose();
+            tile = encode(image);
+        }
+        metrics.stop(STAGE.render, start, nLines);
+        return tile;
+    }
+
+    /**
+     * Encodes an image as PNG.
+     */
+    private static byte[] encode(BufferedImage image)
+    {
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * The projected segments of a session and their bounds.
+     */
+    private static class Session
+    {
+        final List<ProjectedSegment> segments;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        Session(List<ProjectedSegment> segments)
+        {
+            this.segments = segments;
+            for (ProjectedSegment segment : segments)
+            {
+                minX = Math.min(minX, segment.minX);
+                maxX = Math.max(maxX, segment.maxX);
+                minY = Math.min(minY, segment.minY);
+                maxY = Math.max(maxY, segment.maxY);
+            }
+        }
+    }
+
+    /**
+     * A track segment in Mercator coordinates ([0, 1) from west to east and from north to south) with the values of
+     * the color modes and the importance of its points.
+     */
+    private static class ProjectedSegment
+    {
+        final double[] x;
+        final double[] y;
+        final double[] speeds;
+        final double[] windAngles;
+        final SimplifiedTrack simplifiedTrack;
+        // meters per Mercator unit at the mean latitude
+        final double metersPerUnit;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        ProjectedSegment(TrackSegment trackSegment)
+        {
+            DataConversionUtility dcu = DataConversionUtility.getInstance();
+            List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+            int n = trackPoints.size();
+            x = new double[n];
+            y = new double[n];
+            speeds = new double[n];
+            windAngles = trackSegment.isWindInfoAvailable() ? new double[n] : null;
+            double latitudeSum = 0;
+            for (int i = 0; i < n; i++)
+            {
+                TrackPoint trackPoint = trackPoints.get(i);
+                double phi = Math.toRadians(trackPoint.getLatitude());
+                x[i] = (trackPoint.getLongitude() + 180) / 360;
+                y[i] = (1 - Math.log(Math.tan(phi) + 1 / Math.cos(phi)) / Math.PI) / 2;
+                speeds[i] = trackPoint.getSpeed();
+                if (windAngles != null)
+                {
+                    windAngles[i] = dcu.relativeCourse(trackPoint.getWindDirection(), trackPoint.getCourse());
+                }
+                latitudeSum += trackPoint.getLatitude();
+                minX = Math.min(minX, x[i]);
+                maxX = Math.max(maxX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            metersPerUnit = 2 * Math.PI * DataConversionUtility.EARTH_RADIUS
+                            * Math.cos(Math.toRadians(latitudeSum / n));
+            simplifiedTrack = new TrackSimplifier(TrackSimplifier.SIMPLIFICATION_TYPE.douglasPeucker)
+                .simplify(trackSegment);
+        }
+    }
+}
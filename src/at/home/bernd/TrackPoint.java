@@ -22,13 +22,14 @@ public class TrackPoint
         windDirection,
         windSpeed,
         maxWindSpeed,
-        relCourse
+        relCourse,
+        distance
     };
 
     /**
-     * The timestamp of the data point
+     * The timestamp of the data point in epoch milliseconds
      */
-    private Date timestamp;
+    private long time;
     
     /**
      * The latitude
@@ -55,6 +56,11 @@ public class TrackPoint
      */
     private double course;
     
+    /**
+     * The distance travelled since the start of the track segment (in meters)
+     */
+    private double distance;
+    
     /**
      * The wind direction in degrees: N = 0 (=360); E = 90; S = 180; W = 270
      */
@@ -71,19 +77,45 @@ public class TrackPoint
     private double maxWindSpeed;
     
     /**
+     * This flag indicates if the track point is frozen (read-only)
+     */
+    private boolean frozen = false;
+    
+    /**
+     * @return the timestamp in epoch milliseconds
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @param time the timestamp in epoch milliseconds to set
+     */
+    public void setTime(long time)
+    {
+        checkNotFrozen();
+        this.time = time;
+    }
+
+    /**
+     * Returns the timestamp as a new Date (for charts and other API boundaries; use {@link #getTime()} otherwise).
+     * 
      * @return the timestamp
      */
     public Date getTimestamp()
     {
-        return timestamp;
+        return new Date(time);
     }
 
     /**
+     * Sets the timestamp (see {@link #setTime(long)}).
+     * 
      * @param timestamp the timestamp to set
      */
     public void setTimestamp(Date timestamp)
     {
-        this.timestamp = timestamp;
+        setTime(timestamp.getTime());
     }
     
     /**
@@ -99,6 +131,7 @@ public class TrackPoint
      */
     public void setLatitude(double latitude)
     {
+        checkNotFrozen();
         this.latitude = latitude;
     }
 
@@ -115,6 +148,7 @@ public class TrackPoint
      */
     public void setLongitude(double longitude)
     {
+        checkNotFrozen();
         this.longitude = longitude;
     }
     
@@ -131,6 +165,7 @@ public class TrackPoint
      */
     public void setElevation(double elevation)
     {
+        checkNotFrozen();
         this.elevation = elevation;
     }
 
@@ -147,6 +182,7 @@ public class TrackPoint
      */
     public void setSpeed(double speed)
     {
+        checkNotFrozen();
         this.speed = speed;
     }
 
@@ -163,9 +199,27 @@ public class TrackPoint
      */
     public void setCourse(double course)
     {
+        checkNotFrozen();
         this.course = course;
     }
     
+    /**
+     * @return the distance travelled since the start of the track segment (in meters)
+     */
+    public double getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * @param distance the distance travelled since the start of the track segment (in meters)
+     */
+    public void setDistance(double distance)
+    {
+        checkNotFrozen();
+        this.distance = distance;
+    }
+
     /**
      * @return the wind direction
      */
@@ -179,6 +233,7 @@ public class TrackPoint
      */
     public void setWindDirection(double windDirection)
     {
+        checkNotFrozen();
         this.windDirection = windDirection;
     }
 
@@ -195,6 +250,7 @@ public class TrackPoint
      */
     public void setWindSpeed(double windSpeed)
     {
+        checkNotFrozen();
         this.windSpeed = windSpeed;
     }
 
@@ -211,9 +267,59 @@ public class TrackPoint
      */
     public void setMaxWindSpeed(double maxWindSpeed)
     {
+        checkNotFrozen();
         this.maxWindSpeed = maxWindSpeed;
     }
 
+    /**
+     * Makes the track point read-only: setters throw an IllegalStateException afterwards. A frozen track point can be
+     * shared by concurrent readers without locking.
+     */
+    public void freeze()
+    {
+        this.frozen = true;
+    }
+
+    /**
+     * @return true if the track point is frozen
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Returns a modifiable copy of this track point.
+     * 
+     * @return the copy (not frozen)
+     */
+    public TrackPoint copy()
+    {
+        TrackPoint copy = new TrackPoint();
+        copy.time = this.time;
+        copy.latitude = this.latitude;
+        copy.longitude = this.longitude;
+        copy.elevation = this.elevation;
+        copy.speed = this.speed;
+        copy.course = this.course;
+        copy.distance = this.distance;
+        copy.windDirection = this.windDirection;
+        copy.windSpeed = this.windSpeed;
+        copy.maxWindSpeed = this.maxWindSpeed;
+        return copy;
+    }
+
+    /**
+     * Throws an IllegalStateException if the track point is frozen.
+     */
+    private void checkNotFrozen()
+    {
+        if (frozen)
+        {
+            throw new IllegalStateException("The track point is frozen");
+        }
+    }
+    
     /**
      * Returns a simple string representation of the wind data point
      */
@@ -222,7 +328,7 @@ public class TrackPoint
         DataConversionUtility dcu = DataConversionUtility.getInstance();
         StringBuilder sb = new StringBuilder();
         sb.append("    ");
-        sb.append(this.timestamp);
+        sb.append(new Date(this.time));
         sb.append(": ");
         sb.append(dcu.roundUpToNDecimalPlaces(this.latitude, 6));
         sb.append(" / ");
@@ -0,0 +1,23 @@
+package at.home.bernd;
+
+/**
+ * A streaming filter stage for track points between parsing and analysis: the points of a track segment are passed
+ * one by one in order of time; a filter may correct a point in place (e.g. smooth its position or replace a speed
+ * spike) or reject it. Filters keep a fixed-size state, so they cost O(1) per point and are used both on parsed tracks
+ * ({@link TrackFilterChain#apply(TrackSegment)}) and on live points. Not thread-safe.
+ */
+public interface TrackPointFilter
+{
+    /**
+     * Filters the next track point of the current track segment.
+     *
+     * @param trackPoint the track point (may be modified)
+     * @return           false if the track point is to be rejected
+     */
+    public boolean filter(TrackPoint trackPoint);
+
+    /**
+     * Resets the state for a new track segment.
+     */
+    public void reset();
+}
@@ -1,7 +1,7 @@
 package at.home.bernd;
 
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -18,6 +18,11 @@ public class TrackSegment
      * This flag indicates if wind info is available for this track segment
      */
     private boolean windInfoAvailable = false;
+    
+    /**
+     * This flag indicates if the track segment is frozen (read-only)
+     */
+    private boolean frozen = false;
 
     /**
      * @return the windInfoAvailable
@@ -32,11 +37,13 @@ public class TrackSegment
      */
     public void setWindInfoAvailable(boolean windInfoAvailable)
     {
+        checkNotFrozen();
         this.windInfoAvailable = windInfoAvailable;
     }
 
     public void addTrackPoint(TrackPoint trackPoint)
     {
+        checkNotFrozen();
         this.trackPoints.add(trackPoint);
     }
     
@@ -53,9 +60,67 @@ public class TrackSegment
      */
     public void setTrackPoints(List<TrackPoint> trackPoints)
     {
+        checkNotFrozen();
         this.trackPoints = trackPoints;
     }
     
+    /**
+     * Makes the track segment and its track points read-only: the list of track points is replaced by an unmodifiable
+     * copy (the list passed to {@link #setTrackPoints(List)} or viewed by a sub segment may still be modified by its
+     * owner) and setters throw an IllegalStateException. A frozen segment can be shared by concurrent readers without locking;
+     * writers modify a {@link #copy()} and publish it instead.
+     */
+    public void freeze()
+    {
+        if (frozen)
+        {
+            return;
+        }
+        for (TrackPoint trackPoint : trackPoints)
+        {
+            trackPoint.freeze();
+        }
+        this.trackPoints = Collections.unmodifiableList(new ArrayList<TrackPoint>(trackPoints));
+        this.frozen = true;
+    }
+    
+    /**
+     * @return true if the track segment is frozen
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+    
+    /**
+     * Returns a modifiable copy of this track segment (the track points are copied as well).
+     * 
+     * @return the copy (not frozen)
+     */
+    public TrackSegment copy()
+    {
+        TrackSegment copy = new TrackSegment();
+        List<TrackPoint> copiedTrackPoints = new ArrayList<TrackPoint>(trackPoints.size());
+        for (TrackPoint trackPoint : trackPoints)
+        {
+            copiedTrackPoints.add(trackPoint.copy());
+        }
+        copy.trackPoints = copiedTrackPoints;
+        copy.windInfoAvailable = this.windInfoAvailable;
+        return copy;
+    }
+    
+    /**
+     * Throws an IllegalStateException if the track segment is frozen.
+     */
+    private void checkNotFrozen()
+    {
+        if (frozen)
+        {
+            throw new IllegalStateException("The track segment is frozen");
+        }
+    }
+    
     /**
      * Returns the size of the track segment (i.e. the number of track points).
      * 
@@ -67,20 +132,134 @@ public class TrackSegment
     }
     
     /**
-     * Returns the timestamps of this track segment.
+     * Returns the timestamps of this track segment in milliseconds.
+     * 
+     * @return the timestamps in milliseconds
+     */
+    public long[] getTimesInMillis()
+    {
+        int nTrackPoints = trackPoints.size();
+        long[] times = new long[nTrackPoints];
+        for (int i = 0; i < nTrackPoints; i++)
+        {
+            times[i] = trackPoints.get(i).getTime();
+        }
+        return times;
+    }
+    
+    /**
+     * Returns the speed values of this track segment.
+     * 
+     * @return the speed values (km/h)
+     */
+    public double[] getSpeeds()
+    {
+        int nTrackPoints = trackPoints.size();
+        double[] speeds = new double[nTrackPoints];
+        for (int i = 0; i < nTrackPoints; i++)
+        {
+            speeds[i] = trackPoints.get(i).getSpeed();
+        }
+        return speeds;
+    }
+    
+    /**
+     * Returns the course values of this track segment.
      * 
-     * @return the timestamps
+     * @return the course values (degrees)
      */
-    public Date[] getTimestamps()
+    public double[] getCourses()
     {
         int nTrackPoints = trackPoints.size();
-        Date[] timestamps = new Date[nTrackPoints];
+        double[] courses = new double[nTrackPoints];
         for (int i = 0; i < nTrackPoints; i++)
         {
-            TrackPoint trackPoint = trackPoints.get(i);
-            timestamps[i] = trackPoint.getTimestamp();
+            courses[i] = trackPoints.get(i).getCourse();
         }
-        return timestamps;
+        return courses;
+    }
+    
+    /**
+     * Returns the latitudes of this track segment.
+     * 
+     * @return the latitudes (degrees)
+     */
+    public double[] getLatitudes()
+    {
+        int nTrackPoints = trackPoints.size();
+        double[] latitudes = new double[nTrackPoints];
+        for (int i = 0; i < nTrackPoints; i++)
+        {
+            latitudes[i] = trackPoints.get(i).getLatitude();
+        }
+        return latitudes;
+    }
+    
+    /**
+     * Returns the longitudes of this track segment.
+     * 
+     * @return the longitudes (degrees)
+     */
+    public double[] getLongitudes()
+    {
+        int nTrackPoints = trackPoints.size();
+        double[] longitudes = new double[nTrackPoints];
+        for (int i = 0; i < nTrackPoints; i++)
+        {
+            longitudes[i] = trackPoints.get(i).getLongitude();
+        }
+        return longitudes;
+    }
+    
+    /**
+     * Returns the cumulative distances of this track segment (see {@link MotionDeriver}).
+     * 
+     * @return the distances travelled since the start of the segment (meters)
+     */
+    public double[] getDistances()
+    {
+        int nTrackPoints = trackPoints.size();
+        double[] distances = new double[nTrackPoints];
+        for (int i = 0; i < nTrackPoints; i++)
+        {
+            distances[i] = trackPoints.get(i).getDistance();
+        }
+        return distances;
+    }
+    
+    /**
+     * Returns a sub segment of this segment. The sub segment is a view of this segment's track points (no points are
+     * copied), so this segment must not be structurally modified while the sub segment is in use; freezing the sub
+     * segment copies the viewed points. The sub segment of a frozen segment is frozen as well (a view of the copy made
+     * by {@link #freeze()}).
+     * 
+     * @param range the [start, end) index range of the sub segment
+     * @return      the sub segment
+     */
+    public TrackSegment subSegment(IndexRange range)
+    {
+        TrackSegment subSegment = new TrackSegment();
+        subSegment.setTrackPoints(this.trackPoints.subList(range.getStart(), range.getEnd()));
+        subSegment.setWindInfoAvailable(this.isWindInfoAvailable());
+        subSegment.frozen = this.frozen;
+        return subSegment;
+    }
+    
+    /**
+     * Extracts a list of track sub segments of this segment matching the given extractor.
+     * 
+     * @param extractor the extractor
+     * @return          the list of matching track segments (views of this segment)
+     */
+    public List<TrackSegment> extract(SpeedRunExtractor extractor)
+    {
+        List<IndexRange> runs = extractor.extract(this);
+        List<TrackSegment> extractedTrackSegments = new ArrayList<TrackSegment>(runs.size());
+        for (IndexRange run : runs)
+        {
+            extractedTrackSegments.add(subSegment(run));
+        }
+        return extractedTrackSegments;
     }
     
     /**
@@ -88,39 +267,26 @@ public class TrackSegment
      * 
      * @param speedThreshold the speed of all points of a subsegment must be greater than this threshold
      * @param minPoints      the minimum number of points of a subsegment
-     * @return               the list of matching track segments
+     * @return               the list of matching track segments (views of this segment)
      */
     public List<TrackSegment> extractByTopSpeed(double speedThreshold, int minPoints)
     {
-        List<TrackSegment> extractedTrackSegments = new ArrayList<TrackSegment>();
-        TrackSegment trackSegment = new TrackSegment();
-        trackSegment.setWindInfoAvailable(this.isWindInfoAvailable());
-        for (TrackPoint trackPoint : this.trackPoints)
-        {
-            double speed = trackPoint.getSpeed();
-            if (speed > speedThreshold)
-            {
-                trackSegment.addTrackPoint(trackPoint);
-            }
-            else
-            {
-                if (trackSegment.size() > minPoints)
-                {
-                    extractedTrackSegments.add(trackSegment);
-                    trackSegment = new TrackSegment();
-                    trackSegment.setWindInfoAvailable(this.isWindInfoAvailable());
-                }
-                else if (trackSegment.size() > 0)
-                {
-                    trackSegment = new TrackSegment();
-                    trackSegment.setWindInfoAvailable(this.isWindInfoAvailable());
-                }
-            }
-        }
-        // check last segment
-        if (trackSegment.size() > minPoints)
+        return extract(new SpeedRunExtractor(speedThreshold, minPoints));
+    }
+    
+    /**
+     * Splits this segment into legs at the tacks and jibes found by the given detector.
+     * 
+     * @param detector the maneuver detector
+     * @return         the list of legs (views of this segment)
+     */
+    public List<TrackSegment> extractLegs(ManeuverDetector detector)
+    {
+        List<IndexRange> legs = ManeuverDetector.getLegs(detector.detect(this), size());
+        List<TrackSegment> extractedTrackSegments = new ArrayList<TrackSegment>(legs.size());
+        for (IndexRange leg : legs)
         {
-            extractedTrackSegments.add(trackSegment);
+            extractedTrackSegments.add(subSegment(leg));
         }
         return extractedTrackSegments;
     }
@@ -0,0 +1,321 @@
+package at.home.bernd;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies track segments for drawing and transfer. Both algorithms rank all points once and return a
+ * {@link SimplifiedTrack}, from which the points for any tolerance are filtered:
+ * <ul>
+ * <li>Douglas-Peucker (iterative with an explicit stack): the importance of a point is its distance from the chord it
+ * splits, capped by the importance of the enclosing split. The simplified line deviates at most by the tolerance from
+ * the dropped points.</li>
+ * <li>Visvalingam-Whyatt (with a binary heap): the point with the smallest triangle area to its neighbours is removed
+ * first; the importance is the square root of its effective area in square meters (made non-decreasing in the order
+ * of removal). It keeps the shape of curves better, but the tolerance is a length scale rather than a distance: the
+ * deviation may exceed it (by about a factor of two on noisy tracks).</li>
+ * </ul>
+ * The positions are projected onto a local plane (equirectangular with the cosine of the mean latitude).
+ */
+public class TrackSimplifier
+{
+    /**
+     * The simplification algorithms
+     */
+    public static enum SIMPLIFICATION_TYPE
+    {
+        douglasPeucker,
+        visvalingam
+    };
+
+    /**
+     * The meters per degree of latitude
+     */
+    private static final double METERS_PER_DEGREE = Math.toRadians(DataConversionUtility.EARTH_RADIUS);
+
+    /**
+     * The default tolerance of the finest level in meters
+     */
+    public static final double DEFAULT_MIN_TOLERANCE = 0.5;
+
+    /**
+     * The algorithm
+     */
+    private SIMPLIFICATION_TYPE type;
+
+    /**
+     * The tolerance of the finest level in meters
+     */
+    private double minTolerance = DEFAULT_MIN_TOLERANCE;
+
+    /**
+     * Creates a simplifier.
+     *
+     * @param type the algorithm
+     */
+    public TrackSimplifier(SIMPLIFICATION_TYPE type)
+    {
+        this.type = type;
+    }
+
+    /**
+     * @param minTolerance the tolerance of the finest precomputed level (meters for Douglas-Peucker, the square root
+     *                     of square meters for Visvalingam-Whyatt)
+     */
+    public void setMinTolerance(double minTolerance)
+    {
+        this.minTolerance = minTolerance;
+    }
+
+    /**
+     * Ranks the points of the given track segment.
+     *
+     * @param trackSegment the track segment
+     * @return             the simplified track
+     */
+    public SimplifiedTrack simplify(TrackSegment trackSegment)
+    {
+        double[] latitudes = trackSegment.getLatitudes();
+        double[] longitudes = trackSegment.getLongitudes();
+        int n = latitudes.length;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        if (n > 0)
+        {
+            double sum = 0;
+            for (int i = 0; i < n; i++)
+            {
+                sum += latitudes[i];
+            }
+            double kx = METERS_PER_DEGREE * Math.cos(Math.toRadians(sum / n));
+            for (int i = 0; i < n; i++)
+            {
+                x[i] = (longitudes[i] - longitudes[0]) * kx;
+                y[i] = (latitudes[i] - latitudes[0]) * METERS_PER_DEGREE;
+            }
+        }
+        double[] importances = type == SIMPLIFICATION_TYPE.douglasPeucker ? douglasPeucker(x, y) : visvalingam(x, y);
+        return new SimplifiedTrack(trackSegment, importances, type == SIMPLIFICATION_TYPE.douglasPeucker, minTolerance);
+    }
+
+    /**
+     * Computes the Douglas-Peucker importances of the given points.
+     *
+     * @param x the x coordinates in meters
+     * @param y the y coordinates in meters
+     * @return  the importances in meters
+     */
+    public double[] douglasPeucker(double[] x, double[] y)
+    {
+        int n = x.length;
+        double[] importances = new double[n];
+        if (n == 0)
+        {
+            return importances;
+        }
+        importances[0] = Double.POSITIVE_INFINITY;
+        importances[n - 1] = Double.POSITIVE_INFINITY;
+        // stack of ranges (start, end) with the importance of the enclosing split
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        double[] caps = new double[64];
+        starts[0] = 0;
+        ends[0] = n - 1;
+        caps[0] = Double.POSITIVE_INFINITY;
+        int top = 1;
+        while (top > 0)
+        {
+            top--;
+            int start = starts[top];
+            int end = ends[top];
+            double cap = caps[top];
+            if (end - start < 2)
+            {
+                continue;
+            }
+            int split = start + 1;
+            double maxDistance = -1;
+            for (int i = start + 1; i < end; i++)
+            {
+                double distance = segmentDistance(x[i], y[i], x[start], y[start], x[end], y[end]);
+                if (distance > maxDistance)
+                {
+                    maxDistance = distance;
+                    split = i;
+                }
+            }
+            double importance = Math.min(maxDistance, cap);
+            importances[split] = importance;
+            if (top + 2 > starts.length)
+            {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                ends = Arrays.copyOf(ends, ends.length * 2);
+                caps = Arrays.copyOf(caps, caps.length * 2);
+            }
+            starts[top] = start;
+            ends[top] = split;
+            caps[top++] = importance;
+            starts[top] = split;
+            ends[top] = end;
+            caps[top++] = importance;
+        }
+        return importances;
+    }
+
+    /**
+     * Computes the Visvalingam-Whyatt importances of the given points.
+     *
+     * @param x the x coordinates in meters
+     * @param y the y coordinates in meters
+     * @return  the importances (square roots of the effective areas in square meters, not deviations)
+     */
+    public double[] visvalingam(double[] x, double[] y)
+    {
+        int n = x.length;
+        double[] importances = new double[n];
+        if (n == 0)
+        {
+            return importances;
+        }
+        importances[0] = Double.POSITIVE_INFINITY;
+        importances[n - 1] = Double.POSITIVE_INFINITY;
+        int[] previous = new int[n];
+        int[] next = new int[n];
+        double[] areas = new double[n];
+        // binary min heap of the interior points ordered by area, position[i] is the heap slot of point i
+        int[] heap = new int[n];
+        int[] position = new int[n];
+        int size = 0;
+        for (int i = 1; i < n - 1; i++)
+        {
+            previous[i] = i - 1;
+            next[i] = i + 1;
+            areas[i] = area(x, y, i - 1, i, i + 1);
+            heap[size] = i;
+            position[i] = size++;
+        }
+        for (int slot = size / 2 - 1; slot >= 0; slot--)
+        {
+            siftDown(heap, position, areas, size, slot);
+        }
+        double maxArea = 0;
+        while (size > 0)
+        {
+            int i = heap[0];
+            heap[0] = heap[--size];
+            position[heap[0]] = 0;
+            siftDown(heap, position, areas, size, 0);
+            maxArea = Math.max(maxArea, areas[i]);
+            importances[i] = Math.sqrt(maxArea);
+            int p = previous[i];
+            int q = next[i];
+            next[p] = q;
+            previous[q] = p;
+            if (p > 0)
+            {
+                update(heap, position, areas, size, p, area(x, y, previous[p], p, q));
+            }
+            if (q < n - 1)
+            {
+                update(heap, position, areas, size, q, area(x, y, p, q, next[q]));
+            }
+        }
+        return importances;
+    }
+
+    /**
+     * Changes the area of a point in the heap.
+     */
+    private void update(int[] heap, int[] position, double[] areas, int size, int i, double area)
+    {
+        double old = areas[i];
+        areas[i] = area;
+        if (area < old)
+        {
+            siftUp(heap, position, areas, position[i]);
+        }
+        else
+        {
+            siftDown(heap, position, areas, size, position[i]);
+        }
+    }
+
+    /**
+     * Moves the point in the given heap slot up to its place.
+     */
+    private void siftUp(int[] heap, int[] position, double[] areas, int slot)
+    {
+        int i = heap[slot];
+        while (slot > 0)
+        {
+            int parent = (slot - 1) / 2;
+            if (areas[heap[parent]] <= areas[i])
+            {
+                break;
+            }
+            heap[slot] = heap[parent];
+            position[heap[slot]] = slot;
+            slot = parent;
+        }
+        heap[slot] = i;
+        position[i] = slot;
+    }
+
+    /**
+     * Moves the point in the given heap slot down to its place.
+     */
+    private void siftDown(int[] heap, int[] position, double[] areas, int size, int slot)
+    {
+        if (slot >= size)
+        {
+            return;
+        }
+        int i = heap[slot];
+        while (true)
+        {
+            int child = 2 * slot + 1;
+            if (child >= size)
+            {
+                break;
+            }
+            if (child + 1 < size && areas[heap[child + 1]] < areas[heap[child]])
+            {
+                child++;
+            }
+            if (areas[i] <= areas[heap[child]])
+            {
+                break;
+            }
+            heap[slot] = heap[child];
+            position[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = i;
+        position[i] = slot;
+    }
+
+    /**
+     * Returns the area of the triangle of the given points.
+     */
+    private static double area(double[] x, double[] y, int a, int b, int c)
+    {
+        return Math.abs((x[b] - x[a]) * (y[c] - y[a]) - (x[c] - x[a]) * (y[b] - y[a])) / 2;
+    }
+
+    /**
+     * Returns the distance of point p from the line segment from a to b.
+     */
+    static double segmentDistance(double px, double py, double ax, double ay, double bx, double by)
+    {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(px - ax - t * dx, py - ay - t * dy);
+    }
+
+    public String toString()
+    {
+        return "TrackSimplifier [type=" + type + ", minTolerance=" + minTolerance + "]";
+    }
+}
@@ -0,0 +1,162 @@
+package at.home.bernd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The wind series of several stations, keyed by station id. Sources are ingested concurrently; ingesting a station
+ * again merges the new rows into its series.
+ */
+public class WeatherArchive
+{
+    /**
+     * The property listing the ids of the configured stations (comma separated)
+     */
+    public static final String STATIONS_PROPERTY = "stations";
+
+    /**
+     * The series per station id
+     */
+    private ConcurrentHashMap<String, WindSeries> seriesByStation = new ConcurrentHashMap<String, WindSeries>();
+
+    /**
+     * Creates the sources of all stations configured in the given properties (see
+     * {@link WeatherSource#fromProperties(Properties, String)}).
+     *
+     * @param properties the properties
+     * @return           the sources
+     */
+    public static List<WeatherSource> createSources(Properties properties)
+    {
+        List<WeatherSource> sources = new ArrayList<WeatherSource>();
+        for (String stationId : properties.getProperty(STATIONS_PROPERTY, "").split(","))
+        {
+            if (! stationId.isBlank())
+            {
+                sources.add(WeatherSource.fromProperties(properties, stationId.strip()));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Reads the given source and merges its data into the series of its station.
+     *
+     * @param source the source
+     * @return       the merged series of the station
+     * @throws IOException if the source cannot be read
+     */
+    public WindSeries ingest(WeatherSource source) throws IOException
+    {
+        return add(source.read());
+    }
+
+    /**
+     * Merges the given series into the series of its station.
+     *
+     * @param series the series (sorted by time)
+     * @return       the merged series of the station
+     */
+    public WindSeries add(WindSeries series)
+    {
+        return seriesByStation.merge(series.getStationId(), series, (existing, added) -> existing.merge(added));
+    }
+
+    /**
+     * Reads the given sources concurrently (one source per worker) and merges their data into the series of their
+     * stations. All sources are read even if some fail.
+     *
+     * @param sources the sources
+     * @throws IOException if a source cannot be read (the first failure; further failures are suppressed)
+     */
+    public void ingestAll(List<WeatherSource> sources) throws IOException
+    {
+        if (sources.isEmpty())
+        {
+            return;
+        }
+        int nThreads = Math.min(sources.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
+        IOException failure = null;
+        try
+        {
+            List<Future<WindSeries>> futures = new ArrayList<Future<WindSeries>>();
+            for (WeatherSource source : sources)
+            {
+                futures.add(executorService.submit(() -> ingest(source)));
+            }
+            for (int i = 0; i < futures.size(); i++)
+            {
+                try
+                {
+                    futures.get(i).get();
+                }
+                catch (ExecutionException ex)
+                {
+                    IOException ioException = new IOException("Failed to ingest " + sources.get(i), ex.getCause());
+                    if (failure == null)
+                    {
+                        failure = ioException;
+                    }
+                    else
+                    {
+                        failure.addSuppressed(ioException);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while ingesting weather data", ex);
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the ids of the stations (sorted)
+     */
+    public Set<String> getStationIds()
+    {
+        return new TreeSet<String>(seriesByStation.keySet());
+    }
+
+    /**
+     * Returns the series of the given station.
+     *
+     * @param stationId the id of the station
+     * @return          the series or null if there is no data of the station
+     */
+    public WindSeries getSeries(String stationId)
+    {
+        return seriesByStation.get(stationId);
+    }
+
+    /**
+     * Returns the wind data of the given station.
+     *
+     * @param stationId the id of the station
+     * @return          the wind data sorted by time (empty if there is no data of the station)
+     */
+    public List<WindDataPoint> getWindData(String stationId)
+    {
+        WindSeries series = seriesByStation.get(stationId);
+        return series != null ? series.toWindDataPoints() : new ArrayList<WindDataPoint>();
+    }
+}
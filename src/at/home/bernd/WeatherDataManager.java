@@ -1,30 +1,32 @@
 package at.home.bernd;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.TimeZone;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
 import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import org.knowm.xchart.RadarChart;
+import org.knowm.xchart.RadarChartBuilder;
 import org.knowm.xchart.SwingWrapper;
 import org.knowm.xchart.XYChart;
 import org.knowm.xchart.XYChartBuilder;
 import org.knowm.xchart.style.XYStyler;
 import org.knowm.xchart.style.Styler.LegendPosition;
-import org.w3c.dom.DOMImplementation;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.ElementTraversal;
 
+import at.home.bernd.PipelineMetrics.STAGE;
 import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
 
 /**
@@ -37,6 +39,11 @@ public class WeatherDataManager
      */
     public static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("HH:mm:ss dd.MM.yyyy");
     
+    /**
+     * The source reading the XHTML table of the Podersdorf station
+     */
+    private static final WeatherSource PODERSDORF_SOURCE = new XhtmlTableWeatherSource("podersdorf", null, ColumnMapping.podersdorf());
+    
     /**
      * Set the time zone accordingly!
      */
@@ -50,74 +57,114 @@ public class WeatherDataManager
      */
     public List<WindDataPoint> parseWindData(String url)
     {
-        DataConversionUtility dcu = DataConversionUtility.getInstance();
-
-        List<WindDataPoint> windList = new ArrayList<WindDataPoint>();
         try
         {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            dbf.setExpandEntityReferences(false);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(url);
-            DOMImplementation domImpl = doc.getImplementation();
-            if (! domImpl.hasFeature("ElementTraversal", "1.0"))
-            {
-                System.err.println("The DOM implementation does not claim support for ElementTraversal.");
-            }
-            ElementTraversal et = (ElementTraversal) doc.getDocumentElement();
-            Element firstElementChild = et.getFirstElementChild();
-            ElementTraversal trElement = (ElementTraversal) firstElementChild;
-            while (trElement != null)
+            return parseWindData(new ByteArrayInputStream(CompressedInput.fetch(url)));
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+        return new ArrayList<WindDataPoint>();
+    }
+    
+    /**
+     * Parses the wind data of the given file (plain, gzip or zip compressed). The entries of zip archives are parsed in
+     * parallel and merged.
+     * 
+     * @param path the file
+     * @return     the wind data sorted by time
+     */
+    public List<WindDataPoint> parseWindData(Path path)
+    {
+        try
+        {
+            return merge(CompressedInput.parseAll(path, this::parseWindDocument));
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+        return new ArrayList<WindDataPoint>();
+    }
+    
+    /**
+     * Parses the wind data of the given stream (plain, gzip or zip compressed).
+     * 
+     * @param inputStream the stream
+     * @return            the wind data sorted by time
+     */
+    public List<WindDataPoint> parseWindData(InputStream inputStream)
+    {
+        try
+        {
+            return merge(CompressedInput.parseAll(inputStream, this::parseWindDocument));
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+        return new ArrayList<WindDataPoint>();
+    }
+    
+    /**
+     * Parses the wind data of the given channel (plain, gzip or zip compressed).
+     * 
+     * @param channel the channel
+     * @return        the wind data sorted by time
+     */
+    public List<WindDataPoint> parseWindData(ReadableByteChannel channel)
+    {
+        return parseWindData(CompressedInput.open(channel));
+    }
+    
+    /**
+     * Merges the given lists of wind data (e.g. of several zip entries): the result is sorted by time and wind data
+     * points with duplicate timestamps are removed.
+     * 
+     * @param windDataLists the lists of wind data
+     * @return              the merged wind data
+     */
+    private List<WindDataPoint> merge(List<List<WindDataPoint>> windDataLists)
+    {
+        if (windDataLists.size() == 1)
+        {
+            return windDataLists.get(0);
+        }
+        List<WindDataPoint> all = new ArrayList<WindDataPoint>();
+        for (List<WindDataPoint> windData : windDataLists)
+        {
+            all.addAll(windData);
+        }
+        all.sort((a, b) -> Long.compare(a.getTime(), b.getTime()));
+        List<WindDataPoint> merged = new ArrayList<WindDataPoint>(all.size());
+        for (WindDataPoint windDataPoint : all)
+        {
+            if (merged.isEmpty() || merged.get(merged.size() - 1).getTime() != windDataPoint.getTime())
             {
-                // skip title row
-                if (firstElementChild != trElement)
-                {
-                    WindDataPoint wdt = new WindDataPoint();
-                    windList.add(wdt);
-                    ElementTraversal tdElement = (ElementTraversal) trElement.getFirstElementChild();
-                    int idx = 0;
-                    while (tdElement != null)
-                    {
-                        Element td = (Element) tdElement;
-                        String text = td.getTextContent();
-                        if (idx == 0)
-                        {
-                            wdt.setTimestamp(dcu.parseDateString(text, DATE_FORMAT));
-                        }
-                        if (idx == 1)
-                        {
-                            wdt.setDirection(dcu.mapDirection(text));
-                        }
-                        if (idx == 2)
-                        {
-                            wdt.setWindSpeed(Double.parseDouble(text));
-                        }
-                        if (idx == 5)
-                        {
-                            wdt.setMaxWindSpeed(Double.parseDouble(text));
-                        }
-                        if (idx == 8)
-                        {
-                            wdt.setTemperature(dcu.parseTemperatureString(text));
-                        }
-                        if (idx == 9)
-                        {
-                            wdt.setChill(dcu.parseTemperatureString(text));
-                        }
-                        tdElement = (ElementTraversal) tdElement.getNextElementSibling();
-                        idx++;
-                    }
-                }
-                trElement = (ElementTraversal) trElement.getNextElementSibling();
+                merged.add(windDataPoint);
             }
         }
-        catch (Exception ex)
+        return merged;
+    }
+    
+    /**
+     * Parses a single (uncompressed) wind data document (table in XHTML format).
+     * 
+     * @param inputStream the stream of the document
+     * @return            the wind data sorted by time
+     */
+    private List<WindDataPoint> parseWindDocument(InputStream inputStream)
+    {
+        try
+        {
+            return PODERSDORF_SOURCE.read(inputStream).toWindDataPoints();
+        }
+        catch (IOException ex)
         {
             ex.printStackTrace();
         }
-        Collections.reverse(windList);
-        return windList;
+        return new ArrayList<WindDataPoint>();
     }
 
     /**
@@ -197,6 +244,8 @@ public class WeatherDataManager
      */
     public void makeWindChart(List<WindDataPoint> windList)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         XYChartBuilder windChartBuilder = new XYChartBuilder();
         windChartBuilder.width(1600);
         windChartBuilder.height(400);
@@ -212,8 +261,11 @@ public class WeatherDataManager
         styler.setLegendPosition(LegendPosition.OutsideS);
         styler.setHasAnnotations(false);
         
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
         SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(windChart);
         swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
     }
     
     /**
@@ -223,6 +275,8 @@ public class WeatherDataManager
      */
     public void makeWindDirectionChart(List<WindDataPoint> windList)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         XYChartBuilder windChartBuilder = new XYChartBuilder();
         windChartBuilder.width(1600);
         windChartBuilder.height(400);
@@ -237,8 +291,11 @@ public class WeatherDataManager
         styler.setLegendPosition(LegendPosition.OutsideS);
         styler.setHasAnnotations(false);
         
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
         SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(windDirectionChart);
         swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
     }
     
     /**
@@ -248,6 +305,8 @@ public class WeatherDataManager
      */
     public void makeTemperatureChart(List<WindDataPoint> windList)
     {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
         XYChartBuilder temperatureChartBuilder = new XYChartBuilder();
         temperatureChartBuilder.width(1600);
         temperatureChartBuilder.height(400);
@@ -263,8 +322,71 @@ public class WeatherDataManager
         styler.setLegendPosition(LegendPosition.OutsideS);
         styler.setHasAnnotations(false);
         
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
         SwingWrapper<XYChart> swingWrapper = new SwingWrapper<XYChart>(temperatureChart);
         swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
+    }
+    
+    /**
+     * Makes a wind rose chart (polar chart of the direction frequencies per wind speed bin) for the given list of Wind
+     * data points.
+     * 
+     * @param windList the list of Wind data points
+     */
+    public void makeWindRoseChart(List<WindDataPoint> windList)
+    {
+        WindRose windRose = new WindRose();
+        windRose.add(windList);
+        makeWindRoseChart(windRose);
+    }
+    
+    /**
+     * Makes a wind rose chart (polar chart of the direction frequencies per wind speed bin) for the given wind rose.
+     * The bins are stacked: the polygon of a bin includes the frequencies of the lower bins; the radius is scaled to
+     * the most frequent sector.
+     * 
+     * @param windRose the wind rose
+     */
+    public void makeWindRoseChart(WindRose windRose)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        RadarChartBuilder windRoseChartBuilder = new RadarChartBuilder();
+        windRoseChartBuilder.width(800);
+        windRoseChartBuilder.height(800);
+        windRoseChartBuilder.title("Wind Rose");
+        
+        RadarChart windRoseChart = windRoseChartBuilder.build();
+        windRoseChart.setVariableLabels(WindRose.SECTOR_NAMES);
+        long maxCount = 1;
+        for (int sector = 0; sector < WindRose.N_SECTORS; sector++)
+        {
+            maxCount = Math.max(maxCount, windRose.getCount(sector));
+        }
+        // the outermost polygon first, so the lower bins are painted on top
+        for (int bin = windRose.getBinCount() - 1; bin >= 0; bin--)
+        {
+            double[] values = new double[WindRose.N_SECTORS];
+            for (int sector = 0; sector < WindRose.N_SECTORS; sector++)
+            {
+                long count = 0;
+                for (int lowerBin = 0; lowerBin <= bin; lowerBin++)
+                {
+                    count += windRose.getCount(sector, lowerBin);
+                }
+                values[sector] = (double) count / maxCount;
+            }
+            windRoseChart.addSeries(windRose.getBinName(bin) + " km / h", values);
+        }
+        windRoseChart.getStyler().setLegendPosition(LegendPosition.OutsideS);
+        
+        metrics.stop(STAGE.chartBuild, start);
+        start = metrics.start();
+        SwingWrapper<RadarChart> swingWrapper = new SwingWrapper<RadarChart>(windRoseChart);
+        swingWrapper.displayChart();
+        metrics.stop(STAGE.render, start);
     }
     
     /**
@@ -276,6 +398,19 @@ public class WeatherDataManager
      * @return the sublist
      */
     public List<WindDataPoint> getWindData(List<WindDataPoint> windData, Date from, Date to)
+    {
+        return getWindData(windData, from.getTime(), to.getTime());
+    }
+
+    /**
+     * Returns a sublist of the given wind data list defined by the "from" and "to" timestamps.
+     * 
+     * @param windData the original list
+     * @param from the "from" timestamp in epoch milliseconds
+     * @param to the "to" timestamp in epoch milliseconds
+     * @return the sublist
+     */
+    public List<WindDataPoint> getWindData(List<WindDataPoint> windData, long from, long to)
     {
         List<WindDataPoint> result = new ArrayList<WindDataPoint>();
         WindDataPoint firstWdp = null;
@@ -283,8 +418,8 @@ public class WeatherDataManager
         boolean isLastWdpAdded = false;
         for (WindDataPoint wdp : windData)
         {
-            Date ts = wdp.getTimestamp();
-            if (from.before(ts) && ! isFirstWdpAdded)
+            long ts = wdp.getTime();
+            if (from < ts && ! isFirstWdpAdded)
             {
                 if (firstWdp != null)
                 {
@@ -303,7 +438,7 @@ public class WeatherDataManager
                     break;
                 }
             }
-            if (from.before(ts) && to.after(ts))
+            if (from < ts && to > ts)
             {
                 result.add(wdp);
             }
@@ -377,22 +512,23 @@ public class WeatherDataManager
         }
         makeWindChart(windData);
         makeWindDirectionChart(windData);
+        makeWindRoseChart(windData);
         makeTemperatureChart(windData);
     }
 
     /**
      * Creates a list of empty wind data points based on the given timestamps
      * 
-     * @param timstamps the array of timestamps to be used for the wind data points
+     * @param times the timestamps in epoch milliseconds to be used for the wind data points
      * @return the list of empty wind data points
      */
-    private List<WindDataPoint> createEmptyWindDataPoints(Date[] timstamps)
+    private List<WindDataPoint> createEmptyWindDataPoints(long[] times)
     {
-        List<WindDataPoint> emptyWindDataPoints = new ArrayList<WindDataPoint>();
-        for (Date timestamp : timstamps)
+        List<WindDataPoint> emptyWindDataPoints = new ArrayList<WindDataPoint>(times.length);
+        for (long time : times)
         {
             WindDataPoint wdpt = new WindDataPoint();
-            wdpt.setTimestamp(timestamp);
+            wdpt.setTime(time);
             emptyWindDataPoints.add(wdpt);
         }
         return emptyWindDataPoints;
@@ -414,7 +550,7 @@ public class WeatherDataManager
         for (int i = 0; i < nDataPoints; i++)
         {
             WindDataPoint windDataPoint = windDataPoints.get(i);
-            xData[i] = (double) windDataPoint.getTimestamp().getTime();
+            xData[i] = windDataPoint.getTime();
             switch (windDataType)
             {
                 case windSpeed:
@@ -436,36 +572,78 @@ public class WeatherDataManager
                     break;
             }
         }
+        if (windDataType == WIND_DATA_TYPE.direction)
+        {
+            // the spline of the unwrapped directions turns the short way over north
+            DirectionStatistics.unwrap(yData);
+        }
+        fillMissingValues(xData, yData);
         SplineInterpolator splineInterpolator = new SplineInterpolator();
         PolynomialSplineFunction splineFunction = splineInterpolator.interpolate(xData, yData);
         return splineFunction;
     }
 
 
+    /**
+     * Replaces missing values (NaN, e.g. an unknown compass point) by a linear interpolation between the neighbouring
+     * values; leading and trailing gaps take the nearest value. A single missing value would otherwise turn the whole
+     * spline into NaN. Values which are all missing are left unchanged.
+     * 
+     * @param xData the timestamps
+     * @param yData the values (changed in place)
+     */
+    static void fillMissingValues(double[] xData, double[] yData)
+    {
+        int previous = -1;
+        for (int i = 0; i <= yData.length; i++)
+        {
+            if (i < yData.length && Double.isNaN(yData[i]))
+            {
+                continue;
+            }
+            for (int j = previous + 1; j < i; j++)
+            {
+                if (previous < 0)
+                {
+                    yData[j] = i < yData.length ? yData[i] : Double.NaN;
+                }
+                else if (i == yData.length)
+                {
+                    yData[j] = yData[previous];
+                }
+                else
+                {
+                    double t = (xData[j] - xData[previous]) / (xData[i] - xData[previous]);
+                    yData[j] = yData[previous] + t * (yData[i] - yData[previous]);
+                }
+            }
+            previous = i;
+        }
+    }
+
     /**
      * Populates the interpolated wind data based on the given spline funtion.
      * 
      * @param interpolatedWindData the wind data to be populated
-     * @param minWindTimestamp     the minimum timestamp of available wind data
-     * @param maxWindTimestamp     the maximum timestamp of available wind data
+     * @param minWindTime          the minimum timestamp of available wind data in epoch milliseconds
+     * @param maxWindTime          the maximum timestamp of available wind data in epoch milliseconds
      * @param windDataType         the type of wind data
      * @param spline               the spline function responsible for the interpolation
      */
     private void populateInterpolatedWindData(List<WindDataPoint> interpolatedWindData,
-                                              Date minWindTimestamp,
-                                              Date maxWindTimestamp,
+                                              long minWindTime,
+                                              long maxWindTime,
                                               WIND_DATA_TYPE windDataType,
                                               PolynomialSplineFunction spline)
     {
         for (WindDataPoint windDataPoint : interpolatedWindData)
         {
-            double minWTst = (double) minWindTimestamp.getTime();
-            double maxWTst = (double) maxWindTimestamp.getTime();
-            double timestampAsLong = (double) windDataPoint.getTimestamp().getTime();
-            if (timestampAsLong < minWTst || timestampAsLong > maxWTst)
+            long time = windDataPoint.getTime();
+            if (time < minWindTime || time > maxWindTime)
             {
                 continue;
             }
+            double timestampAsLong = time;
             switch (windDataType)
             {
                 case windSpeed:
@@ -475,7 +653,7 @@ public class WeatherDataManager
                     windDataPoint.setMaxWindSpeed(spline.value(timestampAsLong));
                     break;
                 case direction:
-                    windDataPoint.setDirection(spline.value(timestampAsLong));
+                    windDataPoint.setDirection(DirectionStatistics.normalize(spline.value(timestampAsLong)));
                     break;
                 case temperature:
                     windDataPoint.setTemperature(spline.value(timestampAsLong));
@@ -493,39 +671,146 @@ public class WeatherDataManager
      * Returns a list of interpolated wind data points.
      * 
      * @param windDataPoints the original wind data points
-     * @param timstamps      the timestamps to be used for the resulting list
+     * @param times          the timestamps in epoch milliseconds to be used for the resulting list
      * @return
      */
-    public List<WindDataPoint> interpolateWindData(List<WindDataPoint> windDataPoints, Date[] timstamps)
+    public List<WindDataPoint> interpolateWindData(List<WindDataPoint> windDataPoints, long[] times)
     {
-        Date minWindTimestamp = windDataPoints.get(0).getTimestamp();
-        Date maxWindTimestamp = windDataPoints.get(windDataPoints.size() - 1).getTimestamp();
-        List<WindDataPoint> interpolatedWindData = createEmptyWindDataPoints(timstamps);
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        long minWindTime = windDataPoints.get(0).getTime();
+        long maxWindTime = windDataPoints.get(windDataPoints.size() - 1).getTime();
+        List<WindDataPoint> interpolatedWindData = createEmptyWindDataPoints(times);
         populateInterpolatedWindData(interpolatedWindData,
-                                     minWindTimestamp,
-                                     maxWindTimestamp,
+                                     minWindTime,
+                                     maxWindTime,
                                      WIND_DATA_TYPE.windSpeed,
                                      createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.windSpeed));
         populateInterpolatedWindData(interpolatedWindData,
-                                     minWindTimestamp,
-                                     maxWindTimestamp,
+                                     minWindTime,
+                                     maxWindTime,
                                      WIND_DATA_TYPE.maxWindSpeed,
                                      createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.maxWindSpeed));
         populateInterpolatedWindData(interpolatedWindData,
-                                     minWindTimestamp,
-                                     maxWindTimestamp,
+                                     minWindTime,
+                                     maxWindTime,
                                      WIND_DATA_TYPE.direction,
                                      createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.direction));
         populateInterpolatedWindData(interpolatedWindData,
-                                     minWindTimestamp,
-                                     maxWindTimestamp,
+                                     minWindTime,
+                                     maxWindTime,
                                      WIND_DATA_TYPE.temperature,
                                      createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.temperature));
         populateInterpolatedWindData(interpolatedWindData,
-                                     minWindTimestamp,
-                                     maxWindTimestamp,
+                                     minWindTime,
+                                     maxWindTime,
                                      WIND_DATA_TYPE.chill,
                                      createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.chill));
+        metrics.stop(STAGE.interpolation, start, times.length);
         return interpolatedWindData;
     }
+    
+    /**
+     * Interpolates the wind data (wind speed, max. wind speed, direction) at the timestamps of the given track segment
+     * and writes the values directly into its track points. Track points and spline knots are usually both sorted by
+     * time, so the interpolation is a single merge sweep without any intermediate wind data points; a track point
+     * earlier than its predecessor (unsorted input) restarts the sweep at its piece found by a binary search. Track
+     * points outside the time span of the wind data are left unchanged.
+     * 
+     * @param trackSegment   the track segment
+     * @param windDataPoints the original wind data points (at least 3, sorted by time)
+     * @return               true if wind data has been added to at least one track point
+     */
+    public boolean addInterpolatedWindData(TrackSegment trackSegment, List<WindDataPoint> windDataPoints)
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long start = metrics.start();
+        PolynomialSplineFunction windSpeedSpline = createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.windSpeed);
+        double[][] windSpeedCoefficients = getCoefficients(windSpeedSpline);
+        double[][] maxWindSpeedCoefficients = getCoefficients(createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.maxWindSpeed));
+        double[][] directionCoefficients = getCoefficients(createInterpolationFunction(windDataPoints, WIND_DATA_TYPE.direction));
+        // the knots are the epoch milliseconds of the wind data, so they are compared as longs
+        long[] knots = toTimes(windSpeedSpline.getKnots());
+        int nPieces = knots.length - 1;
+        long minWTst = knots[0];
+        long maxWTst = knots[nPieces];
+        
+        boolean windInfoAvailable = false;
+        int piece = 0;
+        for (TrackPoint trackPoint : trackSegment.getTrackPoints())
+        {
+            long time = trackPoint.getTime();
+            if (time < minWTst || time > maxWTst)
+            {
+                continue;
+            }
+            if (time < knots[piece])
+            {
+                int index = Arrays.binarySearch(knots, time);
+                piece = index >= 0 ? index : -index - 2;
+            }
+            while (piece < nPieces - 1 && time >= knots[piece + 1])
+            {
+                piece++;
+            }
+            double x = time - knots[piece];
+            trackPoint.setWindSpeed(evaluate(windSpeedCoefficients[piece], x));
+            trackPoint.setMaxWindSpeed(evaluate(maxWindSpeedCoefficients[piece], x));
+            trackPoint.setWindDirection(DirectionStatistics.normalize(evaluate(directionCoefficients[piece], x)));
+            windInfoAvailable = true;
+        }
+        trackSegment.setWindInfoAvailable(windInfoAvailable);
+        metrics.stop(STAGE.interpolation, start, trackSegment.size());
+        return windInfoAvailable;
+    }
+    
+    /**
+     * Converts the knots of a spline function back into epoch milliseconds.
+     * 
+     * @param knots the knots
+     * @return the timestamps in epoch milliseconds
+     */
+    private long[] toTimes(double[] knots)
+    {
+        long[] times = new long[knots.length];
+        for (int i = 0; i < knots.length; i++)
+        {
+            times[i] = (long) knots[i];
+        }
+        return times;
+    }
+    
+    /**
+     * Returns the polynomial coefficients of all pieces of the given spline function.
+     * 
+     * @param spline the spline function
+     * @return the coefficients per piece (constant term first)
+     */
+    private double[][] getCoefficients(PolynomialSplineFunction spline)
+    {
+        PolynomialFunction[] polynomials = spline.getPolynomials();
+        double[][] coefficients = new double[polynomials.length][];
+        for (int i = 0; i < polynomials.length; i++)
+        {
+            coefficients[i] = polynomials[i].getCoefficients();
+        }
+        return coefficients;
+    }
+    
+    /**
+     * Evaluates a polynomial (Horner's method).
+     * 
+     * @param coefficients the coefficients (constant term first)
+     * @param x            the argument
+     * @return the value
+     */
+    private double evaluate(double[] coefficients, double x)
+    {
+        double value = coefficients[coefficients.length - 1];
+        for (int i = coefficients.length - 2; i >= 0; i--)
+        {
+            value = value * x + coefficients[i];
+        }
+        return value;
+    }
 }
@@ -0,0 +1,102 @@
+package at.home.bernd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * A source of weather data of a single station (service provider interface). An adapter only knows the format of the
+ * provider (XHTML table, CSV, JSON, ...): it reports the fields of every row to a {@link WindRowDecoder}, which maps
+ * and converts them according to the {@link ColumnMapping} of the source.
+ */
+public interface WeatherSource
+{
+    /**
+     * The formats of the available adapters
+     */
+    public static enum FORMAT
+    {
+        xhtml,
+        csv,
+        json
+    };
+
+    /**
+     * @return the id of the station
+     */
+    public String getStationId();
+
+    /**
+     * @return the location of the data (URL or file path)
+     */
+    public String getLocation();
+
+    /**
+     * @return the column mapping
+     */
+    public ColumnMapping getColumnMapping();
+
+    /**
+     * Reads the data from the location of this source (plain, gzip or zip compressed).
+     *
+     * @return the wind series sorted by time
+     * @throws IOException if the data cannot be read
+     */
+    public WindSeries read() throws IOException;
+
+    /**
+     * Reads the data from the given (uncompressed) stream.
+     *
+     * @param inputStream the stream
+     * @return            the wind series sorted by time
+     * @throws IOException if the data cannot be read
+     */
+    public WindSeries read(InputStream inputStream) throws IOException;
+
+    /**
+     * Reports the rows of the given (uncompressed) stream to the given decoder.
+     *
+     * @param inputStream the stream
+     * @param decoder     the decoder
+     * @throws IOException if the data cannot be read
+     */
+    public void decode(InputStream inputStream, WindRowDecoder decoder) throws IOException;
+
+    /**
+     * Creates the adapter for the given format.
+     *
+     * @param format    the format
+     * @param stationId the id of the station
+     * @param location  the location of the data (URL or file path)
+     * @param mapping   the column mapping
+     * @return          the adapter
+     */
+    public static WeatherSource create(FORMAT format, String stationId, String location, ColumnMapping mapping)
+    {
+        switch (format)
+        {
+            case csv:
+                return new CsvWeatherSource(stationId, location, mapping);
+            case json:
+                return new JsonWeatherSource(stationId, location, mapping);
+            default:
+                return new XhtmlTableWeatherSource(stationId, location, mapping);
+        }
+    }
+
+    /**
+     * Creates the adapter of the given station as configured in the given properties: &lt;stationId&gt;.format,
+     * &lt;stationId&gt;.location and the column mapping (see {@link ColumnMapping#fromProperties(Properties, String)}).
+     *
+     * @param properties the properties
+     * @param stationId  the id of the station
+     * @return           the adapter
+     */
+    public static WeatherSource fromProperties(Properties properties, String stationId)
+    {
+        String prefix = stationId + ".";
+        FORMAT format = FORMAT.valueOf(properties.getProperty(prefix + "format", FORMAT.xhtml.name()));
+        String location = properties.getProperty(prefix + "location");
+        return create(format, stationId, location, ColumnMapping.fromProperties(properties, prefix));
+    }
+}
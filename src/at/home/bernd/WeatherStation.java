@@ -0,0 +1,82 @@
+package at.home.bernd;
+
+import java.util.Properties;
+
+/**
+ * A weather station: its id (the key of its series in the {@link WeatherArchive}) and its position.
+ */
+public class WeatherStation
+{
+    /**
+     * The id of the station
+     */
+    private String stationId;
+
+    /**
+     * The latitude in degrees
+     */
+    private double latitude;
+
+    /**
+     * The longitude in degrees
+     */
+    private double longitude;
+
+    /**
+     * Creates a new station.
+     *
+     * @param stationId the id of the station
+     * @param latitude  the latitude in degrees
+     * @param longitude the longitude in degrees
+     */
+    public WeatherStation(String stationId, double latitude, double longitude)
+    {
+        this.stationId = stationId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Reads the position of the given station from the given properties (&lt;stationId&gt;.latitude and
+     * &lt;stationId&gt;.longitude).
+     *
+     * @param properties the properties
+     * @param stationId  the id of the station
+     * @return           the station
+     */
+    public static WeatherStation fromProperties(Properties properties, String stationId)
+    {
+        double latitude = Double.parseDouble(properties.getProperty(stationId + ".latitude"));
+        double longitude = Double.parseDouble(properties.getProperty(stationId + ".longitude"));
+        return new WeatherStation(stationId, latitude, longitude);
+    }
+
+    /**
+     * @return the stationId
+     */
+    public String getStationId()
+    {
+        return stationId;
+    }
+
+    /**
+     * @return the latitude
+     */
+    public double getLatitude()
+    {
+        return latitude;
+    }
+
+    /**
+     * @return the longitude
+     */
+    public double getLongitude()
+    {
+        return longitude;
+    }
+
+    public String toString()
+    {
+        return "WeatherStation [stationId=" + stationId + ", latitude=" + latitude + ", longitude=" + longitude + "]";
+    }
+}
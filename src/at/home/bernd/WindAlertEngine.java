@@ -0,0 +1,392 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Evaluates {@link AlertRule}s on every new reading of a station and sends an {@link Alert} to the sinks whenever the
+ * conditions of a rule become true or false again. The rules of a station with the same window duration share one
+ * {@link WindWindow}, so a reading updates every window in amortized O(1) and history is never re-scanned. Within a
+ * window the rules are sorted by their minimum mean wind speed: only the rules whose threshold is reached are
+ * evaluated, the others can only be cleared (found via a bit set of the active rules).
+ */
+public class WindAlertEngine
+{
+    /**
+     * The groups of rules sharing a window per station
+     */
+    private Map<String, List<RuleGroup>> groupsByStation = new HashMap<String, List<RuleGroup>>();
+
+    /**
+     * The sinks
+     */
+    private List<AlertSink> sinks = new CopyOnWriteArrayList<AlertSink>();
+
+    /**
+     * Adds a sink.
+     *
+     * @param sink the sink
+     */
+    public void addSink(AlertSink sink)
+    {
+        sinks.add(sink);
+    }
+
+    /**
+     * Adds a rule. The window of a new window duration starts empty and is filled by the following readings. The rule
+     * must not be modified afterwards.
+     *
+     * @param rule the rule
+     */
+    public synchronized void addRule(AlertRule rule)
+    {
+        List<RuleGroup> groups = groupsByStation.computeIfAbsent(rule.getStationId(), id -> new ArrayList<RuleGroup>());
+        for (RuleGroup group : groups)
+        {
+            if (group.window.getDuration() == rule.getWindowMillis())
+            {
+                group.add(rule);
+                return;
+            }
+        }
+        RuleGroup group = new RuleGroup(new WindWindow(rule.getWindowMillis()));
+        group.add(rule);
+        groups.add(group);
+    }
+
+    /**
+     * Removes a rule (without a cleared alert).
+     *
+     * @param rule the rule
+     * @return     true if the rule has been removed
+     */
+    public synchronized boolean removeRule(AlertRule rule)
+    {
+        List<RuleGroup> groups = groupsByStation.get(rule.getStationId());
+        if (groups != null)
+        {
+            for (RuleGroup group : groups)
+            {
+                if (group.window.getDuration() == rule.getWindowMillis() && group.remove(rule))
+                {
+                    if (group.rules.length == 0)
+                    {
+                        groups.remove(group);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of rules
+     */
+    public synchronized int getRuleCount()
+    {
+        int count = 0;
+        for (List<RuleGroup> groups : groupsByStation.values())
+        {
+            for (RuleGroup group : groups)
+            {
+                count += group.rules.length;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if the conditions of the given rule are currently true.
+     *
+     * @param rule the rule
+     * @return     true if the rule is active
+     */
+    public synchronized boolean isActive(AlertRule rule)
+    {
+        List<RuleGroup> groups = groupsByStation.get(rule.getStationId());
+        if (groups != null)
+        {
+            for (RuleGroup group : groups)
+            {
+                int index = group.indexOf(rule);
+                if (index >= 0)
+                {
+                    return group.active.get(index);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the rules of the station of the given series on all of its rows (e.g. the new readings published by
+     * the {@link WindDataBroadcaster}).
+     *
+     * @param series the series (sorted by time)
+     */
+    public void onSeries(WindSeries series)
+    {
+        for (int i = 0; i < series.size(); i++)
+        {
+            onReading(series.getStationId(),
+                      series.getTime(i),
+                      series.getValue(WIND_DATA_TYPE.windSpeed, i),
+                      series.getValue(WIND_DATA_TYPE.maxWindSpeed, i),
+                      series.getValue(WIND_DATA_TYPE.direction, i));
+        }
+    }
+
+    /**
+     * Evaluates the rules of the given station on a new reading.
+     *
+     * @param stationId     the id of the station
+     * @param windDataPoint the reading
+     */
+    public void onReading(String stationId, WindDataPoint windDataPoint)
+    {
+        onReading(stationId,
+                  windDataPoint.getTime(),
+                  windDataPoint.getWindSpeed(),
+                  windDataPoint.getMaxWindSpeed(),
+                  windDataPoint.getDirection());
+    }
+
+    /**
+     * Evaluates the rules of the given station on a new reading. Readings not newer than the latest one of a window
+     * are ignored.
+     *
+     * @param stationId the id of the station
+     * @param time      the time in epoch milliseconds
+     * @param windSpeed the wind speed in km/h
+     * @param gust      the maximum wind speed in km/h
+     * @param direction the direction in degrees
+     */
+    public void onReading(String stationId, long time, double windSpeed, double gust, double direction)
+    {
+        List<Alert> alerts = null;
+        synchronized (this)
+        {
+            List<RuleGroup> groups = groupsByStation.get(stationId);
+            if (groups == null)
+            {
+                return;
+            }
+            for (RuleGroup group : groups)
+            {
+                if (group.window.add(time, windSpeed, gust, direction))
+                {
+                    alerts = group.evaluate(time, alerts);
+                }
+            }
+        }
+        // the sinks are called outside the lock
+        if (alerts != null)
+        {
+            for (Alert alert : alerts)
+            {
+                for (AlertSink sink : sinks)
+                {
+                    sink.send(alert);
+                }
+            }
+        }
+    }
+
+    /**
+     * The rules of a station sharing a window, sorted by their minimum mean wind speed.
+     */
+    private static class RuleGroup
+    {
+        /**
+         * The window
+         */
+        private final WindWindow window;
+
+        /**
+         * The rules sorted by their minimum mean wind speed
+         */
+        private AlertRule[] rules = new AlertRule[0];
+
+        /**
+         * The minimum mean wind speeds of the rules (ascending; rules without one have -Infinity)
+         */
+        private double[] thresholds = new double[0];
+
+        /**
+         * The indices of the active rules
+         */
+        private BitSet active = new BitSet();
+
+        RuleGroup(WindWindow window)
+        {
+            this.window = window;
+        }
+
+        /**
+         * Adds a rule.
+         *
+         * @param rule the rule
+         */
+        void add(AlertRule rule)
+        {
+            AlertRule[] newRules = Arrays.copyOf(rules, rules.length + 1);
+            newRules[rules.length] = rule;
+            update(newRules);
+        }
+
+        /**
+         * Removes a rule.
+         *
+         * @param rule the rule
+         * @return     true if the rule has been removed
+         */
+        boolean remove(AlertRule rule)
+        {
+            int index = indexOf(rule);
+            if (index < 0)
+            {
+                return false;
+            }
+            AlertRule[] newRules = new AlertRule[rules.length - 1];
+            System.arraycopy(rules, 0, newRules, 0, index);
+            System.arraycopy(rules, index + 1, newRules, index, rules.length - index - 1);
+            update(newRules);
+            return true;
+        }
+
+        /**
+         * Returns the index of the given rule.
+         *
+         * @param rule the rule
+         * @return     the index or -1
+         */
+        int indexOf(AlertRule rule)
+        {
+            for (int i = 0; i < rules.length; i++)
+            {
+                if (rules[i] == rule)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Sorts the given rules and keeps the state of the rules already known.
+         *
+         * @param newRules the new rules
+         */
+        private void update(AlertRule[] newRules)
+        {
+            Map<AlertRule, Boolean> wasActive = new IdentityHashMap<AlertRule, Boolean>();
+            for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1))
+            {
+                wasActive.put(rules[i], Boolean.TRUE);
+            }
+            Arrays.sort(newRules, (a, b) -> Double.compare(threshold(a), threshold(b)));
+            rules = newRules;
+            thresholds = new double[newRules.length];
+            active = new BitSet(newRules.length);
+            for (int i = 0; i < newRules.length; i++)
+            {
+                thresholds[i] = threshold(newRules[i]);
+                if (wasActive.containsKey(newRules[i]))
+                {
+                    active.set(i);
+                }
+            }
+        }
+
+        /**
+         * Returns the minimum mean wind speed of the given rule.
+         *
+         * @param rule the rule
+         * @return     the minimum mean wind speed or -Infinity if there is none
+         */
+        private static double threshold(AlertRule rule)
+        {
+            return Double.isNaN(rule.getMinMeanSpeed()) ? Double.NEGATIVE_INFINITY : rule.getMinMeanSpeed();
+        }
+
+        /**
+         * Evaluates the rules after a reading has been added to the window.
+         *
+         * @param time   the time of the reading
+         * @param alerts the alerts so far (may be null)
+         * @return       the alerts (null if there are none)
+         */
+        List<Alert> evaluate(long time, List<Alert> alerts)
+        {
+            // rules beyond the cutoff cannot match: their minimum mean wind speed is not reached
+            int cutoff = window.isFull() ? upperBound(thresholds, window.getMeanSpeed()) : 0;
+            for (int i = 0; i < cutoff; i++)
+            {
+                boolean matches = rules[i].matches(window);
+                if (matches != active.get(i))
+                {
+                    active.set(i, matches);
+                    alerts = addAlert(alerts, new Alert(rules[i], matches, time, window));
+                }
+            }
+            for (int i = active.nextSetBit(cutoff); i >= 0; i = active.nextSetBit(i + 1))
+            {
+                active.clear(i);
+                alerts = addAlert(alerts, new Alert(rules[i], false, time, window));
+            }
+            return alerts;
+        }
+
+        /**
+         * Returns the number of values less than or equal to the given key.
+         *
+         * @param values the values (ascending)
+         * @param key    the key
+         * @return       the index of the first value greater than the key
+         */
+        private static int upperBound(double[] values, double key)
+        {
+            int low = 0;
+            int high = values.length;
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if (values[mid] <= key)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Adds an alert to the given list.
+         *
+         * @param alerts the alerts (may be null)
+         * @param alert  the alert
+         * @return       the alerts
+         */
+        private static List<Alert> addAlert(List<Alert> alerts, Alert alert)
+        {
+            if (alerts == null)
+            {
+                alerts = new ArrayList<Alert>();
+            }
+            alerts.add(alert);
+            return alerts;
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package at.home.bernd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Polls the weather sources with a single thread, merges new rows into the archive and fans them out as server-sent
+ * events to the subscribers. Upstream load stays at one fetch per source and interval regardless of the number of
+ * subscribers: every delta is encoded once and the same bytes are queued for all subscribers. The queue of a subscriber
+ * is bounded; a subscriber whose queue is full (a slow consumer) is dropped instead of blocking the poller or buffering
+ * without limit.
+ * <p>
+ * The id of an event is the cursor of all stations at the time of the event ("station=time,..." with the timestamp of
+ * the last broadcast row per station), as the clocks of the stations are not aligned: a client subscribed to all
+ * stations that reconnects with the id of its last event receives the missed rows of every station.
+ */
+public class WindDataBroadcaster implements Closeable
+{
+    /**
+     * The default capacity of the queue of a subscriber (in events)
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * The event telling the writer of a subscriber to end the stream
+     */
+    static final byte[] CLOSE = new byte[0];
+
+    /**
+     * The weather archive
+     */
+    private WeatherArchive archive;
+
+    /**
+     * The polled sources
+     */
+    private List<WeatherSource> sources;
+
+    /**
+     * The capacity of the queue of a subscriber
+     */
+    private int queueCapacity;
+
+    /**
+     * The subscribers
+     */
+    private Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The listeners called after new rows have been merged into the archive
+     */
+    private List<Runnable> updateListeners = new CopyOnWriteArrayList<Runnable>();
+
+    /**
+     * The listeners receiving the new rows (e.g. a {@link WindAlertEngine})
+     */
+    private List<Consumer<WindSeries>> deltaListeners = new CopyOnWriteArrayList<Consumer<WindSeries>>();
+
+    /**
+     * The timestamp of the last broadcast row per station (guarded by {@link #publish(WindSeries)})
+     */
+    private Map<String, Long> lastTimes = new HashMap<String, Long>();
+
+    /**
+     * The number of dropped subscribers
+     */
+    private AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * The number of broadcast events
+     */
+    private AtomicLong eventCount = new AtomicLong();
+
+    /**
+     * The poller (null until started)
+     */
+    private ScheduledExecutorService poller;
+
+    /**
+     * Creates a broadcaster with the default queue capacity.
+     *
+     * @param archive the weather archive
+     * @param sources the polled sources
+     */
+    public WindDataBroadcaster(WeatherArchive archive, List<WeatherSource> sources)
+    {
+        this(archive, sources, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a broadcaster.
+     *
+     * @param archive       the weather archive
+     * @param sources       the polled sources
+     * @param queueCapacity the capacity of the queue of a subscriber (in events)
+     */
+    public WindDataBroadcaster(WeatherArchive archive, List<WeatherSource> sources, int queueCapacity)
+    {
+        this.archive = archive;
+        this.sources = new ArrayList<WeatherSource>(sources);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Starts polling the sources.
+     *
+     * @param periodMillis the polling interval in milliseconds
+     */
+    public synchronized void start(long periodMillis)
+    {
+        if (poller != null)
+        {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "WindDataBroadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling and ends the streams of all subscribers.
+     */
+    public synchronized void close()
+    {
+        if (poller != null)
+        {
+            poller.shutdownNow();
+            poller = null;
+        }
+        for (Subscriber subscriber : subscribers)
+        {
+            subscriber.close();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Adds a listener called (on the poller thread) after new rows have been merged into the archive.
+     *
+     * @param listener the listener
+     */
+    public void addUpdateListener(Runnable listener)
+    {
+        updateListeners.add(listener);
+    }
+
+    /**
+     * Adds a listener receiving (on the poller thread) the new rows of a station after they have been merged into the
+     * archive, e.g. {@code broadcaster.addDeltaListener(alertEngine::onSeries)}.
+     *
+     * @param listener the listener
+     */
+    public void addDeltaListener(Consumer<WindSeries> listener)
+    {
+        deltaListeners.add(listener);
+    }
+
+    /**
+     * Registers a subscriber.
+     *
+     * @param stationId the id of the station to subscribe to (null = all stations)
+     * @return          the subscriber
+     */
+    public Subscriber subscribe(String stationId)
+    {
+        Subscriber subscriber = new Subscriber(stationId, queueCapacity);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Unregisters a subscriber.
+     *
+     * @param subscriber the subscriber
+     */
+    public void unsubscribe(Subscriber subscriber)
+    {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount()
+    {
+        return subscribers.size();
+    }
+
+    /**
+     * @return the number of subscribers dropped because their queue was full
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of broadcast events
+     */
+    public long getEventCount()
+    {
+        return eventCount.get();
+    }
+
+    /**
+     * Reads all sources once and broadcasts their new rows. Called periodically by the poller; a failing source is
+     * reported and skipped until the next poll.
+     */
+    public void poll()
+    {
+        for (WeatherSource source : sources)
+        {
+            try
+            {
+                publish(source.read());
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Merges the rows of the given series newer than the last broadcast row of its station into the archive and
+     * broadcasts them.
+     *
+     * @param series the series read from a source (sorted by time)
+     */
+    public synchronized void publish(WindSeries series)
+    {
+        String stationId = series.getStationId();
+        Long lastTime = lastTimes.get(stationId);
+        if (lastTime == null)
+        {
+            WindSeries existing = archive.getSeries(stationId);
+            lastTime = existing != null && existing.size() > 0 ? existing.getTime(existing.size() - 1) : Long.MIN_VALUE;
+        }
+        WindSeries delta = lastTime == Long.MIN_VALUE ? series : series.subSeries(lastTime + 1, Long.MAX_VALUE);
+        if (delta.size() == 0)
+        {
+            return;
+        }
+        archive.add(delta);
+        lastTimes.put(stationId, delta.getTime(delta.size() - 1));
+        for (Runnable listener : updateListeners)
+        {
+            listener.run();
+        }
+        for (Consumer<WindSeries> listener : deltaListeners)
+        {
+            listener.accept(delta);
+        }
+        byte[] event = encode(delta, cursor());
+        eventCount.incrementAndGet();
+        for (Subscriber subscriber : subscribers)
+        {
+            if (subscriber.accepts(stationId) && ! subscriber.offer(event))
+            {
+                // slow consumer: drop it rather than block the poller or buffer without limit
+                subscribers.remove(subscriber);
+                subscriber.close();
+                droppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the events with the rows of the archive after the given time.
+     *
+     * @param stationId the id of the station (null = all stations)
+     * @param since     the time in epoch milliseconds (exclusive)
+     * @return          the events
+     */
+    public List<byte[]> getEventsSince(String stationId, long since)
+    {
+        return getEventsSince(stationId, new HashMap<String, Long>(), since);
+    }
+
+    /**
+     * Returns the events with the rows of the archive after the given cursor, e.g. for a client reconnecting with the
+     * id of the last event it has received (see {@link #parseEventId(String)}).
+     *
+     * @param stationId the id of the station (null = all stations)
+     * @param cursor    the time of the last received row per station in epoch milliseconds (a station without a
+     *                  time has not been received yet)
+     * @return          the events
+     */
+    public List<byte[]> getEventsSince(String stationId, Map<String, Long> cursor)
+    {
+        return getEventsSince(stationId, cursor, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the events with the rows of the archive after the given cursor. The id of each event is the cursor after
+     * the event.
+     *
+     * @param stationId the id of the station (null = all stations)
+     * @param cursor    the time of the last received row per station in epoch milliseconds
+     * @param since     the time of the stations without a time in the cursor
+     * @return          the events
+     */
+    private List<byte[]> getEventsSince(String stationId, Map<String, Long> cursor, long since)
+    {
+        Map<String, Long> times = new TreeMap<String, Long>(cursor);
+        Set<String> stationIds = new TreeSet<String>(archive.getStationIds());
+        for (String id : stationIds)
+        {
+            if (since != Long.MIN_VALUE && ! times.containsKey(id))
+            {
+                times.put(id, since);
+            }
+        }
+        List<byte[]> events = new ArrayList<byte[]>();
+        for (String id : stationIds)
+        {
+            if (stationId == null || stationId.equals(id))
+            {
+                long from = times.getOrDefault(id, Long.MIN_VALUE);
+                WindSeries delta = from == Long.MIN_VALUE ? archive.getSeries(id)
+                                                          : archive.getSeries(id).subSeries(from + 1, Long.MAX_VALUE);
+                if (delta.size() > 0)
+                {
+                    times.put(id, delta.getTime(delta.size() - 1));
+                    events.add(encode(delta, formatEventId(times)));
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Returns the cursor of all stations: the time of the last broadcast row per station (or of the last row in the
+     * archive if none has been broadcast yet).
+     *
+     * @return the event id of the cursor
+     */
+    private String cursor()
+    {
+        Map<String, Long> times = new TreeMap<String, Long>();
+        for (String id : archive.getStationIds())
+        {
+            Long lastTime = lastTimes.get(id);
+            if (lastTime == null)
+            {
+                WindSeries series = archive.getSeries(id);
+                lastTime = series.size() > 0 ? series.getTime(series.size() - 1) : null;
+            }
+            if (lastTime != null)
+            {
+                times.put(id, lastTime);
+            }
+        }
+        return formatEventId(times);
+    }
+
+    /**
+     * Formats a cursor as an event id.
+     *
+     * @param times the time of the last row per station
+     * @return      the event id ("station=time,...")
+     */
+    private static String formatEventId(Map<String, Long> times)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : times.entrySet())
+        {
+            sb.append(sb.length() > 0 ? "," : "").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses an event id.
+     *
+     * @param eventId the event id ("station=time,...")
+     * @return        the time of the last row per station
+     * @throws IllegalArgumentException if the event id is malformed
+     */
+    public static Map<String, Long> parseEventId(String eventId)
+    {
+        Map<String, Long> times = new HashMap<String, Long>();
+        for (String entry : eventId.split(","))
+        {
+            int index = entry.lastIndexOf('=');
+            if (index <= 0)
+            {
+                throw new IllegalArgumentException("Malformed event id: " + eventId);
+            }
+            times.put(entry.substring(0, index).trim(), Long.parseLong(entry.substring(index + 1).trim()));
+        }
+        return times;
+    }
+
+    /**
+     * Encodes the given rows as a server-sent event: the id is the given cursor, the data a JSON object with one array
+     * per column.
+     *
+     * @param delta   the rows
+     * @param eventId the id of the event
+     * @return        the event in UTF-8
+     */
+    static byte[] encode(WindSeries delta, String eventId)
+    {
+        int n = delta.size();
+        StringBuilder sb = new StringBuilder(64 + eventId.length() + n * 48);
+        sb.append("id: ").append(eventId).append("\nevent: readings\ndata: ");
+        JsonWriter json = new JsonWriter(sb);
+        json.beginObject().name("station").value(delta.getStationId());
+        json.name("time").beginArray();
+        for (int i = 0; i < n; i++)
+        {
+            json.value(delta.getTime(i));
+        }
+        json.endArray();
+        for (WIND_DATA_TYPE type : WindSeries.VALUE_TYPES)
+        {
+            json.name(type.name()).beginArray();
+            for (int i = 0; i < n; i++)
+            {
+                json.value(delta.getValue(type, i), 1);
+            }
+            json.endArray();
+        }
+        json.endObject();
+        sb.append("\n\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A subscriber: a bounded queue of encoded events drained by the writer of one client.
+     */
+    public static class Subscriber
+    {
+        /**
+         * The id of the station (null = all stations)
+         */
+        private final String stationId;
+
+        /**
+         * The queued events
+         */
+        private final ArrayBlockingQueue<byte[]> queue;
+
+        /**
+         * This flag indicates if the subscriber has been closed
+         */
+        private volatile boolean closed = false;
+
+        Subscriber(String stationId, int capacity)
+        {
+            this.stationId = stationId;
+            this.queue = new ArrayBlockingQueue<byte[]>(capacity + 1);
+        }
+
+        /**
+         * @return the id of the station (null = all stations)
+         */
+        public String getStationId()
+        {
+            return stationId;
+        }
+
+        /**
+         * @return true if the subscriber has been closed (e.g. dropped as a slow consumer)
+         */
+        public boolean isClosed()
+        {
+            return closed;
+        }
+
+        /**
+         * @return the number of queued events
+         */
+        public int getQueueSize()
+        {
+            return queue.size();
+        }
+
+        /**
+         * Waits for the next event.
+         *
+         * @param timeoutMillis the maximum waiting time in milliseconds
+         * @return              the event, {@link WindDataBroadcaster#CLOSE} if the stream is to be ended or null if
+         *                      the waiting time elapsed
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        public byte[] take(long timeoutMillis) throws InterruptedException
+        {
+            return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Returns true if the subscriber receives the events of the given station.
+         *
+         * @param id the id of the station
+         * @return   true if the subscriber receives the events of the station
+         */
+        boolean accepts(String id)
+        {
+            return stationId == null || stationId.equals(id);
+        }
+
+        /**
+         * Queues an event. One slot of the queue is reserved for the close event.
+         *
+         * @param event the event
+         * @return      false if the queue is full
+         */
+        boolean offer(byte[] event)
+        {
+            return ! closed && queue.remainingCapacity() > 1 && queue.offer(event);
+        }
+
+        /**
+         * Discards the queued events and queues the close event.
+         */
+        void close()
+        {
+            closed = true;
+            queue.clear();
+            queue.offer(CLOSE);
+        }
+    }
+}
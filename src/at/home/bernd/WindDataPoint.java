@@ -23,9 +23,9 @@ public class WindDataPoint
     };
     
     /**
-     * The timestamp of the data point
+     * The timestamp of the data point in epoch milliseconds
      */
-    private Date timestamp;
+    private long time;
     
     /**
      * The wind direction in degrees: N = 0 (=360); E = 90; S = 180; W = 270
@@ -53,19 +53,45 @@ public class WindDataPoint
     private double chill;
 
     /**
+     * This flag indicates if the wind data point is frozen (read-only)
+     */
+    private boolean frozen = false;
+    
+    /**
+     * @return the timestamp in epoch milliseconds
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @param time the timestamp in epoch milliseconds to set
+     */
+    public void setTime(long time)
+    {
+        checkNotFrozen();
+        this.time = time;
+    }
+
+    /**
+     * Returns the timestamp as a new Date (for charts and other API boundaries; use {@link #getTime()} otherwise).
+     * 
      * @return the timestamp
      */
     public Date getTimestamp()
     {
-        return timestamp;
+        return new Date(time);
     }
 
     /**
+     * Sets the timestamp (see {@link #setTime(long)}).
+     * 
      * @param timestamp the timestamp to set
      */
     public void setTimestamp(Date timestamp)
     {
-        this.timestamp = timestamp;
+        setTime(timestamp.getTime());
     }
 
     /**
@@ -81,6 +107,7 @@ public class WindDataPoint
      */
     public void setDirection(double direction)
     {
+        checkNotFrozen();
         this.direction = direction;
     }
 
@@ -97,6 +124,7 @@ public class WindDataPoint
      */
     public void setWindSpeed(double windSpeed)
     {
+        checkNotFrozen();
         this.windSpeed = windSpeed;
     }
 
@@ -113,6 +141,7 @@ public class WindDataPoint
      */
     public void setMaxWindSpeed(double maxWindSpeed)
     {
+        checkNotFrozen();
         this.maxWindSpeed = maxWindSpeed;
     }
 
@@ -129,6 +158,7 @@ public class WindDataPoint
      */
     public void setTemperature(double temperature)
     {
+        checkNotFrozen();
         this.temperature = temperature;
     }
 
@@ -145,9 +175,55 @@ public class WindDataPoint
      */
     public void setChill(double chill)
     {
+        checkNotFrozen();
         this.chill = chill;
     }
     
+    /**
+     * Makes the wind data point read-only: setters throw an IllegalStateException afterwards. A frozen wind data
+     * point can be shared by concurrent readers without locking.
+     */
+    public void freeze()
+    {
+        this.frozen = true;
+    }
+
+    /**
+     * @return true if the wind data point is frozen
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Returns a modifiable copy of this wind data point.
+     * 
+     * @return the copy (not frozen)
+     */
+    public WindDataPoint copy()
+    {
+        WindDataPoint copy = new WindDataPoint();
+        copy.time = this.time;
+        copy.direction = this.direction;
+        copy.windSpeed = this.windSpeed;
+        copy.maxWindSpeed = this.maxWindSpeed;
+        copy.temperature = this.temperature;
+        copy.chill = this.chill;
+        return copy;
+    }
+
+    /**
+     * Throws an IllegalStateException if the wind data point is frozen.
+     */
+    private void checkNotFrozen()
+    {
+        if (frozen)
+        {
+            throw new IllegalStateException("The wind data point is frozen");
+        }
+    }
+    
     /**
      * Returns a simple string representation of the wind data point
      */
@@ -156,7 +232,7 @@ public class WindDataPoint
         DataConversionUtility dcu = DataConversionUtility.getInstance();
 
         StringBuilder sb = new StringBuilder();
-        sb.append(this.timestamp);
+        sb.append(new Date(this.time));
         sb.append(": ");
         sb.append(dcu.roundUpToNDecimalPlaces(this.windSpeed, 1));
         sb.append(" - ");
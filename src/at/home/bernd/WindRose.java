@@ -0,0 +1,254 @@
+package at.home.bernd;
+
+import java.util.Arrays;
+import java.util.List;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * The frequencies of the wind directions in 16 sectors (N, NNE, ..., NNW) per wind speed bin, together with the
+ * {@link DirectionStatistics} of all readings. Wind roses of disjoint periods or stations are merged by adding the
+ * counts, so the wind rose of a whole archive is rolled up from the wind roses of its series.
+ */
+public class WindRose
+{
+    /**
+     * The number of sectors
+     */
+    public static final int N_SECTORS = 16;
+
+    /**
+     * The names of the sectors
+     */
+    public static final String[] SECTOR_NAMES = { "N", "NNE", "NE", "ENE", "E", "ESE", "SE", "SSE",
+                                                  "S", "SSW", "SW", "WSW", "W", "WNW", "NW", "NNW" };
+
+    /**
+     * The default upper bounds of the wind speed bins in km/h
+     */
+    public static final double[] DEFAULT_SPEED_BOUNDS = { 10, 20, 30, 40 };
+
+    /**
+     * The upper bounds of the wind speed bins (exclusive; the last bin has no upper bound)
+     */
+    private double[] speedBounds;
+
+    /**
+     * The counts per sector and wind speed bin
+     */
+    private long[][] counts;
+
+    /**
+     * The number of readings
+     */
+    private long total = 0;
+
+    /**
+     * The statistics of the directions
+     */
+    private DirectionStatistics directionStatistics = new DirectionStatistics();
+
+    /**
+     * Creates an empty wind rose with the default wind speed bins.
+     */
+    public WindRose()
+    {
+        this(DEFAULT_SPEED_BOUNDS);
+    }
+
+    /**
+     * Creates an empty wind rose.
+     *
+     * @param speedBounds the upper bounds of the wind speed bins in km/h (ascending)
+     */
+    public WindRose(double[] speedBounds)
+    {
+        this.speedBounds = speedBounds.clone();
+        counts = new long[N_SECTORS][speedBounds.length + 1];
+    }
+
+    /**
+     * Adds a reading. Readings without a direction or wind speed are ignored.
+     *
+     * @param direction the direction in degrees
+     * @param windSpeed the wind speed in km/h
+     */
+    public void add(double direction, double windSpeed)
+    {
+        if (Double.isNaN(direction) || Double.isNaN(windSpeed))
+        {
+            return;
+        }
+        int bin = 0;
+        while (bin < speedBounds.length && windSpeed >= speedBounds[bin])
+        {
+            bin++;
+        }
+        counts[getSector(direction)][bin]++;
+        total++;
+        directionStatistics.add(direction);
+    }
+
+    /**
+     * Adds the readings of the given series.
+     *
+     * @param series the series
+     */
+    public void add(WindSeries series)
+    {
+        for (int i = 0; i < series.size(); i++)
+        {
+            add(series.getValue(WIND_DATA_TYPE.direction, i), series.getValue(WIND_DATA_TYPE.windSpeed, i));
+        }
+    }
+
+    /**
+     * Adds the given wind data.
+     *
+     * @param windData the wind data
+     */
+    public void add(List<WindDataPoint> windData)
+    {
+        for (WindDataPoint windDataPoint : windData)
+        {
+            add(windDataPoint.getDirection(), windDataPoint.getWindSpeed());
+        }
+    }
+
+    /**
+     * Adds the counts of the given wind rose.
+     *
+     * @param other the other wind rose (with the same wind speed bins)
+     */
+    public void merge(WindRose other)
+    {
+        if (! Arrays.equals(speedBounds, other.speedBounds))
+        {
+            throw new IllegalArgumentException("Different wind speed bins");
+        }
+        for (int sector = 0; sector < N_SECTORS; sector++)
+        {
+            for (int bin = 0; bin < counts[sector].length; bin++)
+            {
+                counts[sector][bin] += other.counts[sector][bin];
+            }
+        }
+        total += other.total;
+        directionStatistics.merge(other.directionStatistics);
+    }
+
+    /**
+     * Returns the sector of the given direction (sector 0 is centered on north).
+     *
+     * @param direction the direction in degrees
+     * @return          the sector (0 - 15)
+     */
+    public static int getSector(double direction)
+    {
+        return (int) (DirectionStatistics.normalize(direction + 180.0 / N_SECTORS) / (360.0 / N_SECTORS)) % N_SECTORS;
+    }
+
+    /**
+     * @return the upper bounds of the wind speed bins in km/h
+     */
+    public double[] getSpeedBounds()
+    {
+        return speedBounds.clone();
+    }
+
+    /**
+     * @return the number of wind speed bins
+     */
+    public int getBinCount()
+    {
+        return speedBounds.length + 1;
+    }
+
+    /**
+     * Returns the name of the given wind speed bin, e.g. "10-20" or "40+".
+     *
+     * @param bin the wind speed bin
+     * @return    the name
+     */
+    public String getBinName(int bin)
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        if (bin == speedBounds.length)
+        {
+            dcu.appendRounded(sb, speedBounds[bin - 1], 0);
+            sb.append('+');
+            return sb.toString();
+        }
+        dcu.appendRounded(sb, bin > 0 ? speedBounds[bin - 1] : 0, 0);
+        sb.append('-');
+        dcu.appendRounded(sb, speedBounds[bin], 0);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of readings in the given sector and wind speed bin.
+     *
+     * @param sector the sector
+     * @param bin    the wind speed bin
+     * @return       the count
+     */
+    public long getCount(int sector, int bin)
+    {
+        return counts[sector][bin];
+    }
+
+    /**
+     * Returns the number of readings in the given sector.
+     *
+     * @param sector the sector
+     * @return       the count
+     */
+    public long getCount(int sector)
+    {
+        long count = 0;
+        for (long binCount : counts[sector])
+        {
+            count += binCount;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the share of the readings in the given sector and wind speed bin.
+     *
+     * @param sector the sector
+     * @param bin    the wind speed bin
+     * @return       the frequency in [0, 1] (NaN if the wind rose is empty)
+     */
+    public double getFrequency(int sector, int bin)
+    {
+        return total > 0 ? (double) counts[sector][bin] / total : Double.NaN;
+    }
+
+    /**
+     * @return the number of readings
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * @return the statistics of the directions of all readings
+     */
+    public DirectionStatistics getDirectionStatistics()
+    {
+        return directionStatistics;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("WindRose [total=" + total);
+        for (int sector = 0; sector < N_SECTORS; sector++)
+        {
+            sb.append(", ").append(SECTOR_NAMES[sector]).append('=').append(getCount(sector));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,294 @@
+package at.home.bernd;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Date;
+
+import at.home.bernd.PipelineMetrics.COUNTER;
+import at.home.bernd.PipelineMetrics.STAGE;
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Decodes the rows of a weather data source into a {@link WindSeries}. This is the row pipeline shared by all
+ * {@link WeatherSource} adapters: an adapter reports the fields of a row as character ranges, the decoder converts the
+ * mapped fields without intermediate objects and appends the row to the series. Rows without a valid timestamp are
+ * rejected; a malformed or missing value (e.g. an unknown compass point) is stored as NaN and counted, the other
+ * values of the row are kept. Not thread-safe: use one decoder per source and stream.
+ */
+public class WindRowDecoder
+{
+    /**
+     * The column mapping
+     */
+    private ColumnMapping mapping;
+
+    /**
+     * The target series
+     */
+    private WindSeries series;
+
+    /**
+     * The type per column (null = not mapped)
+     */
+    private WIND_DATA_TYPE[] columnTypes;
+
+    /**
+     * The date format (null = ISO 8601 or epoch milliseconds)
+     */
+    private SimpleDateFormat dateFormat;
+
+    /**
+     * The parse position of the date format (reused)
+     */
+    private ParsePosition parsePosition = new ParsePosition(0);
+
+    /**
+     * The values of the current row (indexed by the ordinal of the type)
+     */
+    private double[] rowValues = new double[WIND_DATA_TYPE.values().length];
+
+    /**
+     * The timestamp of the current row (Long.MIN_VALUE = none)
+     */
+    private long rowTime;
+
+    /**
+     * The number of rejected rows
+     */
+    private int rejectedRows = 0;
+
+    /**
+     * Creates a decoder writing into the given series. The columns are mapped by index until
+     * {@link #setColumnNames(String[])} is called.
+     *
+     * @param mapping the column mapping
+     * @param series  the target series
+     */
+    public WindRowDecoder(ColumnMapping mapping, WindSeries series)
+    {
+        this.mapping = mapping;
+        this.series = series;
+        this.columnTypes = mapping.resolve(null, mapping.getColumnCount());
+        if (mapping.getDatePattern() != null)
+        {
+            dateFormat = new SimpleDateFormat(mapping.getDatePattern());
+            dateFormat.setTimeZone(mapping.getTimeZone());
+        }
+    }
+
+    /**
+     * Sets the names of the columns (e.g. the header of a CSV file): columns mapped by name are resolved.
+     *
+     * @param columnNames the names of the columns
+     */
+    public void setColumnNames(String[] columnNames)
+    {
+        columnTypes = mapping.resolve(columnNames, Math.max(columnNames.length, mapping.getColumnCount()));
+    }
+
+    /**
+     * @return the column mapping
+     */
+    public ColumnMapping getMapping()
+    {
+        return mapping;
+    }
+
+    /**
+     * @return the target series
+     */
+    public WindSeries getSeries()
+    {
+        return series;
+    }
+
+    /**
+     * @return the number of rejected rows
+     */
+    public int getRejectedRows()
+    {
+        return rejectedRows;
+    }
+
+    /**
+     * Starts a new row.
+     */
+    public void beginRow()
+    {
+        Arrays.fill(rowValues, Double.NaN);
+        rowTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the type of the given column.
+     *
+     * @param column the index of the column
+     * @return       the type or null if the column is not mapped
+     */
+    public WIND_DATA_TYPE getType(int column)
+    {
+        return column < columnTypes.length ? columnTypes[column] : null;
+    }
+
+    /**
+     * Decodes a field identified by its column index (unmapped columns are ignored).
+     *
+     * @param column the index of the column
+     * @param text   the text containing the field
+     * @param start  the start index of the field (inclusive)
+     * @param end    the end index of the field (exclusive)
+     */
+    public void field(int column, CharSequence text, int start, int end)
+    {
+        WIND_DATA_TYPE type = getType(column);
+        if (type != null)
+        {
+            field(type, text, start, end);
+        }
+    }
+
+    /**
+     * Decodes a field of the given type.
+     *
+     * @param type  the type of wind data
+     * @param text  the text containing the field
+     * @param start the start index of the field (inclusive)
+     * @param end   the end index of the field (exclusive)
+     */
+    public void field(WIND_DATA_TYPE type, CharSequence text, int start, int end)
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        double value;
+        switch (type)
+        {
+            case timestamp:
+                rowTime = parseTime(text, start, end);
+                return;
+            case direction:
+                value = dcu.parseDecimal(text, start, end);
+                if (Double.isNaN(value))
+                {
+                    // compass points like "NNW"
+                    value = dcu.mapDirection(text.subSequence(start, end).toString());
+                    if (value < 0)
+                    {
+                        value = Double.NaN;
+                    }
+                }
+                break;
+            default:
+                value = dcu.parseDecimal(text, start, end);
+                break;
+        }
+        if (Double.isNaN(value))
+        {
+            PipelineMetrics.getInstance().increment(COUNTER.malformedValues);
+        }
+        rowValues[type.ordinal()] = value;
+    }
+
+    /**
+     * Finishes the current row: a row with a valid timestamp is appended to the series, otherwise it is rejected.
+     *
+     * @return true if the row has been appended
+     */
+    public boolean endRow()
+    {
+        if (rowTime == Long.MIN_VALUE)
+        {
+            rejectedRows++;
+            PipelineMetrics.getInstance().increment(COUNTER.rejectedRows);
+            return false;
+        }
+        series.add(rowTime, rowValues);
+        return true;
+    }
+
+    /**
+     * Parses a timestamp: with the date pattern of the mapping if there is one, otherwise as epoch milliseconds (only
+     * digits) or ISO 8601.
+     *
+     * @param text  the text containing the timestamp
+     * @param start the start index (inclusive)
+     * @param end   the end index (exclusive)
+     * @return      the timestamp in epoch milliseconds or Long.MIN_VALUE if it is malformed
+     */
+    private long parseTime(CharSequence text, int start, int end)
+    {
+        while (start < end && Character.isWhitespace(text.charAt(start)))
+        {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1)))
+        {
+            end--;
+        }
+        if (start == end)
+        {
+            return Long.MIN_VALUE;
+        }
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        long startTime = metrics.start();
+        long time = Long.MIN_VALUE;
+        if (dateFormat != null)
+        {
+            parsePosition.setIndex(0);
+            parsePosition.setErrorIndex(-1);
+            Date date = dateFormat.parse(text.subSequence(start, end).toString(), parsePosition);
+            if (date != null)
+            {
+                time = date.getTime();
+            }
+        }
+        else if (isDigits(text, start, end))
+        {
+            long millis = 0;
+            for (int i = start; i < end; i++)
+            {
+                millis = millis * 10 + (text.charAt(i) - '0');
+            }
+            time = millis;
+        }
+        else
+        {
+            try
+            {
+                time = OffsetDateTime.parse(text.subSequence(start, end)).toInstant().toEpochMilli();
+            }
+            catch (DateTimeParseException ex)
+            {
+                // malformed
+            }
+        }
+        if (time == Long.MIN_VALUE)
+        {
+            metrics.increment(COUNTER.malformedValues);
+        }
+        metrics.stop(STAGE.dateConversion, startTime, 1);
+        return time;
+    }
+
+    /**
+     * Checks if the given range of characters consists of digits only.
+     *
+     * @param text  the text
+     * @param start the start index (inclusive)
+     * @param end   the end index (exclusive)
+     * @return      true if there are only digits
+     */
+    private boolean isDigits(CharSequence text, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
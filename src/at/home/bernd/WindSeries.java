@@ -0,0 +1,350 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * The wind data of a single station in columnar form: one timestamp column and one value column per type of wind
+ * data. Rows are appended by the {@link WindRowDecoder}; after {@link #sort()} the series is sorted by time without
+ * duplicate timestamps.
+ */
+public class WindSeries
+{
+    /**
+     * The types of the value columns
+     */
+    public static final WIND_DATA_TYPE[] VALUE_TYPES = { WIND_DATA_TYPE.direction,
+                                                         WIND_DATA_TYPE.windSpeed,
+                                                         WIND_DATA_TYPE.maxWindSpeed,
+                                                         WIND_DATA_TYPE.temperature,
+                                                         WIND_DATA_TYPE.chill };
+
+    /**
+     * The id of the station
+     */
+    private String stationId;
+
+    /**
+     * The number of rows
+     */
+    private int size = 0;
+
+    /**
+     * The timestamps in epoch milliseconds
+     */
+    private long[] times;
+
+    /**
+     * The values per type (indexed by the ordinal of the type; the timestamp column is null)
+     */
+    private double[][] values = new double[WIND_DATA_TYPE.values().length][];
+
+    /**
+     * Creates an empty series.
+     *
+     * @param stationId the id of the station
+     */
+    public WindSeries(String stationId)
+    {
+        this(stationId, 256);
+    }
+
+    /**
+     * Creates an empty series.
+     *
+     * @param stationId the id of the station
+     * @param capacity  the initial capacity
+     */
+    public WindSeries(String stationId, int capacity)
+    {
+        this.stationId = stationId;
+        this.times = new long[Math.max(1, capacity)];
+        for (WIND_DATA_TYPE type : VALUE_TYPES)
+        {
+            values[type.ordinal()] = new double[times.length];
+        }
+    }
+
+    /**
+     * @return the id of the station
+     */
+    public String getStationId()
+    {
+        return stationId;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param time      the timestamp in epoch milliseconds
+     * @param rowValues the values indexed by the ordinal of the type
+     */
+    void add(long time, double[] rowValues)
+    {
+        if (size == times.length)
+        {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            for (WIND_DATA_TYPE type : VALUE_TYPES)
+            {
+                values[type.ordinal()] = Arrays.copyOf(values[type.ordinal()], capacity);
+            }
+        }
+        times[size] = time;
+        for (WIND_DATA_TYPE type : VALUE_TYPES)
+        {
+            values[type.ordinal()][size] = rowValues[type.ordinal()];
+        }
+        size++;
+    }
+
+    /**
+     * Returns the timestamp of the given row.
+     *
+     * @param row the row
+     * @return    the timestamp in epoch milliseconds
+     */
+    public long getTime(int row)
+    {
+        return times[row];
+    }
+
+    /**
+     * Returns the value of the given type of the given row.
+     *
+     * @param type the type of wind data (not the timestamp)
+     * @param row  the row
+     * @return     the value
+     */
+    public double getValue(WIND_DATA_TYPE type, int row)
+    {
+        return values[type.ordinal()][row];
+    }
+
+    /**
+     * @return a copy of the timestamps in epoch milliseconds
+     */
+    public long[] getTimes()
+    {
+        return Arrays.copyOf(times, size);
+    }
+
+    /**
+     * Returns a copy of the values of the given type.
+     *
+     * @param type the type of wind data (not the timestamp)
+     * @return     the values
+     */
+    public double[] getValues(WIND_DATA_TYPE type)
+    {
+        return Arrays.copyOf(values[type.ordinal()], size);
+    }
+
+    /**
+     * Returns the index of the first row at or after the given time (the series must be sorted).
+     *
+     * @param time the time in epoch milliseconds
+     * @return     the index of the row (size() if there is none)
+     */
+    public int indexOf(long time)
+    {
+        int low = 0;
+        int high = size;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the rows within the given time window (the series must be sorted).
+     *
+     * @param from the "from" time in epoch milliseconds (inclusive)
+     * @param to   the "to" time in epoch milliseconds (inclusive)
+     * @return     the rows as a new series
+     */
+    public WindSeries subSeries(long from, long to)
+    {
+        int start = indexOf(from);
+        int end = to == Long.MAX_VALUE ? size : indexOf(to + 1);
+        WindSeries subSeries = new WindSeries(stationId, Math.max(1, end - start));
+        subSeries.size = Math.max(0, end - start);
+        if (subSeries.size > 0)
+        {
+            System.arraycopy(times, start, subSeries.times, 0, subSeries.size);
+            for (WIND_DATA_TYPE type : VALUE_TYPES)
+            {
+                System.arraycopy(values[type.ordinal()], start, subSeries.values[type.ordinal()], 0, subSeries.size);
+            }
+        }
+        return subSeries;
+    }
+
+    /**
+     * Sorts the rows by time and removes rows with duplicate timestamps (the first one is kept). Series in ascending or
+     * descending order (like the XHTML table of the Podersdorf station) are handled without sorting.
+     */
+    public void sort()
+    {
+        boolean ascending = true;
+        boolean descending = true;
+        for (int i = 1; i < size && (ascending || descending); i++)
+        {
+            ascending &= times[i - 1] < times[i];
+            descending &= times[i - 1] > times[i];
+        }
+        if (ascending)
+        {
+            return;
+        }
+        int[] order = new int[size];
+        if (descending)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                order[i] = size - 1 - i;
+            }
+        }
+        else
+        {
+            Integer[] boxedOrder = new Integer[size];
+            for (int i = 0; i < size; i++)
+            {
+                boxedOrder[i] = i;
+            }
+            // stable: the first of several rows with the same timestamp stays first
+            Arrays.sort(boxedOrder, (a, b) -> Long.compare(times[a], times[b]));
+            for (int i = 0; i < size; i++)
+            {
+                order[i] = boxedOrder[i];
+            }
+        }
+        permute(order);
+    }
+
+    /**
+     * Reorders the rows and removes rows with duplicate timestamps.
+     *
+     * @param order the old row index per new row index (sorted by time)
+     */
+    private void permute(int[] order)
+    {
+        long[] newTimes = new long[times.length];
+        int n = 0;
+        for (int i = 0; i < order.length; i++)
+        {
+            long time = times[order[i]];
+            if (n > 0 && newTimes[n - 1] == time)
+            {
+                order[i] = -1;
+                continue;
+            }
+            newTimes[n++] = time;
+        }
+        for (WIND_DATA_TYPE type : VALUE_TYPES)
+        {
+            double[] oldValues = values[type.ordinal()];
+            double[] newValues = new double[times.length];
+            int k = 0;
+            for (int i = 0; i < order.length; i++)
+            {
+                if (order[i] >= 0)
+                {
+                    newValues[k++] = oldValues[order[i]];
+                }
+            }
+            values[type.ordinal()] = newValues;
+        }
+        times = newTimes;
+        size = n;
+    }
+
+    /**
+     * Merges this series with the given one. Both series must be sorted; for duplicate timestamps the row of the given
+     * series wins (it is considered more recent).
+     *
+     * @param other the other series
+     * @return      the merged series (a new series)
+     */
+    public WindSeries merge(WindSeries other)
+    {
+        WindSeries merged = new WindSeries(stationId, size + other.size);
+        double[] rowValues = new double[values.length];
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size)
+        {
+            WindSeries source;
+            int row;
+            if (j >= other.size || i < size && times[i] < other.times[j])
+            {
+                source = this;
+                row = i++;
+            }
+            else
+            {
+                if (i < size && times[i] == other.times[j])
+                {
+                    i++;
+                }
+                source = other;
+                row = j++;
+            }
+            for (WIND_DATA_TYPE type : VALUE_TYPES)
+            {
+                rowValues[type.ordinal()] = source.values[type.ordinal()][row];
+            }
+            merged.add(source.times[row], rowValues);
+        }
+        return merged;
+    }
+
+    /**
+     * Converts the series into a list of wind data points.
+     *
+     * @return the wind data points
+     */
+    public List<WindDataPoint> toWindDataPoints()
+    {
+        List<WindDataPoint> windData = new ArrayList<WindDataPoint>(size);
+        for (int i = 0; i < size; i++)
+        {
+            WindDataPoint windDataPoint = new WindDataPoint();
+            windDataPoint.setTime(times[i]);
+            windDataPoint.setDirection(values[WIND_DATA_TYPE.direction.ordinal()][i]);
+            windDataPoint.setWindSpeed(values[WIND_DATA_TYPE.windSpeed.ordinal()][i]);
+            windDataPoint.setMaxWindSpeed(values[WIND_DATA_TYPE.maxWindSpeed.ordinal()][i]);
+            windDataPoint.setTemperature(values[WIND_DATA_TYPE.temperature.ordinal()][i]);
+            windDataPoint.setChill(values[WIND_DATA_TYPE.chill.ordinal()][i]);
+            windData.add(windDataPoint);
+        }
+        return windData;
+    }
+
+    public String toString()
+    {
+        return "WindSeries [stationId=" + stationId + ", size=" + size + "]";
+    }
+}
@@ -0,0 +1,295 @@
+package at.home.bernd;
+
+/**
+ * Gust and turbulence statistics of wind readings: mean and standard deviation of the wind speed (Welford's online
+ * algorithm), turbulence intensity, mean and maximum gust, gust factor and the time above a wind speed threshold.
+ * Readings are added one by one; statistics of disjoint periods can be merged (e.g. the statistics of several sessions
+ * or of parallel partitions). Every reading is considered valid until the next one, so the time above the threshold is
+ * the total duration of the intervals starting at a reading above the threshold. Incomplete readings (a NaN wind speed
+ * or gust) are left out of the statistics like in the {@link WindStatisticsIndex}, but still end the interval of the
+ * previous reading.
+ */
+public class WindStatistics
+{
+    /**
+     * The wind speed threshold in km/h
+     */
+    private double threshold;
+
+    /**
+     * The number of (complete) readings
+     */
+    private long count = 0;
+
+    /**
+     * The mean wind speed
+     */
+    private double meanSpeed = 0;
+
+    /**
+     * The sum of the squared deviations of the wind speed from the mean
+     */
+    private double m2 = 0;
+
+    /**
+     * The sum of the gusts
+     */
+    private double sumOfGusts = 0;
+
+    /**
+     * The maximum gust
+     */
+    private double maxGust = Double.NaN;
+
+    /**
+     * The time above the threshold in milliseconds
+     */
+    private long timeAbove = 0;
+
+    /**
+     * The time of the first reading in epoch milliseconds
+     */
+    private long firstTime = Long.MIN_VALUE;
+
+    /**
+     * The time of the last reading in epoch milliseconds
+     */
+    private long lastTime = Long.MIN_VALUE;
+
+    /**
+     * The wind speed of the last reading
+     */
+    private double lastSpeed = Double.NaN;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param threshold the wind speed threshold in km/h for the time above the threshold
+     */
+    public WindStatistics(double threshold)
+    {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates statistics from aggregated values (see {@link WindStatisticsIndex}).
+     */
+    WindStatistics(double threshold, long count, double meanSpeed, double m2, double sumOfGusts, double maxGust,
+                   long timeAbove, long firstTime, long lastTime, double lastSpeed)
+    {
+        this.threshold = threshold;
+        this.count = count;
+        this.meanSpeed = meanSpeed;
+        this.m2 = m2;
+        this.sumOfGusts = sumOfGusts;
+        this.maxGust = maxGust;
+        this.timeAbove = timeAbove;
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+        this.lastSpeed = lastSpeed;
+    }
+
+    /**
+     * Adds a reading. The readings must be added in ascending order of time.
+     *
+     * @param time      the time in epoch milliseconds
+     * @param windSpeed the wind speed in km/h (NaN if missing)
+     * @param gust      the maximum wind speed in km/h (NaN if missing)
+     */
+    public void add(long time, double windSpeed, double gust)
+    {
+        if (lastTime == Long.MIN_VALUE)
+        {
+            firstTime = time;
+        }
+        else if (lastSpeed > threshold)
+        {
+            timeAbove += time - lastTime;
+        }
+        lastTime = time;
+        lastSpeed = windSpeed;
+        if (Double.isNaN(windSpeed) || Double.isNaN(gust))
+        {
+            return;
+        }
+        count++;
+        double delta = windSpeed - meanSpeed;
+        meanSpeed += delta / count;
+        m2 += delta * (windSpeed - meanSpeed);
+        sumOfGusts += gust;
+        maxGust = count == 1 ? gust : Math.max(maxGust, gust);
+    }
+
+    /**
+     * Adds the readings of the given period to these statistics (Chan's parallel variant of Welford's algorithm). The
+     * other period must not overlap this one; the gap between the periods does not count as time above the
+     * threshold.
+     *
+     * @param other the statistics of the other period (with the same threshold)
+     */
+    public void merge(WindStatistics other)
+    {
+        if (other.lastTime == Long.MIN_VALUE)
+        {
+            return;
+        }
+        if (lastTime == Long.MIN_VALUE)
+        {
+            count = other.count;
+            meanSpeed = other.meanSpeed;
+            m2 = other.m2;
+            sumOfGusts = other.sumOfGusts;
+            maxGust = other.maxGust;
+            timeAbove = other.timeAbove;
+            firstTime = other.firstTime;
+            lastTime = other.lastTime;
+            lastSpeed = other.lastSpeed;
+            return;
+        }
+        if (count == 0)
+        {
+            count = other.count;
+            meanSpeed = other.meanSpeed;
+            m2 = other.m2;
+            maxGust = other.maxGust;
+        }
+        else if (other.count > 0)
+        {
+            long n = count + other.count;
+            double delta = other.meanSpeed - meanSpeed;
+            m2 += other.m2 + delta * delta * count * other.count / n;
+            meanSpeed += delta * other.count / n;
+            count = n;
+            maxGust = Math.max(maxGust, other.maxGust);
+        }
+        sumOfGusts += other.sumOfGusts;
+        timeAbove += other.timeAbove;
+        if (other.lastTime > lastTime)
+        {
+            lastTime = other.lastTime;
+            lastSpeed = other.lastSpeed;
+        }
+        firstTime = Math.min(firstTime, other.firstTime);
+    }
+
+    /**
+     * @return the wind speed threshold in km/h
+     */
+    public double getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * @return the number of (complete) readings
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return the mean wind speed in km/h (NaN if there are no readings)
+     */
+    public double getMeanSpeed()
+    {
+        return count > 0 ? meanSpeed : Double.NaN;
+    }
+
+    /**
+     * @return the (population) variance of the wind speed (NaN if there are no readings)
+     */
+    public double getVariance()
+    {
+        return count > 0 ? Math.max(0, m2) / count : Double.NaN;
+    }
+
+    /**
+     * @return the (population) standard deviation of the wind speed in km/h (NaN if there are no readings)
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return the turbulence intensity: the standard deviation divided by the mean of the wind speed
+     */
+    public double getTurbulenceIntensity()
+    {
+        return getStandardDeviation() / getMeanSpeed();
+    }
+
+    /**
+     * @return the mean gust in km/h (NaN if there are no readings)
+     */
+    public double getMeanGust()
+    {
+        return count > 0 ? sumOfGusts / count : Double.NaN;
+    }
+
+    /**
+     * @return the maximum gust in km/h (NaN if there are no readings)
+     */
+    public double getMaxGust()
+    {
+        return maxGust;
+    }
+
+    /**
+     * @return the gust factor: the maximum gust divided by the mean wind speed
+     */
+    public double getGustFactor()
+    {
+        return maxGust / getMeanSpeed();
+    }
+
+    /**
+     * @return the time above the threshold in milliseconds
+     */
+    public long getTimeAboveMillis()
+    {
+        return timeAbove;
+    }
+
+    /**
+     * @return the time of the first reading in epoch milliseconds (Long.MIN_VALUE if there are no readings)
+     */
+    public long getFirstTime()
+    {
+        return firstTime;
+    }
+
+    /**
+     * @return the time of the last reading in epoch milliseconds (Long.MIN_VALUE if there are no readings)
+     */
+    public long getLastTime()
+    {
+        return lastTime;
+    }
+
+    public String toString()
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        StringBuilder sb = new StringBuilder();
+        sb.append(count);
+        sb.append(" readings: mean ");
+        dcu.appendRounded(sb, getMeanSpeed(), 1);
+        sb.append(" km/h (sd ");
+        dcu.appendRounded(sb, getStandardDeviation(), 1);
+        sb.append(", TI ");
+        dcu.appendRounded(sb, getTurbulenceIntensity(), 2);
+        sb.append(") / gusts: mean ");
+        dcu.appendRounded(sb, getMeanGust(), 1);
+        sb.append(", max ");
+        dcu.appendRounded(sb, maxGust, 1);
+        sb.append(" (factor ");
+        dcu.appendRounded(sb, getGustFactor(), 2);
+        sb.append(") / above ");
+        dcu.appendRounded(sb, threshold, 1);
+        sb.append(" km/h: ");
+        sb.append(timeAbove / 60000);
+        sb.append(" min");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,333 @@
+package at.home.bernd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Answers {@link WindStatistics} queries for arbitrary time ranges of a wind series in O(1) after O(n) preprocessing:
+ * prefix sums of the wind speeds, their squares, the gusts and the durations above the threshold, and a sparse table
+ * (O(n log n)) for the maximum gust. The squares are summed relative to the mean of the whole series, which keeps the
+ * cancellation in "sum of squares minus square of sum" small. Readings with a missing wind speed or gust are not
+ * counted, but their intervals still count as time above the threshold if the wind speed was above it.
+ * Immutable after construction, so it can be queried from several threads.
+ */
+public class WindStatisticsIndex
+{
+    /**
+     * The wind speed threshold in km/h
+     */
+    private final double threshold;
+
+    /**
+     * The times of the readings in epoch milliseconds
+     */
+    private final long[] times;
+
+    /**
+     * The wind speeds of the readings
+     */
+    private final double[] speeds;
+
+    /**
+     * The reference the squares are summed relative to (the mean wind speed of the series)
+     */
+    private final double reference;
+
+    /**
+     * The number of valid readings before each row
+     */
+    private final int[] counts;
+
+    /**
+     * The sums of the wind speeds minus the reference before each row
+     */
+    private final double[] sums;
+
+    /**
+     * The sums of the squares of the wind speeds minus the reference before each row
+     */
+    private final double[] sumsOfSquares;
+
+    /**
+     * The sums of the gusts before each row
+     */
+    private final double[] sumsOfGusts;
+
+    /**
+     * The time above the threshold before each row
+     */
+    private final long[] timesAbove;
+
+    /**
+     * The maximum gusts of the ranges [i, i + 2^k) per level k (-Infinity for missing gusts)
+     */
+    private final double[][] maxGusts;
+
+    /**
+     * Creates the index of the given series.
+     *
+     * @param series    the series (sorted by time)
+     * @param threshold the wind speed threshold in km/h for the time above the threshold
+     */
+    public WindStatisticsIndex(WindSeries series, double threshold)
+    {
+        this(series.getTimes(),
+             series.getValues(WIND_DATA_TYPE.windSpeed),
+             series.getValues(WIND_DATA_TYPE.maxWindSpeed),
+             threshold);
+    }
+
+    /**
+     * Creates the index of the given wind data.
+     *
+     * @param windData  the wind data (sorted by time)
+     * @param threshold the wind speed threshold in km/h for the time above the threshold
+     */
+    public WindStatisticsIndex(List<WindDataPoint> windData, double threshold)
+    {
+        this(toTimes(windData), toValues(windData, false), toValues(windData, true), threshold);
+    }
+
+    /**
+     * Creates the index of the given columns (the arrays are not copied and must not be modified afterwards).
+     *
+     * @param times     the times in epoch milliseconds (ascending)
+     * @param speeds    the wind speeds in km/h
+     * @param gusts     the gusts in km/h
+     * @param threshold the wind speed threshold in km/h for the time above the threshold
+     */
+    public WindStatisticsIndex(long[] times, double[] speeds, double[] gusts, double threshold)
+    {
+        int n = times.length;
+        this.threshold = threshold;
+        this.times = times;
+        this.speeds = speeds;
+
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (isValid(speeds[i], gusts[i]))
+            {
+                sum += speeds[i];
+                count++;
+            }
+        }
+        reference = count > 0 ? sum / count : 0;
+
+        counts = new int[n + 1];
+        sums = new double[n + 1];
+        sumsOfSquares = new double[n + 1];
+        sumsOfGusts = new double[n + 1];
+        timesAbove = new long[n + 1];
+        for (int i = 0; i < n; i++)
+        {
+            boolean valid = isValid(speeds[i], gusts[i]);
+            double deviation = valid ? speeds[i] - reference : 0;
+            counts[i + 1] = counts[i] + (valid ? 1 : 0);
+            sums[i + 1] = sums[i] + deviation;
+            sumsOfSquares[i + 1] = sumsOfSquares[i] + deviation * deviation;
+            sumsOfGusts[i + 1] = sumsOfGusts[i] + (valid ? gusts[i] : 0);
+            timesAbove[i + 1] = timesAbove[i] + (i + 1 < n && speeds[i] > threshold ? times[i + 1] - times[i] : 0);
+        }
+
+        int levels = 1;
+        while (1 << levels <= n)
+        {
+            levels++;
+        }
+        maxGusts = new double[levels][];
+        maxGusts[0] = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            maxGusts[0][i] = isValid(speeds[i], gusts[i]) ? gusts[i] : Double.NEGATIVE_INFINITY;
+        }
+        for (int k = 1; k < levels; k++)
+        {
+            int half = 1 << (k - 1);
+            double[] previous = maxGusts[k - 1];
+            double[] level = new double[n - (1 << k) + 1];
+            for (int i = 0; i < level.length; i++)
+            {
+                level[i] = Math.max(previous[i], previous[i + half]);
+            }
+            maxGusts[k] = level;
+        }
+    }
+
+    /**
+     * Returns true if the given reading is complete.
+     */
+    private static boolean isValid(double speed, double gust)
+    {
+        return ! Double.isNaN(speed) && ! Double.isNaN(gust);
+    }
+
+    /**
+     * Returns the times of the given wind data.
+     */
+    private static long[] toTimes(List<WindDataPoint> windData)
+    {
+        long[] times = new long[windData.size()];
+        for (int i = 0; i < times.length; i++)
+        {
+            times[i] = windData.get(i).getTime();
+        }
+        return times;
+    }
+
+    /**
+     * Returns the wind speeds or the gusts of the given wind data.
+     */
+    private static double[] toValues(List<WindDataPoint> windData, boolean gusts)
+    {
+        double[] values = new double[windData.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            WindDataPoint windDataPoint = windData.get(i);
+            values[i] = gusts ? windDataPoint.getMaxWindSpeed() : windDataPoint.getWindSpeed();
+        }
+        return values;
+    }
+
+    /**
+     * @return the wind speed threshold in km/h
+     */
+    public double getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * @return the number of readings
+     */
+    public int size()
+    {
+        return times.length;
+    }
+
+    /**
+     * Returns the statistics of the readings within the given time range.
+     *
+     * @param from the "from" time in epoch milliseconds (inclusive)
+     * @param to   the "to" time in epoch milliseconds (inclusive)
+     * @return     the statistics (empty if there are no readings in the range)
+     */
+    public WindStatistics getStatistics(long from, long to)
+    {
+        int start = indexOf(from);
+        int end = to == Long.MAX_VALUE ? times.length : indexOf(to + 1);
+        return getStatistics(start, end);
+    }
+
+    /**
+     * Returns the statistics of the readings during the given track segment (e.g. a speed run).
+     *
+     * @param trackSegment the track segment
+     * @return             the statistics (empty if the segment has no track points)
+     */
+    public WindStatistics getStatistics(TrackSegment trackSegment)
+    {
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        if (trackPoints.isEmpty())
+        {
+            return new WindStatistics(threshold);
+        }
+        return getStatistics(trackPoints.get(0).getTime(), trackPoints.get(trackPoints.size() - 1).getTime());
+    }
+
+    /**
+     * Returns the statistics of the readings during each of the given track segments.
+     *
+     * @param trackSegments the track segments
+     * @return              the statistics per track segment
+     */
+    public List<WindStatistics> getStatistics(List<TrackSegment> trackSegments)
+    {
+        List<WindStatistics> statistics = new ArrayList<WindStatistics>(trackSegments.size());
+        for (TrackSegment trackSegment : trackSegments)
+        {
+            statistics.add(getStatistics(trackSegment));
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics of the given rows.
+     *
+     * @param start the first row (inclusive)
+     * @param end   the last row (exclusive)
+     * @return      the statistics
+     */
+    public WindStatistics getStatistics(int start, int end)
+    {
+        start = Math.max(0, start);
+        end = Math.min(times.length, end);
+        int count = end > start ? counts[end] - counts[start] : 0;
+        if (count == 0)
+        {
+            return new WindStatistics(threshold);
+        }
+        double sum = sums[end] - sums[start];
+        double sumOfSquares = sumsOfSquares[end] - sumsOfSquares[start];
+        double m2 = sumOfSquares - sum * sum / count;
+        // the interval after the last row is not part of the range
+        long timeAbove = timesAbove[end - 1] - timesAbove[start];
+        return new WindStatistics(threshold,
+                                  count,
+                                  reference + sum / count,
+                                  m2,
+                                  sumsOfGusts[end] - sumsOfGusts[start],
+                                  getMaxGust(start, end),
+                                  timeAbove,
+                                  times[start],
+                                  times[end - 1],
+                                  speeds[end - 1]);
+    }
+
+    /**
+     * Returns the maximum gust of the given rows (two overlapping ranges of the sparse table).
+     *
+     * @param start the first row (inclusive)
+     * @param end   the last row (exclusive, greater than start)
+     * @return      the maximum gust
+     */
+    private double getMaxGust(int start, int end)
+    {
+        int k = 31 - Integer.numberOfLeadingZeros(end - start);
+        double max = Math.max(maxGusts[k][start], maxGusts[k][end - (1 << k)]);
+        return max == Double.NEGATIVE_INFINITY ? Double.NaN : max;
+    }
+
+    /**
+     * Returns the index of the first row at or after the given time.
+     *
+     * @param time the time in epoch milliseconds
+     * @return     the index of the row (size() if there is none)
+     */
+    private int indexOf(long time)
+    {
+        int low = 0;
+        int high = times.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public String toString()
+    {
+        return "WindStatisticsIndex [size=" + times.length + ", threshold=" + threshold + "]";
+    }
+}
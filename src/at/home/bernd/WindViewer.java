@@ -24,6 +24,8 @@ public class WindViewer
      */
     public static void main(String[] args)
     {
+        // registered even while disabled, so the metrics can be enabled at runtime through JMX
+        PipelineMetrics.getInstance().registerMBean();
         WindViewer windViewer = new WindViewer();
         String liveUrl = "http://212.232.26.104/";
         int nHoursBack = 5;
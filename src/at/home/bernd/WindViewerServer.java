@@ -0,0 +1,1106 @@
+package at.home.bernd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import at.home.bernd.TopSpeedStatistics.TOP_SPEED_TYPE;
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * An embedded HTTP server answering queries on the weather archive and the loaded tracks. All endpoints are GET
+ * requests returning JSON (the raw weather data is also available in the columnar binary format):
+ * <ul>
+ * <li>/stations - the stations and their time spans</li>
+ * <li>/weather?station=&amp;from=&amp;to=[&amp;format=columnar] - the wind data of a station</li>
+ * <li>/weather/chart?station=&amp;type=&amp;from=&amp;to=&amp;points= - a downsampled wind data series</li>
+ * <li>/tracks/chart?track=&amp;segment=&amp;points= - a downsampled speed series of a track segment</li>
+ * <li>/segments?threshold=&amp;minPoints=&amp;minDuration= - the segments above a speed threshold</li>
+ * <li>/topspeeds - the top speed statistics of all tracks</li>
+ * <li>/tiles?track=&amp;z=&amp;x=&amp;y=[&amp;mode=speed|windAngle] - a map tile of a track (PNG, see
+ * {@link TrackMapRenderer}; not in the response cache, as the renderer has its own tile cache)</li>
+ * <li>/metrics - the pipeline metrics (plain text, not in the response cache)</li>
+ * <li>/events?station=&amp;since= - a stream of server-sent events with new readings (see
+ * {@link #setBroadcaster(WindDataBroadcaster)})</li>
+ * </ul>
+ * Timestamps are accepted in ISO 8601 format or as epoch milliseconds. Responses (except live data and tiles) are
+ * cached (LRU) by request URI until {@link #invalidateCache()} is called. Requests run on virtual threads if the
+ * runtime supports them, otherwise on a fixed pool; the dispatcher thread only accepts connections. Event streams are
+ * written by a separate executor so that long-lived connections do not occupy the request pool. Without virtual
+ * threads every stream occupies a platform thread, so the number of concurrent streams is limited (see
+ * {@link #setMaxStreams(int)}); further clients receive 503 and reconnect after the Retry-After interval.
+ */
+public class WindViewerServer implements Closeable
+{
+    /**
+     * The default port
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * The maximum number of cached responses
+     */
+    private static final int CACHE_ENTRIES = 1024;
+
+    /**
+     * The maximum total size of the cached responses in bytes
+     */
+    private static final long CACHE_BYTES = 64L << 20;
+
+    /**
+     * The endpoints whose responses are never cached: live data and the map tiles (which have their own cache)
+     */
+    private static final Set<String> UNCACHED_PATHS = new HashSet<String>(Arrays.asList("/tiles", "/metrics",
+                                                                                         "/events"));
+
+    /**
+     * The default number of points of a downsampled chart series
+     */
+    private static final int DEFAULT_CHART_POINTS = 1000;
+
+    /**
+     * The content type of JSON responses
+     */
+    private static final String JSON = "application/json; charset=utf-8";
+
+    /**
+     * The content type of the columnar binary format
+     */
+    private static final String COLUMNAR = "application/octet-stream";
+
+    /**
+     * The content type of plain text responses
+     */
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    /**
+     * The content type of event streams
+     */
+    private static final String EVENT_STREAM = "text/event-stream; charset=utf-8";
+
+    /**
+     * The content type of map tiles
+     */
+    private static final String PNG = "image/png";
+
+    /**
+     * The interval of the keep-alive comments of idle event streams in milliseconds
+     */
+    private static final long KEEP_ALIVE_MILLIS = 15000;
+
+    /**
+     * The keep-alive comment of idle event streams
+     */
+    private static final byte[] KEEP_ALIVE = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The default maximum number of concurrent event streams
+     */
+    public static final int DEFAULT_MAX_STREAMS = 256;
+
+    /**
+     * The underlying server
+     */
+    private HttpServer server;
+
+    /**
+     * The executor of the requests
+     */
+    private ExecutorService executor;
+
+    /**
+     * The executor of the event streams (one task per connected client)
+     */
+    private ExecutorService streamExecutor;
+
+    /**
+     * The permits of the event streams (one per connected client)
+     */
+    private volatile Semaphore streamPermits = new Semaphore(DEFAULT_MAX_STREAMS);
+
+    /**
+     * The broadcaster of new readings (null = no event streams)
+     */
+    private volatile WindDataBroadcaster broadcaster;
+
+    /**
+     * The weather archive (in-memory series)
+     */
+    private WeatherArchive archive;
+
+    /**
+     * The columnar files per station id (on-disk series)
+     */
+    private ConcurrentHashMap<String, Path> columnarFiles = new ConcurrentHashMap<String, Path>();
+
+    /**
+     * The tracks
+     */
+    private volatile List<Track> trackList;
+
+    /**
+     * The session ids of the map tiles of the tracks (by identity, computed once per track list as they hash all
+     * points)
+     */
+    private volatile Map<Track, String> sessionIds;
+
+    /**
+     * The renderer of the map tiles
+     */
+    private volatile TrackMapRenderer trackMapRenderer =
+        new TrackMapRenderer(new TileCache(TileCache.DEFAULT_MEMORY_BYTES));
+
+    /**
+     * The cached responses by request URI
+     */
+    private LruCache<String, Response> responseCache = new LruCache<String, Response>(CACHE_ENTRIES, CACHE_BYTES,
+                                                                                     response -> response.body.length);
+
+    /**
+     * The generation of the response cache, incremented by every invalidation: a response routed in an older
+     * generation may be based on the old data and is not cached
+     */
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
+    /**
+     * Creates a server listening on the given address (not started yet).
+     *
+     * @param address   the address (port 0 = any free port)
+     * @param archive   the weather archive
+     * @param trackList the tracks
+     * @throws IOException if the address cannot be bound
+     */
+    public WindViewerServer(InetSocketAddress address, WeatherArchive archive, List<Track> trackList) throws IOException
+    {
+        this.archive = archive;
+        this.sessionIds = sessionIds(trackList);
+        this.trackList = trackList;
+        this.server = HttpServer.create(address, 0);
+        this.executor = createExecutor();
+        this.streamExecutor = createStreamExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the runtime supports virtual threads, otherwise a fixed pool.
+     *
+     * @return the executor
+     */
+    private static ExecutorService createExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            return Executors.newFixedThreadPool(Math.max(8, 4 * Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the runtime supports virtual threads, otherwise a cached pool of
+     * daemon threads (bounded by the stream permits).
+     *
+     * @return the executor
+     */
+    private static ExecutorService createStreamExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, "WindViewerServer-events");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts the server.
+     */
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Serves the data of the given station from the given columnar file (see {@link DataExporter}) instead of the
+     * archive.
+     *
+     * @param stationId the id of the station
+     * @param path      the columnar file
+     */
+    public void addColumnarFile(String stationId, Path path)
+    {
+        columnarFiles.put(stationId, path);
+        invalidateCache();
+    }
+
+    /**
+     * Replaces the tracks.
+     *
+     * @param trackList the tracks
+     */
+    public void setTrackList(List<Track> trackList)
+    {
+        this.sessionIds = sessionIds(trackList);
+        this.trackList = trackList;
+        invalidateCache();
+        // the sessions are added again on demand; their cached tiles stay valid as the session ids depend on the content
+        for (String sessionId : trackMapRenderer.getSessionIds())
+        {
+            trackMapRenderer.removeSession(sessionId);
+        }
+    }
+
+    /**
+     * Computes the session ids of the given tracks.
+     *
+     * @param trackList the tracks
+     * @return          the session ids by track (identity)
+     */
+    private static Map<Track, String> sessionIds(List<Track> trackList)
+    {
+        Map<Track, String> sessionIds = new IdentityHashMap<Track, String>();
+        for (Track track : trackList)
+        {
+            sessionIds.put(track, TrackMapRenderer.sessionId(track));
+        }
+        return sessionIds;
+    }
+
+    /**
+     * Sets the renderer of the map tiles (e.g. one with a disk cache).
+     *
+     * @param trackMapRenderer the renderer
+     */
+    public void setTrackMapRenderer(TrackMapRenderer trackMapRenderer)
+    {
+        this.trackMapRenderer = trackMapRenderer;
+    }
+
+    /**
+     * Serves the tracks of the snapshots published by the given store from now on.
+     *
+     * @param snapshotStore the snapshot store
+     */
+    public void setSnapshotStore(SnapshotStore snapshotStore)
+    {
+        snapshotStore.addListener(snapshot -> setTrackList(snapshot.getTrackList()));
+        setTrackList(snapshotStore.get().getTrackList());
+    }
+
+    /**
+     * Sets the broadcaster whose readings are streamed to the clients of /events. The response cache is cleared
+     * whenever the broadcaster has merged new readings into the archive.
+     *
+     * @param broadcaster the broadcaster
+     */
+    public void setBroadcaster(WindDataBroadcaster broadcaster)
+    {
+        broadcaster.addUpdateListener(this::invalidateCache);
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * Sets the maximum number of concurrent event streams (to be called before the server is started).
+     *
+     * @param maxStreams the maximum number of concurrent event streams
+     */
+    public void setMaxStreams(int maxStreams)
+    {
+        streamPermits = new Semaphore(maxStreams);
+    }
+
+    /**
+     * Clears the response cache (to be called after the archive or the tracks have been modified).
+     */
+    public void invalidateCache()
+    {
+        synchronized (responseCache)
+        {
+            cacheGeneration.incrementAndGet();
+            responseCache.clear();
+        }
+    }
+
+    /**
+     * @return the response cache
+     */
+    public LruCache<String, Response> getResponseCache()
+    {
+        return responseCache;
+    }
+
+    /**
+     * Stops the server and its executor.
+     */
+    public void close()
+    {
+        server.stop(0);
+        streamExecutor.shutdownNow();
+        executor.shutdown();
+        try
+        {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles a request.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        if (broadcaster != null && "GET".equals(exchange.getRequestMethod())
+            && "/events".equals(exchange.getRequestURI().getPath()))
+        {
+            Semaphore permits = streamPermits;
+            if (permits.tryAcquire())
+            {
+                // the exchange stays open after this method returns
+                streamExecutor.execute(() -> stream(exchange, permits));
+                return;
+            }
+            try
+            {
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(KEEP_ALIVE_MILLIS / 1000));
+                send(exchange, Response.error(503, "Too many event streams"));
+            }
+            finally
+            {
+                exchange.close();
+            }
+            return;
+        }
+        // closing the exchange also closes the request body
+        try
+        {
+            Response response;
+            if (! "GET".equals(exchange.getRequestMethod()))
+            {
+                response = Response.error(405, "Method not allowed");
+            }
+            else
+            {
+                URI uri = exchange.getRequestURI();
+                String key = uri.toString();
+                response = responseCache.get(key);
+                if (response == null)
+                {
+                    long generation = cacheGeneration.get();
+                    response = route(uri.getPath(), parseQuery(uri.getRawQuery()));
+                    if (response.status == 200 && ! UNCACHED_PATHS.contains(uri.getPath()))
+                    {
+                        synchronized (responseCache)
+                        {
+                            if (cacheGeneration.get() == generation)
+                            {
+                                responseCache.put(key, response);
+                            }
+                        }
+                    }
+                }
+            }
+            send(exchange, response);
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Streams the readings of the broadcaster as server-sent events until the client disconnects or is dropped as a
+     * slow consumer. A reconnecting client first receives the readings after the id of its last event (the
+     * Last-Event-ID header, see {@link WindDataBroadcaster#parseEventId(String)}) or after the "since" parameter.
+     *
+     * @param exchange the exchange
+     * @param permits  the stream permits (one of them is released when the stream ends)
+     */
+    private void stream(HttpExchange exchange, Semaphore permits)
+    {
+        WindDataBroadcaster.Subscriber subscriber = null;
+        try
+        {
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            String stationId = parameters.get("station");
+            String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+            Map<String, Long> cursor = null;
+            long since = Long.MIN_VALUE;
+            try
+            {
+                if (parameters.containsKey("since"))
+                {
+                    since = getTime(parameters, "since", Long.MIN_VALUE);
+                }
+                else if (lastEventId != null && lastEventId.indexOf('=') >= 0)
+                {
+                    cursor = WindDataBroadcaster.parseEventId(lastEventId);
+                }
+                else if (lastEventId != null)
+                {
+                    // the id of an older version: the timestamp of the last row
+                    since = Long.parseLong(lastEventId.trim());
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                send(exchange, Response.error(400, ex.getMessage()));
+                return;
+            }
+
+            // subscribe before catching up so that no readings are lost in between
+            subscriber = broadcaster.subscribe(stationId);
+            exchange.getResponseHeaders().set("Content-Type", EVENT_STREAM);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            if (cursor != null || since != Long.MIN_VALUE)
+            {
+                for (byte[] event : cursor != null ? broadcaster.getEventsSince(stationId, cursor)
+                                                   : broadcaster.getEventsSince(stationId, since))
+                {
+                    out.write(event);
+                }
+            }
+            out.write(KEEP_ALIVE);
+            out.flush();
+            while (true)
+            {
+                byte[] event = subscriber.take(KEEP_ALIVE_MILLIS);
+                if (event == WindDataBroadcaster.CLOSE)
+                {
+                    break;
+                }
+                out.write(event != null ? event : KEEP_ALIVE);
+                out.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            // the client has disconnected
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            if (subscriber != null)
+            {
+                broadcaster.unsubscribe(subscriber);
+            }
+            permits.release();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends the given response.
+     *
+     * @param exchange the exchange
+     * @param response the response
+     * @throws IOException if the response cannot be sent
+     */
+    private void send(HttpExchange exchange, Response response) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(response.status, response.body.length == 0 ? -1 : response.body.length);
+        if (response.body.length > 0)
+        {
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(response.body);
+            }
+        }
+    }
+
+    /**
+     * Routes a request to its endpoint.
+     *
+     * @param path       the path
+     * @param parameters the query parameters
+     * @return           the response
+     */
+    private Response route(String path, Map<String, String> parameters)
+    {
+        try
+        {
+            switch (path)
+            {
+                case "/stations":
+                    return stations();
+                case "/weather":
+                    return weather(parameters);
+                case "/weather/chart":
+                    return weatherChart(parameters);
+                case "/tracks/chart":
+                    return trackChart(parameters);
+                case "/segments":
+                    return segments(parameters);
+                case "/topspeeds":
+                    return topSpeeds();
+                case "/tiles":
+                    return tile(parameters);
+                case "/metrics":
+                    return new Response(200, TEXT, PipelineMetrics.getInstance().getReport());
+                default:
+                    return Response.error(404, "Unknown endpoint " + path);
+            }
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return Response.error(400, ex.getMessage());
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+            return Response.error(500, ex.toString());
+        }
+    }
+
+    /**
+     * Returns the stations and their time spans.
+     *
+     * @return the response
+     * @throws IOException if a columnar file cannot be read
+     */
+    private Response stations() throws IOException
+    {
+        Set<String> stationIds = new TreeSet<String>(archive.getStationIds());
+        stationIds.addAll(columnarFiles.keySet());
+        JsonWriter json = new JsonWriter();
+        json.beginObject().name("stations").beginArray();
+        for (String stationId : stationIds)
+        {
+            WindSeries series = getSeries(stationId, Long.MIN_VALUE, Long.MAX_VALUE);
+            json.beginObject().name("id").value(stationId).name("size").value(series.size());
+            if (series.size() > 0)
+            {
+                json.name("from").timestamp(series.getTime(0));
+                json.name("to").timestamp(series.getTime(series.size() - 1));
+            }
+            json.endObject();
+        }
+        json.endArray().endObject();
+        return new Response(200, JSON, json.toString());
+    }
+
+    /**
+     * Returns the wind data of a station within a time window.
+     *
+     * @param parameters the query parameters (station, from, to, format)
+     * @return           the response
+     * @throws IOException if the data cannot be read
+     */
+    private Response weather(Map<String, String> parameters) throws IOException
+    {
+        WindSeries series = getSeries(parameters);
+        if ("columnar".equals(parameters.get("format")))
+        {
+            String[] columnNames = new String[WindSeries.VALUE_TYPES.length];
+            for (int c = 0; c < columnNames.length; c++)
+            {
+                columnNames[c] = WindSeries.VALUE_TYPES[c].name();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            double[] row = new double[columnNames.length];
+            try (ColumnarFileWriter writer = new ColumnarFileWriter(out, columnNames))
+            {
+                for (int i = 0; i < series.size(); i++)
+                {
+                    for (int c = 0; c < row.length; c++)
+                    {
+                        row[c] = series.getValue(WindSeries.VALUE_TYPES[c], i);
+                    }
+                    writer.writeRow(series.getTime(i), row);
+                }
+            }
+            return new Response(200, COLUMNAR, out.toByteArray());
+        }
+        JsonWriter json = new JsonWriter();
+        json.beginObject().name("station").value(series.getStationId());
+        json.name("columns").beginArray().value("timestamp");
+        for (WIND_DATA_TYPE type : WindSeries.VALUE_TYPES)
+        {
+            json.value(type.name());
+        }
+        json.endArray().name("rows").beginArray();
+        for (int i = 0; i < series.size(); i++)
+        {
+            json.beginArray().timestamp(series.getTime(i));
+            for (WIND_DATA_TYPE type : WindSeries.VALUE_TYPES)
+            {
+                json.value(series.getValue(type, i), 1);
+            }
+            json.endArray();
+        }
+        json.endArray().endObject();
+        return new Response(200, JSON, json.toString());
+    }
+
+    /**
+     * Returns a downsampled wind data series of a station.
+     *
+     * @param parameters the query parameters (station, type, from, to, points)
+     * @return           the response
+     * @throws IOException if the data cannot be read
+     */
+    private Response weatherChart(Map<String, String> parameters) throws IOException
+    {
+        WindSeries series = getSeries(parameters);
+        WIND_DATA_TYPE type = WIND_DATA_TYPE.valueOf(parameters.getOrDefault("type", WIND_DATA_TYPE.windSpeed.name()));
+        if (type == WIND_DATA_TYPE.timestamp)
+        {
+            throw new IllegalArgumentException("Invalid type " + type);
+        }
+        return chart(type.name(), series.getTimes(), series.getValues(type), getInt(parameters, "points", DEFAULT_CHART_POINTS));
+    }
+
+    /**
+     * Returns a downsampled speed series of a track segment.
+     *
+     * @param parameters the query parameters (track, segment, points)
+     * @return           the response
+     */
+    private Response trackChart(Map<String, String> parameters)
+    {
+        List<Track> tracks = trackList;
+        int trackIndex = getInt(parameters, "track", 0);
+        int segmentIndex = getInt(parameters, "segment", 0);
+        if (trackIndex < 0 || trackIndex >= tracks.size())
+        {
+            throw new IllegalArgumentException("Invalid track " + trackIndex);
+        }
+        List<TrackSegment> trackSegments = tracks.get(trackIndex).getTrackSegments();
+        if (segmentIndex < 0 || segmentIndex >= trackSegments.size())
+        {
+            throw new IllegalArgumentException("Invalid segment " + segmentIndex);
+        }
+        TrackSegment trackSegment = trackSegments.get(segmentIndex);
+        return chart("speed", trackSegment.getTimesInMillis(), trackSegment.getSpeeds(), getInt(parameters, "points", DEFAULT_CHART_POINTS));
+    }
+
+    /**
+     * Returns a map tile of a track.
+     *
+     * @param parameters the query parameters (track, z, x, y, mode)
+     * @return           the response
+     */
+    private Response tile(Map<String, String> parameters)
+    {
+        List<Track> tracks = trackList;
+        int trackIndex = getInt(parameters, "track", 0);
+        if (trackIndex < 0 || trackIndex >= tracks.size())
+        {
+            throw new IllegalArgumentException("Invalid track " + trackIndex);
+        }
+        String mode = parameters.getOrDefault("mode", TrackMapRenderer.COLOR_MODE.speed.name());
+        TrackMapRenderer renderer = trackMapRenderer;
+        Track track = tracks.get(trackIndex);
+        String sessionId = sessionIds.get(track);
+        if (sessionId == null)
+        {
+            // the track list has been replaced in the meantime
+            sessionId = TrackMapRenderer.sessionId(track);
+        }
+        synchronized (renderer)
+        {
+            if (! renderer.hasSession(sessionId))
+            {
+                renderer.addSession(sessionId, track);
+            }
+        }
+        byte[] tile = renderer.getTile(sessionId, getInt(parameters, "z", 0), getInt(parameters, "x", 0),
+                                       getInt(parameters, "y", 0), TrackMapRenderer.COLOR_MODE.valueOf(mode));
+        return new Response(200, PNG, tile);
+    }
+
+    /**
+     * Returns a downsampled series.
+     *
+     * @param name      the name of the series
+     * @param times     the timestamps
+     * @param values    the values
+     * @param maxPoints the maximum number of points
+     * @return          the response
+     */
+    private Response chart(String name, long[] times, double[] values, int maxPoints)
+    {
+        int[] indices = SeriesDownsampler.downsample(times, values, maxPoints);
+        JsonWriter json = new JsonWriter();
+        json.beginObject().name("name").value(name).name("size").value(times.length);
+        json.name("times").beginArray();
+        for (int i : indices)
+        {
+            json.value(times[i]);
+        }
+        json.endArray().name("values").beginArray();
+        for (int i : indices)
+        {
+            json.value(values[i], 2);
+        }
+        json.endArray().endObject();
+        return new Response(200, JSON, json.toString());
+    }
+
+    /**
+     * Returns the segments of all tracks above a speed threshold.
+     *
+     * @param parameters the query parameters (threshold, minPoints, minDuration, maxCourseDeviation)
+     * @return           the response
+     */
+    private Response segments(Map<String, String> parameters)
+    {
+        SpeedRunExtractor extractor = new SpeedRunExtractor(getDouble(parameters, "threshold", 30), getInt(parameters, "minPoints", 0));
+        extractor.setMinDurationSeconds(getDouble(parameters, "minDuration", 0));
+        extractor.setMaxCourseDeviation(getDouble(parameters, "maxCourseDeviation", -1));
+        List<Track> tracks = trackList;
+        JsonWriter json = new JsonWriter();
+        json.beginObject().name("segments").beginArray();
+        for (int t = 0; t < tracks.size(); t++)
+        {
+            List<TrackSegment> trackSegments = tracks.get(t).getTrackSegments();
+            for (int s = 0; s < trackSegments.size(); s++)
+            {
+                TrackSegment trackSegment = trackSegments.get(s);
+                long[] times = trackSegment.getTimesInMillis();
+                double[] speeds = trackSegment.getSpeeds();
+                for (IndexRange range : extractor.extract(speeds, times, trackSegment.getCourses()))
+                {
+                    double maxSpeed = 0;
+                    double sumOfSpeeds = 0;
+                    for (int i = range.getStart(); i < range.getEnd(); i++)
+                    {
+                        maxSpeed = Math.max(maxSpeed, speeds[i]);
+                        sumOfSpeeds += speeds[i];
+                    }
+                    json.beginObject();
+                    json.name("track").value(t).name("segment").value(s);
+                    json.name("start").value(range.getStart()).name("end").value(range.getEnd());
+                    json.name("from").timestamp(times[range.getStart()]).name("to").timestamp(times[range.getEnd() - 1]);
+                    json.name("maxSpeed").value(maxSpeed, 2).name("avgSpeed").value(sumOfSpeeds / range.size(), 2);
+                    json.endObject();
+                }
+            }
+        }
+        json.endArray().endObject();
+        return new Response(200, JSON, json.toString());
+    }
+
+    /**
+     * Returns the top speed statistics of all tracks.
+     *
+     * @return the response
+     */
+    private Response topSpeeds()
+    {
+        TopSpeedStatistics statistics = new TopSpeedAnalyzer().analyze(trackList);
+        JsonWriter json = new JsonWriter();
+        json.beginObject();
+        for (TOP_SPEED_TYPE type : TOP_SPEED_TYPE.values())
+        {
+            TopSpeedResult result = statistics.getBest(type);
+            json.name(type.name());
+            if (result == null)
+            {
+                json.value((String) null);
+                continue;
+            }
+            writeResult(json, result);
+        }
+        json.name("fiveBest10s").beginArray();
+        for (TopSpeedResult result : statistics.getFiveBest10s())
+        {
+            writeResult(json, result);
+        }
+        json.endArray().name("fiveBest10sAverage").value(statistics.getFiveBest10sAverage(), 2);
+        json.endObject();
+        return new Response(200, JSON, json.toString());
+    }
+
+    /**
+     * Writes a top speed result.
+     *
+     * @param json   the JSON writer
+     * @param result the result
+     */
+    private void writeResult(JsonWriter json, TopSpeedResult result)
+    {
+        long[] times = result.getTrackSegment().getTimesInMillis();
+        IndexRange range = result.getRange();
+        json.beginObject();
+        json.name("speed").value(result.getSpeed(), 2).name("distance").value(result.getDistance(), 1);
+        json.name("duration").value(result.getDuration(), 1);
+        json.name("from").timestamp(times[range.getStart()]).name("to").timestamp(times[range.getEnd() - 1]);
+        json.name("windSpeed").value(result.getWindSpeed(), 1).name("windDirection").value(result.getWindDirection(), 0);
+        json.endObject();
+    }
+
+    /**
+     * Returns the wind data of the station given by the query parameters (station, from, to).
+     *
+     * @param parameters the query parameters
+     * @return           the wind data
+     * @throws IOException if the data cannot be read
+     */
+    private WindSeries getSeries(Map<String, String> parameters) throws IOException
+    {
+        String stationId = parameters.get("station");
+        if (stationId == null)
+        {
+            throw new IllegalArgumentException("Missing parameter station");
+        }
+        if (archive.getSeries(stationId) == null && ! columnarFiles.containsKey(stationId))
+        {
+            throw new IllegalArgumentException("Unknown station " + stationId);
+        }
+        return getSeries(stationId, getTime(parameters, "from", Long.MIN_VALUE), getTime(parameters, "to", Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the wind data of the given station within the given time window, from its columnar file if there is
+     * one (row groups outside the window are skipped), otherwise from the archive.
+     *
+     * @param stationId the id of the station
+     * @param from      the "from" time in epoch milliseconds
+     * @param to        the "to" time in epoch milliseconds
+     * @return          the wind data
+     * @throws IOException if the columnar file cannot be read
+     */
+    private WindSeries getSeries(String stationId, long from, long to) throws IOException
+    {
+        Path path = columnarFiles.get(stationId);
+        if (path == null)
+        {
+            WindSeries series = archive.getSeries(stationId);
+            return series != null ? series.subSeries(from, to) : new WindSeries(stationId, 1);
+        }
+        WindSeries series = new WindSeries(stationId);
+        double[] rowValues = new double[WIND_DATA_TYPE.values().length];
+        try (ColumnarFileReader reader = new ColumnarFileReader(Files.newInputStream(path)))
+        {
+            for (ColumnBlock block : reader.read(from, to))
+            {
+                String[] columnNames = block.getColumnNames();
+                long[] times = block.getTimes();
+                Arrays.fill(rowValues, Double.NaN);
+                for (int i = 0; i < block.size(); i++)
+                {
+                    if (times[i] < from || times[i] > to)
+                    {
+                        continue;
+                    }
+                    for (int c = 0; c < columnNames.length; c++)
+                    {
+                        rowValues[WIND_DATA_TYPE.valueOf(columnNames[c]).ordinal()] = block.getValues(c)[i];
+                    }
+                    series.add(times[i], rowValues);
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Parses the query of a request.
+     *
+     * @param rawQuery the raw query (may be null)
+     * @return         the parameters
+     */
+    private static Map<String, String> parseQuery(String rawQuery)
+    {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (rawQuery == null || rawQuery.isEmpty())
+        {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&"))
+        {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns a time parameter (ISO 8601 or epoch milliseconds).
+     *
+     * @param parameters   the parameters
+     * @param name         the name of the parameter
+     * @param defaultValue the default value
+     * @return             the time in epoch milliseconds
+     */
+    private static long getTime(Map<String, String> parameters, String name, long defaultValue)
+    {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty())
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return value.chars().allMatch(Character::isDigit) ? Long.parseLong(value) : Instant.parse(value).toEpochMilli();
+        }
+        catch (NumberFormatException | DateTimeParseException ex)
+        {
+            throw new IllegalArgumentException("Invalid time " + name + "=" + value);
+        }
+    }
+
+    /**
+     * Returns an integer parameter.
+     *
+     * @param parameters   the parameters
+     * @param name         the name of the parameter
+     * @param defaultValue the default value
+     * @return             the value
+     */
+    private static int getInt(Map<String, String> parameters, String name, int defaultValue)
+    {
+        String value = parameters.get(name);
+        return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Returns a decimal parameter.
+     *
+     * @param parameters   the parameters
+     * @param name         the name of the parameter
+     * @param defaultValue the default value
+     * @return             the value
+     */
+    private static double getDouble(Map<String, String> parameters, String name, double defaultValue)
+    {
+        String value = parameters.get(name);
+        return value == null || value.isEmpty() ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Starts a server on the default port with the wind data of the Podersdorf station (polled once per minute) and the
+     * given GPX files.
+     *
+     * @param args the GPX files
+     * @throws IOException if the server cannot be started
+     */
+    public static void main(String[] args) throws IOException
+    {
+        PipelineMetrics.getInstance().registerMBean();
+        WeatherArchive archive = new WeatherArchive();
+        WeatherSource source = new XhtmlTableWeatherSource("podersdorf", "http://212.232.26.104/", ColumnMapping.podersdorf());
+        archive.ingest(source);
+        TrackDataManager trackDataManager = new TrackDataManager();
+        List<Track> trackList = new ArrayList<Track>();
+        for (String arg : args)
+        {
+            trackList.addAll(trackDataManager.parseTracks(Path.of(arg)));
+        }
+        WindViewerServer server = new WindViewerServer(new InetSocketAddress(DEFAULT_PORT), archive, trackList);
+        WindDataBroadcaster broadcaster = new WindDataBroadcaster(archive, Collections.singletonList(source));
+        server.setBroadcaster(broadcaster);
+        broadcaster.start(60000);
+        server.start();
+        System.out.println("Listening on port " + server.getPort());
+    }
+
+    /**
+     * A response: status, content type and body.
+     */
+    public static class Response
+    {
+        /**
+         * The HTTP status
+         */
+        private final int status;
+
+        /**
+         * The content type
+         */
+        private final String contentType;
+
+        /**
+         * The body
+         */
+        private final byte[] body;
+
+        Response(int status, String contentType, byte[] body)
+        {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        Response(int status, String contentType, String body)
+        {
+            this(status, contentType, body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Creates an error response.
+         *
+         * @param status  the HTTP status
+         * @param message the error message
+         * @return        the response
+         */
+        static Response error(int status, String message)
+        {
+            JsonWriter json = new JsonWriter();
+            json.beginObject().name("error").value(message).endObject();
+            return new Response(status, JSON, json.toString());
+        }
+    }
+}
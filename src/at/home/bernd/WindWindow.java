@@ -0,0 +1,425 @@
+package at.home.bernd;
+
+/**
+ * An incremental aggregate of the wind readings of a sliding time window (the readings within the last
+ * {@link #getDuration()} milliseconds of the latest reading). Adding a reading evicts the readings that have fallen out
+ * of the window; both cost amortized O(1): the sums are updated incrementally, the minimum wind speed and the maximum
+ * gust are kept in monotonic queues. The mean direction is the direction of the mean unit vector, so there is no jump
+ * at north. Missing values (NaN, e.g. an unknown compass point) are left out of the aggregates of their quantity, the
+ * other values of the reading still count. Not thread-safe.
+ */
+public class WindWindow
+{
+    /**
+     * The duration of the window in milliseconds
+     */
+    private long duration;
+
+    /**
+     * The times of the readings in the window (ring buffer)
+     */
+    private long[] times = new long[64];
+
+    /**
+     * The wind speeds of the readings in the window (ring buffer)
+     */
+    private double[] speeds = new double[64];
+
+    /**
+     * The gusts of the readings in the window (ring buffer)
+     */
+    private double[] gusts = new double[64];
+
+    /**
+     * The sines of the directions of the readings in the window (ring buffer)
+     */
+    private double[] sins = new double[64];
+
+    /**
+     * The cosines of the directions of the readings in the window (ring buffer)
+     */
+    private double[] coss = new double[64];
+
+    /**
+     * The index of the oldest reading in the ring buffers
+     */
+    private int head = 0;
+
+    /**
+     * The number of readings in the window
+     */
+    private int size = 0;
+
+    /**
+     * The sum of the wind speeds
+     */
+    private double sumOfSpeeds = 0;
+
+    /**
+     * The sum of the gusts
+     */
+    private double sumOfGusts = 0;
+
+    /**
+     * The sum of the sines of the directions
+     */
+    private double sumOfSins = 0;
+
+    /**
+     * The sum of the cosines of the directions
+     */
+    private double sumOfCoss = 0;
+
+    /**
+     * The number of valid (not NaN) wind speeds
+     */
+    private int nSpeeds = 0;
+
+    /**
+     * The number of valid (not NaN) gusts
+     */
+    private int nGusts = 0;
+
+    /**
+     * The number of valid (not NaN) directions
+     */
+    private int nDirections = 0;
+
+    /**
+     * The sequence numbers of the candidates for the minimum wind speed (ring buffer, ascending speeds)
+     */
+    private long[] minQueue = new long[64];
+
+    /**
+     * The start and the size of the minimum queue
+     */
+    private int minHead = 0;
+    private int minSize = 0;
+
+    /**
+     * The sequence numbers of the candidates for the maximum gust (ring buffer, descending gusts)
+     */
+    private long[] maxQueue = new long[64];
+
+    /**
+     * The start and the size of the maximum queue
+     */
+    private int maxHead = 0;
+    private int maxSize = 0;
+
+    /**
+     * The sequence number of the oldest reading in the window
+     */
+    private long firstSequence = 0;
+
+    /**
+     * The time of the latest evicted reading (Long.MIN_VALUE if none has been evicted since the window was last empty)
+     */
+    private long lastEvictedTime = Long.MIN_VALUE;
+
+    /**
+     * Creates an empty window.
+     *
+     * @param duration the duration of the window in milliseconds
+     */
+    public WindWindow(long duration)
+    {
+        this.duration = duration;
+    }
+
+    /**
+     * @return the duration of the window in milliseconds
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Adds a reading and evicts the readings older than the duration of the window. Readings not newer than the latest
+     * reading are ignored. NaN values are stored but left out of the aggregates.
+     *
+     * @param time      the time in epoch milliseconds
+     * @param windSpeed the wind speed
+     * @param gust      the maximum wind speed
+     * @param direction the direction in degrees
+     * @return          false if the reading has been ignored
+     */
+    public boolean add(long time, double windSpeed, double gust, double direction)
+    {
+        if (size > 0 && time <= getLastTime())
+        {
+            return false;
+        }
+        evict(time - duration);
+        if (size == 0)
+        {
+            // a gap of at least the duration: the readings before it do not cover the window
+            lastEvictedTime = Long.MIN_VALUE;
+        }
+        if (size == times.length)
+        {
+            grow();
+        }
+        double radians = Math.toRadians(direction);
+        int index = (head + size) % times.length;
+        long sequence = firstSequence + size;
+        times[index] = time;
+        speeds[index] = windSpeed;
+        gusts[index] = gust;
+        sins[index] = Math.sin(radians);
+        coss[index] = Math.cos(radians);
+        size++;
+        if (! Double.isNaN(windSpeed))
+        {
+            sumOfSpeeds += windSpeed;
+            nSpeeds++;
+            while (minSize > 0 && speeds[ringIndex(minQueue[(minHead + minSize - 1) % minQueue.length])] >= windSpeed)
+            {
+                minSize--;
+            }
+            minQueue[(minHead + minSize++) % minQueue.length] = sequence;
+        }
+        if (! Double.isNaN(gust))
+        {
+            sumOfGusts += gust;
+            nGusts++;
+            while (maxSize > 0 && gusts[ringIndex(maxQueue[(maxHead + maxSize - 1) % maxQueue.length])] <= gust)
+            {
+                maxSize--;
+            }
+            maxQueue[(maxHead + maxSize++) % maxQueue.length] = sequence;
+        }
+        if (! Double.isNaN(direction))
+        {
+            sumOfSins += sins[index];
+            sumOfCoss += coss[index];
+            nDirections++;
+        }
+        return true;
+    }
+
+    /**
+     * Evicts the readings at or before the given time.
+     *
+     * @param time the time in epoch milliseconds
+     */
+    private void evict(long time)
+    {
+        while (size > 0 && times[head] <= time)
+        {
+            lastEvictedTime = times[head];
+            if (! Double.isNaN(speeds[head]))
+            {
+                sumOfSpeeds -= speeds[head];
+                nSpeeds--;
+            }
+            if (! Double.isNaN(gusts[head]))
+            {
+                sumOfGusts -= gusts[head];
+                nGusts--;
+            }
+            if (! Double.isNaN(sins[head]))
+            {
+                sumOfSins -= sins[head];
+                sumOfCoss -= coss[head];
+                nDirections--;
+            }
+            if (minSize > 0 && minQueue[minHead] == firstSequence)
+            {
+                minHead = (minHead + 1) % minQueue.length;
+                minSize--;
+            }
+            if (maxSize > 0 && maxQueue[maxHead] == firstSequence)
+            {
+                maxHead = (maxHead + 1) % maxQueue.length;
+                maxSize--;
+            }
+            head = (head + 1) % times.length;
+            size--;
+            firstSequence++;
+        }
+        if (size == 0)
+        {
+            // no drift of the running sums
+            sumOfSpeeds = 0;
+            sumOfGusts = 0;
+            sumOfSins = 0;
+            sumOfCoss = 0;
+            nSpeeds = 0;
+            nGusts = 0;
+            nDirections = 0;
+        }
+    }
+
+    /**
+     * Returns the index in the ring buffers of the reading with the given sequence number.
+     *
+     * @param sequence the sequence number
+     * @return         the index
+     */
+    private int ringIndex(long sequence)
+    {
+        return (int) ((head + (sequence - firstSequence)) % times.length);
+    }
+
+    /**
+     * Doubles the capacity of the ring buffers and the queues.
+     */
+    private void grow()
+    {
+        int capacity = times.length * 2;
+        times = unwrap(times, head, size, capacity);
+        speeds = unwrap(speeds, head, size, capacity);
+        gusts = unwrap(gusts, head, size, capacity);
+        sins = unwrap(sins, head, size, capacity);
+        coss = unwrap(coss, head, size, capacity);
+        head = 0;
+        minQueue = unwrap(minQueue, minHead, minSize, capacity);
+        minHead = 0;
+        maxQueue = unwrap(maxQueue, maxHead, maxSize, capacity);
+        maxHead = 0;
+    }
+
+    /**
+     * Copies a ring buffer into a larger array starting at index 0.
+     *
+     * @param ring     the ring buffer
+     * @param head     the index of the first element
+     * @param size     the number of elements
+     * @param capacity the capacity of the new array
+     * @return         the new array
+     */
+    private static long[] unwrap(long[] ring, int head, int size, int capacity)
+    {
+        long[] array = new long[capacity];
+        for (int i = 0; i < size; i++)
+        {
+            array[i] = ring[(head + i) % ring.length];
+        }
+        return array;
+    }
+
+    /**
+     * Copies a ring buffer into a larger array starting at index 0.
+     *
+     * @param ring     the ring buffer
+     * @param head     the index of the first element
+     * @param size     the number of elements
+     * @param capacity the capacity of the new array
+     * @return         the new array
+     */
+    private static double[] unwrap(double[] ring, int head, int size, int capacity)
+    {
+        double[] array = new double[capacity];
+        for (int i = 0; i < size; i++)
+        {
+            array[i] = ring[(head + i) % ring.length];
+        }
+        return array;
+    }
+
+    /**
+     * Removes all readings.
+     */
+    public void clear()
+    {
+        head = 0;
+        size = 0;
+        minHead = 0;
+        minSize = 0;
+        maxHead = 0;
+        maxSize = 0;
+        firstSequence = 0;
+        lastEvictedTime = Long.MIN_VALUE;
+        evict(Long.MIN_VALUE);
+    }
+
+    /**
+     * @return the number of readings in the window
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the time of the latest reading in epoch milliseconds (Long.MIN_VALUE if the window is empty)
+     */
+    public long getLastTime()
+    {
+        return size > 0 ? times[(head + size - 1) % times.length] : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns true if the readings cover the whole window, i.e. a reading at least the duration of the window older
+     * than the latest one has been evicted since the window was last empty. A window filled only partly (e.g. right
+     * after the start or after a gap in the readings of at least the duration) is not representative of "for 20
+     * minutes" conditions.
+     *
+     * @return true if the readings cover the whole window
+     */
+    public boolean isFull()
+    {
+        return size > 0 && lastEvictedTime != Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the mean wind speed (NaN if the window holds no valid wind speed)
+     */
+    public double getMeanSpeed()
+    {
+        return nSpeeds > 0 ? sumOfSpeeds / nSpeeds : Double.NaN;
+    }
+
+    /**
+     * @return the mean gust (NaN if the window holds no valid gust)
+     */
+    public double getMeanGust()
+    {
+        return nGusts > 0 ? sumOfGusts / nGusts : Double.NaN;
+    }
+
+    /**
+     * @return the ratio of the mean gust to the mean wind speed (NaN if the window holds no valid gust or wind speed)
+     */
+    public double getGustRatio()
+    {
+        return getMeanGust() / getMeanSpeed();
+    }
+
+    /**
+     * @return the lowest wind speed (NaN if the window holds no valid wind speed)
+     */
+    public double getMinSpeed()
+    {
+        return minSize > 0 ? speeds[ringIndex(minQueue[minHead])] : Double.NaN;
+    }
+
+    /**
+     * @return the highest gust (NaN if the window holds no valid gust)
+     */
+    public double getMaxGust()
+    {
+        return maxSize > 0 ? gusts[ringIndex(maxQueue[maxHead])] : Double.NaN;
+    }
+
+    /**
+     * @return the mean direction in degrees [0, 360) (NaN if the window holds no valid direction)
+     */
+    public double getMeanDirection()
+    {
+        if (nDirections == 0)
+        {
+            return Double.NaN;
+        }
+        double direction = Math.toDegrees(Math.atan2(sumOfSins, sumOfCoss));
+        return direction < 0 ? direction + 360 : direction;
+    }
+
+    public String toString()
+    {
+        return "WindWindow [duration=" + duration + ", size=" + size + ", meanSpeed=" + getMeanSpeed() + ", meanDirection="
+               + getMeanDirection() + "]";
+    }
+}
@@ -0,0 +1,110 @@
+package at.home.bernd;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads weather data from an XHTML table (like the one of the Podersdorf station): every tr element is a row, its td
+ * (or th) elements are the columns. The document is streamed with StAX instead of building a DOM; the text of a cell
+ * is collected in a reused buffer.
+ */
+public class XhtmlTableWeatherSource extends AbstractWeatherSource
+{
+    /**
+     * The factory of the stream readers
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    /**
+     * Creates a new source.
+     *
+     * @param stationId     the id of the station
+     * @param location      the location of the data (URL or file path)
+     * @param columnMapping the column mapping (by index)
+     */
+    public XhtmlTableWeatherSource(String stationId, String location, ColumnMapping columnMapping)
+    {
+        super(stationId, location, columnMapping);
+    }
+
+    public void decode(InputStream inputStream, WindRowDecoder decoder) throws IOException
+    {
+        int headerRows = getColumnMapping().getHeaderRows();
+        StringBuilder cell = new StringBuilder(64);
+        try
+        {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            int row = -1;
+            int column = 0;
+            // depth relative to the current row: 0 = outside a row, 1 = in a row, 2 = in a cell, > 2 = nested
+            int rowDepth = 0;
+            while (reader.hasNext())
+            {
+                switch (reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (rowDepth == 0)
+                        {
+                            if ("tr".equalsIgnoreCase(reader.getLocalName()))
+                            {
+                                row++;
+                                column = 0;
+                                rowDepth = 1;
+                                if (row >= headerRows)
+                                {
+                                    decoder.beginRow();
+                                }
+                            }
+                        }
+                        else
+                        {
+                            if (rowDepth == 1)
+                            {
+                                cell.setLength(0);
+                            }
+                            rowDepth++;
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (rowDepth >= 2)
+                        {
+                            cell.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (rowDepth == 2)
+                        {
+                            if (row >= headerRows)
+                            {
+                                decoder.field(column, cell, 0, cell.length());
+                            }
+                            column++;
+                        }
+                        else if (rowDepth == 1 && row >= headerRows)
+                        {
+                            decoder.endRow();
+                        }
+                        if (rowDepth > 0)
+                        {
+                            rowDepth--;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            reader.close();
+        }
+        catch (XMLStreamException ex)
+        {
+            throw new IOException("Malformed XHTML table of station " + getStationId(), ex);
+        }
+    }
+}
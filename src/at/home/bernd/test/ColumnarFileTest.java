@@ -0,0 +1,129 @@
+package at.home.bernd.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.ColumnBlock;
+import at.home.bernd.ColumnarFileReader;
+import at.home.bernd.ColumnarFileWriter;
+import at.home.bernd.CsvWriter;
+
+/**
+ * Tests the ColumnarFileWriter and ColumnarFileReader (write/read round trip) and the quoting of the CsvWriter
+ */
+public class ColumnarFileTest
+{
+    /**
+     * The start of the test data (epoch milliseconds)
+     */
+    private static final long T0 = 1592561863000L;
+
+    /**
+     * Writes 10 row groups of 1000 rows (speed rising by 10 per group, missing speeds as NaN in every group and an
+     * all-NaN group) and reads them back completely, by time and by speed range.
+     */
+    private void testRoundTrip() throws IOException
+    {
+        Random random = new Random(8);
+        String[] columnNames = { "speed", "direction" };
+        int nRows = 10000;
+        long[] times = new long[nRows];
+        double[][] values = new double[2][nRows];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ColumnarFileWriter writer = new ColumnarFileWriter(out, columnNames, 1000))
+        {
+            for (int i = 0; i < nRows; i++)
+            {
+                times[i] = T0 + i * 100L;
+                int group = i / 1000;
+                values[0][i] = group == 7 || random.nextInt(10) == 0 ? Double.NaN : group * 10 + random.nextDouble() * 10;
+                values[1][i] = random.nextDouble() * 360;
+                writer.writeRow(times[i], values[0][i], values[1][i]);
+            }
+        }
+        byte[] data = out.toByteArray();
+
+        int mismatches = 0;
+        int nRead = 0;
+        try (ColumnarFileReader reader = new ColumnarFileReader(new ByteArrayInputStream(data)))
+        {
+            for (ColumnBlock block : reader.readAll())
+            {
+                for (int i = 0; i < block.size(); i++, nRead++)
+                {
+                    boolean equal = block.getTimes()[i] == times[nRead]
+                                    && Double.compare(block.getValues(0)[i], values[0][nRead]) == 0
+                                    && Double.compare(block.getValues(1)[i], values[1][nRead]) == 0;
+                    mismatches += equal ? 0 : 1;
+                }
+            }
+        }
+        System.out.println("Read " + nRead + " rows, mismatches " + mismatches + " (expected " + nRows + ", 0)");
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(new ByteArrayInputStream(data)))
+        {
+            List<ColumnBlock> blocks = reader.read(T0 + 2500 * 100L, T0 + 3500 * 100L);
+            System.out.println("Time window: " + blocks.size() + " row groups, " + reader.getSkippedRowGroups()
+                               + " skipped (expected 2, 8)");
+        }
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(new ByteArrayInputStream(data)))
+        {
+            List<ColumnBlock> blocks = reader.read("speed", 35, 55);
+            int nMatching = 0;
+            for (ColumnBlock block : blocks)
+            {
+                for (double speed : block.getValues(0))
+                {
+                    nMatching += speed >= 35 && speed <= 55 ? 1 : 0;
+                }
+            }
+            int nExpected = 0;
+            for (double speed : values[0])
+            {
+                nExpected += speed >= 35 && speed <= 55 ? 1 : 0;
+            }
+            System.out.println("Speed 35 - 55: " + blocks.size() + " row groups, " + reader.getSkippedRowGroups()
+                               + " skipped, " + nMatching + " matching rows (expected 3, 7, " + nExpected + ")");
+        }
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(new ByteArrayInputStream(data)))
+        {
+            List<ColumnBlock> blocks = reader.read("speed", 70, 80);
+            System.out.println("Speed 70 - 80: " + blocks.size() + " row groups (expected 0, the group of 70 - 80 "
+                               + "has no speeds)");
+        }
+    }
+
+    /**
+     * Tests the quoting of text fields.
+     */
+    private void testCsvQuoting() throws IOException
+    {
+        StringWriter stringWriter = new StringWriter();
+        try (CsvWriter csvWriter = new CsvWriter(stringWriter))
+        {
+            csvWriter.writeHeader("name", "comment", "plain");
+            csvWriter.appendText("Podersdorf, Nord");
+            csvWriter.appendText("say \"hi\"\nthere");
+            csvWriter.appendText("plain");
+            csvWriter.endRow();
+        }
+        System.out.println(stringWriter.toString().replace("\n", "\\n") + " (expected name,comment,plain\\n"
+                           + "\"Podersdorf, Nord\",\"say \"\"hi\"\"\\nthere\",plain\\n)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        ColumnarFileTest test = new ColumnarFileTest();
+        test.testRoundTrip();
+        test.testCsvQuoting();
+    }
+}
@@ -0,0 +1,212 @@
+package at.home.bernd.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import at.home.bernd.CompressedInput;
+
+/**
+ * Tests the CompressedInput with plain, gzip and zip data through the file, stream and channel overloads
+ */
+public class CompressedInputTest
+{
+    /**
+     * The names of the threads which have run the parser
+     */
+    private Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * The parser: reads the whole stream as text (slowly enough to let the zip entries overlap)
+     */
+    private Function<InputStream, String> parser = in ->
+    {
+        try
+        {
+            threadNames.add(Thread.currentThread().getName());
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            Thread.sleep(20);
+            return text;
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    };
+
+    /**
+     * Returns the content of the i-th test entry (large enough to span several read buffers for i = 0).
+     */
+    private static String content(int i)
+    {
+        StringBuilder sb = new StringBuilder();
+        int nLines = i == 0 ? 200000 : 100 + i;
+        for (int line = 0; line < nLines; line++)
+        {
+            sb.append("entry ").append(i).append(" line ").append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the gzip compressed data.
+     */
+    private static byte[] gzip(byte[] data) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out))
+        {
+            gzipOutputStream.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns a zip archive of the given entries (plus a directory entry).
+     */
+    private static byte[] zip(String... entries) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(out))
+        {
+            if (entries.length > 0)
+            {
+                zipOutputStream.putNextEntry(new ZipEntry("dir/"));
+                zipOutputStream.closeEntry();
+            }
+            for (int i = 0; i < entries.length; i++)
+            {
+                zipOutputStream.putNextEntry(new ZipEntry("dir/entry" + i + ".txt"));
+                zipOutputStream.write(entries[i].getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses the given data through all three overloads and prints whether the results match.
+     */
+    private void testAll(String name, byte[] data, List<String> expected, Path directory) throws IOException
+    {
+        Path path = directory.resolve(name);
+        Files.write(path, data);
+        threadNames.clear();
+        List<String> fromFile = CompressedInput.parseAll(path, parser);
+        int nFileThreads = threadNames.size();
+        threadNames.clear();
+        List<String> fromStream = CompressedInput.parseAll(new ByteArrayInputStream(data), parser);
+        int nStreamThreads = threadNames.size();
+        List<String> fromChannel = CompressedInput.parseAll(Channels.newChannel(new ByteArrayInputStream(data)), parser);
+        System.out.println(name + ": " + fromFile.size() + " results, file " + fromFile.equals(expected) + ", stream "
+                           + fromStream.equals(expected) + ", channel " + fromChannel.equals(expected) + ", threads "
+                           + nFileThreads + " / " + nStreamThreads);
+    }
+
+    /**
+     * Parses the given data through the file and the stream overloads and prints the exceptions.
+     */
+    private void testCorrupt(String name, byte[] data, Path directory) throws IOException
+    {
+        Path path = directory.resolve(name);
+        Files.write(path, data);
+        String fileResult;
+        String streamResult;
+        try
+        {
+            fileResult = "parsed " + CompressedInput.parseAll(path, parser).size();
+        }
+        catch (IOException | UncheckedIOException ex)
+        {
+            fileResult = ex.getClass().getSimpleName();
+        }
+        try
+        {
+            streamResult = "parsed " + CompressedInput.parseAll(new ByteArrayInputStream(data), parser).size();
+        }
+        catch (IOException | UncheckedIOException ex)
+        {
+            streamResult = ex.getClass().getSimpleName();
+        }
+        System.out.println(name + ": file " + fileResult + ", stream " + streamResult);
+    }
+
+    /**
+     * Tests all formats, the parallel zip entries, empty inputs and corrupt archives.
+     */
+    private void testCompressedInput(Path directory) throws IOException
+    {
+        String[] entries = new String[8];
+        for (int i = 0; i < entries.length; i++)
+        {
+            entries[i] = content(i);
+        }
+        byte[] plain = entries[0].getBytes(StandardCharsets.UTF_8);
+        testAll("plain.txt", plain, Arrays.asList(entries[0]), directory);
+        testAll("data.txt.gz", gzip(plain), Arrays.asList(entries[0]), directory);
+        testAll("data.zip", zip(entries), Arrays.asList(entries), directory);
+        System.out.println("(expected 1, 1, 8 results, all true, threads 1 / 1, 1 / 1 and > 1 / > 1 on a multi-core "
+                           + "machine)");
+
+        testAll("empty.txt", new byte[0], Arrays.asList(""), directory);
+        testAll("empty.txt.gz", gzip(new byte[0]), Arrays.asList(""), directory);
+        testAll("empty.zip", zip(), Collections.<String>emptyList(), directory);
+        System.out.println("(expected 1, 1 and 0 results, all true)");
+
+        byte[] gzip = gzip(plain);
+        byte[] zip = zip(entries);
+        testCorrupt("truncated.txt.gz", Arrays.copyOf(gzip, gzip.length / 2), directory);
+        testCorrupt("truncated.zip", Arrays.copyOf(zip, zip.length / 2), directory);
+        byte[] damaged = zip.clone();
+        for (int i = 100; i < 200; i++)
+        {
+            // inside the compressed data of the first entry
+            damaged[i] ^= 0x55;
+        }
+        testCorrupt("damaged.zip", damaged, directory);
+        System.out.println("(expected an exception for every corrupt input: UncheckedIOException from the parser of "
+                           + "the gzip data, ZipException or IOException for the zip archives)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        CompressedInputTest test = new CompressedInputTest();
+        Path directory = Files.createTempDirectory("compressed");
+        try
+        {
+            test.testCompressedInput(directory);
+        }
+        finally
+        {
+            try (Stream<Path> stream = Files.list(directory))
+            {
+                stream.forEach(path -> path.toFile().delete());
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package at.home.bernd.test;
 
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 
 import com.sun.tools.classfile.StackMapTable_attribute.same_frame;
@@ -42,6 +44,26 @@ public class DataConversionUtilityTest
         String timeStampFromGpxDataAlt = "2020-05-30T09:42:00.000Z"; // in UTC
         date = dcu.parseDateString(timeStampFromGpxDataAlt, TrackDataManager.ALT_DATE_FORMAT);
         System.out.println(date);
+        
+        // without allocation, compared to java.time
+        String[] gpxTimeStamps = { timeStampFromGpxData, "2020-05-30T09:42:00.123Z", "2000-02-29T23:59:59.5Z", "1969-12-31T23:59:59Z",
+                                   "2020-05-30 09:42:00", "2020-13-30T09:42:00Z", "2020-05-30T11:42:00+02:00",
+                                   "2020-05-30T11:42:00.250+02:00", "2020-05-30T05:12:00-04:30", "2020-05-30T09:42:00+00:00",
+                                   "2020-05-30T11:42:00+0200", "2020-05-30T11:42:00+02:60" };
+        for (String gpxTimeStamp : gpxTimeStamps)
+        {
+            long time = dcu.parseUtcTimestamp(gpxTimeStamp, 0, gpxTimeStamp.length());
+            String expected;
+            try
+            {
+                expected = String.valueOf(OffsetDateTime.parse(gpxTimeStamp).toInstant().toEpochMilli());
+            }
+            catch (DateTimeParseException ex)
+            {
+                expected = "malformed";
+            }
+            System.out.println(gpxTimeStamp + ": " + (time == Long.MIN_VALUE ? "malformed" : String.valueOf(time)) + " (expected " + expected + ")");
+        }
     }
     
     /**
@@ -112,7 +134,7 @@ public class DataConversionUtilityTest
     public static void main(String[] args)
     {
         DataConversionUtilityTest dataConversionUtilityTest = new DataConversionUtilityTest();
-        // dataConversionUtilityTest.testParseDateString();
+        dataConversionUtilityTest.testParseDateString();
         // dataConversionUtilityTest.testParseTemperatureString();
         // dataConversionUtilityTest.testMapDirection();
         dataConversionUtilityTest.testRelativeCourse();
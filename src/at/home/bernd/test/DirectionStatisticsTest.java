@@ -0,0 +1,138 @@
+package at.home.bernd.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.DirectionShift;
+import at.home.bernd.DirectionShiftDetector;
+import at.home.bernd.DirectionStatistics;
+import at.home.bernd.WeatherDataManager;
+import at.home.bernd.WindDataPoint;
+import at.home.bernd.WindRose;
+
+/**
+ * Tests the DirectionStatistics, the WindRose and the DirectionShiftDetector
+ */
+public class DirectionStatisticsTest
+{
+    /**
+     * The start of the test data
+     */
+    private static final long T0 = 1592560800000L;
+
+    /**
+     * Tests the circular mean and variance.
+     */
+    private void testStatistics()
+    {
+        DirectionStatistics statistics = new DirectionStatistics();
+        statistics.add(350);
+        statistics.add(10);
+        System.out.println("Mean of 350 and 10: " + Math.round(statistics.getMeanDirection()) % 360 + " (expected 0)");
+        System.out.println("Circular variance: " + Math.round(statistics.getCircularVariance() * 10000) / 10000.0
+                           + " (expected 0.0152)");
+
+        DirectionStatistics spread = new DirectionStatistics();
+        for (int direction = 0; direction < 360; direction += 90)
+        {
+            spread.add(direction);
+        }
+        System.out.println("Circular variance of N, E, S, W: " + Math.round(spread.getCircularVariance() * 1000) / 1000.0
+                           + " (expected 1.0)");
+        System.out.println("Difference 350 -> 10: " + DirectionStatistics.difference(350, 10) + ", 10 -> 350: "
+                           + DirectionStatistics.difference(10, 350) + " (expected 20.0, -20.0)");
+    }
+
+    /**
+     * Compares merging the wind roses of two halves with the wind rose of all readings.
+     */
+    private void testWindRose()
+    {
+        Random random = new Random(42);
+        WindRose whole = new WindRose();
+        WindRose first = new WindRose();
+        WindRose second = new WindRose();
+        for (int i = 0; i < 100000; i++)
+        {
+            // mostly from NW
+            double direction = (315 + random.nextGaussian() * 40 + 360) % 360;
+            double speed = Math.abs(random.nextGaussian() * 20);
+            whole.add(direction, speed);
+            (i % 2 == 0 ? first : second).add(direction, speed);
+        }
+        first.merge(second);
+        int mismatches = 0;
+        for (int sector = 0; sector < WindRose.N_SECTORS; sector++)
+        {
+            for (int bin = 0; bin < whole.getBinCount(); bin++)
+            {
+                if (whole.getCount(sector, bin) != first.getCount(sector, bin))
+                {
+                    mismatches++;
+                }
+            }
+        }
+        System.out.println(whole);
+        System.out.println("Merge mismatches: " + mismatches + ", mean direction: "
+                           + Math.round(first.getDirectionStatistics().getMeanDirection()) + " (expected 0, 315)");
+        System.out.println("Sector of 11: " + WindRose.SECTOR_NAMES[WindRose.getSector(11)] + ", of 12: "
+                           + WindRose.SECTOR_NAMES[WindRose.getSector(12)] + ", of 349: "
+                           + WindRose.SECTOR_NAMES[WindRose.getSector(349)] + " (expected N, NNE, N)");
+    }
+
+    /**
+     * Tests the shift detection on readings every minute with a shift from 350 to 30 degrees after 2 hours.
+     */
+    private void testShifts()
+    {
+        Random random = new Random(7);
+        long[] times = new long[240];
+        double[] directions = new double[times.length];
+        for (int i = 0; i < times.length; i++)
+        {
+            times[i] = T0 + i * 60000L;
+            directions[i] = ((i < 120 ? 350 : 30) + random.nextGaussian() * 8 + 360) % 360;
+        }
+        DirectionShiftDetector detector = new DirectionShiftDetector(20 * 60000L, 25);
+        List<DirectionShift> shifts = detector.detect(times, directions);
+        for (DirectionShift shift : shifts)
+        {
+            System.out.println(shift + " (" + Math.round(shift.getShift()) + " degrees) at minute "
+                               + (shift.getTime() - T0) / 60000);
+        }
+        System.out.println("(expected 1 veer of about 40 degrees at minute 120)");
+    }
+
+    /**
+     * Tests the interpolation of directions across north.
+     */
+    private void testInterpolation()
+    {
+        List<WindDataPoint> windData = new ArrayList<WindDataPoint>();
+        double[] directions = { 340, 350, 10, 20 };
+        for (int i = 0; i < directions.length; i++)
+        {
+            WindDataPoint windDataPoint = new WindDataPoint();
+            windDataPoint.setTime(T0 + i * 600000L);
+            windDataPoint.setDirection(directions[i]);
+            windData.add(windDataPoint);
+        }
+        WeatherDataManager weatherDataManager = new WeatherDataManager();
+        List<WindDataPoint> interpolated = weatherDataManager.interpolateWindData(windData, new long[] { T0 + 900000L });
+        System.out.println("Interpolated direction between 350 and 10: " + Math.round(interpolated.get(0).getDirection())
+                           % 360 + " (expected 0)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        DirectionStatisticsTest test = new DirectionStatisticsTest();
+        test.testStatistics();
+        test.testWindRose();
+        test.testShifts();
+        test.testInterpolation();
+    }
+}
@@ -0,0 +1,119 @@
+package at.home.bernd.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import at.home.bernd.GpxWriter;
+import at.home.bernd.Track;
+import at.home.bernd.TrackDataManager;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the GpxWriter: parse, write and parse again
+ */
+public class GpxWriterTest
+{
+    /**
+     * A GPX 1.0 file with course and speed (m/s) in the track points, one of them without elevation
+     */
+    private static final String GPX_1_0 =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<gpx version=\"1.0\" creator=\"test\" xmlns=\"http://www.topografix.com/GPX/1/0\">\n"
+        + "<trk><name>Podersdorf &amp; Neusiedl</name><trkseg>\n"
+        + "<trkpt lat=\"47.8500000\" lon=\"16.8400000\"><ele>115.2</ele><time>2020-06-19T10:17:43Z</time>"
+        + "<course>90.5</course><speed>10.0</speed></trkpt>\n"
+        + "<trkpt lat=\"47.8500000\" lon=\"16.8401300\"><time>2020-06-19T10:17:44Z</time>"
+        + "<course>91.0</course><speed>10.5</speed></trkpt>\n"
+        + "<trkpt lat=\"47.8500000\" lon=\"16.8402700\"><ele>115.4</ele><time>2020-06-19T10:17:45Z</time>"
+        + "<course>92.25</course><speed>11.0</speed></trkpt>\n"
+        + "</trkseg></trk></gpx>\n";
+
+    /**
+     * Writes the given tracks to a string.
+     */
+    private String write(List<Track> trackList) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GpxWriter gpxWriter = new GpxWriter(out, false))
+        {
+            gpxWriter.writeTracks(trackList);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the given GPX document.
+     */
+    private List<Track> parse(String gpx)
+    {
+        return new TrackDataManager().parseTracks(new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns true if both values are equal within the given tolerance (or both NaN).
+     */
+    private boolean equal(double a, double b, double tolerance)
+    {
+        return Double.isNaN(a) ? Double.isNaN(b) : Math.abs(a - b) <= tolerance;
+    }
+
+    /**
+     * Parses a GPX 1.0 file, writes it as GPX 1.1, parses that again and compares the track points.
+     */
+    private void testRoundTrip() throws IOException
+    {
+        List<Track> parsed = parse(GPX_1_0);
+        TrackSegment trackSegment = parsed.get(0).getTrackSegments().get(0);
+        trackSegment.getTrackPoints().get(1).setWindSpeed(Double.NaN);
+        trackSegment.getTrackPoints().get(0).setWindSpeed(18.5);
+        trackSegment.getTrackPoints().get(0).setMaxWindSpeed(24.25);
+        trackSegment.getTrackPoints().get(0).setWindDirection(355);
+        trackSegment.setWindInfoAvailable(true);
+        String gpx = write(parsed);
+        System.out.println("GPX 1.0 elements: " + (gpx.contains("<course>") || gpx.contains("<speed>"))
+                           + ", elevations: " + gpx.split("<ele>", -1).length + ", NaN: " + gpx.contains("NaN")
+                           + " (expected false, 3, false)");
+
+        List<Track> reparsed = parse(gpx);
+        List<TrackPoint> expected = trackSegment.getTrackPoints();
+        List<TrackPoint> actual = reparsed.get(0).getTrackSegments().get(0).getTrackPoints();
+        int mismatches = 0;
+        for (int i = 0; i < expected.size(); i++)
+        {
+            TrackPoint e = expected.get(i);
+            TrackPoint a = actual.get(i);
+            boolean equal = e.getTime() == a.getTime() && equal(e.getLatitude(), a.getLatitude(), 1e-7)
+                            && equal(e.getLongitude(), a.getLongitude(), 1e-7)
+                            && equal(e.getElevation(), a.getElevation(), 0.05)
+                            && equal(e.getCourse(), a.getCourse(), 0.005)
+                            && equal(e.getSpeed(), a.getSpeed(), 0.01)
+                            // an omitted wind speed is read back as the default 0
+                            && equal(Double.isNaN(e.getWindSpeed()) ? 0 : e.getWindSpeed(), a.getWindSpeed(), 0.005)
+                            && equal(e.getMaxWindSpeed(), a.getMaxWindSpeed(), 0.005)
+                            && equal(e.getWindDirection(), a.getWindDirection(), 0.005);
+            if (! equal)
+            {
+                System.out.println("Mismatch: " + e + " / " + a);
+                mismatches++;
+            }
+        }
+        System.out.println("Name: " + reparsed.get(0).getName() + ", points " + actual.size() + ", mismatches "
+                           + mismatches + ", speed " + actual.get(0).getSpeed() + " km/h, elevation "
+                           + actual.get(1).getElevation() + ", wind "
+                           + reparsed.get(0).getTrackSegments().get(0).isWindInfoAvailable()
+                           + " (expected Podersdorf & Neusiedl, 3, 0, 36.0 km/h, NaN, true)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        GpxWriterTest test = new GpxWriterTest();
+        test.testRoundTrip();
+    }
+}
@@ -0,0 +1,123 @@
+package at.home.bernd.test;
+
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.Maneuver;
+import at.home.bernd.ManeuverDetector;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the ManeuverDetector
+ */
+public class ManeuverDetectorTest
+{
+    /**
+     * Creates a 10 Hz track segment in a wind from the north: legs of 60 s on the given headings, connected by turns
+     * of 4 s with a speed loss of 40 %. The courses have a noise of 3 degrees; without courses they are set to 0.
+     */
+    private TrackSegment createTrackSegment(double[] headings, boolean withCourses, Random random)
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        long time = 1592560800000L;
+        double latitude = 47.9;
+        double longitude = 16.8;
+        for (int leg = 0; leg < headings.length; leg++)
+        {
+            double from = headings[leg];
+            double turn = leg + 1 < headings.length ? headings[leg + 1] - from : 0;
+            turn = turn > 180 ? turn - 360 : turn < -180 ? turn + 360 : turn;
+            for (int i = 0; i < 640; i++)
+            {
+                // 600 points straight, 40 points turning
+                double progress = Math.max(0, i - 600) / 40.0;
+                if (leg + 1 == headings.length && i >= 600)
+                {
+                    break;
+                }
+                double heading = (from + turn * progress + random.nextGaussian() * 3 + 360) % 360;
+                double speed = 30 * (1 - 0.4 * Math.sin(Math.PI * progress));
+                latitude += speed / 3.6 * 0.1 * Math.cos(Math.toRadians(heading)) / 111200.0;
+                longitude += speed / 3.6 * 0.1 * Math.sin(Math.toRadians(heading)) / 74700.0;
+                TrackPoint trackPoint = new TrackPoint();
+                trackPoint.setTime(time);
+                trackPoint.setLatitude(latitude);
+                trackPoint.setLongitude(longitude);
+                trackPoint.setSpeed(speed);
+                trackPoint.setCourse(withCourses ? heading : 0);
+                trackPoint.setWindDirection(0);
+                trackSegment.addTrackPoint(trackPoint);
+                time += 100;
+            }
+        }
+        trackSegment.setWindInfoAvailable(true);
+        return trackSegment;
+    }
+
+    /**
+     * Tests a course with 2 tacks, 2 jibes and a bear away.
+     */
+    private void testManeuvers()
+    {
+        // tack 45 -> 315, tack 315 -> 45, bear away 45 -> 135, jibe 135 -> 225, jibe 225 -> 135
+        double[] headings = { 45, 315, 45, 135, 225, 135 };
+        for (boolean withCourses : new boolean[] { true, false })
+        {
+            TrackSegment trackSegment = createTrackSegment(headings, withCourses, new Random(42));
+            ManeuverDetector detector = new ManeuverDetector();
+            List<Maneuver> maneuvers = detector.detect(trackSegment);
+            System.out.println(withCourses ? "With courses:" : "From positions:");
+            for (Maneuver maneuver : maneuvers)
+            {
+                System.out.println("  " + maneuver);
+            }
+            System.out.println("  legs: " + trackSegment.extractLegs(detector).size());
+        }
+        System.out.println("(expected twice: tack, tack, turn (bear away), jibe, jibe of about 90 degrees near "
+                           + "[640n + 600, 640n + 640) with a speed loss of about 12 km/h; 6 legs)");
+    }
+
+    /**
+     * Measures the throughput on a season of 10 Hz data (100 hours).
+     */
+    private void testThroughput()
+    {
+        Random random = new Random(7);
+        int n = 3600000;
+        long[] times = new long[n];
+        double[] courses = new double[n];
+        double heading = 45;
+        for (int i = 0; i < n; i++)
+        {
+            if (i % 600 == 0)
+            {
+                heading = heading == 45 ? 315 : 45;
+            }
+            times[i] = i * 100L;
+            courses[i] = (heading + random.nextGaussian() * 3 + 360) % 360;
+        }
+        ManeuverDetector detector = new ManeuverDetector();
+        int nManeuvers = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++)
+        {
+            if (detector.add(times[i], courses[i], Double.NaN, Double.NaN, 30, 0) != null)
+            {
+                nManeuvers++;
+            }
+        }
+        System.out.println(n + " points in " + (System.nanoTime() - start) / 1000000 + " ms, " + nManeuvers
+                           + " maneuvers (expected 5999)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        ManeuverDetectorTest test = new ManeuverDetectorTest();
+        test.testManeuvers();
+        test.testThroughput();
+    }
+}
@@ -0,0 +1,202 @@
+package at.home.bernd.test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import at.home.bernd.DataConversionUtility;
+import at.home.bernd.MaxAccelerationFilter;
+import at.home.bernd.MotionDeriver;
+import at.home.bernd.Track;
+import at.home.bernd.TrackDataManager;
+import at.home.bernd.TrackFilterChain;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackPointFilter;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the MotionDeriver
+ */
+public class MotionDeriverTest
+{
+    /**
+     * Creates a GPX document of a 1 Hz track heading north-east at 36 km/h (10 m/s); every tenth point has a recorded
+     * speed of 40 km/h and a course of 50 degrees.
+     */
+    private String createGpx(int n)
+    {
+        return createGpx(n, -1);
+    }
+
+    /**
+     * Creates a GPX document of a 1 Hz track heading north-east at 36 km/h (10 m/s) with the position of the given
+     * point 40 m off to the north-west; every tenth point has a recorded speed of 40 km/h and a course of 50 degrees.
+     */
+    private String createGpx(int n, int spike)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\"><trk><trkseg>\n");
+        for (int i = 0; i < n; i++)
+        {
+            double north = (i * 10 + (i == spike ? 40 : 0)) / Math.sqrt(2);
+            double east = (i * 10 - (i == spike ? 40 : 0)) / Math.sqrt(2);
+            sb.append("<trkpt lat=\"").append(47.9 + north / 111195.0);
+            sb.append("\" lon=\"").append(16.8 + east / 74549.0).append("\">");
+            sb.append("<time>2020-06-19T10:").append(String.format("%02d:%02d", i / 60, i % 60)).append("Z</time>");
+            if (i % 10 == 0)
+            {
+                sb.append("<course>50</course><speed>").append(40 / 3.6).append("</speed>");
+            }
+            sb.append("</trkpt>\n");
+        }
+        sb.append("</trkseg></trk></gpx>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Tests the derivation of parsed track points with and without speed.
+     */
+    private void testParsedTrack()
+    {
+        byte[] gpx = createGpx(100).getBytes(StandardCharsets.UTF_8);
+        List<Track> trackList = new TrackDataManager().parseTracks(new ByteArrayInputStream(gpx));
+        List<TrackPoint> trackPoints = trackList.get(0).getTrackSegments().get(0).getTrackPoints();
+        TrackPoint derived = trackPoints.get(55);
+        TrackPoint recorded = trackPoints.get(50);
+        TrackPoint last = trackPoints.get(99);
+        System.out.println("Derived speed " + derived.getSpeed() + " km/h, course " + derived.getCourse()
+                           + " (expected about 36, 45)");
+        System.out.println("Recorded speed " + recorded.getSpeed() + " km/h, course " + recorded.getCourse()
+                           + " (expected 40, 50)");
+        System.out.println("Distance " + last.getDistance() + " m (expected about 990)");
+    }
+
+    /**
+     * Tests that the speeds derived from a position spike are derived again after the filter has rejected the spike:
+     * the neighbours of the spike pass the filter with about 90 km/h, but without the spike they are at 36 km/h.
+     */
+    private void testFilteredTrack()
+    {
+        byte[] gpx = createGpx(100, 55).getBytes(StandardCharsets.UTF_8);
+        TrackDataManager trackDataManager = new TrackDataManager();
+        trackDataManager.setTrackFilter(new TrackFilterChain(new MaxAccelerationFilter(100, 20)));
+        List<TrackPoint> trackPoints = trackDataManager.parseTracks(new ByteArrayInputStream(gpx)).get(0)
+            .getTrackSegments().get(0).getTrackPoints();
+        long t0 = trackPoints.get(0).getTime();
+        StringBuilder sb = new StringBuilder();
+        for (TrackPoint trackPoint : trackPoints.subList(53, 57))
+        {
+            sb.append((trackPoint.getTime() - t0) / 1000).append(" s: ").append(Math.round(trackPoint.getSpeed()))
+                .append(" km/h, ").append(Math.round(trackPoint.getCourse())).append(" degrees; ");
+        }
+        System.out.println("Filtered: " + trackPoints.size() + " points, " + sb
+                           + "(expected 99 points, 53, 54, 56, 57 s: 36 km/h, 45 degrees)");
+    }
+
+    /**
+     * Tests that a speed corrected by a filter is kept although the point had no recorded speed, while the speeds of
+     * the neighbours of a rejected point are derived again.
+     */
+    private void testCorrectedSpeed()
+    {
+        byte[] gpx = createGpx(100, 55).getBytes(StandardCharsets.UTF_8);
+        TrackPointFilter correction = new TrackPointFilter()
+        {
+            private int index = 0;
+
+            public boolean filter(TrackPoint trackPoint)
+            {
+                if (index++ == 31)
+                {
+                    trackPoint.setSpeed(20);
+                }
+                return true;
+            }
+
+            public void reset()
+            {
+                index = 0;
+            }
+        };
+        List<Track> trackList = new TrackDataManager().parseTracks(new ByteArrayInputStream(gpx));
+        List<TrackPoint> parsedTrackPoints = trackList.get(0).getTrackSegments().get(0).getTrackPoints();
+        for (int i = 0; i < parsedTrackPoints.size(); i++)
+        {
+            // as in the GPX document: only every tenth point has a recorded speed and course
+            if (i % 10 != 0)
+            {
+                parsedTrackPoints.get(i).setSpeed(Double.NaN);
+                parsedTrackPoints.get(i).setCourse(Double.NaN);
+            }
+        }
+        new MotionDeriver().derive(trackList, new TrackFilterChain(new MaxAccelerationFilter(100, 20), correction));
+        List<TrackPoint> trackPoints = trackList.get(0).getTrackSegments().get(0).getTrackPoints();
+        System.out.println("Corrected: " + trackPoints.size() + " points, 31 s: "
+                           + Math.round(trackPoints.get(31).getSpeed()) + " km/h, 32 s: "
+                           + Math.round(trackPoints.get(32).getSpeed()) + " km/h, 54 s: "
+                           + Math.round(trackPoints.get(54).getSpeed()) + " km/h, 56 s: "
+                           + Math.round(trackPoints.get(55).getSpeed())
+                           + " km/h (expected 99 points, 20, 36, 36, 36 km/h)");
+    }
+
+    /**
+     * Compares the equirectangular distances with the haversine distances and measures the throughput on a season of
+     * 10 Hz data (100 hours in 100 segments).
+     */
+    private void testThroughput()
+    {
+        List<Track> trackList = new ArrayList<Track>();
+        Track track = new Track();
+        int nSegments = 100;
+        int n = 36000;
+        for (int s = 0; s < nSegments; s++)
+        {
+            TrackSegment trackSegment = new TrackSegment();
+            for (int i = 0; i < n; i++)
+            {
+                // circles of 500 m radius at 30 km/h
+                double angle = i * 0.1 * 30 / 3.6 / 500;
+                TrackPoint trackPoint = new TrackPoint();
+                trackPoint.setTime(i * 100L);
+                trackPoint.setLatitude(47.9 + 500 * Math.cos(angle) / 111195.0);
+                trackPoint.setLongitude(16.8 + 500 * Math.sin(angle) / 74549.0);
+                trackPoint.setSpeed(Double.NaN);
+                trackPoint.setCourse(Double.NaN);
+                trackSegment.addTrackPoint(trackPoint);
+            }
+            track.addTrackSegment(trackSegment);
+        }
+        trackList.add(track);
+        MotionDeriver motionDeriver = new MotionDeriver();
+        long start = System.nanoTime();
+        motionDeriver.derive(trackList);
+        long millis = (System.nanoTime() - start) / 1000000;
+        TrackSegment trackSegment = track.getTrackSegments().get(0);
+        double[] latitudes = trackSegment.getLatitudes();
+        double[] longitudes = trackSegment.getLongitudes();
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        double haversine = 0;
+        for (int i = 1; i < n; i++)
+        {
+            haversine += dcu.distance(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+        TrackPoint last = trackSegment.getTrackPoints().get(n - 1);
+        System.out.println(nSegments * n + " points in " + millis + " ms, distance " + last.getDistance()
+                           + " m, haversine " + haversine + " m (expected about 30000, difference < 0.1 %)");
+        System.out.println("Speed " + last.getSpeed() + " km/h (expected about 30)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        MotionDeriverTest test = new MotionDeriverTest();
+        test.testParsedTrack();
+        test.testFilteredTrack();
+        test.testCorrectedSpeed();
+        test.testThroughput();
+    }
+}
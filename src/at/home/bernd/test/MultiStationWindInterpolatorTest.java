@@ -0,0 +1,172 @@
+package at.home.bernd.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import at.home.bernd.ColumnMapping;
+import at.home.bernd.CsvWeatherSource;
+import at.home.bernd.DataConversionUtility;
+import at.home.bernd.MultiStationWindInterpolator;
+import at.home.bernd.MultiStationWindInterpolator.WEIGHTING;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+import at.home.bernd.WeatherArchive;
+import at.home.bernd.WeatherStation;
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+import at.home.bernd.WindSeries;
+
+/**
+ * Tests the MultiStationWindInterpolator with two synthetic stations
+ */
+public class MultiStationWindInterpolatorTest
+{
+    /**
+     * The start of the test data (epoch milliseconds)
+     */
+    private static final long T0 = 1592561863000L;
+
+    /**
+     * The center of the grid cell (default cell size) between the stations
+     */
+    private static final double CENTER_LATITUDE = 47.9025;
+    private static final double CENTER_LONGITUDE = 16.8525;
+
+    /**
+     * Creates a series of an hour with a row every 10 minutes: the wind speed rises linearly from the given value by 6
+     * km/h per hour, the gusts are 5 km/h above, the direction is constant.
+     */
+    private WindSeries createSeries(String stationId, double windSpeed, double direction, int nRows)
+    {
+        ColumnMapping mapping = new ColumnMapping();
+        mapping.setColumn(WIND_DATA_TYPE.timestamp, 0);
+        mapping.setColumn(WIND_DATA_TYPE.windSpeed, 1);
+        mapping.setColumn(WIND_DATA_TYPE.maxWindSpeed, 2);
+        mapping.setColumn(WIND_DATA_TYPE.direction, 3);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < nRows; i++)
+        {
+            csv.append(T0 + i * 600000L).append(';').append(windSpeed + i).append(';').append(windSpeed + i + 5)
+                .append(';').append(direction).append('\n');
+        }
+        try
+        {
+            return new CsvWeatherSource(stationId, null, mapping)
+                .read(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Creates an archive of three stations: west (10 km/h from 350 degrees) and east (20 km/h from 30 degrees) at the
+     * same distance from the center cell, and a station with only two rows.
+     */
+    private WeatherArchive createArchive()
+    {
+        WeatherArchive archive = new WeatherArchive();
+        archive.add(createSeries("west", 10, 350, 7));
+        archive.add(createSeries("east", 20, 30, 7));
+        archive.add(createSeries("short", 50, 180, 2));
+        return archive;
+    }
+
+    /**
+     * Returns a track point at the given position and time.
+     */
+    private TrackPoint createTrackPoint(double latitude, double longitude, long time)
+    {
+        TrackPoint trackPoint = new TrackPoint();
+        trackPoint.setLatitude(latitude);
+        trackPoint.setLongitude(longitude);
+        trackPoint.setTime(time);
+        return trackPoint;
+    }
+
+    /**
+     * Tests the weights and the per-cell weight cache.
+     */
+    private void testWeights()
+    {
+        List<WeatherStation> stations = Arrays.asList(new WeatherStation("west", CENTER_LATITUDE, 16.8025),
+                                                      new WeatherStation("east", CENTER_LATITUDE, 16.9025),
+                                                      new WeatherStation("short", CENTER_LATITUDE, 16.85));
+        MultiStationWindInterpolator interpolator = new MultiStationWindInterpolator(createArchive(), stations);
+        System.out.println("Stations: " + interpolator.getStations().size()
+                           + " (expected 2, too little data of short)");
+
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        // a position near the western station: the weights are those of the center of its cell
+        double latitude = 47.9013;
+        double longitude = 16.8061;
+        double centerLatitude = (Math.floor(latitude / 0.005) + 0.5) * 0.005;
+        double centerLongitude = (Math.floor(longitude / 0.005) + 0.5) * 0.005;
+        double dWest = dcu.distance(centerLatitude, centerLongitude, CENTER_LATITUDE, 16.8025);
+        double dEast = dcu.distance(centerLatitude, centerLongitude, CENTER_LATITUDE, 16.9025);
+        double[] weights = interpolator.getWeights(latitude, longitude);
+        System.out.println("Weights: " + weights[0] * dWest * dWest + ", " + weights[1] * dEast * dEast
+                           + " (expected 1.0, 1.0 (1 / distance^2))");
+        double[] sameCell = interpolator.getWeights(latitude + 0.001, longitude - 0.001);
+        double[] nextCell = interpolator.getWeights(latitude, longitude + 0.005);
+        System.out.println("Cache: same cell " + (sameCell == weights) + ", next cell " + (nextCell == weights)
+                           + " (expected true, false)");
+        interpolator.setPower(1);
+        double[] linearWeights = interpolator.getWeights(latitude, longitude);
+        System.out.println("Power 1: cache cleared " + (linearWeights != weights) + ", weights "
+                           + linearWeights[0] * dWest + ", " + linearWeights[1] * dEast + " (expected true, 1.0, 1.0)");
+
+        MultiStationWindInterpolator exponential = new MultiStationWindInterpolator(createArchive(), stations,
+                                                                                    WEIGHTING.exponential, 0.005);
+        exponential.setRange(5000);
+        weights = exponential.getWeights(latitude, longitude);
+        System.out.println("Exponential: " + weights[0] / Math.exp(-3 * dWest / 5000) + ", "
+                           + weights[1] / Math.exp(-3 * dEast / 5000) + " (expected 1.0, 1.0)");
+    }
+
+    /**
+     * Tests the enrichment: equal weights in the center cell (the mean direction of 350 and 30 degrees is 10, not 190),
+     * the western station dominating near it and points outside the time span.
+     */
+    private void testEnrich()
+    {
+        List<WeatherStation> stations = Arrays.asList(new WeatherStation("west", CENTER_LATITUDE, 16.8025),
+                                                      new WeatherStation("east", CENTER_LATITUDE, 16.9025));
+        MultiStationWindInterpolator interpolator = new MultiStationWindInterpolator(createArchive(), stations);
+        TrackSegment trackSegment = new TrackSegment();
+        trackSegment.addTrackPoint(createTrackPoint(CENTER_LATITUDE, CENTER_LONGITUDE, T0 - 1000));
+        trackSegment.addTrackPoint(createTrackPoint(CENTER_LATITUDE, CENTER_LONGITUDE, T0 + 900000L));
+        trackSegment.addTrackPoint(createTrackPoint(CENTER_LATITUDE + 0.001, CENTER_LONGITUDE + 0.001, T0 + 1800000L));
+        trackSegment.addTrackPoint(createTrackPoint(CENTER_LATITUDE, 16.8026, T0 + 1800000L));
+        trackSegment.addTrackPoint(createTrackPoint(CENTER_LATITUDE, CENTER_LONGITUDE, T0 + 3600000L + 1000));
+        boolean windInfoAvailable = interpolator.enrich(trackSegment);
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        System.out.println("Wind info " + windInfoAvailable + ", before the data: " + trackPoints.get(0).getWindSpeed()
+                           + ", after the data: " + trackPoints.get(4).getWindSpeed() + " (expected true, 0.0, 0.0)");
+        // after 15 minutes: west 11.5, east 21.5
+        TrackPoint center = trackPoints.get(1);
+        System.out.println("Center: " + center.getWindSpeed() + " km/h, gusts " + center.getMaxWindSpeed()
+                           + " km/h, direction " + center.getWindDirection()
+                           + " (expected 16.5, 21.5, 10.0 across north)");
+        System.out.println("Same cell, 30 minutes: " + trackPoints.get(2).getWindSpeed()
+                           + " km/h (expected 18.0)");
+        // near the western station (the weight of its cell center is large)
+        TrackPoint west = trackPoints.get(3);
+        System.out.println("Near west: " + west.getWindSpeed() + " km/h, direction " + west.getWindDirection()
+                           + " (expected about 13, about 350)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        MultiStationWindInterpolatorTest test = new MultiStationWindInterpolatorTest();
+        test.testWeights();
+        test.testEnrich();
+    }
+}
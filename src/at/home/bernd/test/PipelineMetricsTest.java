@@ -0,0 +1,128 @@
+package at.home.bernd.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import at.home.bernd.DataConversionUtility;
+import at.home.bernd.MetricsSnapshot;
+import at.home.bernd.PipelineMetrics;
+import at.home.bernd.PipelineMetrics.COUNTER;
+import at.home.bernd.PipelineMetrics.STAGE;
+
+/**
+ * Tests the PipelineMetrics, the MetricsSnapshot and the periodic reporting
+ */
+public class PipelineMetricsTest
+{
+    /**
+     * Tests the switch: while disabled nothing is recorded.
+     */
+    private void testDisabled()
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        metrics.reset();
+        metrics.setEnabled(false);
+        long start = metrics.start();
+        metrics.stop(STAGE.parse, start, 100);
+        metrics.increment(COUNTER.rejectedRows);
+        metrics.add(COUNTER.bytesRead, 1000);
+        MetricsSnapshot snapshot = metrics.snapshot();
+        System.out.println("Disabled: count " + snapshot.getCount(STAGE.parse) + ", rows "
+                           + snapshot.getRows(STAGE.parse) + ", rejected rows " + snapshot.getCounter(COUNTER.rejectedRows) + ", bytes read "
+                           + metrics.getBytesRead() + " (expected 0, 0, 0, 0)");
+
+        // a start taken while disabled is not recorded after enabling
+        metrics.setEnabled(true);
+        metrics.stop(STAGE.parse, start, 100);
+        System.out.println("Started while disabled: count " + metrics.snapshot().getCount(STAGE.parse)
+                           + " (expected 0)");
+        metrics.setEnabled(false);
+    }
+
+    /**
+     * Tests the counts, rows, latencies and histogram buckets of a stage with start times in the past: 100 invocations
+     * of about 3 ms (bucket [2^21, 2^22) ns) and one of about 40 ms (bucket [2^25, 2^26) ns).
+     */
+    private void testStages()
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        metrics.reset();
+        metrics.setEnabled(true);
+        for (int i = 0; i < 100; i++)
+        {
+            metrics.stop(STAGE.interpolation, metrics.start() - 3000000L, 10);
+        }
+        metrics.stop(STAGE.interpolation, metrics.start() - 40000000L, 10);
+        metrics.stop(STAGE.render, metrics.start());
+        metrics.increment(COUNTER.rejectedRows);
+        metrics.add(COUNTER.bytesRead, 1000);
+        metrics.add(COUNTER.bytesRead, 24);
+        MetricsSnapshot snapshot = metrics.snapshot();
+        System.out.println("Interpolation: count " + snapshot.getCount(STAGE.interpolation) + ", rows "
+                           + snapshot.getRows(STAGE.interpolation) + ", render count " + snapshot.getCount(STAGE.render)
+                           + ", render rows " + snapshot.getRows(STAGE.render) + ", parse count "
+                           + snapshot.getCount(STAGE.parse) + " (expected 101, 1010, 1, 0, 0)");
+        System.out.println("Latencies: mean " + Math.round(snapshot.getMeanMillis(STAGE.interpolation) * 10) / 10.0
+                           + " ms, max " + Math.round(snapshot.getMaxMillis(STAGE.interpolation)) + " ms, p50 "
+                           + snapshot.getPercentileMillis(STAGE.interpolation, 50) + " ms, p99 "
+                           + snapshot.getPercentileMillis(STAGE.interpolation, 99) + " ms, p100 = max "
+                           + (snapshot.getPercentileMillis(STAGE.interpolation, 100)
+                              == snapshot.getMaxMillis(STAGE.interpolation))
+                           + " (expected about 3.4, 40, 4.194304, 4.194304, true)");
+        System.out.println("Rows per second: " + Math.round(snapshot.getRowsPerSecond(STAGE.interpolation) / 100) * 100
+                           + " (expected about 3000: 1010 rows in 340 ms)");
+        System.out.println("Counters: rejected rows " + snapshot.getCounter(COUNTER.rejectedRows) + ", bytes read "
+                           + snapshot.getCounter(COUNTER.bytesRead) + ", malformed values "
+                           + snapshot.getCounter(COUNTER.malformedValues) + " (expected 1, 1024, 0)");
+        System.out.println("MXBean: counts " + metrics.getStageCounts().get("interpolation") + ", p99 "
+                           + metrics.getStageP99Millis().get("interpolation") + ", report lines "
+                           + metrics.getReport().split("\n").length + " (expected 101, 4.194304, 8)");
+
+        // a malformed timestamp is counted, the date conversion is timed as nested stage
+        DataConversionUtility.getInstance().parseUtcTimestamp("2020-06-19T10:17:4xZ", 0, 20);
+        snapshot = metrics.snapshot();
+        System.out.println("Malformed timestamp: malformed values " + snapshot.getCounter(COUNTER.malformedValues)
+                           + ", date conversions " + snapshot.getCount(STAGE.dateConversion) + " (expected 1, 1)");
+
+        metrics.reset();
+        snapshot = metrics.snapshot();
+        System.out.println("Reset: count " + snapshot.getCount(STAGE.interpolation) + ", max "
+                           + snapshot.getMaxMillis(STAGE.interpolation) + ", p99 "
+                           + snapshot.getPercentileMillis(STAGE.interpolation, 99) + ", bytes read "
+                           + snapshot.getCounter(COUNTER.bytesRead) + " (expected 0, 0.0, 0.0, 0)");
+        metrics.setEnabled(false);
+    }
+
+    /**
+     * Tests the periodic reporting.
+     */
+    private void testReporting() throws InterruptedException
+    {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        metrics.reset();
+        metrics.setEnabled(true);
+        metrics.stop(STAGE.fetch, metrics.start(), 5);
+        List<MetricsSnapshot> snapshots = Collections.synchronizedList(new ArrayList<MetricsSnapshot>());
+        metrics.startReporting(snapshots::add, 20);
+        Thread.sleep(300);
+        metrics.stopReporting();
+        int nReports = snapshots.size();
+        Thread.sleep(100);
+        System.out.println("Reporting: reports " + (nReports > 0) + ", stopped " + (snapshots.size() == nReports)
+                           + ", fetch rows " + (nReports > 0 ? snapshots.get(0).getRows(STAGE.fetch) : 0)
+                           + " (expected true, true, 5)");
+        metrics.setEnabled(false);
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        PipelineMetricsTest test = new PipelineMetricsTest();
+        test.testDisabled();
+        test.testStages();
+        test.testReporting();
+    }
+}
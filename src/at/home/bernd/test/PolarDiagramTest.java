@@ -0,0 +1,150 @@
+package at.home.bernd.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.DataExporter;
+import at.home.bernd.PolarDiagram;
+import at.home.bernd.SpeedHistogram;
+import at.home.bernd.Track;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the SpeedHistogram and the PolarDiagram
+ */
+public class PolarDiagramTest
+{
+    /**
+     * Compares the percentiles of a histogram with the percentiles of the sorted values.
+     */
+    private void testHistogram()
+    {
+        Random random = new Random(42);
+        double[] values = new double[100000];
+        SpeedHistogram first = new SpeedHistogram();
+        SpeedHistogram second = new SpeedHistogram();
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = Math.abs(30 + random.nextGaussian() * 10);
+            (i % 2 == 0 ? first : second).add(values[i]);
+        }
+        first.merge(second);
+        Arrays.sort(values);
+        double maxError = 0;
+        for (double percentile : new double[] { 1, 10, 50, 90, 99, 100 })
+        {
+            double expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            maxError = Math.max(maxError, Math.abs(expected - first.getPercentile(percentile)));
+        }
+        System.out.println("Merged histogram: " + first);
+        System.out.println("Percentile max error: " + maxError + " (expected <= 0.05)");
+
+        // GPS glitches: infinite and NaN speeds are ignored, huge ones clamped into the overflow bucket
+        SpeedHistogram glitches = new SpeedHistogram();
+        for (double speed : new double[] { 20, 30, Double.POSITIVE_INFINITY, Double.NaN, 5e8, 251, 250, -5 })
+        {
+            glitches.add(speed);
+        }
+        System.out.println("Glitches: count " + glitches.getCount() + ", overflow " + glitches.getOverflowCount()
+                           + ", max " + glitches.getMax() + ", median " + glitches.getPercentile(50) + ", p100 "
+                           + glitches.getPercentile(100) + " (expected 6, 2, 250.0, 30.05, 250.0)");
+    }
+
+    /**
+     * Creates a track of 10 Hz track points sailing random courses in a wind of the given speed from the west; the
+     * speed is highest at a true wind angle of 110 degrees.
+     */
+    private Track createTrack(Random random, double windSpeed, int nPoints)
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        long time = 1592560800000L;
+        for (int i = 0; i < nPoints; i++)
+        {
+            double course = 360 * random.nextDouble();
+            double trueWindAngle = Math.abs(((course - 270) % 360 + 540) % 360 - 180);
+            double speed = windSpeed * (0.4 + Math.sin(Math.toRadians(trueWindAngle * 90 / 110))) + random.nextGaussian();
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(time + i * 100L);
+            trackPoint.setCourse(course);
+            trackPoint.setSpeed(speed);
+            trackPoint.setWindDirection(270);
+            trackPoint.setWindSpeed(windSpeed);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        trackSegment.setWindInfoAvailable(true);
+        Track track = new Track();
+        track.addTrackSegment(trackSegment);
+        return track;
+    }
+
+    /**
+     * Compares building a diagram in parallel with adding the track segments one by one and prints the 90th
+     * percentile speeds.
+     */
+    private void testPolarDiagram() throws IOException
+    {
+        Random random = new Random(7);
+        List<Track> trackList = new ArrayList<Track>();
+        for (int i = 0; i < 100; i++)
+        {
+            // 100 sessions of 10 minutes at 10 Hz
+            trackList.add(createTrack(random, 12 + random.nextInt(25), 6000));
+        }
+        long start = System.nanoTime();
+        PolarDiagram parallel = new PolarDiagram();
+        parallel.addTrackList(trackList);
+        long parallelMillis = (System.nanoTime() - start) / 1000000;
+        PolarDiagram sequential = new PolarDiagram();
+        for (Track track : trackList)
+        {
+            sequential.addTrackSegment(track.getTrackSegments().get(0));
+        }
+        int mismatches = 0;
+        for (int a = 0; a < parallel.getAngleBinCount(); a++)
+        {
+            for (int w = 0; w < parallel.getWindSpeedBinCount(); w++)
+            {
+                if (parallel.getCount(a, w) != sequential.getCount(a, w)
+                    || Double.compare(parallel.getPercentile(a, w, 90), sequential.getPercentile(a, w, 90)) != 0)
+                {
+                    mismatches++;
+                }
+            }
+        }
+        System.out.println(parallel + " in " + parallelMillis + " ms, mismatches: " + mismatches + " (expected 0)");
+
+        // the 90th percentile at 20 - 25 km/h wind
+        StringBuilder sb = new StringBuilder("p90 at 20-25 km/h:");
+        int best = 0;
+        for (int a = 0; a < parallel.getAngleBinCount(); a++)
+        {
+            sb.append(' ').append(Math.round(parallel.getPercentile(a, 4, 90)));
+            if (parallel.getPercentile(a, 4, 90) > parallel.getPercentile(best, 4, 90))
+            {
+                best = a;
+            }
+        }
+        System.out.println(sb);
+        System.out.println("Fastest true wind angle: " + parallel.getAngle(best) + " (expected 105.0 or 115.0)");
+
+        StringWriter writer = new StringWriter();
+        new DataExporter().writePolarDiagramCsv(parallel, writer);
+        String[] lines = writer.toString().split("\n");
+        System.out.println("CSV: " + lines.length + " lines, " + lines[0] + " / " + lines[1]);
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        PolarDiagramTest test = new PolarDiagramTest();
+        test.testHistogram();
+        test.testPolarDiagram();
+    }
+}
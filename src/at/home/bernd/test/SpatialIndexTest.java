@@ -0,0 +1,216 @@
+package at.home.bernd.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import at.home.bernd.DataConversionUtility;
+import at.home.bernd.SegmentHit;
+import at.home.bernd.SpatialIndex;
+import at.home.bernd.Track;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the SpatialIndex against a brute force scan over all points
+ */
+public class SpatialIndexTest
+{
+    /**
+     * Meters per degree of latitude
+     */
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * DataConversionUtility.EARTH_RADIUS;
+
+    /**
+     * Creates tracks of random walks (1 Hz, about 8 m/s) around the same spot, including an empty segment.
+     */
+    private List<Track> createTrackList(Random random)
+    {
+        List<Track> trackList = new ArrayList<Track>();
+        for (int t = 0; t < 4; t++)
+        {
+            Track track = new Track();
+            track.setName("track " + t);
+            for (int s = 0; s < 3; s++)
+            {
+                TrackSegment trackSegment = new TrackSegment();
+                int n = t == 1 && s == 1 ? 0 : 2000;
+                double latitude = 47.85 + random.nextDouble() * 0.01;
+                double longitude = 16.84 + random.nextDouble() * 0.01;
+                double heading = random.nextDouble() * 360;
+                for (int i = 0; i < n; i++)
+                {
+                    heading += random.nextGaussian() * 10;
+                    latitude += 8 * Math.cos(Math.toRadians(heading)) / METERS_PER_DEGREE;
+                    longitude += 8 * Math.sin(Math.toRadians(heading)) / (METERS_PER_DEGREE * 0.67);
+                    TrackPoint trackPoint = new TrackPoint();
+                    trackPoint.setTime(1592561863000L + i * 1000L);
+                    trackPoint.setLatitude(latitude);
+                    trackPoint.setLongitude(longitude);
+                    trackSegment.addTrackPoint(trackPoint);
+                }
+                track.addTrackSegment(trackSegment);
+            }
+            trackList.add(track);
+        }
+        return trackList;
+    }
+
+    /**
+     * Expands hits to a sorted set of "track/segment/index" keys.
+     */
+    private Set<String> expand(List<SegmentHit> hits)
+    {
+        Set<String> keys = new TreeSet<String>();
+        for (SegmentHit hit : hits)
+        {
+            for (int i = hit.getRange().getStart(); i < hit.getRange().getEnd(); i++)
+            {
+                keys.add(hit.getTrackIndex() + "/" + hit.getSegmentIndex() + "/" + i);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The point predicate of the brute force queries
+     */
+    private interface PointPredicate
+    {
+        boolean test(double latitude, double longitude);
+    }
+
+    /**
+     * Returns the keys of all points matching the given predicate.
+     */
+    private Set<String> bruteForce(List<Track> trackList, PointPredicate predicate)
+    {
+        Set<String> keys = new TreeSet<String>();
+        for (int t = 0; t < trackList.size(); t++)
+        {
+            List<TrackSegment> trackSegments = trackList.get(t).getTrackSegments();
+            for (int s = 0; s < trackSegments.size(); s++)
+            {
+                List<TrackPoint> trackPoints = trackSegments.get(s).getTrackPoints();
+                for (int i = 0; i < trackPoints.size(); i++)
+                {
+                    if (predicate.test(trackPoints.get(i).getLatitude(), trackPoints.get(i).getLongitude()))
+                    {
+                        keys.add(t + "/" + s + "/" + i);
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the distance of a position from a line segment (the same approximation as the index).
+     */
+    private double distanceToLeg(double latitude, double longitude, double lat1, double lon1, double lat2, double lon2)
+    {
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double ax = (lon1 - longitude) * cosLatitude;
+        double ay = lat1 - latitude;
+        double dx = (lon2 - longitude) * cosLatitude - ax;
+        double dy = lat2 - latitude - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared)) : 0;
+        return Math.hypot(ax + t * dx, ay + t * dy) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Runs random bounding box, radius and corridor queries against the index and a brute force scan.
+     *
+     * @return the number of mismatching queries
+     */
+    private int compareQueries(SpatialIndex index, List<Track> trackList, Random random)
+    {
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        int mismatches = 0;
+        int hits = 0;
+        for (int q = 0; q < 50; q++)
+        {
+            double latitude = 47.84 + random.nextDouble() * 0.03;
+            double longitude = 16.83 + random.nextDouble() * 0.03;
+            double size = random.nextDouble() * 0.005;
+
+            double maxLatitude = latitude + size;
+            double maxLongitude = longitude + 2 * size;
+            Set<String> expected = bruteForce(trackList, (lat, lon) -> lat >= latitude && lat <= maxLatitude
+                                                                       && lon >= longitude && lon <= maxLongitude);
+            Set<String> actual = expand(index.queryBoundingBox(latitude, longitude, maxLatitude, maxLongitude));
+            mismatches += expected.equals(actual) ? 0 : 1;
+            hits += actual.size();
+
+            double radius = size * METERS_PER_DEGREE;
+            expected = bruteForce(trackList, (lat, lon) -> dcu.distance(latitude, longitude, lat, lon) <= radius);
+            actual = expand(index.queryRadius(latitude, longitude, radius));
+            mismatches += expected.equals(actual) ? 0 : 1;
+            hits += actual.size();
+
+            double[] polylineLatitudes = { latitude, latitude + 0.004, latitude + 0.002 };
+            double[] polylineLongitudes = { longitude, longitude + 0.006, longitude + 0.012 };
+            double width = 20 + random.nextDouble() * 100;
+            expected = bruteForce(trackList, (lat, lon) ->
+            {
+                for (int leg = 0; leg + 1 < polylineLatitudes.length; leg++)
+                {
+                    if (distanceToLeg(lat, lon, polylineLatitudes[leg], polylineLongitudes[leg],
+                                      polylineLatitudes[leg + 1], polylineLongitudes[leg + 1]) <= width)
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            });
+            actual = expand(index.queryCorridor(polylineLatitudes, polylineLongitudes, width));
+            mismatches += expected.equals(actual) ? 0 : 1;
+            hits += actual.size();
+        }
+        System.out.println("150 queries, " + hits + " points found, mismatches " + mismatches
+                           + " (expected many points, 0 mismatches)");
+        return mismatches;
+    }
+
+    /**
+     * Tests the queries with the default and a coarse cell size, then saves and loads the index.
+     */
+    private void testQueries() throws IOException
+    {
+        Random random = new Random(3);
+        List<Track> trackList = createTrackList(random);
+        SpatialIndex index = SpatialIndex.build(trackList);
+        System.out.println("Index: " + index.size() + " entries, cell size " + index.getCellSize());
+        compareQueries(index, trackList, new Random(7));
+        compareQueries(SpatialIndex.build(trackList, 0.01), trackList, new Random(7));
+
+        Path path = Files.createTempFile("spatial", ".idx");
+        try
+        {
+            index.save(path);
+            SpatialIndex loaded = SpatialIndex.load(path);
+            System.out.println("Loaded: " + loaded.size() + " entries, cell size " + loaded.getCellSize()
+                               + " (expected " + index.size() + ", " + index.getCellSize() + ")");
+            compareQueries(loaded, trackList, new Random(7));
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        SpatialIndexTest test = new SpatialIndexTest();
+        test.testQueries();
+    }
+}
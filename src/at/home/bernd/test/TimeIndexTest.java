@@ -0,0 +1,239 @@
+package at.home.bernd.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import at.home.bernd.IndexRange;
+import at.home.bernd.SegmentHit;
+import at.home.bernd.TimeIndex;
+import at.home.bernd.Track;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+import at.home.bernd.WeatherDataManager;
+import at.home.bernd.WindDataPoint;
+
+/**
+ * Tests the TimeIndex against a linear scan
+ */
+public class TimeIndexTest
+{
+    /**
+     * The start of the test data (epoch milliseconds)
+     */
+    private static final long T0 = 1592561863000L;
+
+    /**
+     * Creates 50 tracks of 1 to 3 segments (1 Hz) at random times within 10 days; the segments overlap and nest.
+     */
+    private List<Track> createTrackList(long seed)
+    {
+        Random random = new Random(seed);
+        List<Track> trackList = new ArrayList<Track>();
+        for (int t = 0; t < 50; t++)
+        {
+            Track track = new Track();
+            track.setName("track " + t);
+            int nSegments = 1 + random.nextInt(3);
+            for (int s = 0; s < nSegments; s++)
+            {
+                TrackSegment trackSegment = new TrackSegment();
+                long start = T0 + (long) (random.nextDouble() * 10 * 86400000L);
+                int n = 60 + random.nextInt(7200);
+                for (int i = 0; i < n; i++)
+                {
+                    TrackPoint trackPoint = new TrackPoint();
+                    trackPoint.setTime(start + i * 1000L);
+                    trackSegment.addTrackPoint(trackPoint);
+                }
+                track.addTrackSegment(trackSegment);
+            }
+            trackList.add(track);
+        }
+        return trackList;
+    }
+
+    /**
+     * Creates wind data every 10 minutes covering the days 2 to 8 of the test data.
+     */
+    private List<WindDataPoint> createWindData()
+    {
+        List<WindDataPoint> windData = new ArrayList<WindDataPoint>();
+        for (long time = T0 + 2 * 86400000L; time <= T0 + 8 * 86400000L; time += 600000L)
+        {
+            double hours = (time - T0) / 3600000.0;
+            WindDataPoint windDataPoint = new WindDataPoint();
+            windDataPoint.setTime(time);
+            windDataPoint.setWindSpeed(15 + 10 * Math.sin(hours / 3));
+            windDataPoint.setMaxWindSpeed(20 + 10 * Math.sin(hours / 3));
+            windDataPoint.setDirection((350 + 30 * Math.sin(hours / 5) + 360) % 360);
+            windData.add(windDataPoint);
+        }
+        return windData;
+    }
+
+    /**
+     * Returns the keys ("track/segment") of all segments overlapping the given window by a linear scan.
+     */
+    private Set<String> scan(List<Track> trackList, long from, long to)
+    {
+        Set<String> keys = new TreeSet<String>();
+        for (int t = 0; t < trackList.size(); t++)
+        {
+            List<TrackSegment> trackSegments = trackList.get(t).getTrackSegments();
+            for (int s = 0; s < trackSegments.size(); s++)
+            {
+                List<TrackPoint> trackPoints = trackSegments.get(s).getTrackPoints();
+                if (trackPoints.get(0).getTime() <= to && trackPoints.get(trackPoints.size() - 1).getTime() >= from)
+                {
+                    keys.add(t + "/" + s);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the keys ("track/segment") of the given hits.
+     */
+    private Set<String> keys(List<SegmentHit> hits)
+    {
+        Set<String> keys = new TreeSet<String>();
+        for (SegmentHit hit : hits)
+        {
+            keys.add(hit.getTrackIndex() + "/" + hit.getSegmentIndex());
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the range of wind data covering the given time span by a linear scan (the last point at or before the
+     * start up to the first point at or after the end), null if the wind data does not cover it.
+     */
+    private IndexRange scanWindData(List<WindDataPoint> windData, long from, long to)
+    {
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < windData.size(); i++)
+        {
+            long time = windData.get(i).getTime();
+            if (time <= from)
+            {
+                first = i;
+            }
+            if (time >= to && last < 0)
+            {
+                last = i;
+            }
+        }
+        return first >= 0 && last >= 0 ? new IndexRange(first, last + 1) : null;
+    }
+
+    /**
+     * Compares random overlap queries with a linear scan.
+     *
+     * @return the number of mismatching queries
+     */
+    private int compareQueries(TimeIndex index, List<Track> trackList)
+    {
+        Random random = new Random(9);
+        int mismatches = 0;
+        int hits = 0;
+        for (int q = 0; q < 1000; q++)
+        {
+            long from = T0 - 86400000L + (long) (random.nextDouble() * 12 * 86400000L);
+            long to = from + (long) (random.nextDouble() * random.nextDouble() * 86400000L);
+            Set<String> actual = keys(index.query(from, to));
+            mismatches += actual.equals(scan(trackList, from, to)) ? 0 : 1;
+            hits += actual.size();
+        }
+        System.out.println("1000 queries, " + hits + " segments found, mismatches " + mismatches
+                           + " (expected many segments, 0 mismatches)");
+        return mismatches;
+    }
+
+    /**
+     * Tests the overlap queries, the join with the wind data, the enrichment and saving and loading.
+     */
+    private void testTimeIndex() throws IOException
+    {
+        List<Track> trackList = createTrackList(4);
+        TimeIndex index = TimeIndex.build(trackList);
+        System.out.println("Index: " + index.size() + " segments");
+        compareQueries(index, trackList);
+
+        // the segments in the order of the index (sorted by start time)
+        List<SegmentHit> segments = index.query(Long.MIN_VALUE, Long.MAX_VALUE);
+        List<WindDataPoint> windData = createWindData();
+        IndexRange[] ranges = index.joinWindData(windData);
+        int nCovered = 0;
+        int mismatches = 0;
+        for (int k = 0; k < ranges.length; k++)
+        {
+            List<TrackPoint> trackPoints = segments.get(k).resolve(trackList).getTrackPoints();
+            IndexRange expected = scanWindData(windData, trackPoints.get(0).getTime(),
+                                               trackPoints.get(trackPoints.size() - 1).getTime());
+            mismatches += expected == null ? (ranges[k] == null ? 0 : 1) : (expected.equals(ranges[k]) ? 0 : 1);
+            nCovered += ranges[k] != null ? 1 : 0;
+        }
+        System.out.println("Join: " + nCovered + " of " + ranges.length + " segments covered, mismatches "
+                           + mismatches + " (expected about 60 % covered, 0 mismatches)");
+
+        // enrich with the index and segment by segment with the ranges of the linear scan
+        int nEnriched = index.enrich(trackList, windData);
+        List<Track> expectedTrackList = createTrackList(4);
+        WeatherDataManager weatherDataManager = new WeatherDataManager();
+        int nExpected = 0;
+        double maxDifference = 0;
+        for (SegmentHit segment : segments)
+        {
+            TrackSegment expectedTrackSegment = segment.resolve(expectedTrackList);
+            List<TrackPoint> trackPoints = expectedTrackSegment.getTrackPoints();
+            IndexRange range = scanWindData(windData, trackPoints.get(0).getTime(),
+                                            trackPoints.get(trackPoints.size() - 1).getTime());
+            if (range != null && range.size() >= 3
+                && weatherDataManager.addInterpolatedWindData(expectedTrackSegment,
+                                                              windData.subList(range.getStart(), range.getEnd())))
+            {
+                nExpected++;
+            }
+            List<TrackPoint> actualTrackPoints = segment.resolve(trackList).getTrackPoints();
+            for (int i = 0; i < trackPoints.size(); i++)
+            {
+                maxDifference = Math.max(maxDifference, Math.abs(trackPoints.get(i).getWindSpeed()
+                                                                 - actualTrackPoints.get(i).getWindSpeed()));
+                maxDifference = Math.max(maxDifference, Math.abs(trackPoints.get(i).getWindDirection()
+                                                                 - actualTrackPoints.get(i).getWindDirection()));
+            }
+        }
+        System.out.println("Enriched: " + nEnriched + " segments, max difference " + maxDifference + " (expected "
+                           + nExpected + ", 0.0)");
+
+        Path path = Files.createTempFile("time", ".idx");
+        try
+        {
+            index.save(path);
+            TimeIndex loaded = TimeIndex.load(path);
+            System.out.println("Loaded: " + loaded.size() + " segments (expected " + index.size() + ")");
+            compareQueries(loaded, trackList);
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        TimeIndexTest test = new TimeIndexTest();
+        test.testTimeIndex();
+    }
+}
@@ -0,0 +1,214 @@
+package at.home.bernd.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.DataConversionUtility;
+import at.home.bernd.TopSpeedAnalyzer;
+import at.home.bernd.TopSpeedResult;
+import at.home.bernd.TopSpeedStatistics;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the TopSpeedAnalyzer
+ */
+public class TopSpeedAnalyzerTest
+{
+    /**
+     * Meters per degree of latitude
+     */
+    private static final double METERS_PER_DEGREE = 111195.0;
+
+    /**
+     * Creates a straight track segment heading north with one point per second. The speed is 10 m/s except for the
+     * given range where it is 20 m/s.
+     *
+     * @param n         the number of points
+     * @param fastStart the first point of the fast range
+     * @param fastEnd   the last point of the fast range
+     * @return          the track segment
+     */
+    private TrackSegment createStraightTrackSegment(int n, int fastStart, int fastEnd)
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        long t0 = 1592561863000L;
+        double latitude = 47.85;
+        for (int i = 0; i < n; i++)
+        {
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(t0 + i * 1000L);
+            trackPoint.setLatitude(latitude);
+            trackPoint.setLongitude(16.84);
+            trackPoint.setWindSpeed(30);
+            trackPoint.setMaxWindSpeed(40);
+            trackPoint.setWindDirection(315);
+            trackSegment.addTrackPoint(trackPoint);
+            double speed = (i >= fastStart && i < fastEnd) ? 20 : 10;
+            latitude += speed / METERS_PER_DEGREE;
+        }
+        trackSegment.setWindInfoAvailable(true);
+        return trackSegment;
+    }
+
+    /**
+     * Creates a track segment going north and coming back south (a jibe) with 10 m/s.
+     *
+     * @param nLeg the number of points per leg
+     * @return     the track segment
+     */
+    private TrackSegment createJibeTrackSegment(int nLeg)
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        long t0 = 1592561863000L;
+        for (int i = 0; i < 2 * nLeg; i++)
+        {
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(t0 + i * 1000L);
+            int k = i < nLeg ? i : 2 * nLeg - 1 - i;
+            trackPoint.setLatitude(47.85 + k * 10 / METERS_PER_DEGREE);
+            trackPoint.setLongitude(i < nLeg ? 16.84 : 16.8402);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        return trackSegment;
+    }
+
+    /**
+     * Tests the time and distance windows.
+     */
+    private void testWindows()
+    {
+        TopSpeedAnalyzer topSpeedAnalyzer = new TopSpeedAnalyzer();
+        TrackSegment trackSegment = createStraightTrackSegment(600, 100, 130);
+        TopSpeedStatistics statistics = topSpeedAnalyzer.analyze(trackSegment);
+        System.out.println(statistics);
+        TopSpeedResult best10s = statistics.getBest(TopSpeedStatistics.TOP_SPEED_TYPE.best10s);
+        System.out.println("best 10 s = " + best10s.getSpeed() + " km/h (expected 72)");
+        TopSpeedResult best500m = statistics.getBest(TopSpeedStatistics.TOP_SPEED_TYPE.best500m);
+        System.out.println("best 500 m = " + best500m.getSpeed() + " km/h (expected 72)");
+        System.out.println("best 5 x 10 s = " + statistics.getFiveBest10sAverage() + " km/h (expected ~54.7)");
+    }
+
+    /**
+     * Tests the alpha 500.
+     */
+    private void testAlpha()
+    {
+        TopSpeedAnalyzer topSpeedAnalyzer = new TopSpeedAnalyzer();
+        TopSpeedStatistics statistics = topSpeedAnalyzer.analyze(createJibeTrackSegment(30));
+        System.out.println("alpha 500 = " + statistics.getBest(TopSpeedStatistics.TOP_SPEED_TYPE.alpha500) + " (expected ~37 km/h)");
+    }
+
+    /**
+     * Compares the alpha 500 with a brute force search over all pairs of points (same rules: at most 500 m and at
+     * least 100 m travelled, end within 50 m of the start) on a noisy 1 Hz track with 20 jibes.
+     */
+    private void testAlphaBruteForce()
+    {
+        Random random = new Random(11);
+        TrackSegment trackSegment = new TrackSegment();
+        double x = 0;
+        double y = 0;
+        double heading = 10;
+        for (int i = 0; i < 1200; i++)
+        {
+            if (i % 60 == 0)
+            {
+                // jibe: back on a slightly different line
+                heading = (heading + 180 + random.nextGaussian() * 10 + 360) % 360;
+            }
+            double speed = 8 + random.nextDouble() * 6;
+            x += speed * Math.sin(Math.toRadians(heading));
+            y += speed * Math.cos(Math.toRadians(heading));
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(1592561863000L + i * 1000L);
+            trackPoint.setLatitude(47.85 + (y + random.nextGaussian() * 2) / METERS_PER_DEGREE);
+            trackPoint.setLongitude(16.84 + (x + random.nextGaussian() * 2) / 74630.0);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        TopSpeedResult alpha = new TopSpeedAnalyzer().analyze(trackSegment)
+            .getBest(TopSpeedStatistics.TOP_SPEED_TYPE.alpha500);
+        System.out.println("alpha 500 = " + (alpha != null ? alpha.getSpeed() : 0) + " km/h, brute force "
+                           + bruteForceAlpha(trackSegment) + " km/h (expected equal)");
+    }
+
+    /**
+     * Tests the alpha 500 of two parallel legs 49 m apart (just inside the radius) whose points fall into grid cells
+     * of 50 m which are not adjacent (47 m and 96 m east of the first point).
+     */
+    private void testAlphaParallelLegs()
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        List<double[]> positions = new ArrayList<double[]>();
+        for (int i = 0; i < 5; i++)
+        {
+            // lead-in to the east
+            positions.add(new double[] { i * 47 / 5.0, 0 });
+        }
+        for (int i = 0; i <= 20; i++)
+        {
+            positions.add(new double[] { 47, i * 10 });
+        }
+        for (int i = 1; i < 8; i++)
+        {
+            // a half circle of radius 24.5 m
+            double angle = Math.PI * i / 8;
+            positions.add(new double[] { 71.5 - 24.5 * Math.cos(angle), 200 + 24.5 * Math.sin(angle) });
+        }
+        for (int i = 20; i >= 0; i--)
+        {
+            positions.add(new double[] { 96, i * 10 });
+        }
+        for (int i = 0; i < positions.size(); i++)
+        {
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(1592561863000L + i * 1000L);
+            trackPoint.setLatitude(47.85 + positions.get(i)[1] / METERS_PER_DEGREE);
+            trackPoint.setLongitude(16.84 + positions.get(i)[0] / 74630.0);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        TopSpeedResult alpha = new TopSpeedAnalyzer().analyze(trackSegment)
+            .getBest(TopSpeedStatistics.TOP_SPEED_TYPE.alpha500);
+        System.out.println("parallel legs: alpha 500 = " + (alpha != null ? alpha.getSpeed() : 0)
+                           + " km/h, brute force " + bruteForceAlpha(trackSegment) + " km/h (expected equal, about 36)");
+    }
+
+    /**
+     * Returns the best alpha 500 speed of a brute force search over all pairs of points.
+     */
+    private double bruteForceAlpha(TrackSegment trackSegment)
+    {
+        TopSpeedAnalyzer topSpeedAnalyzer = new TopSpeedAnalyzer();
+        DataConversionUtility dcu = DataConversionUtility.getInstance();
+        double[] latitudes = trackSegment.getLatitudes();
+        double[] longitudes = trackSegment.getLongitudes();
+        double[] distances = topSpeedAnalyzer.cumulativeDistances(latitudes, longitudes);
+        double bestSpeed = 0;
+        for (int i = 0; i < latitudes.length; i++)
+        {
+            for (int j = i + 1; j < latitudes.length && distances[j] - distances[i] <= TopSpeedAnalyzer.ALPHA_DISTANCE; j++)
+            {
+                double speed = (distances[j] - distances[i]) / (j - i) * 3.6;
+                if (distances[j] - distances[i] >= 2 * TopSpeedAnalyzer.ALPHA_RADIUS && speed > bestSpeed
+                    && dcu.distance(latitudes[i], longitudes[i], latitudes[j], longitudes[j]) <= TopSpeedAnalyzer.ALPHA_RADIUS)
+                {
+                    bestSpeed = speed;
+                }
+            }
+        }
+        return bestSpeed;
+    }
+
+    /**
+     * Starts the tests
+     */
+    public static void main(String[] args)
+    {
+        TopSpeedAnalyzerTest topSpeedAnalyzerTest = new TopSpeedAnalyzerTest();
+        topSpeedAnalyzerTest.testWindows();
+        topSpeedAnalyzerTest.testAlpha();
+        topSpeedAnalyzerTest.testAlphaBruteForce();
+        topSpeedAnalyzerTest.testAlphaParallelLegs();
+    }
+}
@@ -0,0 +1,140 @@
+package at.home.bernd.test;
+
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.HampelFilter;
+import at.home.bernd.KalmanFilter;
+import at.home.bernd.MaxAccelerationFilter;
+import at.home.bernd.TrackFilterChain;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the track point filters
+ */
+public class TrackFilterTest
+{
+    /**
+     * The meters per degree of latitude and of longitude at 47.9 degrees
+     */
+    private static final double METERS_PER_DEGREE_LATITUDE = 111195.0;
+    private static final double METERS_PER_DEGREE_LONGITUDE = 74549.0;
+
+    /**
+     * Creates a track segment heading east at 30 km/h; the positions have the given noise, the speeds a noise of 0.5
+     * km/h. The true east offsets in meters are stored in trueEast.
+     */
+    private TrackSegment createTrackSegment(int n, long intervalMillis, double positionNoise, double[] trueEast,
+                                            Random random)
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        for (int i = 0; i < n; i++)
+        {
+            double east = i * intervalMillis / 1000.0 * 30 / 3.6;
+            trueEast[i] = east;
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(1592560800000L + i * intervalMillis);
+            trackPoint.setLatitude(47.9 + random.nextGaussian() * positionNoise / METERS_PER_DEGREE_LATITUDE);
+            trackPoint.setLongitude(16.8 + (east + random.nextGaussian() * positionNoise)
+                                           / METERS_PER_DEGREE_LONGITUDE);
+            trackPoint.setSpeed(30 + random.nextGaussian() * 0.5);
+            trackPoint.setCourse(90);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        return trackSegment;
+    }
+
+    /**
+     * Returns the RMS position error in meters (skipping the first 20 points while the filter settles).
+     */
+    private double rmsError(TrackSegment trackSegment, double[] trueEast)
+    {
+        double sum = 0;
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        for (int i = 20; i < trackPoints.size(); i++)
+        {
+            TrackPoint trackPoint = trackPoints.get(i);
+            double dx = (trackPoint.getLongitude() - 16.8) * METERS_PER_DEGREE_LONGITUDE - trueEast[i];
+            double dy = (trackPoint.getLatitude() - 47.9) * METERS_PER_DEGREE_LATITUDE;
+            sum += dx * dx + dy * dy;
+        }
+        return Math.sqrt(sum / (trackPoints.size() - 20));
+    }
+
+    /**
+     * Tests the rejection of implausible points and the replacement of speed spikes.
+     */
+    private void testOutliers()
+    {
+        double[] trueEast = new double[200];
+        TrackSegment trackSegment = createTrackSegment(200, 1000, 3, trueEast, new Random(1));
+        List<TrackPoint> trackPoints = trackSegment.getTrackPoints();
+        trackPoints.get(50).setSpeed(250);
+        trackPoints.get(80).setLongitude(trackPoints.get(80).getLongitude() + 0.01);
+        trackPoints.get(120).setSpeed(45);
+        trackPoints.get(150).setSpeed(38);
+        TrackFilterChain chain = new TrackFilterChain(new MaxAccelerationFilter(100, 3));
+        int nRejected = chain.apply(trackSegment);
+        System.out.println("Rejected: " + nRejected + ", remaining " + trackSegment.size()
+                           + " (expected 3 (speed 250, jump of 750 m, 45 km/h in 1 s), 197)");
+        trackSegment = createTrackSegment(200, 1000, 3, trueEast, new Random(1));
+        trackSegment.getTrackPoints().get(120).setSpeed(45);
+        trackSegment.getTrackPoints().get(150).setSpeed(12);
+        chain = new TrackFilterChain(new HampelFilter(9, 3));
+        nRejected = chain.apply(trackSegment);
+        double maxDeviation = 0;
+        for (TrackPoint trackPoint : trackSegment.getTrackPoints())
+        {
+            maxDeviation = Math.max(maxDeviation, Math.abs(trackPoint.getSpeed() - 30));
+        }
+        System.out.println("Hampel: rejected " + nRejected + ", max speed deviation " + maxDeviation
+                           + " km/h (expected 0, < 2)");
+    }
+
+    /**
+     * Tests the smoothing of the positions.
+     */
+    private void testKalman()
+    {
+        double[] trueEast = new double[600];
+        TrackSegment trackSegment = createTrackSegment(600, 1000, 3, trueEast, new Random(2));
+        double before = rmsError(trackSegment, trueEast);
+        KalmanFilter kalman = new KalmanFilter(0.1, 3);
+        kalman.setUpdateVelocity(true);
+        new TrackFilterChain(kalman).apply(trackSegment);
+        double after = rmsError(trackSegment, trueEast);
+        TrackPoint last = trackSegment.getTrackPoints().get(599);
+        System.out.println("RMS error: " + before + " m -> " + after + " m (expected about 4.2 -> about 2)");
+        System.out.println("Filtered speed " + last.getSpeed() + " km/h, course " + last.getCourse()
+                           + " (expected about 30, 90)");
+    }
+
+    /**
+     * Measures the throughput of the full chain on a season of 10 Hz data (100 hours).
+     */
+    private void testThroughput()
+    {
+        int n = 3600000;
+        double[] trueEast = new double[n];
+        TrackSegment trackSegment = createTrackSegment(n, 100, 0.3, trueEast, new Random(3));
+        TrackFilterChain chain = new TrackFilterChain(new MaxAccelerationFilter(150, 20),
+                                                      new HampelFilter(9, 3),
+                                                      new KalmanFilter(0.5, 3));
+        long start = System.nanoTime();
+        int nRejected = chain.apply(trackSegment);
+        System.out.println(n + " points in " + (System.nanoTime() - start) / 1000000 + " ms, " + nRejected
+                           + " rejected (expected 0)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        TrackFilterTest test = new TrackFilterTest();
+        test.testOutliers();
+        test.testKalman();
+        test.testThroughput();
+    }
+}
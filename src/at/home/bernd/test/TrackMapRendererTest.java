@@ -0,0 +1,222 @@
+package at.home.bernd.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import at.home.bernd.TileCache;
+import at.home.bernd.Track;
+import at.home.bernd.TrackMapRenderer;
+import at.home.bernd.TrackMapRenderer.COLOR_MODE;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+
+/**
+ * Tests the TrackMapRenderer and the TileCache
+ */
+public class TrackMapRendererTest
+{
+    /**
+     * The meters per degree of latitude and of longitude at 47.9 degrees
+     */
+    private static final double METERS_PER_DEGREE_LATITUDE = 111195.0;
+    private static final double METERS_PER_DEGREE_LONGITUDE = 74549.0;
+
+    /**
+     * Creates a track with an hour of 10 Hz data: legs of 60 s, alternating between 20 and 40 km/h, turning by 90
+     * degrees in a wind from the north.
+     */
+    private Track createTrack()
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        double x = 0;
+        double y = 0;
+        double heading = 45;
+        double speed = 20;
+        for (int i = 0; i < 36000; i++)
+        {
+            if (i % 600 == 0)
+            {
+                heading = (heading + 90) % 360;
+                speed = 60 - speed;
+            }
+            x += speed / 3.6 * 0.1 * Math.sin(Math.toRadians(heading));
+            y += speed / 3.6 * 0.1 * Math.cos(Math.toRadians(heading));
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(1592560800000L + i * 100L);
+            trackPoint.setLatitude(47.9 + y / METERS_PER_DEGREE_LATITUDE);
+            trackPoint.setLongitude(16.8 + x / METERS_PER_DEGREE_LONGITUDE);
+            trackPoint.setSpeed(speed);
+            trackPoint.setCourse(heading);
+            trackPoint.setWindDirection(0);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        trackSegment.setWindInfoAvailable(true);
+        Track track = new Track();
+        track.setName("test");
+        track.addTrackSegment(trackSegment);
+        return track;
+    }
+
+    /**
+     * Returns the number of non transparent pixels of a tile.
+     */
+    private int countPixels(byte[] tile) throws IOException
+    {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(tile));
+        int count = 0;
+        for (int y = 0; y < image.getHeight(); y++)
+        {
+            for (int x = 0; x < image.getWidth(); x++)
+            {
+                count += (image.getRGB(x, y) >>> 24) != 0 ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Renders all tiles of a session at several zoom levels twice (rendered in parallel, then from the memory cache)
+     * and once more with a new renderer on the same disk cache.
+     */
+    private void testTiles(Path directory) throws IOException
+    {
+        Track track = createTrack();
+        String sessionId = TrackMapRenderer.sessionId(track);
+        TrackMapRenderer renderer = new TrackMapRenderer(new TileCache(TileCache.DEFAULT_MEMORY_BYTES, directory,
+                                                                       TileCache.DEFAULT_DISK_BYTES));
+        renderer.addSession(sessionId, track);
+        int nTiles = 0;
+        int nPixels = 0;
+        long start = System.nanoTime();
+        for (int zoom = 12; zoom <= 17; zoom++)
+        {
+            int[] range = renderer.getTileRange(sessionId, zoom);
+            for (COLOR_MODE mode : COLOR_MODE.values())
+            {
+                Map<String, byte[]> tiles = renderer.getTiles(sessionId, zoom, range[0], range[1], range[2], range[3],
+                                                              mode);
+                nTiles += tiles.size();
+                if (zoom == 12)
+                {
+                    for (byte[] tile : tiles.values())
+                    {
+                        nPixels += countPixels(tile);
+                    }
+                }
+            }
+        }
+        long renderMillis = (System.nanoTime() - start) / 1000000;
+        start = System.nanoTime();
+        for (int zoom = 12; zoom <= 17; zoom++)
+        {
+            int[] range = renderer.getTileRange(sessionId, zoom);
+            for (COLOR_MODE mode : COLOR_MODE.values())
+            {
+                renderer.getTiles(sessionId, zoom, range[0], range[1], range[2], range[3], mode);
+            }
+        }
+        long cachedMillis = (System.nanoTime() - start) / 1000000;
+        System.out.println(nTiles + " tiles rendered in " + renderMillis + " ms, from memory in " + cachedMillis
+                           + " ms, memory hits " + renderer.getTileCache().getMemoryCache().getHits()
+                           + " (expected hits = tiles, much faster from memory)");
+        System.out.println("Pixels drawn at zoom 12: " + nPixels + " (expected > 0)");
+
+        TrackMapRenderer restarted = new TrackMapRenderer(new TileCache(TileCache.DEFAULT_MEMORY_BYTES, directory,
+                                                                        TileCache.DEFAULT_DISK_BYTES));
+        restarted.addSession(sessionId, track);
+        int[] range = restarted.getTileRange(sessionId, 15);
+        restarted.getTiles(sessionId, 15, range[0], range[1], range[2], range[3], COLOR_MODE.speed);
+        System.out.println("After restart: disk entries " + restarted.getTileCache().getDiskCache().size()
+                           + ", disk hits " + restarted.getTileCache().getDiskCache().getHits()
+                           + " (expected " + nTiles + ", " + (range[2] - range[0] + 1) * (range[3] - range[1] + 1)
+                           + ")");
+    }
+
+    /**
+     * Tests the session ids: equal for the same content, different when a position or a wind direction changes
+     * (which changes the drawn tiles).
+     */
+    private void testSessionId()
+    {
+        Track track = createTrack();
+        String sessionId = TrackMapRenderer.sessionId(track);
+        TrackSegment moved = track.getTrackSegments().get(0).copy();
+        moved.getTrackPoints().get(18000).setLatitude(moved.getTrackPoints().get(18000).getLatitude() + 0.001);
+        TrackSegment turned = track.getTrackSegments().get(0).copy();
+        turned.getTrackPoints().get(18000).setWindDirection(90);
+        Track movedTrack = track.withTrackSegments(Arrays.asList(moved));
+        Track turnedTrack = track.withTrackSegments(Arrays.asList(turned));
+        System.out.println("Session ids: same content " + sessionId.equals(TrackMapRenderer.sessionId(createTrack()))
+                           + ", moved point " + sessionId.equals(TrackMapRenderer.sessionId(movedTrack))
+                           + ", changed wind " + sessionId.equals(TrackMapRenderer.sessionId(turnedTrack))
+                           + " (expected true, false, false)");
+    }
+
+    /**
+     * Tests the eviction of the disk cache: the files of evicted tiles are deleted.
+     */
+    private void testEviction(Path directory) throws IOException
+    {
+        TileCache tileCache = new TileCache(1000, directory, 3000);
+        for (int i = 0; i < 10; i++)
+        {
+            tileCache.put("s/speed/1/0/" + i + ".png", new byte[1000]);
+        }
+        long nFiles;
+        try (Stream<Path> stream = Files.walk(directory))
+        {
+            nFiles = stream.filter(Files::isRegularFile).count();
+        }
+        System.out.println("Disk entries " + tileCache.getDiskCache().size() + ", files " + nFiles
+                           + ", oldest evicted: " + (tileCache.get("s/speed/1/0/0.png") == null)
+                           + ", newest cached: " + (tileCache.get("s/speed/1/0/9.png") != null)
+                           + " (expected 3, 3, true, true)");
+        tileCache.invalidate("s/");
+        try (Stream<Path> stream = Files.walk(directory))
+        {
+            nFiles = stream.filter(Files::isRegularFile).count();
+        }
+        System.out.println("After invalidation: files " + nFiles + " (expected 0)");
+    }
+
+    /**
+     * Deletes a directory recursively.
+     */
+    private static void delete(Path directory) throws IOException
+    {
+        try (Stream<Path> stream = Files.walk(directory))
+        {
+            stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        TrackMapRendererTest test = new TrackMapRendererTest();
+        Path directory = Files.createTempDirectory("tiles");
+        Path evictionDirectory = Files.createTempDirectory("tiles");
+        try
+        {
+            test.testTiles(directory);
+            test.testSessionId();
+            test.testEviction(evictionDirectory);
+        }
+        finally
+        {
+            delete(directory);
+            delete(evictionDirectory);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package at.home.bernd.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import at.home.bernd.DataSnapshot;
+import at.home.bernd.IndexRange;
+import at.home.bernd.SnapshotStore;
+import at.home.bernd.SpeedRunExtractor;
+import at.home.bernd.SpeedThresholdSweep;
+import at.home.bernd.Track;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+import at.home.bernd.WindDataPoint;
+
+/**
+ * Tests the TrackSegment
+ */
+public class TrackSegmentTest
+{
+    /**
+     * Creates a track segment with one point per second and the given speeds and courses.
+     *
+     * @param speeds  the speeds
+     * @param courses the courses
+     * @return        the track segment
+     */
+    private TrackSegment createTrackSegment(double[] speeds, double[] courses)
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        long t0 = 1592561863000L;
+        for (int i = 0; i < speeds.length; i++)
+        {
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(t0 + i * 1000L);
+            trackPoint.setSpeed(speeds[i]);
+            trackPoint.setCourse(courses[i]);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        return trackSegment;
+    }
+
+    /**
+     * Tests extracting sub segments by top speed.
+     */
+    private void testExtractByTopSpeed()
+    {
+        double[] speeds =  { 10, 55, 56, 57, 20, 51, 52, 10, 60, 61, 62, 63, 64 };
+        double[] courses = { 90, 90, 92, 88, 90, 90, 90, 90, 90, 95, 140, 90, 90 };
+        TrackSegment trackSegment = createTrackSegment(speeds, courses);
+
+        List<IndexRange> runs = SpeedRunExtractor.findRuns(trackSegment.getSpeeds(), 50.0);
+        System.out.println("Runs > 50 km/h: " + runs + " (expected [[1, 4), [5, 7), [8, 13)])");
+
+        List<TrackSegment> extracted = trackSegment.extractByTopSpeed(50.0, 2);
+        System.out.println("Segments with more than 2 points: " + extracted.size() + " (expected 2)");
+        for (TrackSegment extractedTrackSegment : extracted)
+        {
+            System.out.println(extractedTrackSegment.size() + " points, first speed = " + extractedTrackSegment.getSpeeds()[0]);
+        }
+
+        SpeedRunExtractor extractor = new SpeedRunExtractor(50.0);
+        extractor.setMinDurationSeconds(3);
+        System.out.println("Runs lasting at least 3 s: " + extractor.extract(trackSegment) + " (expected [[8, 13)])");
+
+        extractor.setMinDurationSeconds(0);
+        extractor.setMaxCourseDeviation(10);
+        System.out.println("Runs with stable course: " + extractor.extract(trackSegment) + " (expected [[1, 4), [5, 7)])");
+    }
+
+    /**
+     * Tests the threshold sweep against single extractions.
+     */
+    private void testSweep()
+    {
+        Random random = new Random(42);
+        int n = 20000;
+        double[] speeds = new double[n];
+        double[] courses = new double[n];
+        double speed = 30;
+        for (int i = 0; i < n; i++)
+        {
+            speed = Math.max(0, speed + random.nextGaussian() * 3);
+            speeds[i] = speed;
+        }
+        TrackSegment trackSegment = createTrackSegment(speeds, courses);
+
+        double[] thresholds = { 50, 20, 30, 40 };
+        int[] minPoints = { 0, 5, 20 };
+        SpeedThresholdSweep sweep = new SpeedThresholdSweep(thresholds, minPoints);
+        sweep.addTrackSegment(trackSegment);
+        System.out.println(sweep);
+
+        double[] sortedThresholds = sweep.getThresholds();
+        int[] sortedMinPoints = sweep.getMinPoints();
+        long[][] counts = sweep.getSegmentCounts();
+        boolean ok = true;
+        for (int k = 0; k < sortedThresholds.length; k++)
+        {
+            for (int j = 0; j < sortedMinPoints.length; j++)
+            {
+                int expected = trackSegment.extractByTopSpeed(sortedThresholds[k], sortedMinPoints[j]).size();
+                if (expected != counts[k][j])
+                {
+                    System.out.println("Mismatch for " + sortedThresholds[k] + " / " + sortedMinPoints[j] + ": " +
+                                       counts[k][j] + " != " + expected);
+                    ok = false;
+                }
+            }
+        }
+        System.out.println("Sweep matches single extractions: " + ok);
+    }
+
+    /**
+     * Creates wind data with one point every 10 seconds.
+     *
+     * @param from  the first timestamp
+     * @param n     the number of points
+     * @param speed the wind speed
+     * @return      the wind data
+     */
+    private List<WindDataPoint> createWindData(long from, int n, double speed)
+    {
+        List<WindDataPoint> windData = new ArrayList<WindDataPoint>();
+        for (int i = 0; i < n; i++)
+        {
+            WindDataPoint windDataPoint = new WindDataPoint();
+            windDataPoint.setTime(from + i * 10000L);
+            windDataPoint.setWindSpeed(speed);
+            windDataPoint.setMaxWindSpeed(speed + 10);
+            windDataPoint.setDirection(270);
+            windData.add(windDataPoint);
+        }
+        return windData;
+    }
+
+    /**
+     * Tests copy-on-write snapshots: frozen objects reject modifications, enrichment copies only the covered segments
+     * and concurrent readers always see consistent snapshots.
+     */
+    private void testSnapshots() throws InterruptedException
+    {
+        double[] speeds = new double[60];
+        Arrays.fill(speeds, 30);
+        Track track = new Track();
+        track.setName("covered");
+        track.addTrackSegment(createTrackSegment(speeds, speeds));
+        Track otherTrack = new Track();
+        otherTrack.setName("not covered");
+        otherTrack.addTrackSegment(createTrackSegment(new double[] { 10, 20, 30 }, new double[3]));
+        for (TrackPoint trackPoint : otherTrack.getTrackSegments().get(0).getTrackPoints())
+        {
+            // one day later
+            trackPoint.setTime(trackPoint.getTime() + 86400000L);
+        }
+        long t0 = 1592561863000L;
+
+        SnapshotStore store = new SnapshotStore();
+        DataSnapshot first = store.update(snapshot -> snapshot.withTrackList(Arrays.asList(track, otherTrack))
+                                                              .withWindData(createWindData(t0 - 20000, 11, 20))
+                                                              .enrich());
+        TrackPoint trackPoint = first.getTrackList().get(0).getTrackSegments().get(0).getTrackPoints().get(0);
+        boolean rejected = false;
+        try
+        {
+            trackPoint.setSpeed(0);
+        }
+        catch (IllegalStateException ex)
+        {
+            rejected = true;
+        }
+        System.out.println("Frozen track point rejects modification: " + rejected);
+        System.out.println("Original segment not enriched: " + (track.getTrackSegments().get(0).getTrackPoints().get(0).getWindSpeed() == 0)
+                           + ", enriched copy: " + trackPoint.getWindSpeed() + " (expected 20.0)");
+        System.out.println("Track without wind data shared: " + (first.getTrackList().get(1) == otherTrack) + ", version: "
+                           + first.getVersion() + " (expected true, 3)");
+
+        // readers check that all points of a snapshot have the wind speed of the same wind data
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicInteger inconsistent = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++)
+        {
+            Thread reader = new Thread(() ->
+            {
+                while (! done.get())
+                {
+                    List<TrackPoint> trackPoints = store.get().getTrackList().get(0).getTrackSegments().get(0).getTrackPoints();
+                    double windSpeed = trackPoints.get(0).getWindSpeed();
+                    for (TrackPoint point : trackPoints)
+                    {
+                        if (Math.abs(point.getWindSpeed() - windSpeed) > 1e-9)
+                        {
+                            inconsistent.incrementAndGet();
+                            break;
+                        }
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int i = 1; i <= 200; i++)
+        {
+            List<WindDataPoint> windData = createWindData(t0 - 20000, 11, 20 + i);
+            store.update(snapshot -> snapshot.withWindData(windData).enrich());
+        }
+        done.set(true);
+        for (Thread reader : readers)
+        {
+            reader.join();
+        }
+        System.out.println(reads.get() + " concurrent reads, inconsistent: " + inconsistent.get() + ", last wind speed: "
+                           + store.get().getTrackList().get(0).getTrackSegments().get(0).getTrackPoints().get(0).getWindSpeed()
+                           + " (expected 0, 220.0)");
+    }
+
+    /**
+     * Tests concurrent writers: the listener gets the snapshots in ascending versions and the last one delivered is
+     * the current one.
+     */
+    private void testConcurrentUpdates() throws InterruptedException
+    {
+        SnapshotStore store = new SnapshotStore();
+        List<Long> versions = new ArrayList<Long>();
+        store.addListener(snapshot -> versions.add(snapshot.getVersion()));
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++)
+        {
+            Thread writer = new Thread(() ->
+            {
+                for (int j = 0; j < 1000; j++)
+                {
+                    store.update(snapshot -> snapshot.withTrackList(new ArrayList<Track>()));
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers)
+        {
+            writer.join();
+        }
+        int nOutOfOrder = 0;
+        for (int i = 1; i < versions.size(); i++)
+        {
+            nOutOfOrder += versions.get(i) <= versions.get(i - 1) ? 1 : 0;
+        }
+        System.out.println("Concurrent updates: version " + store.get().getVersion() + ", last delivered "
+                           + versions.get(versions.size() - 1) + ", out of order " + nOutOfOrder
+                           + " (expected 8000, 8000, 0)");
+    }
+
+    /**
+     * Tests that freezing copies the lists: the caller's list and the list viewed by a sub segment may still be
+     * modified without changing the frozen objects.
+     */
+    private void testFreezeCopies()
+    {
+        TrackSegment trackSegment = createTrackSegment(new double[] { 10, 20, 30, 40 }, new double[4]);
+        List<TrackPoint> trackPoints = new ArrayList<TrackPoint>(trackSegment.getTrackPoints());
+        TrackSegment frozenSegment = new TrackSegment();
+        frozenSegment.setTrackPoints(trackPoints);
+        TrackSegment subSegment = trackSegment.subSegment(new IndexRange(1, 3));
+        subSegment.freeze();
+        List<TrackSegment> trackSegments = new ArrayList<TrackSegment>();
+        trackSegments.add(frozenSegment);
+        Track track = new Track();
+        track.setTrackSegments(trackSegments);
+        track.freeze();
+
+        trackPoints.clear();
+        trackSegments.clear();
+        trackSegment.getTrackPoints().remove(1);
+        System.out.println("Frozen after modifying the source lists: segment " + frozenSegment.size() + ", track "
+                           + track.getTrackSegments().size() + ", sub segment " + subSegment.size() + " with speed "
+                           + subSegment.getTrackPoints().get(0).getSpeed() + " (expected 4, 1, 2 with speed 20.0)");
+    }
+
+    /**
+     * Starts the tests
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        TrackSegmentTest trackSegmentTest = new TrackSegmentTest();
+        trackSegmentTest.testExtractByTopSpeed();
+        trackSegmentTest.testSweep();
+        trackSegmentTest.testSnapshots();
+        trackSegmentTest.testConcurrentUpdates();
+        trackSegmentTest.testFreezeCopies();
+    }
+}
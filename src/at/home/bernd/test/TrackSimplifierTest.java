@@ -0,0 +1,114 @@
+package at.home.bernd.test;
+
+import java.util.Random;
+
+import at.home.bernd.SimplifiedTrack;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+import at.home.bernd.TrackSimplifier;
+import at.home.bernd.TrackSimplifier.SIMPLIFICATION_TYPE;
+
+/**
+ * Tests the TrackSimplifier
+ */
+public class TrackSimplifierTest
+{
+    /**
+     * The meters per degree of latitude and of longitude at 47.9 degrees
+     */
+    private static final double METERS_PER_DEGREE_LATITUDE = 111195.0;
+    private static final double METERS_PER_DEGREE_LONGITUDE = 74549.0;
+
+    /**
+     * Creates an hour of 10 Hz data: legs of 60 s at 30 km/h, turning by 90 degrees, with a position noise of 1 m.
+     */
+    private TrackSegment createTrackSegment(Random random)
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        double x = 0;
+        double y = 0;
+        double heading = 45;
+        for (int i = 0; i < 36000; i++)
+        {
+            if (i % 600 == 0)
+            {
+                heading += 90;
+            }
+            x += 30 / 3.6 * 0.1 * Math.sin(Math.toRadians(heading));
+            y += 30 / 3.6 * 0.1 * Math.cos(Math.toRadians(heading));
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(i * 100L);
+            trackPoint.setLatitude(47.9 + (y + random.nextGaussian()) / METERS_PER_DEGREE_LATITUDE);
+            trackPoint.setLongitude(16.8 + (x + random.nextGaussian()) / METERS_PER_DEGREE_LONGITUDE);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        return trackSegment;
+    }
+
+    /**
+     * Returns the largest distance of a point from the simplified line in meters.
+     */
+    private double maxDeviation(TrackSegment trackSegment, int[] indices)
+    {
+        double[] latitudes = trackSegment.getLatitudes();
+        double[] longitudes = trackSegment.getLongitudes();
+        double maxDeviation = 0;
+        for (int k = 0; k + 1 < indices.length; k++)
+        {
+            int a = indices[k];
+            int b = indices[k + 1];
+            double ax = longitudes[a] * METERS_PER_DEGREE_LONGITUDE;
+            double ay = latitudes[a] * METERS_PER_DEGREE_LATITUDE;
+            double dx = longitudes[b] * METERS_PER_DEGREE_LONGITUDE - ax;
+            double dy = latitudes[b] * METERS_PER_DEGREE_LATITUDE - ay;
+            for (int i = a + 1; i < b; i++)
+            {
+                double px = longitudes[i] * METERS_PER_DEGREE_LONGITUDE - ax;
+                double py = latitudes[i] * METERS_PER_DEGREE_LATITUDE - ay;
+                double t = Math.max(0, Math.min(1, (px * dx + py * dy) / (dx * dx + dy * dy)));
+                maxDeviation = Math.max(maxDeviation, Math.hypot(px - t * dx, py - t * dy));
+            }
+        }
+        return maxDeviation;
+    }
+
+    /**
+     * Tests both algorithms: the size of the levels, the deviation and the filter for arbitrary tolerances.
+     */
+    private void testSimplification()
+    {
+        TrackSegment trackSegment = createTrackSegment(new Random(5));
+        for (SIMPLIFICATION_TYPE type : SIMPLIFICATION_TYPE.values())
+        {
+            long start = System.nanoTime();
+            SimplifiedTrack simplifiedTrack = new TrackSimplifier(type).simplify(trackSegment);
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.println(type + " in " + millis + " ms: " + simplifiedTrack);
+            for (double tolerance : new double[] { 3, 5, 20 })
+            {
+                int[] indices = simplifiedTrack.getIndices(tolerance);
+                int expected = 0;
+                for (int i = 0; i < trackSegment.size(); i++)
+                {
+                    expected += simplifiedTrack.getImportance(i) >= tolerance ? 1 : 0;
+                }
+                System.out.println("  " + tolerance + (simplifiedTrack.isDeviationBound() ? " m" : " sqrt(m2)") + ": "
+                                   + indices.length + " points (filter matches: "
+                                   + (indices.length == expected) + "), max deviation "
+                                   + maxDeviation(trackSegment, indices) + " m");
+            }
+        }
+        System.out.println("(expected < 0.5 s each; fewer points for larger tolerances, about 60 - 200 at 20 (the "
+                           + "corners); filter matches: true; Douglas-Peucker deviation <= tolerance in m, "
+                           + "Visvalingam-Whyatt not a deviation bound)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        TrackSimplifierTest test = new TrackSimplifierTest();
+        test.testSimplification();
+    }
+}
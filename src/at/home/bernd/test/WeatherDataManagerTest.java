@@ -0,0 +1,137 @@
+package at.home.bernd.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+import at.home.bernd.WeatherDataManager;
+import at.home.bernd.WindDataPoint;
+
+/**
+ * Tests the wind data interpolation of the WeatherDataManager
+ */
+public class WeatherDataManagerTest
+{
+    /**
+     * The start of the test data (epoch milliseconds)
+     */
+    private static final long T0 = 1592561863000L;
+
+    /**
+     * Creates two hours of wind data every 5 minutes, the direction turning over north.
+     */
+    private List<WindDataPoint> createWindData()
+    {
+        List<WindDataPoint> windData = new ArrayList<WindDataPoint>();
+        for (int i = 0; i <= 24; i++)
+        {
+            WindDataPoint windDataPoint = new WindDataPoint();
+            windDataPoint.setTime(T0 + i * 300000L);
+            windDataPoint.setWindSpeed(15 + 8 * Math.sin(i / 4.0));
+            windDataPoint.setMaxWindSpeed(22 + 8 * Math.sin(i / 4.0));
+            windDataPoint.setDirection((340 + 4 * i) % 360);
+            windData.add(windDataPoint);
+        }
+        return windData;
+    }
+
+    /**
+     * Interpolates the wind data at the given times with both methods and prints the largest difference.
+     */
+    private void compare(String name, List<WindDataPoint> windData, long[] times)
+    {
+        WeatherDataManager weatherDataManager = new WeatherDataManager();
+        TrackSegment trackSegment = new TrackSegment();
+        for (long time : times)
+        {
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(time);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        weatherDataManager.addInterpolatedWindData(trackSegment, windData);
+        List<WindDataPoint> expected = weatherDataManager.interpolateWindData(windData, times);
+        double maxDifference = 0;
+        int nInterpolated = 0;
+        for (int i = 0; i < times.length; i++)
+        {
+            TrackPoint trackPoint = trackSegment.getTrackPoints().get(i);
+            WindDataPoint windDataPoint = expected.get(i);
+            maxDifference = Math.max(maxDifference, Math.abs(trackPoint.getWindSpeed() - windDataPoint.getWindSpeed()));
+            maxDifference = Math.max(maxDifference, Math.abs(trackPoint.getMaxWindSpeed()
+                                                             - windDataPoint.getMaxWindSpeed()));
+            maxDifference = Math.max(maxDifference, Math.abs(trackPoint.getWindDirection()
+                                                             - windDataPoint.getDirection()));
+            nInterpolated += trackPoint.getWindSpeed() != 0 ? 1 : 0;
+        }
+        System.out.println(name + ": " + nInterpolated + " of " + times.length + " interpolated, max difference "
+                           + maxDifference + " (expected < 1e-9)");
+    }
+
+    /**
+     * Compares addInterpolatedWindData with interpolateWindData for sorted, unsorted and duplicate track times,
+     * including times outside the wind data and exactly on the knots.
+     */
+    private void testInterpolation()
+    {
+        List<WindDataPoint> windData = createWindData();
+        Random random = new Random(2);
+        long[] sorted = new long[8000];
+        for (int i = 0; i < sorted.length; i++)
+        {
+            // from 10 minutes before to 10 minutes after the wind data
+            sorted[i] = T0 - 600000L + i * 1000L;
+        }
+        compare("Sorted", windData, sorted);
+
+        List<Long> shuffled = new ArrayList<Long>();
+        for (long time : sorted)
+        {
+            shuffled.add(time);
+        }
+        Collections.shuffle(shuffled, random);
+        long[] unsorted = new long[shuffled.size()];
+        for (int i = 0; i < unsorted.length; i++)
+        {
+            unsorted[i] = shuffled.get(i);
+        }
+        compare("Unsorted", windData, unsorted);
+
+        long[] duplicates = new long[sorted.length];
+        for (int i = 0; i < duplicates.length; i++)
+        {
+            // every time twice, some of them going back by a knot
+            duplicates[i] = sorted[i / 2 * 2] - (i % 100 == 99 ? 300000L : 0);
+        }
+        compare("Duplicates", windData, duplicates);
+    }
+
+    /**
+     * Interpolates wind data with missing directions and wind speeds (NaN): the gaps are bridged, the spline stays
+     * finite.
+     */
+    private void testMissingValues()
+    {
+        List<WindDataPoint> windData = createWindData();
+        windData.get(0).setDirection(Double.NaN);
+        windData.get(10).setDirection(Double.NaN);
+        windData.get(11).setWindSpeed(Double.NaN);
+        long[] times = { windData.get(0).getTime(), windData.get(10).getTime(), windData.get(11).getTime() + 60000L };
+        List<WindDataPoint> interpolated = new WeatherDataManager().interpolateWindData(windData, times);
+        System.out.println("Missing values: directions " + interpolated.get(0).getDirection() + ", "
+                           + interpolated.get(1).getDirection() + ", wind speed "
+                           + interpolated.get(2).getWindSpeed() + " (expected 344.0, 20.0, about 17.6)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        WeatherDataManagerTest test = new WeatherDataManagerTest();
+        test.testInterpolation();
+        test.testMissingValues();
+    }
+}
@@ -0,0 +1,234 @@
+package at.home.bernd.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import at.home.bernd.ColumnMapping;
+import at.home.bernd.CsvWeatherSource;
+import at.home.bernd.JsonWeatherSource;
+import at.home.bernd.WeatherArchive;
+import at.home.bernd.WeatherSource;
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+import at.home.bernd.WindSeries;
+
+/**
+ * Tests the weather sources (CSV, JSON), the ColumnMapping and the WeatherArchive
+ */
+public class WeatherSourceTest
+{
+    /**
+     * A CSV file with a header (semicolons, a quoted field), a row with a malformed timestamp, a row with an unknown
+     * compass point and a row with an empty wind speed
+     */
+    private static final String CSV =
+        "time;dir;speed;gust;temp\n"
+        + "2020-06-19T10:00:00Z;270;12.5;18.0;24.1\n"
+        + "2020-06-19T10:10:00Z;\"NNW\";14.0;20.5;24.3\n"
+        + "yesterday;280;13.0;19.0;24.2\n"
+        + "2020-06-19T10:20:00Z;XYZ;15.5;22.0;24.4\n"
+        + "2020-06-19T10:30:00Z;300;;23.0;24.6\n";
+
+    /**
+     * Returns the mapping of the test CSV file and the JSON object records (by name).
+     */
+    private ColumnMapping namedMapping()
+    {
+        ColumnMapping mapping = new ColumnMapping();
+        mapping.setColumn(WIND_DATA_TYPE.timestamp, "time");
+        mapping.setColumn(WIND_DATA_TYPE.direction, "dir");
+        mapping.setColumn(WIND_DATA_TYPE.windSpeed, "speed");
+        mapping.setColumn(WIND_DATA_TYPE.maxWindSpeed, "gust");
+        mapping.setColumn(WIND_DATA_TYPE.temperature, "temp");
+        return mapping;
+    }
+
+    /**
+     * Returns the values of the given type as a string.
+     */
+    private String values(WindSeries series, WIND_DATA_TYPE type)
+    {
+        return Arrays.toString(Arrays.copyOf(series.getValues(type), series.size()));
+    }
+
+    /**
+     * Tests the CSV source: only the row with the malformed timestamp is rejected, missing values are NaN.
+     */
+    private void testCsv() throws IOException
+    {
+        CsvWeatherSource source = new CsvWeatherSource("csv", null, namedMapping());
+        WindSeries series = source.read(new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)));
+        System.out.println("CSV: " + series.size() + " rows, directions " + values(series, WIND_DATA_TYPE.direction)
+                           + ", speeds " + values(series, WIND_DATA_TYPE.windSpeed)
+                           + " (expected 4, [270.0, 337.5, NaN, 300.0], [12.5, 14.0, 15.5, NaN])");
+        System.out.println("CSV chill (not mapped): " + values(series, WIND_DATA_TYPE.chill)
+                           + " (expected [NaN, NaN, NaN, NaN])");
+
+        // by index, comma separated, epoch milliseconds, one header row
+        ColumnMapping mapping = new ColumnMapping();
+        mapping.setColumn(WIND_DATA_TYPE.timestamp, 0);
+        mapping.setColumn(WIND_DATA_TYPE.windSpeed, 2);
+        mapping.setHeaderRows(1);
+        String csv = "a,b,c\n1592560800000,x,10\n1592561400000,y,\"11.5\"\n";
+        series = new CsvWeatherSource("csv", null, mapping)
+            .read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        System.out.println("CSV by index: " + series.size() + " rows, first " + series.getTime(0) + ", speeds "
+                           + values(series, WIND_DATA_TYPE.windSpeed) + " (expected 2, 1592560800000, [10.0, 11.5])");
+    }
+
+    /**
+     * Tests the JSON source with object records (by name) and array records (by index).
+     */
+    private void testJson() throws IOException
+    {
+        String json = "{\"station\": \"lake\", \"meta\": {\"unit\": \"km/h\"}, \"data\": ["
+                      + "{\"time\": \"2020-06-19T12:20:00+02:00\", \"dir\": 200, \"speed\": 20.5, \"extra\": [1, 2]},"
+                      + "{\"time\": \"2020-06-19T10:00:00Z\", \"dir\": \"SW\", \"speed\": 18},"
+                      + "{\"time\": null, \"dir\": 210, \"speed\": 19},"
+                      + "{\"time\": \"2020-06-19T10:10:00Z\", \"dir\": \"?\", \"speed\": 19.5}]}";
+        WindSeries series = new JsonWeatherSource("json", null, namedMapping())
+            .read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        System.out.println("JSON objects: " + series.size() + " rows (sorted), directions "
+                           + values(series, WIND_DATA_TYPE.direction) + ", speeds "
+                           + values(series, WIND_DATA_TYPE.windSpeed)
+                           + " (expected 3, [225.0, NaN, 200.0], [18.0, 19.5, 20.5])");
+
+        ColumnMapping mapping = new ColumnMapping();
+        mapping.setColumn(WIND_DATA_TYPE.timestamp, 0);
+        mapping.setColumn(WIND_DATA_TYPE.direction, 1);
+        mapping.setColumn(WIND_DATA_TYPE.windSpeed, 2);
+        json = "[[1592560800000, 270, 12.3], [1592561400000, 275, 13.1]]";
+        series = new JsonWeatherSource("json", null, mapping)
+            .read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        System.out.println("JSON arrays: " + series.size() + " rows, speeds " + values(series, WIND_DATA_TYPE.windSpeed)
+                           + " (expected 2, [12.3, 13.1])");
+    }
+
+    /**
+     * Tests the ColumnMapping: properties, lookup by index and by name.
+     */
+    private void testColumnMapping()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("lake.column.timestamp", "0");
+        properties.setProperty("lake.column.windSpeed", " 3 ");
+        properties.setProperty("lake.column.direction", "dir");
+        properties.setProperty("lake.datePattern", "dd.MM.yyyy HH:mm");
+        properties.setProperty("lake.timeZone", "Europe/Vienna");
+        properties.setProperty("lake.headerRows", "2");
+        ColumnMapping mapping = ColumnMapping.fromProperties(properties, "lake.");
+        System.out.println("Mapping: speed index " + mapping.getColumnIndex(WIND_DATA_TYPE.windSpeed) + ", direction "
+                           + mapping.getColumnName(WIND_DATA_TYPE.direction) + ", columns "
+                           + mapping.getColumnCount() + ", " + mapping.getDatePattern() + ", "
+                           + mapping.getTimeZone().getID() + ", header rows " + mapping.getHeaderRows()
+                           + " (expected 3, dir, 4, dd.MM.yyyy HH:mm, Europe/Vienna, header rows 2)");
+        System.out.println("Resolved: " + Arrays.toString(mapping.resolve(new String[] { "t", "dir", "x", "s" }, 5))
+                           + " (expected [timestamp, direction, null, windSpeed, null])");
+
+        ColumnMapping podersdorf = ColumnMapping.podersdorf();
+        System.out.println("Podersdorf: chill column " + podersdorf.getColumnIndex(WIND_DATA_TYPE.chill) + ", type of "
+                           + "column 5 " + podersdorf.getType(5, null) + ", type of column 3 "
+                           + podersdorf.getType(3, null) + " (expected 9, maxWindSpeed, null)");
+    }
+
+    /**
+     * Tests the WeatherArchive: sources configured by properties, concurrent ingestion, merging, an empty zip archive
+     * and a failing source.
+     */
+    private void testArchive(Path directory) throws IOException
+    {
+        Path first = directory.resolve("first.csv");
+        Files.write(first, CSV.getBytes(StandardCharsets.UTF_8));
+        Path second = directory.resolve("second.csv");
+        Files.write(second, ("time;dir;speed;gust;temp\n"
+                             + "2020-06-19T10:30:00Z;310;16.0;24.0;24.8\n"
+                             + "2020-06-19T10:40:00Z;320;17.0;25.0;25.0\n").getBytes(StandardCharsets.UTF_8));
+        Path empty = directory.resolve("empty.zip");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ZipOutputStream(out).close();
+        Files.write(empty, out.toByteArray());
+        Path zip = directory.resolve("csv.zip");
+        out = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(out))
+        {
+            zipOutputStream.putNextEntry(new ZipEntry("a.csv"));
+            zipOutputStream.write(Files.readAllBytes(first));
+            zipOutputStream.putNextEntry(new ZipEntry("b.csv"));
+            zipOutputStream.write(Files.readAllBytes(second));
+        }
+        Files.write(zip, out.toByteArray());
+
+        Properties properties = new Properties();
+        properties.setProperty(WeatherArchive.STATIONS_PROPERTY, "lake, empty,zipped");
+        for (String stationId : new String[] { "lake", "empty", "zipped" })
+        {
+            properties.setProperty(stationId + ".format", "csv");
+            properties.setProperty(stationId + ".column.timestamp", "time");
+            properties.setProperty(stationId + ".column.direction", "dir");
+            properties.setProperty(stationId + ".column.windSpeed", "speed");
+        }
+        properties.setProperty("lake.location", first.toString());
+        properties.setProperty("empty.location", empty.toString());
+        properties.setProperty("zipped.location", zip.toString());
+        List<WeatherSource> sources = WeatherArchive.createSources(properties);
+        WeatherArchive archive = new WeatherArchive();
+        archive.ingestAll(sources);
+        System.out.println("Archive: " + archive.getStationIds() + ", lake " + archive.getSeries("lake").size()
+                           + " rows, empty " + archive.getSeries("empty").size() + " rows, zipped "
+                           + archive.getSeries("zipped").size() + " rows (expected [empty, lake, zipped], 4, 0, 5)");
+
+        // ingesting the station again merges the rows, the newer row wins at 10:30
+        archive.ingest(new CsvWeatherSource("lake", second.toString(), namedMapping()));
+        WindSeries lake = archive.getSeries("lake");
+        System.out.println("Merged: " + lake.size() + " rows, speeds " + values(lake, WIND_DATA_TYPE.windSpeed)
+                           + " (expected 5, [12.5, 14.0, 15.5, 16.0, 17.0]), wind data points "
+                           + archive.getWindData("lake").size() + ", unknown station "
+                           + archive.getWindData("unknown").size() + " (expected 5, 0)");
+
+        sources.add(new CsvWeatherSource("missing", directory.resolve("missing.csv").toString(), namedMapping()));
+        WeatherArchive failing = new WeatherArchive();
+        try
+        {
+            failing.ingestAll(sources);
+            System.out.println("Failing source: no exception (expected an IOException)");
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Failing source: " + ex.getMessage().startsWith("Failed to ingest") + ", others "
+                               + failing.getStationIds() + " (expected true, [empty, lake, zipped])");
+        }
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        WeatherSourceTest test = new WeatherSourceTest();
+        test.testCsv();
+        test.testJson();
+        test.testColumnMapping();
+        Path directory = Files.createTempDirectory("weather");
+        try
+        {
+            test.testArchive(directory);
+        }
+        finally
+        {
+            try (Stream<Path> stream = Files.list(directory))
+            {
+                stream.forEach(path -> path.toFile().delete());
+            }
+            Files.delete(directory);
+        }
+    }
+}
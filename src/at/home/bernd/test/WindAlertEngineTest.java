@@ -0,0 +1,226 @@
+package at.home.bernd.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import at.home.bernd.Alert;
+import at.home.bernd.AlertRule;
+import at.home.bernd.WindAlertEngine;
+import at.home.bernd.WindWindow;
+
+/**
+ * Tests the WindWindow and the WindAlertEngine
+ */
+public class WindAlertEngineTest
+{
+    /**
+     * The start of the test data
+     */
+    private static final long T0 = 1592560800000L;
+
+    /**
+     * Compares the incremental window with a recomputation over the readings in the window.
+     */
+    private void testWindow()
+    {
+        Random random = new Random(42);
+        long duration = 20 * 60000L;
+        WindWindow window = new WindWindow(duration);
+        List<double[]> readings = new ArrayList<double[]>();
+        long time = T0;
+        double maxError = 0;
+        int fullMismatches = 0;
+        // the time of the first reading after the latest gap of at least the duration
+        long coverageStart = T0;
+        for (int i = 0; i < 20000; i++)
+        {
+            // irregular intervals, sometimes long gaps
+            long interval = random.nextInt(10) == 0 ? random.nextInt(3600000) : 10000 + random.nextInt(110000);
+            coverageStart = i == 0 || interval >= duration ? time + interval : coverageStart;
+            time += interval;
+            double[] reading = { time, 30 * random.nextDouble(), 30 + 20 * random.nextDouble(), 360 * random.nextDouble() };
+            readings.add(reading);
+            window.add(time, reading[1], reading[2], reading[3]);
+
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double sin = 0;
+            double cos = 0;
+            int n = 0;
+            for (int j = readings.size() - 1; j >= 0 && readings.get(j)[0] > time - duration; j--, n++)
+            {
+                double[] r = readings.get(j);
+                sum += r[1];
+                min = Math.min(min, r[1]);
+                max = Math.max(max, r[2]);
+                sin += Math.sin(Math.toRadians(r[3]));
+                cos += Math.cos(Math.toRadians(r[3]));
+            }
+            double direction = (Math.toDegrees(Math.atan2(sin, cos)) + 360) % 360;
+            double directionError = Math.abs(direction - window.getMeanDirection());
+            maxError = Math.max(maxError, Math.abs(sum / n - window.getMeanSpeed()));
+            maxError = Math.max(maxError, Math.abs(min - window.getMinSpeed()) + Math.abs(max - window.getMaxGust()));
+            maxError = Math.max(maxError, Math.min(directionError, 360 - directionError) / 100);
+            if (n != window.size())
+            {
+                maxError = Double.MAX_VALUE;
+            }
+            fullMismatches += window.isFull() != coverageStart <= time - duration ? 1 : 0;
+        }
+        System.out.println("Window max error: " + maxError + ", full mismatches: " + fullMismatches
+                           + " (expected < 1e-9, 0)");
+
+        // readings every minute for 30 minutes, a gap of two hours, then readings every minute again
+        window = new WindWindow(duration);
+        StringBuilder sb = new StringBuilder();
+        for (int minute = 0; minute < 180; minute += minute == 30 ? 120 : 1)
+        {
+            window.add(T0 + minute * 60000L, 20, 25, 270);
+            if (minute == 19 || minute == 20 || minute == 30 || minute == 150 || minute == 169 || minute == 170)
+            {
+                sb.append(sb.length() > 0 ? ", " : "").append(minute).append(": ").append(window.isFull());
+            }
+        }
+        System.out.println("Full after a gap: " + sb
+                           + " (expected 19: false, 20: true, 30: true, 150: false, 169: false, 170: true)");
+    }
+
+    /**
+     * Tests a rule "mean over 30 km/h for 20 minutes from N to NW" on readings every minute.
+     */
+    private void testRule()
+    {
+        WindAlertEngine engine = new WindAlertEngine();
+        List<Alert> alerts = new ArrayList<Alert>();
+        engine.addSink(alerts::add);
+        AlertRule rule = new AlertRule("lakeNW", "lake", 20 * 60000L);
+        rule.setMinMeanSpeed(30);
+        rule.setDirectionSector(315, 0);
+        rule.setMaxGustRatio(1.4);
+        engine.addRule(rule);
+        for (int minute = 0; minute < 120; minute++)
+        {
+            // 20 km/h from NW, from minute 30 on 35 km/h from NNW, from minute 80 on from SW
+            double speed = minute < 30 ? 20 : 35;
+            double direction = minute < 30 ? 315 : minute < 80 ? 345 : 225;
+            engine.onReading("lake", T0 + minute * 60000L, speed, speed * 1.3, direction);
+            engine.onReading("other", T0 + minute * 60000L, speed, speed * 1.3, direction);
+        }
+        for (Alert alert : alerts)
+        {
+            System.out.println(alert + " at minute " + (alert.getTime() - T0) / 60000);
+        }
+        // mean over 30 with 14 of 20 readings at 35 km/h, mean direction below 315 with 7 of 20 readings from SW
+        System.out.println("(expected triggered at minute 43, cleared at minute 86)");
+    }
+
+    /**
+     * Tests a missing direction and a missing gust (NaN, e.g. an unknown compass point): they are left out of the
+     * aggregates, so the rule "mean over 30 km/h for 20 minutes from N to NW" still triggers.
+     */
+    private void testMissingValues()
+    {
+        WindWindow window = new WindWindow(20 * 60000L);
+        WindAlertEngine engine = new WindAlertEngine();
+        List<Alert> alerts = new ArrayList<Alert>();
+        engine.addSink(alerts::add);
+        AlertRule rule = new AlertRule("lakeNW", "lake", 20 * 60000L);
+        rule.setMinMeanSpeed(30);
+        rule.setDirectionSector(315, 0);
+        engine.addRule(rule);
+        for (int minute = 0; minute < 200; minute++)
+        {
+            double direction = minute == 5 ? Double.NaN : 330;
+            double gust = minute == 7 ? Double.NaN : 45;
+            window.add(T0 + minute * 60000L, 35, gust, direction);
+            engine.onReading("lake", T0 + minute * 60000L, 35, gust, direction);
+            if (minute == 10)
+            {
+                System.out.println("Missing values in the window: mean speed " + window.getMeanSpeed() + ", mean gust "
+                                   + window.getMeanGust() + ", max gust " + window.getMaxGust() + ", direction "
+                                   + Math.round(window.getMeanDirection()) + " (expected 35.0, 45.0, 45.0, 330)");
+            }
+        }
+        System.out.println("After the missing values: direction " + Math.round(window.getMeanDirection())
+                           + ", alerts " + alerts.size() + ", active " + engine.isActive(rule)
+                           + " (expected 330, 1, true)");
+    }
+
+    /**
+     * Compares many rules sharing a window with evaluating every rule on its own window.
+     */
+    private void testManyRules()
+    {
+        Random random = new Random(7);
+        WindAlertEngine engine = new WindAlertEngine();
+        int[] nAlerts = new int[1];
+        engine.addSink(alert -> nAlerts[0]++);
+        List<AlertRule> rules = new ArrayList<AlertRule>();
+        for (int i = 0; i < 5000; i++)
+        {
+            AlertRule rule = new AlertRule("rule" + i, "lake", (10 + 10 * random.nextInt(3)) * 60000L);
+            if (random.nextInt(4) > 0)
+            {
+                rule.setMinMeanSpeed(10 + 30 * random.nextDouble());
+            }
+            if (random.nextBoolean())
+            {
+                rule.setMaxGustRatio(1.2 + random.nextDouble());
+            }
+            if (random.nextBoolean())
+            {
+                double from = 360 * random.nextDouble();
+                rule.setDirectionSector(from, from + 90);
+            }
+            rules.add(rule);
+            engine.addRule(rule);
+        }
+
+        // reference windows of 10, 20 and 30 minutes
+        WindWindow[] windows = { new WindWindow(10 * 60000L), new WindWindow(20 * 60000L), new WindWindow(30 * 60000L) };
+        int mismatches = 0;
+        double speed = 20;
+        double direction = 270;
+        long engineNanos = 0;
+        for (int minute = 0; minute < 5000; minute++)
+        {
+            speed = Math.max(0, speed + random.nextGaussian() * 3);
+            direction = (direction + random.nextGaussian() * 10 + 360) % 360;
+            double gust = speed * (1.1 + 0.5 * random.nextDouble());
+            long start = System.nanoTime();
+            engine.onReading("lake", T0 + minute * 60000L, speed, gust, direction);
+            engineNanos += System.nanoTime() - start;
+            for (WindWindow window : windows)
+            {
+                window.add(T0 + minute * 60000L, speed, gust, direction);
+            }
+            if (minute % 7 == 0)
+            {
+                for (AlertRule rule : rules)
+                {
+                    WindWindow window = windows[(int) (rule.getWindowMillis() / 600000L) - 1];
+                    if (rule.matches(window) != engine.isActive(rule))
+                    {
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        System.out.println(rules.size() + " rules, 5000 readings: " + nAlerts[0] + " alerts in " + engineNanos / 1000000
+                           + " ms, mismatches: " + mismatches + " (expected 0)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        WindAlertEngineTest test = new WindAlertEngineTest();
+        test.testWindow();
+        test.testRule();
+        test.testMissingValues();
+        test.testManyRules();
+    }
+}
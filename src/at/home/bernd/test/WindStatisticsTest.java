@@ -0,0 +1,192 @@
+package at.home.bernd.test;
+
+import java.util.Random;
+
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+import at.home.bernd.WindStatistics;
+import at.home.bernd.WindStatisticsIndex;
+
+/**
+ * Tests the WindStatistics and the WindStatisticsIndex
+ */
+public class WindStatisticsTest
+{
+    /**
+     * The start of the test data
+     */
+    private static final long T0 = 1592560800000L;
+
+    /**
+     * The test data
+     */
+    private long[] times = new long[50000];
+    private double[] speeds = new double[times.length];
+    private double[] gusts = new double[times.length];
+
+    /**
+     * Creates a random walk of readings at irregular intervals.
+     */
+    private WindStatisticsTest()
+    {
+        Random random = new Random(42);
+        long time = T0;
+        double speed = 20;
+        for (int i = 0; i < times.length; i++)
+        {
+            time += 30000 + random.nextInt(90000);
+            speed = Math.max(0, speed + random.nextGaussian() * 2);
+            times[i] = time;
+            speeds[i] = speed;
+            gusts[i] = speed * (1.1 + 0.5 * random.nextDouble());
+        }
+    }
+
+    /**
+     * Returns the relative difference of the given values.
+     */
+    private static double error(double expected, double actual)
+    {
+        return Math.abs(expected - actual) / Math.max(1, Math.abs(expected));
+    }
+
+    /**
+     * Compares range queries of the index with adding the readings of the range one by one.
+     */
+    private void testRanges()
+    {
+        WindStatisticsIndex index = new WindStatisticsIndex(times, speeds, gusts, 25);
+        Random random = new Random(7);
+        double maxError = 0;
+        int mismatches = 0;
+        for (int q = 0; q < 2000; q++)
+        {
+            int start = random.nextInt(times.length);
+            int end = Math.min(times.length, start + 1 + random.nextInt(5000));
+            WindStatistics expected = new WindStatistics(25);
+            for (int i = start; i < end; i++)
+            {
+                expected.add(times[i], speeds[i], gusts[i]);
+            }
+            WindStatistics actual = index.getStatistics(times[start], times[end - 1]);
+            maxError = Math.max(maxError, error(expected.getMeanSpeed(), actual.getMeanSpeed()));
+            maxError = Math.max(maxError, error(expected.getStandardDeviation(), actual.getStandardDeviation()));
+            maxError = Math.max(maxError, error(expected.getMeanGust(), actual.getMeanGust()));
+            if (expected.getCount() != actual.getCount() || expected.getMaxGust() != actual.getMaxGust()
+                || expected.getTimeAboveMillis() != actual.getTimeAboveMillis())
+            {
+                mismatches++;
+            }
+        }
+        System.out.println("Range queries max error: " + maxError + ", mismatches: " + mismatches
+                           + " (expected < 1e-6, 0)");
+
+        long start = System.nanoTime();
+        double sum = 0;
+        for (int q = 0; q < 1000000; q++)
+        {
+            int from = random.nextInt(times.length);
+            sum += index.getStatistics(from, from + 1000).getTurbulenceIntensity();
+        }
+        System.out.println("1000000 queries in " + (System.nanoTime() - start) / 1000000 + " ms (" + (sum > 0) + ")");
+    }
+
+    /**
+     * Compares range queries of the index with adding the readings one by one on a series with missing wind speeds
+     * and gusts (NaN): both skip the incomplete readings, which still end the interval of the previous reading.
+     */
+    private void testMissingValues()
+    {
+        double[] incompleteSpeeds = speeds.clone();
+        double[] incompleteGusts = gusts.clone();
+        for (int i = 0; i < times.length; i++)
+        {
+            incompleteSpeeds[i] = i % 7 == 3 ? Double.NaN : speeds[i];
+            incompleteGusts[i] = i % 11 == 5 ? Double.NaN : gusts[i];
+        }
+        WindStatisticsIndex index = new WindStatisticsIndex(times, incompleteSpeeds, incompleteGusts, 25);
+        Random random = new Random(3);
+        double maxError = 0;
+        int mismatches = 0;
+        for (int q = 0; q < 500; q++)
+        {
+            int start = random.nextInt(times.length);
+            int end = Math.min(times.length, start + 2 + random.nextInt(5000));
+            WindStatistics expected = new WindStatistics(25);
+            for (int i = start; i < end; i++)
+            {
+                expected.add(times[i], incompleteSpeeds[i], incompleteGusts[i]);
+            }
+            WindStatistics actual = index.getStatistics(times[start], times[end - 1]);
+            maxError = Math.max(maxError, error(expected.getMeanSpeed(), actual.getMeanSpeed()));
+            maxError = Math.max(maxError, error(expected.getStandardDeviation(), actual.getStandardDeviation()));
+            maxError = Math.max(maxError, error(expected.getMeanGust(), actual.getMeanGust()));
+            if (expected.getCount() != actual.getCount() || expected.getMaxGust() != actual.getMaxGust()
+                || expected.getTimeAboveMillis() != actual.getTimeAboveMillis())
+            {
+                mismatches++;
+            }
+        }
+        WindStatistics whole = new WindStatistics(25);
+        for (int i = 0; i < times.length; i++)
+        {
+            whole.add(times[i], incompleteSpeeds[i], incompleteGusts[i]);
+        }
+        System.out.println("Missing values: max error " + maxError + ", mismatches " + mismatches + ", readings "
+                           + whole.getCount() + " of " + times.length + ", mean finite "
+                           + ! Double.isNaN(whole.getMeanSpeed()) + " (expected < 1e-6, 0, 38961 of 50000, true)");
+    }
+
+    /**
+     * Compares merging the statistics of two halves with the statistics of the whole series.
+     */
+    private void testMerge()
+    {
+        int half = times.length / 2;
+        WindStatistics whole = new WindStatistics(25);
+        WindStatistics first = new WindStatistics(25);
+        WindStatistics second = new WindStatistics(25);
+        for (int i = 0; i < times.length; i++)
+        {
+            whole.add(times[i], speeds[i], gusts[i]);
+            (i < half ? first : second).add(times[i], speeds[i], gusts[i]);
+        }
+        first.merge(second);
+        double error = error(whole.getMeanSpeed(), first.getMeanSpeed())
+                       + error(whole.getStandardDeviation(), first.getStandardDeviation());
+        // the interval between the halves is not part of either half
+        long gap = speeds[half - 1] > 25 ? times[half] - times[half - 1] : 0;
+        System.out.println("Merge error: " + error + ", time above difference: "
+                           + (whole.getTimeAboveMillis() - first.getTimeAboveMillis() - gap) + " (expected < 1e-9, 0)");
+    }
+
+    /**
+     * Prints the statistics of a session and of a track segment.
+     */
+    private void testTrackSegment()
+    {
+        WindStatisticsIndex index = new WindStatisticsIndex(times, speeds, gusts, 25);
+        System.out.println("Session: " + index.getStatistics(T0, T0 + 4 * 3600000L));
+        TrackSegment trackSegment = new TrackSegment();
+        for (int i = 0; i <= 10; i++)
+        {
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(T0 + 3600000L + i * 60000L);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        System.out.println("Segment: " + index.getStatistics(trackSegment));
+        System.out.println("Empty: " + index.getStatistics(T0 - 60000L, T0) + " (expected 0 readings)");
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args)
+    {
+        WindStatisticsTest test = new WindStatisticsTest();
+        test.testRanges();
+        test.testMissingValues();
+        test.testMerge();
+        test.testTrackSegment();
+    }
+}
@@ -0,0 +1,299 @@
+package at.home.bernd.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import at.home.bernd.ColumnMapping;
+import at.home.bernd.CsvWeatherSource;
+import at.home.bernd.Track;
+import at.home.bernd.TrackPoint;
+import at.home.bernd.TrackSegment;
+import at.home.bernd.WeatherArchive;
+import at.home.bernd.WindDataBroadcaster;
+import at.home.bernd.WindSeries;
+import at.home.bernd.WindViewerServer;
+import at.home.bernd.WindDataPoint.WIND_DATA_TYPE;
+
+/**
+ * Tests the WindViewerServer over localhost
+ */
+public class WindViewerServerTest
+{
+    /**
+     * The start of the test data
+     */
+    private static final long T0 = 1592560800000L;
+
+    /**
+     * The HTTP client
+     */
+    private HttpClient client = HttpClient.newHttpClient();
+
+    /**
+     * The base URI of the server
+     */
+    private String baseUri;
+
+    /**
+     * Creates a series of the station "lake" with one row per minute.
+     *
+     * @param first the index of the first row (minutes after the start of the test data)
+     * @param rows  the number of rows
+     * @return      the series
+     * @throws IOException if the data cannot be read
+     */
+    private WindSeries createSeries(int first, int rows) throws IOException
+    {
+        return createSeries("lake", first, rows);
+    }
+
+    /**
+     * Creates a series with one row per minute.
+     *
+     * @param stationId the id of the station
+     * @param first     the index of the first row (minutes after the start of the test data)
+     * @param rows      the number of rows
+     * @return          the series
+     * @throws IOException if the data cannot be read
+     */
+    private WindSeries createSeries(String stationId, int first, int rows) throws IOException
+    {
+        StringBuilder csv = new StringBuilder("time,dir,speed,gust\n");
+        for (int i = first; i < first + rows; i++)
+        {
+            csv.append(T0 + i * 60000L).append(',').append(270 + i % 10).append(',').append(20 + i % 7).append(',').append(30).append('\n');
+        }
+        ColumnMapping mapping = new ColumnMapping();
+        mapping.setColumn(WIND_DATA_TYPE.timestamp, "time");
+        mapping.setColumn(WIND_DATA_TYPE.direction, "dir");
+        mapping.setColumn(WIND_DATA_TYPE.windSpeed, "speed");
+        mapping.setColumn(WIND_DATA_TYPE.maxWindSpeed, "gust");
+        return new CsvWeatherSource(stationId, null, mapping).read(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Creates an archive with one station and one row per minute.
+     *
+     * @return the archive
+     * @throws IOException if the data cannot be read
+     */
+    private WeatherArchive createArchive() throws IOException
+    {
+        WeatherArchive archive = new WeatherArchive();
+        archive.add(createSeries(0, 600));
+        return archive;
+    }
+
+    /**
+     * Creates a track with one point per second: 20 km/h, then 60 s at 50 km/h, then 20 km/h again.
+     *
+     * @return the track list
+     */
+    private List<Track> createTrackList()
+    {
+        TrackSegment trackSegment = new TrackSegment();
+        double longitude = 16.8;
+        for (int i = 0; i < 300; i++)
+        {
+            double speed = i >= 100 && i < 160 ? 50 : 20;
+            TrackPoint trackPoint = new TrackPoint();
+            trackPoint.setTime(T0 + i * 1000L);
+            trackPoint.setLatitude(47.85);
+            trackPoint.setLongitude(longitude);
+            // one degree of longitude is about 74.7 km at this latitude
+            longitude += speed / 3.6 / 74700.0;
+            trackPoint.setSpeed(speed);
+            trackPoint.setCourse(90);
+            trackSegment.addTrackPoint(trackPoint);
+        }
+        Track track = new Track();
+        track.setName("test");
+        track.addTrackSegment(trackSegment);
+        List<Track> trackList = new ArrayList<Track>();
+        trackList.add(track);
+        return trackList;
+    }
+
+    /**
+     * Sends a GET request.
+     *
+     * @param path the path and query
+     * @return     the response
+     */
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException
+    {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUri + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Prints the status and (the start of) the body of a response.
+     *
+     * @param path     the path and query
+     * @param expected the expected result
+     */
+    private void print(String path, String expected) throws IOException, InterruptedException
+    {
+        HttpResponse<String> response = get(path);
+        String body = response.body();
+        System.out.println(path + " -> " + response.statusCode() + " " + (body.length() > 160 ? body.substring(0, 160) + "..." : body));
+        System.out.println("    (expected " + expected + ")");
+    }
+
+    /**
+     * Tests the endpoints.
+     */
+    private void testEndpoints() throws IOException, InterruptedException
+    {
+        print("/stations", "200, station lake with 600 rows");
+        print("/weather?station=lake&from=2020-06-19T10:00:00Z&to=" + (T0 + 2 * 60000L), "200, 3 rows");
+        print("/weather/chart?station=lake&type=windSpeed&points=50", "200, size 600 and 50 values");
+        print("/tracks/chart?track=0&segment=0&points=20", "200, size 300 and 20 values");
+        print("/segments?threshold=30&minPoints=10", "200, one segment [100, 160)");
+        print("/topspeeds", "200, best2s about 50 km/h");
+        print("/weather?station=unknown", "400");
+        print("/unknown", "404");
+        HttpResponse<byte[]> binary = client.send(HttpRequest.newBuilder(URI.create(baseUri + "/weather?station=lake&format=columnar")).build(),
+                                                  HttpResponse.BodyHandlers.ofByteArray());
+        System.out.println("/weather?station=lake&format=columnar -> " + binary.statusCode() + " " + binary.body().length + " bytes");
+        HttpResponse<byte[]> tile = client.send(HttpRequest.newBuilder(URI.create(baseUri + "/tiles?track=0&z=14&x=8956&y=5705")).build(),
+                                                HttpResponse.BodyHandlers.ofByteArray());
+        System.out.println("/tiles?track=0&z=14&x=8956&y=5705 -> " + tile.statusCode() + " "
+                           + tile.headers().firstValue("Content-Type").orElse("") + " " + tile.body().length + " bytes");
+        System.out.println("    (expected 200 image/png)");
+        print("/tiles?track=0&z=30&x=0&y=0", "400");
+        print("/metrics", "200, the pipeline report");
+    }
+
+    /**
+     * Tests many concurrent requests.
+     *
+     * @param server the server
+     */
+    private void testConcurrentRequests(WindViewerServer server)
+    {
+        int nRequests = 2000;
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+        long start = System.nanoTime();
+        for (int i = 0; i < nRequests; i++)
+        {
+            String path = "/weather/chart?station=lake&points=" + (10 + i % 100);
+            futures.add(client.sendAsync(HttpRequest.newBuilder(URI.create(baseUri + path)).build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        int ok = 0;
+        for (CompletableFuture<HttpResponse<String>> future : futures)
+        {
+            if (future.join().statusCode() == 200)
+            {
+                ok++;
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(nRequests + " concurrent requests: " + ok + " ok in " + millis + " ms (expected " + nRequests + " ok)");
+        System.out.println("Cache: " + server.getResponseCache().size() + " entries, " + server.getResponseCache().getHits()
+                           + " hits (expected 107 entries without tiles and metrics, most requests are hits)");
+    }
+
+    /**
+     * Tests the event stream: many clients receive the new readings published once, a slow consumer is dropped.
+     *
+     * @param server  the server
+     * @param archive the archive of the server
+     */
+    private void testEvents(WindViewerServer server, WeatherArchive archive) throws Exception
+    {
+        WindDataBroadcaster broadcaster = new WindDataBroadcaster(archive, Collections.emptyList(), 4);
+        server.setBroadcaster(broadcaster);
+        HttpResponse<String> invalid = get("/events?since=yesterday");
+        System.out.println("/events?since=yesterday -> " + invalid.statusCode() + " (expected 400)");
+        int nClients = 200;
+        List<CompletableFuture<String>> events = new ArrayList<CompletableFuture<String>>();
+        for (int i = 0; i < nClients; i++)
+        {
+            CompletableFuture<String> event = new CompletableFuture<String>();
+            events.add(event);
+            // complete with the first data line; the stream itself stays open
+            client.sendAsync(HttpRequest.newBuilder(URI.create(baseUri + "/events?station=lake")).build(), HttpResponse.BodyHandlers.ofLines())
+                  .thenAccept(response -> event.complete(response.body().filter(line -> line.startsWith("data:")).findFirst().orElse(null)));
+        }
+        while (broadcaster.getSubscriberCount() < nClients)
+        {
+            Thread.sleep(10);
+        }
+
+        // rows 598 and 599 are already known, 600 and 601 are new
+        broadcaster.publish(createSeries(598, 4));
+        int received = 0;
+        for (CompletableFuture<String> event : events)
+        {
+            if (event.get(10, TimeUnit.SECONDS).contains("\"time\":[" + (T0 + 600 * 60000L) + "," + (T0 + 601 * 60000L) + "]"))
+            {
+                received++;
+            }
+        }
+        System.out.println(nClients + " clients received " + received + " events (expected " + nClients + ")");
+        System.out.println("Archive: " + archive.getSeries("lake").size() + " rows (expected 602)");
+
+        // a subscriber that never reads is dropped when its queue is full
+        WindDataBroadcaster.Subscriber slowSubscriber = broadcaster.subscribe(null);
+        for (int i = 0; i < 5; i++)
+        {
+            broadcaster.publish(createSeries(602 + i, 1));
+        }
+        System.out.println("Slow subscriber closed: " + slowSubscriber.isClosed() + ", dropped: " + broadcaster.getDroppedCount()
+                           + " (expected true, 1)");
+
+        // a station whose clock lags behind: a client of all stations reconnecting with the id of the event of rows
+        // 600 and 601 receives its rows, although they are older, and the later rows of the lake
+        broadcaster.publish(createSeries("dock", 500, 2));
+        String lastEventId = "lake=" + (T0 + 601 * 60000L);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + "/events"))
+            .header("Last-Event-ID", lastEventId).build();
+        List<String> replayed = client.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+            .thenApply(response -> response.body().filter(line -> line.startsWith("id:") || line.startsWith("data:"))
+                                                  .limit(4).collect(Collectors.toList()))
+            .get(10, TimeUnit.SECONDS);
+        System.out.println("Replayed: " + replayed.get(0) + ", " + replayed.get(1).contains("\"station\":\"dock\"")
+                           + ", " + replayed.get(2) + " (expected id: dock=" + (T0 + 501 * 60000L) + ",lake="
+                           + (T0 + 601 * 60000L) + ", true, id: dock=" + (T0 + 501 * 60000L) + ",lake="
+                           + (T0 + 606 * 60000L) + ")");
+
+        // all stream permits are taken
+        HttpResponse<String> rejected = get("/events");
+        System.out.println("/events -> " + rejected.statusCode() + ", Retry-After "
+                           + rejected.headers().firstValue("Retry-After").orElse(null) + " (expected 503, 15)");
+        broadcaster.close();
+    }
+
+    /**
+     * Runs the tests.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        WindViewerServerTest test = new WindViewerServerTest();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        WeatherArchive archive = test.createArchive();
+        try (WindViewerServer server = new WindViewerServer(address, archive, test.createTrackList()))
+        {
+            // the clients of the event stream test and one reconnecting client
+            server.setMaxStreams(201);
+            server.start();
+            test.baseUri = "http://localhost:" + server.getPort();
+            test.testEndpoints();
+            test.testConcurrentRequests(server);
+            test.testEvents(server, archive);
+        }
+    }
+}